@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A {@link ThreadLocal} whose values are stored in a per-thread array
+ * at an index assigned when the variable is constructed, rather than
+ * in a per-thread hash map keyed by the variable. The methods {@link
+ * #get} and {@link #set} thus reduce to an array access, without
+ * hashing, probing, or purging stale entries, which makes this class
+ * preferable for thread-local variables that are read very
+ * frequently, such as per-request context held by server frameworks.
+ *
+ * <p>Indices are never reused, and each thread's array is large
+ * enough to hold the highest index it has accessed. Instances should
+ * therefore be long-lived, typically held in {@code static} fields,
+ * and not created in large numbers. Values are not inherited by child
+ * threads; {@link InheritableThreadLocal} remains the mechanism for
+ * that.
+ *
+ * <p>The values of all indexed thread-local variables of the current
+ * thread can be cleared at once by {@link #removeAll}, for example
+ * after each task run by a thread pool:
+ *
+ * <pre> {@code
+ * class ContextClearingPool extends ThreadPoolExecutor {
+ *   // ...
+ *   protected void afterExecute(Runnable r, Throwable t) {
+ *     super.afterExecute(r, t);
+ *     IndexedThreadLocal.removeAll();
+ *   }
+ * }}</pre>
+ *
+ * @param <T> the type of the thread local's value
+ * @see ThreadLocal
+ * @since 1.8
+ */
+public class IndexedThreadLocal<T> extends ThreadLocal<T> {
+    /*
+     * Each thread's values live in Thread.indexedThreadLocals, which
+     * is created on the first set and grown by doubling. An absent
+     * value is represented by null, and a null value by the NULL
+     * sentinel, so that get need not consult initialValue on every
+     * call for variables whose value is null.
+     */
+
+    /**
+     * The largest index, bounding the size of per-thread arrays.
+     */
+    static final int MAX_INDEX = (1 << 30) - 1;
+
+    /**
+     * The initial size of per-thread arrays.
+     */
+    static final int INITIAL_CAPACITY = 32;
+
+    /**
+     * The next index to be given out.
+     */
+    private static final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * Sentinel representing a null value.
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * The index of this variable's values in per-thread arrays.
+     */
+    private final int index;
+
+    /**
+     * Creates an indexed thread local variable.
+     *
+     * @throws IllegalStateException if more than 2<sup>30</sup>
+     *         indexed thread local variables have been created
+     * @see #withInitial(java.util.function.Supplier)
+     */
+    public IndexedThreadLocal() {
+        int i;
+        if ((i = nextIndex.getAndIncrement()) > MAX_INDEX || i < 0) {
+            nextIndex.set(MAX_INDEX + 1); // avoid wraparound
+            throw new IllegalStateException(
+                "Too many indexed thread local variables");
+        }
+        index = i;
+    }
+
+    /**
+     * Creates an indexed thread local variable. The initial value of
+     * the variable is determined by invoking the {@code get} method
+     * on the {@code Supplier}.
+     *
+     * @param <S> the type of the thread local's value
+     * @param supplier the supplier to be used to determine the initial value
+     * @return a new indexed thread local variable
+     * @throws NullPointerException if the specified supplier is null
+     */
+    public static <S> IndexedThreadLocal<S> withInitial(
+            Supplier<? extends S> supplier) {
+        return new SuppliedIndexedThreadLocal<>(supplier);
+    }
+
+    /**
+     * Returns the value in the current thread's copy of this
+     * thread-local variable.  If the variable has no value for the
+     * current thread, it is first initialized to the value returned
+     * by an invocation of the {@link #initialValue} method.
+     *
+     * @return the current thread's value of this thread-local
+     */
+    @SuppressWarnings("unchecked")
+    public T get() {
+        Object[] a = Thread.currentThread().indexedThreadLocals;
+        int i = index;
+        Object v;
+        if (a != null && i < a.length && (v = a[i]) != null)
+            return (v == NULL) ? null : (T)v;
+        return setInitialValue();
+    }
+
+    /**
+     * Variant of set() to establish initialValue. Used instead
+     * of set() in case user has overridden the set() method.
+     *
+     * @return the initial value
+     */
+    private T setInitialValue() {
+        T value = initialValue();
+        store(Thread.currentThread(), value);
+        return value;
+    }
+
+    /**
+     * Sets the current thread's copy of this thread-local variable
+     * to the specified value.
+     *
+     * @param value the value to be stored in the current thread's copy of
+     *        this thread-local.
+     */
+    public void set(T value) {
+        store(Thread.currentThread(), value);
+    }
+
+    /**
+     * Removes the current thread's value for this thread-local
+     * variable.  If this thread-local variable is subsequently
+     * {@linkplain #get read} by the current thread, its value will be
+     * reinitialized by invoking its {@link #initialValue} method,
+     * unless its value is {@linkplain #set set} by the current thread
+     * in the interim.
+     */
+    public void remove() {
+        Object[] a = Thread.currentThread().indexedThreadLocals;
+        int i = index;
+        if (a != null && i < a.length)
+            a[i] = null;
+    }
+
+    /**
+     * Removes the current thread's values of all indexed thread-local
+     * variables, as if by invoking {@link #remove} on each. The
+     * thread keeps its array of values, so that reusing the thread
+     * for similar work does not allocate again.
+     */
+    public static void removeAll() {
+        Object[] a = Thread.currentThread().indexedThreadLocals;
+        if (a != null)
+            Arrays.fill(a, null);
+    }
+
+    /**
+     * Stores the value for the given thread, creating or growing its
+     * array if necessary.
+     */
+    private void store(Thread t, T value) {
+        Object[] a = t.indexedThreadLocals;
+        int i = index;
+        if (a == null || i >= a.length) {
+            int n = (a == null) ? INITIAL_CAPACITY : a.length;
+            while (n <= i)
+                n <<= 1;
+            t.indexedThreadLocals = a =
+                (a == null) ? new Object[n] : Arrays.copyOf(a, n);
+        }
+        a[i] = (value == null) ? NULL : value;
+    }
+
+    /**
+     * An extension of IndexedThreadLocal that obtains its initial
+     * value from the specified {@code Supplier}.
+     */
+    static final class SuppliedIndexedThreadLocal<T>
+        extends IndexedThreadLocal<T> {
+
+        private final Supplier<? extends T> supplier;
+
+        SuppliedIndexedThreadLocal(Supplier<? extends T> supplier) {
+            this.supplier = Objects.requireNonNull(supplier);
+        }
+
+        @Override
+        protected T initialValue() {
+            return supplier.get();
+        }
+    }
+}
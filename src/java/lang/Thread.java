@@ -187,6 +187,13 @@ class Thread implements Runnable {
      */
     ThreadLocal.ThreadLocalMap inheritableThreadLocals = null;
 
+    /*
+     * IndexedThreadLocal values pertaining to this thread, indexed by
+     * IndexedThreadLocal.index. This array is maintained by the
+     * IndexedThreadLocal class.
+     */
+    Object[] indexedThreadLocals = null;
+
     /*
      * The requested stack size for this thread, or 0 if the creator did
      * not specify a stack size.  It is up to the VM to do whatever it
@@ -761,6 +768,7 @@ class Thread implements Runnable {
         /* Speed the release of some of these resources */
         threadLocals = null;
         inheritableThreadLocals = null;
+        indexedThreadLocals = null;
         inheritedAccessControlContext = null;
         blocker = null;
         uncaughtExceptionHandler = null;
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio.file;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A file-based lines spliterator, leveraging a shared file channel and
+ * memory mapping to split at line boundaries.
+ *
+ * <p> The spliterator covers a byte range {@code [index, fence)} of the file.
+ * It splits by mapping a window of the file at the midpoint of the range and
+ * scanning forward to the next line feed; the prefix up to and including
+ * that line feed becomes the returned spliterator.  Splitting is therefore
+ * only supported for charsets in which a line feed is encoded as the single
+ * byte {@code '\n'} and that byte never occurs within the encoding of
+ * another character, such as UTF-8, ISO-8859-1 and US-ASCII, and a line
+ * terminated by a lone carriage return is never split from the line that
+ * follows it.
+ *
+ * <p> Each spliterator decodes its own range through a {@link BufferedReader}
+ * reading directly from the channel at its current position, so ranges are
+ * decoded independently, on whichever threads traverse them, and the lines
+ * produced are the same as those of {@link BufferedReader#readLine()} over
+ * the whole file.  Once traversal has started the spliterator no longer
+ * splits.  Positions are {@code long}, so files larger than 2GB are
+ * supported, and only bounded windows of the file are ever mapped.
+ */
+final class FileChannelLinesSpliterator implements Spliterator<String> {
+
+    /**
+     * Names of the charsets supported, whose line feeds are found by
+     * scanning for the byte {@code '\n'}.
+     */
+    static final Set<String> SUPPORTED_CHARSET_NAMES;
+    static {
+        SUPPORTED_CHARSET_NAMES = new HashSet<>();
+        SUPPORTED_CHARSET_NAMES.add(StandardCharsets.UTF_8.name());
+        SUPPORTED_CHARSET_NAMES.add(StandardCharsets.ISO_8859_1.name());
+        SUPPORTED_CHARSET_NAMES.add(StandardCharsets.US_ASCII.name());
+    }
+
+    /** The size of the window mapped at a time when searching for a line feed */
+    private static final int SCAN_WINDOW = 64 * 1024;
+
+    private final FileChannel fc;
+    private final Charset cs;
+    private long index;
+    private final long fence;
+
+    // Non-null when traversing
+    private BufferedReader reader;
+
+    FileChannelLinesSpliterator(FileChannel fc, Charset cs, long index, long fence) {
+        this.fc = fc;
+        this.cs = cs;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        String line = readLine();
+        if (line != null) {
+            action.accept(line);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        String line;
+        while ((line = readLine()) != null) {
+            action.accept(line);
+        }
+    }
+
+    private BufferedReader getBufferedReader() {
+        /**
+         * A readable byte channel that reads bytes from an underlying
+         * file channel over a specified range.
+         */
+        ReadableByteChannel rrbc = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                long bytesToRead = fence - index;
+                if (bytesToRead <= 0)
+                    return -1;
+
+                int bytesRead;
+                if (bytesToRead < dst.remaining()) {
+                    // The number of bytes to read is less than remaining
+                    // bytes in the buffer
+                    // Snapshot the limit, reduce it, read, then restore
+                    int oldLimit = dst.limit();
+                    dst.limit(dst.position() + (int) bytesToRead);
+                    bytesRead = fc.read(dst, index);
+                    dst.limit(oldLimit);
+                } else {
+                    bytesRead = fc.read(dst, index);
+                }
+                if (bytesRead == -1) {
+                    index = fence;
+                    return bytesRead;
+                }
+
+                index += bytesRead;
+                return bytesRead;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return fc.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                fc.close();
+            }
+        };
+        return new BufferedReader(Channels.newReader(rrbc, cs.newDecoder(), -1));
+    }
+
+    private String readLine() {
+        if (reader == null) {
+            reader = getBufferedReader();
+        }
+
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the position just after the first line feed at or after
+     * {@code from} and before {@code to}, or {@code -1} if there is none.
+     */
+    private long nextLineStart(long from, long to) {
+        try {
+            for (long pos = from; pos < to; ) {
+                int n = (int) Math.min(SCAN_WINDOW, to - pos);
+                MappedByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, pos, n);
+                for (int i = 0; i < n; i++) {
+                    if (b.get(i) == '\n')
+                        return pos + i + 1;
+                }
+                pos += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return -1L;
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        // Cannot split after partial traverse
+        if (reader != null)
+            return null;
+
+        long lo = index, hi = fence;
+        if (hi - lo < 2)
+            return null;
+        long mid = (lo + hi) >>> 1;
+        // A line feed at mid - 1 ends the prefix exactly at mid
+        long midL = nextLineStart(mid - 1, hi);
+
+        // Cannot split if no line feed was found, or if the prefix would be
+        // the whole range
+        if (midL < 0 || midL >= hi || midL <= lo)
+            return null;
+
+        // The left spliterator will have the line-separated region
+        // [lo, midL); this spliterator covers [midL, hi)
+        return new FileChannelLinesSpliterator(fc, cs, lo, index = midL);
+    }
+
+    @Override
+    public long estimateSize() {
+        // Use the number of bytes as an estimate.
+        // We could divide by a constant that is the average number of
+        // characters per-line, but that constant will be factored out.
+        return fence - index;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return -1;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+}
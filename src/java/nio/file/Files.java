@@ -3720,6 +3720,20 @@ public final class Files {
      * {@link Stream#close close} method is invoked after the stream operations
      * are completed.
      *
+     * @implNote
+     * This implementation supports good parallel stream performance for the
+     * standard charsets {@link StandardCharsets#UTF_8 UTF-8},
+     * {@link StandardCharsets#US_ASCII US-ASCII} and
+     * {@link StandardCharsets#ISO_8859_1 ISO-8859-1}, in which the line feed
+     * character {@code '\n'} is encoded as a byte that cannot occur in the
+     * encoding of any other character.  For files of the default file
+     * system, the stream's spliterator splits the file at byte positions
+     * just after a line feed, found by memory-mapping the file near the
+     * midpoint of the range being split, and each part is decoded
+     * independently.  Consequently parallel pipelines decode on as many
+     * threads as the file is split into.  Other charsets, and files of other
+     * file systems, are read through a {@link BufferedReader} whose
+     * spliterator splits poorly.
      *
      * @param   path
      *          the path to the file
@@ -3741,7 +3755,50 @@ public final class Files {
      * @since   1.8
      */
     public static Stream<String> lines(Path path, Charset cs) throws IOException {
-        BufferedReader br = Files.newBufferedReader(path, cs);
+        // Use the good splitting spliterator if:
+        // 1) the path is associated with the default file system;
+        // 2) the character set is supported; and
+        // 3) the file is not empty, so that its size is likely meaningful
+        if (path.getFileSystem() == FileSystems.getDefault() &&
+            FileChannelLinesSpliterator.SUPPORTED_CHARSET_NAMES.contains(cs.name())) {
+            FileChannel fc = FileChannel.open(path, StandardOpenOption.READ);
+
+            Stream<String> lines = createFileChannelLinesStream(fc, cs);
+            if (lines != null) {
+                return lines;
+            }
+            fc.close();
+        }
+
+        return createBufferedReaderLinesStream(Files.newBufferedReader(path, cs));
+    }
+
+    private static Stream<String> createFileChannelLinesStream(FileChannel fc, Charset cs)
+        throws IOException
+    {
+        try {
+            // Obtaining the size from the FileChannel is much faster
+            // than obtaining using path.toFile().length()
+            long length = fc.size();
+            if (length > 0) {
+                Spliterator<String> s = new FileChannelLinesSpliterator(fc, cs, 0, length);
+                return StreamSupport.stream(s, false)
+                        .onClose(asUncheckedRunnable(fc));
+            }
+        } catch (Error|RuntimeException|IOException e) {
+            try {
+                fc.close();
+            } catch (IOException ex) {
+                try {
+                    e.addSuppressed(ex);
+                } catch (Throwable ignore) {}
+            }
+            throw e;
+        }
+        return null;
+    }
+
+    private static Stream<String> createBufferedReaderLinesStream(BufferedReader br) {
         try {
             return br.lines().onClose(asUncheckedRunnable(br));
         } catch (Error|RuntimeException e) {
@@ -0,0 +1,781 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An optionally-bounded {@linkplain BlockingQueue blocking queue}
+ * that bounds the time elements wait in it when consumers cannot keep
+ * up, using a variant of the CoDel (controlled delay) algorithm. Each
+ * element is timestamped when inserted, and the time it has spent in
+ * the queue (its <em>sojourn time</em>) is checked when elements are
+ * removed. A queue in which the smallest sojourn time of the oldest
+ * element over an <em>interval</em> exceeds a <em>target</em> holds
+ * a standing backlog that consumers are not draining, and is said to
+ * be <em>overloaded</em>. While overloaded, elements whose sojourn
+ * time exceeds twice the target are dropped instead of being
+ * returned, and are passed to the {@linkplain #setDropHandler drop
+ * handler}, if any. Short bursts, which drain within an interval, are
+ * queued as usual.
+ *
+ * <p>Optionally, an overloaded queue also switches from FIFO to LIFO
+ * order, so that the newest elements, which are the most likely to
+ * still be useful to whoever is waiting for them, are served first,
+ * while older ones expire. The queue returns to FIFO order once it is
+ * no longer overloaded.
+ *
+ * <p>This queue is intended as the work queue of a {@link
+ * ThreadPoolExecutor} whose tasks serve requests with deadlines, in
+ * place of a {@link LinkedBlockingQueue} that would otherwise build
+ * a standing queue under overload, causing every request to wait
+ * until it times out. Tasks submitted to the executor as {@link
+ * Future}s can be cancelled when dropped, so that whoever waits for
+ * them is notified, using {@link #cancelling}:
+ *
+ * <pre> {@code
+ * CoDelBlockingQueue<Runnable> q = new CoDelBlockingQueue<Runnable>(
+ *     Integer.MAX_VALUE, 5, 100, TimeUnit.MILLISECONDS, true);
+ * q.setDropHandler(CoDelBlockingQueue.cancelling());
+ * ThreadPoolExecutor pool = new ThreadPoolExecutor(
+ *     16, 16, 0L, TimeUnit.MILLISECONDS, q);}</pre>
+ *
+ * <p>Alternatively, dropped tasks can be passed to the executor's
+ * {@link RejectedExecutionHandler} using {@link #rejectingTo}, for
+ * pools whose handler already deals with tasks that cannot be run in
+ * time. Dropping is not the same as rejection, though: a dropped task
+ * was already accepted by the executor, and the handler is invoked
+ * by a worker thread rather than by the submitter, with the caveats
+ * described for {@code rejectingTo}.
+ *
+ * <p>Drop handlers are invoked by the thread removing elements,
+ * which for an executor is a worker thread inside {@code take} or
+ * {@code poll}, after it has released the lock of the queue. They
+ * should therefore be brief, and should not run the dropped
+ * element. An exception thrown by a drop handler does not
+ * prevent the remaining drops from being handled, nor the removal
+ * that triggered them from completing; it is instead passed to the
+ * {@linkplain Thread#getUncaughtExceptionHandler uncaught exception
+ * handler} of the removing thread. Methods {@link #drainTo} and the
+ * {@link #iterator} never drop elements.
+ *
+ * <p>This class and its iterator implement all of the
+ * <em>optional</em> methods of the {@link Collection} and {@link
+ * Iterator} interfaces. The iterator traverses a snapshot of the
+ * elements in FIFO order.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this queue
+ */
+public class CoDelBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /**
+     * A handler for elements dropped by a {@code CoDelBlockingQueue}.
+     *
+     * @param <E> the type of elements
+     * @since 1.8
+     */
+    public interface DropHandler<E> {
+        /**
+         * Invoked when an element is dropped, by the thread whose
+         * removal dropped it, without the lock of the queue held.
+         *
+         * @param e the element
+         * @param sojournNanos the time the element spent in the
+         *        queue, in nanoseconds
+         */
+        void dropped(E e, long sojournNanos);
+    }
+
+    /**
+     * Returns a drop handler that cancels dropped tasks that are
+     * {@link Future}s, such as those created by {@link
+     * AbstractExecutorService#submit}, so that threads waiting for
+     * their results fail with a {@link CancellationException}.
+     * Other dropped tasks are discarded.
+     *
+     * @return the drop handler
+     */
+    public static DropHandler<Runnable> cancelling() {
+        return new DropHandler<Runnable>() {
+            public void dropped(Runnable r, long sojournNanos) {
+                if (r instanceof Future<?>)
+                    ((Future<?>)r).cancel(false);
+            }};
+    }
+
+    /**
+     * Returns a drop handler passing dropped tasks to the {@link
+     * RejectedExecutionHandler} of the given executor, as if the
+     * executor had rejected them. The handler is invoked by the
+     * worker thread whose {@code take} or {@code poll} dropped the
+     * task, not by the thread that submitted it, which has already
+     * returned. So with a {@link ThreadPoolExecutor.CallerRunsPolicy}
+     * the dropped task is run by that worker anyway, after waiting
+     * even longer, and the {@link RejectedExecutionException} thrown
+     * by a {@link ThreadPoolExecutor.AbortPolicy} reaches only the
+     * worker's uncaught exception handler, as described for drop
+     * handlers in general. Policies that discard tasks, or handlers
+     * written for this use, are unaffected. Use {@link #cancelling}
+     * instead to notify those waiting for dropped tasks.
+     *
+     * @param executor the executor
+     * @return the drop handler
+     * @throws NullPointerException if executor is null
+     */
+    public static DropHandler<Runnable> rejectingTo(
+            final ThreadPoolExecutor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        return new DropHandler<Runnable>() {
+            public void dropped(Runnable r, long sojournNanos) {
+                executor.getRejectedExecutionHandler()
+                    .rejectedExecution(r, executor);
+            }};
+    }
+
+    /** An element and the time it was inserted */
+    static final class Node<E> {
+        final E item;
+        final long time;
+        Node(E item, long time) {
+            this.item = item;
+            this.time = time;
+        }
+    }
+
+    /** The queued nodes, oldest first */
+    private final ArrayDeque<Node<E>> nodes;
+
+    /** The capacity bound, or Integer.MAX_VALUE if none */
+    private final int capacity;
+
+    /** The sojourn time target, in nanoseconds */
+    private final long target;
+
+    /** The interval over which sojourn times are assessed */
+    private final long interval;
+
+    /** Whether to serve newest elements first while overloaded */
+    private final boolean lifoWhenOverloaded;
+
+    /** Main lock guarding all access */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Condition for waiting puts */
+    private final Condition notFull = lock.newCondition();
+
+    // CoDel state, guarded by lock
+
+    /** Smallest sojourn time of oldest elements in this interval */
+    private long minDelay;
+
+    /** End time of the current interval */
+    private long intervalEnd;
+
+    /** Whether the last completed interval was overloaded */
+    private volatile boolean overloaded;
+
+    /** Number of dropped elements */
+    private volatile long dropCount;
+
+    private volatile DropHandler<? super E> dropHandler;
+
+    /**
+     * Creates a {@code CoDelBlockingQueue} with no capacity bound,
+     * the given target and interval, and FIFO order at all times.
+     *
+     * @param target the sojourn time target
+     * @param interval the interval over which sojourn times are assessed
+     * @param unit the time unit of the target and interval
+     * @throws IllegalArgumentException if target or interval is not
+     *         positive, or target is not less than interval
+     */
+    public CoDelBlockingQueue(long target, long interval, TimeUnit unit) {
+        this(Integer.MAX_VALUE, target, interval, unit, false);
+    }
+
+    /**
+     * Creates a {@code CoDelBlockingQueue} with the given capacity,
+     * target and interval.
+     *
+     * @param capacity the capacity of this queue
+     * @param target the sojourn time target
+     * @param interval the interval over which sojourn times are assessed
+     * @param unit the time unit of the target and interval
+     * @param lifoWhenOverloaded if {@code true}, newest elements are
+     *        removed first while the queue is overloaded
+     * @throws IllegalArgumentException if capacity, target or
+     *         interval is not positive, or target is not less than
+     *         interval
+     * @throws NullPointerException if unit is null
+     */
+    public CoDelBlockingQueue(int capacity, long target, long interval,
+                              TimeUnit unit, boolean lifoWhenOverloaded) {
+        long t = unit.toNanos(target), i = unit.toNanos(interval);
+        if (capacity <= 0 || t <= 0L || i <= t)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.target = t;
+        this.interval = i;
+        this.lifoWhenOverloaded = lifoWhenOverloaded;
+        this.nodes = new ArrayDeque<Node<E>>();
+        this.intervalEnd = System.nanoTime() + i;
+    }
+
+    /**
+     * Sets the handler for dropped elements, replacing any previous
+     * one.
+     *
+     * @param handler the handler, or {@code null} to discard dropped
+     *        elements silently
+     */
+    public void setDropHandler(DropHandler<? super E> handler) {
+        this.dropHandler = handler;
+    }
+
+    /**
+     * Returns the handler for dropped elements, or {@code null} if none.
+     *
+     * @return the handler, or {@code null} if none
+     */
+    public DropHandler<? super E> getDropHandler() {
+        return dropHandler;
+    }
+
+    /**
+     * Returns {@code true} if the queue was overloaded during the
+     * last completed interval, and is therefore dropping old
+     * elements.
+     *
+     * @return {@code true} if overloaded
+     */
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    /**
+     * Returns the number of elements dropped since this queue was
+     * created.
+     *
+     * @return the number of dropped elements
+     */
+    public long getDroppedCount() {
+        return dropCount;
+    }
+
+    /**
+     * Returns the time the oldest element has spent in the queue, in
+     * nanoseconds, or zero if the queue is empty.
+     *
+     * @return the sojourn time of the oldest element
+     */
+    public long getOldestSojournNanos() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node<E> h = nodes.peekFirst();
+            return (h == null) ? 0L : System.nanoTime() - h.time;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Internal helpers, called with lock held
+
+    private void enqueue(E e) {
+        nodes.addLast(new Node<E>(e, System.nanoTime()));
+        notEmpty.signal();
+    }
+
+    /**
+     * Advances the CoDel state using the sojourn time of the oldest
+     * element and, if overloaded, removes elements that have
+     * exceeded twice the target.
+     *
+     * @return the list of dropped nodes, or null if none
+     */
+    private ArrayList<Node<E>> purge() {
+        ArrayList<Node<E>> drops = null;
+        final ArrayDeque<Node<E>> q = nodes;
+        final long now = System.nanoTime();
+        Node<E> h;
+        while ((h = q.peekFirst()) != null) {
+            long delay = now - h.time;
+            if (now - intervalEnd >= 0L) {
+                overloaded = minDelay > target;
+                minDelay = delay;
+                intervalEnd = now + interval;
+            }
+            else if (delay < minDelay)
+                minDelay = delay;
+            if (!overloaded || delay <= (target << 1))
+                break;
+            q.pollFirst();
+            if (drops == null)
+                drops = new ArrayList<Node<E>>();
+            drops.add(h);
+            notFull.signal();
+        }
+        return drops;
+    }
+
+    /**
+     * Removes and returns the next element in the current order, or
+     * null if empty.
+     */
+    private E extract() {
+        final ArrayDeque<Node<E>> q = nodes;
+        Node<E> n = (lifoWhenOverloaded && overloaded) ?
+            q.pollLast() : q.pollFirst();
+        if (q.isEmpty())
+            minDelay = 0L;    // no standing queue
+        if (n == null)
+            return null;
+        notFull.signal();
+        return n.item;
+    }
+
+    /**
+     * Counts dropped nodes and passes them to the drop handler,
+     * reporting its exceptions to the current thread's uncaught
+     * exception handler. Called after releasing lock.
+     */
+    private void handleDrops(ArrayList<Node<E>> drops) {
+        if (drops != null) {
+            U.getAndAddLong(this, DROPCOUNT, drops.size());
+            DropHandler<? super E> h = dropHandler;
+            if (h != null) {
+                long now = System.nanoTime();
+                for (Node<E> n : drops) {
+                    try {
+                        h.dropped(n.item, now - n.time);
+                    } catch (Throwable ex) {
+                        Thread t = Thread.currentThread();
+                        t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and throwing an
+     * {@code IllegalStateException} if this queue is full.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws IllegalStateException if this queue is full
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return super.add(e);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (nodes.size() >= capacity)
+                return false;
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (nodes.size() >= capacity)
+                notFull.await();
+            enqueue(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (nodes.size() >= capacity) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public E poll() {
+        ArrayList<Node<E>> drops = null;
+        E x;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            drops = purge();
+            x = extract();
+        } finally {
+            lock.unlock();
+        }
+        handleDrops(drops);
+        return x;
+    }
+
+    public E take() throws InterruptedException {
+        E x;
+        final ReentrantLock lock = this.lock;
+        do {    // handle drops before waiting again if all were dropped
+            ArrayList<Node<E>> drops = null;
+            lock.lockInterruptibly();
+            try {
+                while (nodes.isEmpty())
+                    notEmpty.await();
+                drops = purge();
+                x = extract();
+            } finally {
+                lock.unlock();
+                handleDrops(drops);
+            }
+        } while (x == null);
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E x;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        do {    // handle drops before waiting again if all were dropped
+            ArrayList<Node<E>> drops = null;
+            lock.lockInterruptibly();
+            try {
+                while (nodes.isEmpty()) {
+                    if (nanos <= 0)
+                        return null;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                drops = purge();
+                x = extract();
+            } finally {
+                lock.unlock();
+                handleDrops(drops);
+            }
+        } while (x == null);
+        return x;
+    }
+
+    /**
+     * Returns, but does not remove, the element that would be
+     * returned next in the current order, ignoring any elements
+     * that would be dropped first, or returns {@code null} if this
+     * queue is empty.
+     *
+     * @return the next element, or {@code null} if this queue is empty
+     */
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node<E> n = (lifoWhenOverloaded && overloaded) ?
+                nodes.peekLast() : nodes.peekFirst();
+            return (n == null) ? null : n.item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int remainingCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return capacity - nodes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a single instance of the specified element from this
+     * queue, if it is present.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        if (o == null) return false;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Iterator<Node<E>> it = nodes.iterator(); it.hasNext();) {
+                if (o.equals(it.next().item)) {
+                    it.remove();
+                    notFull.signal();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the node holding exactly the given element, as by
+     * an iterator.
+     */
+    final void removeIdentical(Object o) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Iterator<Node<E>> it = nodes.iterator(); it.hasNext();) {
+                if (it.next().item == o) {
+                    it.remove();
+                    notFull.signal();
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean contains(Object o) {
+        if (o == null) return false;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node<E> n : nodes)
+                if (o.equals(n.item))
+                    return true;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Object[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = new Object[nodes.size()];
+            int k = 0;
+            for (Node<E> n : nodes)
+                a[k++] = n.item;
+            return a;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int size = nodes.size();
+            if (a.length < size)
+                a = (T[])java.lang.reflect.Array.newInstance
+                    (a.getClass().getComponentType(), size);
+            int k = 0;
+            for (Node<E> n : nodes)
+                a[k++] = (T)n.item;
+            if (a.length > k)
+                a[k] = null;
+            return a;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Atomically removes all of the elements from this queue.
+     * The queue will be empty after this call returns.
+     */
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            nodes.clear();
+            minDelay = 0L;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = Math.min(maxElements, nodes.size());
+            for (int i = 0; i < n; i++) {
+                c.add(nodes.peekFirst().item);   // In this order, in case add() throws.
+                nodes.pollFirst();
+            }
+            if (n > 0)
+                notFull.signalAll();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in this
+     * queue, oldest first. The iterator's {@code remove} method
+     * removes the element from the queue if it is still present.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Snapshot iterator.
+     */
+    private class Itr implements Iterator<E> {
+        final Object[] array; // Array of all elements
+        int cursor;           // index of next element to return
+        int lastRet;          // index of last element, or -1 if no such
+
+        Itr(Object[] array) {
+            lastRet = -1;
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E)array[cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            removeIdentical(array[lastRet]);
+            lastRet = -1;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long DROPCOUNT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            DROPCOUNT = U.objectFieldOffset
+                (CoDelBlockingQueue.class.getDeclaredField("dropCount"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
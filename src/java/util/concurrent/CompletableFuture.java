@@ -1492,6 +1492,18 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         private static final long serialVersionUID = 5232453952276885070L;
     }
 
+    // Cancels a pending timeout upon completion of its source
+    static final class Canceller extends Completion {
+        final Future<?> timeout;
+        Canceller(Future<?> timeout) { this.timeout = timeout; }
+        public final void run() {
+            Future<?> f;
+            if ((f = timeout) != null && compareAndSet(0, 1))
+                f.cancel(false);
+        }
+        private static final long serialVersionUID = 5232453952276885070L;
+    }
+
     // Implementations of stage methods with (plain, async, Executor) forms
 
     private <U> CompletableFuture<U> doThenApply
@@ -2655,6 +2667,75 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return dst;
     }
 
+    /**
+     * Exceptionally completes this CompletableFuture with a {@link
+     * TimeoutException} if not otherwise completed before the given
+     * timeout. The timeout is scheduled on a single shared daemon
+     * thread, and is cancelled (and removed from that thread's queue)
+     * as soon as this CompletableFuture completes, so abandoned
+     * timeouts do not accumulate. Dependent actions of a timed-out
+     * CompletableFuture that are not asynchronous are performed by
+     * that shared thread, so should be brief.
+     *
+     * @param timeout how long to wait before completing exceptionally
+     *        with a TimeoutException, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return this CompletableFuture
+     * @since 1.8
+     */
+    public CompletableFuture<T> orTimeout(long timeout, TimeUnit unit) {
+        if (unit == null) throw new NullPointerException();
+        if (result == null)
+            cancelOnCompletion(Delayer.delay(new Timeout(this),
+                                             timeout, unit));
+        return this;
+    }
+
+    /**
+     * Completes this CompletableFuture with the given value if not
+     * otherwise completed before the given timeout. Timeouts are
+     * scheduled and cancelled as described for {@link #orTimeout}.
+     *
+     * @param value the value to use upon timeout
+     * @param timeout how long to wait before completing normally
+     *        with the given value, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return this CompletableFuture
+     * @since 1.8
+     */
+    public CompletableFuture<T> completeOnTimeout(T value, long timeout,
+                                                  TimeUnit unit) {
+        if (unit == null) throw new NullPointerException();
+        if (result == null)
+            cancelOnCompletion(Delayer.delay(new DelayedCompleter<T>(this, value),
+                                             timeout, unit));
+        return this;
+    }
+
+    /**
+     * Arranges for the given pending timeout to be cancelled upon
+     * completion of this CompletableFuture, or cancels it now if
+     * already completed. Unlike whenComplete, no dependent
+     * CompletableFuture is created.
+     */
+    final void cancelOnCompletion(Future<?> timeout) {
+        Canceller d = null;
+        Object r;
+        if ((r = result) == null) {
+            CompletionNode p = new CompletionNode(d = new Canceller(timeout));
+            while ((r = result) == null) {
+                if (UNSAFE.compareAndSwapObject(this, COMPLETIONS,
+                                                p.next = completions, p))
+                    break;
+            }
+        }
+        if (r != null && (d == null || d.compareAndSet(0, 1)))
+            timeout.cancel(false);
+        helpPostComplete();
+    }
+
     /* ------------- Arbitrary-arity constructions -------------- */
 
     /*
@@ -2870,6 +2951,132 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return dst;
     }
 
+    /* ------------- Timeouts and delays -------------- */
+
+    /**
+     * Singleton delay scheduler, used only for starting and
+     * cancelling tasks. Its single daemon thread never runs user
+     * code other than dependent actions of timed-out futures, and
+     * the remove-on-cancel policy keeps its queue proportional to
+     * the number of timeouts actually pending.
+     */
+    static final class Delayer {
+        static ScheduledFuture<?> delay(Runnable command, long delay,
+                                        TimeUnit unit) {
+            return delayer.schedule(command, delay, unit);
+        }
+
+        static final class DaemonThreadFactory implements ThreadFactory {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                t.setName("CompletableFutureDelayScheduler");
+                return t;
+            }
+        }
+
+        static final ScheduledThreadPoolExecutor delayer;
+        static {
+            (delayer = new ScheduledThreadPoolExecutor(
+                1, new DaemonThreadFactory())).
+                setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /** Action to completeExceptionally on timeout */
+    static final class Timeout implements Runnable {
+        final CompletableFuture<?> f;
+        Timeout(CompletableFuture<?> f) { this.f = f; }
+        public void run() {
+            if (f != null && !f.isDone())
+                f.completeExceptionally(new TimeoutException());
+        }
+    }
+
+    /** Action to complete on timeout */
+    static final class DelayedCompleter<U> implements Runnable {
+        final CompletableFuture<U> f;
+        final U u;
+        DelayedCompleter(CompletableFuture<U> f, U u) { this.f = f; this.u = u; }
+        public void run() {
+            if (f != null)
+                f.complete(u);
+        }
+    }
+
+    /** Fallback if ForkJoinPool.commonPool() cannot support parallelism */
+    static final class ThreadPerTaskExecutor implements Executor {
+        public void execute(Runnable r) { new Thread(r).start(); }
+    }
+
+    static final class DelayedExecutor implements Executor {
+        final long delay;
+        final TimeUnit unit;
+        final Executor executor;
+        DelayedExecutor(long delay, TimeUnit unit, Executor executor) {
+            this.delay = delay; this.unit = unit; this.executor = executor;
+        }
+        public void execute(Runnable r) {
+            if (r == null) throw new NullPointerException();
+            Delayer.delay(new TaskSubmitter(executor, r), delay, unit);
+        }
+    }
+
+    /** Action to submit user task */
+    static final class TaskSubmitter implements Runnable {
+        final Executor executor;
+        final Runnable action;
+        TaskSubmitter(Executor executor, Runnable action) {
+            this.executor = executor;
+            this.action = action;
+        }
+        public void run() { executor.execute(action); }
+    }
+
+    /**
+     * Returns a new Executor that submits a task to the given base
+     * executor after the given delay (or no delay if non-positive).
+     * Each delay commences upon invocation of the returned executor's
+     * {@code execute} method. Delays are managed by the same shared
+     * scheduler thread used by {@link #orTimeout}.
+     *
+     * @param delay how long to delay, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code delay} parameter
+     * @param executor the base executor
+     * @return the new delayed executor
+     * @throws NullPointerException if either argument is null
+     * @since 1.8
+     */
+    public static Executor delayedExecutor(long delay, TimeUnit unit,
+                                           Executor executor) {
+        if (unit == null || executor == null)
+            throw new NullPointerException();
+        return new DelayedExecutor(delay, unit, executor);
+    }
+
+    /**
+     * Returns a new Executor that submits a task to the {@link
+     * ForkJoinPool#commonPool()} (or, if the common pool does not
+     * support parallelism, to a new Thread) after the given delay
+     * (or no delay if non-positive).  Each delay commences upon
+     * invocation of the returned executor's {@code execute} method.
+     *
+     * @param delay how long to delay, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code delay} parameter
+     * @return the new delayed executor
+     * @throws NullPointerException if unit is null
+     * @since 1.8
+     */
+    public static Executor delayedExecutor(long delay, TimeUnit unit) {
+        if (unit == null)
+            throw new NullPointerException();
+        Executor e = (ForkJoinPool.getCommonPoolParallelism() > 1) ?
+            ForkJoinPool.commonPool() : new ThreadPerTaskExecutor();
+        return new DelayedExecutor(delay, unit, e);
+    }
+
     /* ------------- Control and status methods -------------- */
 
     /**
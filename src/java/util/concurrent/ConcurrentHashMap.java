@@ -1163,6 +1163,131 @@ public class ConcurrentHashMap<K,V> extends AbstractMap<K,V>
             putVal(e.getKey(), e.getValue(), false);
     }
 
+    /**
+     * Copies all of the mappings from the specified map to this one,
+     * using the {@link ForkJoinPool#commonPool()} to insert them in
+     * parallel.  Equivalent in effect to {@link #putAll}, but the
+     * table is sized for the final number of mappings before any
+     * insertion (so it is not resized during the load), and the
+     * mappings are partitioned by table bin so that no two loading
+     * tasks ever contend for the same bin or for the element count.
+     * This method is intended for (re)building large maps, for
+     * example when warming a cache at startup.
+     *
+     * <p>All keys and values are derived and checked before any
+     * mapping is stored, so if this method throws an exception
+     * because of a null key or value, or because a mapping function
+     * throws, this map is unchanged.  Other threads may access this
+     * map while the load is in progress; they see each inserted
+     * mapping as it is added.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null or
+     *         contains a null key or value, in which case none of the
+     *         mappings have been stored
+     * @since 1.8
+     */
+    public void parallelPutAll(Map<? extends K, ? extends V> m) {
+        parallelPutAll(m.entrySet().spliterator(), m.size(),
+                       Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    /**
+     * Stores a mapping derived from each element of the given
+     * collection, using the {@link ForkJoinPool#commonPool()} to
+     * insert them in parallel, as described for {@link
+     * #parallelPutAll(Map)}.  If two elements map to equal keys, the
+     * value derived from the later element in the collection's
+     * encounter order (if any) is retained.
+     *
+     * @param c the source elements
+     * @param keyMapper a function producing the key of each element
+     * @param valueMapper a function producing the value of each element
+     * @param <T> the type of the source elements
+     * @throws NullPointerException if any argument is null, or if a
+     *         mapping function returns null, in which case none of the
+     *         mappings have been stored
+     * @since 1.8
+     */
+    public <T> void parallelPutAll(Collection<? extends T> c,
+                                   Function<? super T, ? extends K> keyMapper,
+                                   Function<? super T, ? extends V> valueMapper) {
+        parallelPutAll(c.spliterator(), c.size(), keyMapper, valueMapper);
+    }
+
+    /**
+     * Stores a mapping derived from each element of the given
+     * spliterator, using the {@link ForkJoinPool#commonPool()} to
+     * insert them in parallel, as described for {@link
+     * #parallelPutAll(Map)}.  If the spliterator is {@link
+     * Spliterator#SIZED}, its exact size is used to presize the
+     * table; otherwise the given size hint is used, and the table
+     * may need to grow if the hint is too small.  If two elements map
+     * to equal keys, the value derived from the later element in
+     * encounter order (if any) is retained.
+     *
+     * @param source the source elements
+     * @param sizeHint the expected number of elements, used only if
+     *        the source is not {@code SIZED}
+     * @param keyMapper a function producing the key of each element
+     * @param valueMapper a function producing the value of each element
+     * @param <T> the type of the source elements
+     * @throws NullPointerException if any argument is null, or if a
+     *         mapping function returns null, in which case none of the
+     *         mappings have been stored
+     * @since 1.8
+     */
+    public <T> void parallelPutAll(Spliterator<T> source, long sizeHint,
+                                   Function<? super T, ? extends K> keyMapper,
+                                   Function<? super T, ? extends V> valueMapper) {
+        if (source == null || keyMapper == null || valueMapper == null)
+            throw new NullPointerException();
+        long size = source.getExactSizeIfKnown();
+        if (size < 0L)
+            size = (sizeHint > 0L) ? sizeHint : 0L;
+        long total = mappingCount() + size;
+        tryPresize((total >= (long)(MAXIMUM_CAPACITY >>> 1)) ?
+                   MAXIMUM_CAPACITY >>> 1 : (int)total);
+        Node<K,V>[] tab = table;
+        int n = (tab == null) ? 0 : tab.length;
+        int par = ForkJoinPool.getCommonPoolParallelism();
+        if (n == 0 || par <= 1 || size < MIN_PARALLEL_LOAD) {
+            // too small to be worth partitioning; still check all first
+            final LoadBuffer b = new LoadBuffer(1);
+            source.forEachRemaining(t -> {
+                K k = keyMapper.apply(t);
+                V v = valueMapper.apply(t);
+                if (k == null || v == null) throw new NullPointerException();
+                b.add(0, 0, k, v);
+            });
+            Object[] ks = b.keys[0], vs = b.vals[0];
+            for (int i = 0, c = b.counts[0]; i < c; ++i) {
+                @SuppressWarnings("unchecked") K k = (K)ks[i];
+                @SuppressWarnings("unchecked") V v = (V)vs[i];
+                putVal(k, v, false);
+            }
+            return;
+        }
+        int parts = Math.min(tableSizeFor(par << 2), n);
+        long leafSize = Math.max(size / (parts << 1), MIN_PARALLEL_LOAD >>> 2);
+        java.util.List<LoadBuffer> leaves =
+            new LoadCollectTask<K,V,T>(source, leafSize, parts, n,
+                                       keyMapper, valueMapper).invoke();
+        @SuppressWarnings("unchecked")
+        LoadPartitionTask<K,V>[] ts =
+            (LoadPartitionTask<K,V>[])new LoadPartitionTask<?,?>[parts];
+        for (int p = 0; p < parts; ++p)
+            ts[p] = new LoadPartitionTask<K,V>(this, leaves, p);
+        try {
+            ForkJoinTask.invokeAll(ts);
+        } finally {
+            // partitions never resize; grow now if the hint was too small
+            long count = mappingCount();
+            tryPresize((count >= (long)(MAXIMUM_CAPACITY >>> 1)) ?
+                       MAXIMUM_CAPACITY >>> 1 : (int)count);
+        }
+    }
+
     /**
      * Removes the key (and its corresponding value) from this map.
      * This method does nothing if the key is not in the map.
@@ -6367,6 +6492,239 @@ public class ConcurrentHashMap<K,V> extends AbstractMap<K,V>
         }
     }
 
+    /* ---------------- Bulk loading -------------- */
+
+    /*
+     * parallelPutAll runs in two parallel phases over a table that
+     * has already been presized for the final mapping count.  In the
+     * first phase, LoadCollectTasks split the source spliterator and
+     * each leaf hashes its elements, appending them to one of P
+     * LoadBuffer partitions according to the high bits of their bin
+     * index (bins [p * n/P, (p+1) * n/P) form partition p).  In the
+     * second phase, one LoadPartitionTask per partition inserts all
+     * elements of that partition from every leaf, in leaf (that is,
+     * encounter) order.  Since partitions cover disjoint bin ranges
+     * (which stay disjoint across any concurrent resize, because bin
+     * i only ever splits into bins i and i + n), loading tasks never
+     * compete for a bin lock, and each adds its count once at the
+     * end rather than per insertion, without checking for resize.
+     * Once all partitions complete, the table is grown if the size
+     * hint of an unsized source was too small.  Null keys and values
+     * are rejected during the first phase, before anything is
+     * inserted; small loads, which are not partitioned, are likewise
+     * buffered in a single LoadBuffer before insertion.
+     */
+
+    /**
+     * The minimum number of elements for which parallelPutAll
+     * partitions the load; smaller sources are inserted directly.
+     */
+    static final int MIN_PARALLEL_LOAD = 1 << 13;
+
+    /**
+     * Per-leaf buffers of hashed elements, one growable array set
+     * per partition.
+     */
+    static final class LoadBuffer {
+        final int[] counts;
+        final int[][] hashes;
+        final Object[][] keys;
+        final Object[][] vals;
+
+        LoadBuffer(int parts) {
+            counts = new int[parts];
+            hashes = new int[parts][];
+            keys = new Object[parts][];
+            vals = new Object[parts][];
+        }
+
+        void add(int p, int h, Object k, Object v) {
+            int c = counts[p];
+            int[] hs = hashes[p];
+            if (hs == null || c == hs.length) {
+                int cap = (hs == null) ? 16 : c << 1;
+                hashes[p] = hs = (hs == null) ? new int[cap] : Arrays.copyOf(hs, cap);
+                keys[p] = (c == 0) ? new Object[cap] : Arrays.copyOf(keys[p], cap);
+                vals[p] = (c == 0) ? new Object[cap] : Arrays.copyOf(vals[p], cap);
+            }
+            hs[c] = h;
+            keys[p][c] = k;
+            vals[p][c] = v;
+            counts[p] = c + 1;
+        }
+    }
+
+    /**
+     * First phase of parallelPutAll: splits the source and fills one
+     * LoadBuffer per leaf.  Returns the leaf buffers in encounter order.
+     */
+    @SuppressWarnings("serial")
+    static final class LoadCollectTask<K,V,T>
+        extends RecursiveTask<java.util.List<LoadBuffer>> {
+        final Spliterator<T> spliterator;
+        final long leafSize;
+        final int parts;
+        final int binShift;     // bin index >>> binShift == partition
+        final int mask;         // table length - 1
+        final Function<? super T, ? extends K> keyMapper;
+        final Function<? super T, ? extends V> valueMapper;
+
+        LoadCollectTask(Spliterator<T> spliterator, long leafSize,
+                        int parts, int n,
+                        Function<? super T, ? extends K> keyMapper,
+                        Function<? super T, ? extends V> valueMapper) {
+            this.spliterator = spliterator;
+            this.leafSize = leafSize;
+            this.parts = parts;
+            this.binShift = Integer.numberOfTrailingZeros(n) -
+                Integer.numberOfTrailingZeros(parts);
+            this.mask = n - 1;
+            this.keyMapper = keyMapper;
+            this.valueMapper = valueMapper;
+        }
+
+        LoadCollectTask(LoadCollectTask<K,V,T> parent, Spliterator<T> s) {
+            this.spliterator = s;
+            this.leafSize = parent.leafSize;
+            this.parts = parent.parts;
+            this.binShift = parent.binShift;
+            this.mask = parent.mask;
+            this.keyMapper = parent.keyMapper;
+            this.valueMapper = parent.valueMapper;
+        }
+
+        protected java.util.List<LoadBuffer> compute() {
+            Spliterator<T> rs = spliterator, ls;
+            if (rs.estimateSize() > leafSize && (ls = rs.trySplit()) != null) {
+                LoadCollectTask<K,V,T> right = new LoadCollectTask<K,V,T>(this, rs);
+                right.fork();
+                java.util.List<LoadBuffer> l =
+                    new LoadCollectTask<K,V,T>(this, ls).compute();
+                l.addAll(right.join());
+                return l;
+            }
+            final LoadBuffer b = new LoadBuffer(parts);
+            final Function<? super T, ? extends K> km = keyMapper;
+            final Function<? super T, ? extends V> vm = valueMapper;
+            final int m = mask, sh = binShift;
+            rs.forEachRemaining(t -> {
+                K k = km.apply(t);
+                V v = vm.apply(t);
+                if (k == null || v == null) throw new NullPointerException();
+                int h = spread(k.hashCode());
+                b.add((h & m) >>> sh, h, k, v);
+            });
+            java.util.List<LoadBuffer> l = new java.util.ArrayList<LoadBuffer>();
+            l.add(b);
+            return l;
+        }
+    }
+
+    /**
+     * Second phase of parallelPutAll: inserts one partition from all
+     * leaf buffers.
+     */
+    @SuppressWarnings("serial")
+    static final class LoadPartitionTask<K,V> extends RecursiveAction {
+        final ConcurrentHashMap<K,V> map;
+        final java.util.List<LoadBuffer> leaves;
+        final int part;
+
+        LoadPartitionTask(ConcurrentHashMap<K,V> map,
+                          java.util.List<LoadBuffer> leaves, int part) {
+            this.map = map;
+            this.leaves = leaves;
+            this.part = part;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            final ConcurrentHashMap<K,V> m = map;
+            final int p = part;
+            long added = 0L;
+            try {
+                for (LoadBuffer b : leaves) {
+                    int c = b.counts[p];
+                    if (c == 0)
+                        continue;
+                    int[] hs = b.hashes[p];
+                    Object[] ks = b.keys[p], vs = b.vals[p];
+                    for (int i = 0; i < c; ++i) {
+                        if (m.loadVal(hs[i], (K)ks[i], (V)vs[i]))
+                            ++added;
+                    }
+                    b.hashes[p] = null;  // release for GC
+                    b.keys[p] = null;
+                    b.vals[p] = null;
+                }
+            } finally {
+                if (added != 0L)
+                    m.addCount(added, -1);
+            }
+        }
+    }
+
+    /**
+     * Version of putVal (with onlyIfAbsent false) used by
+     * parallelPutAll for a precomputed hash.  Does not update the
+     * element count; returns true if a new mapping was added.
+     */
+    final boolean loadVal(int hash, K key, V value) {
+        int binCount = 0;
+        for (Node<K,V>[] tab = table;;) {
+            Node<K,V> f; int n, i, fh;
+            if (tab == null || (n = tab.length) == 0)
+                tab = initTable();
+            else if ((f = tabAt(tab, i = (n - 1) & hash)) == null) {
+                if (casTabAt(tab, i, null,
+                             new Node<K,V>(hash, key, value, null)))
+                    return true;
+            }
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer(tab, f);
+            else {
+                boolean added = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (fh >= 0) {
+                            binCount = 1;
+                            for (Node<K,V> e = f;; ++binCount) {
+                                K ek;
+                                if (e.hash == hash &&
+                                    ((ek = e.key) == key ||
+                                     (ek != null && key.equals(ek)))) {
+                                    e.val = value;
+                                    break;
+                                }
+                                Node<K,V> pred = e;
+                                if ((e = e.next) == null) {
+                                    pred.next = new Node<K,V>(hash, key,
+                                                              value, null);
+                                    added = true;
+                                    break;
+                                }
+                            }
+                        }
+                        else if (f instanceof TreeBin) {
+                            Node<K,V> p;
+                            binCount = 2;
+                            if ((p = ((TreeBin<K,V>)f).putTreeVal(hash, key,
+                                                           value)) != null)
+                                p.val = value;
+                            else
+                                added = true;
+                        }
+                    }
+                }
+                if (binCount != 0) {
+                    if (binCount >= TREEIFY_THRESHOLD)
+                        treeifyBin(tab, i);
+                    return added;
+                }
+            }
+        }
+    }
+
     // Unsafe mechanics
     private static final sun.misc.Unsafe U;
     private static final long SIZECTL;
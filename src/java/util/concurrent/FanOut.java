@@ -0,0 +1,394 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Static methods that run a group of alternative or partial tasks on
+ * an {@link Executor} and wait for a given number of them to
+ * succeed. Methods {@link #invokeFirst invokeFirst}, {@link
+ * #invokeAllSuccessful invokeAllSuccessful} and {@link #invokeQuorum
+ * invokeQuorum} return the result of the first task to succeed, the
+ * results of all tasks, or the results of any {@code k} tasks.
+ *
+ * <p>As soon as the outcome is decided, because enough tasks have
+ * succeeded or too many have failed, all tasks still running are
+ * cancelled with interruption, and tasks not yet started are never
+ * started. This happens in the thread completing the deciding task,
+ * without waiting for the caller to resume, so that losing tasks
+ * release their resources promptly. If the outcome is failure, the
+ * {@link ExecutionException} thrown has the first failure as its
+ * cause and the others as {@linkplain Throwable#getSuppressed
+ * suppressed} exceptions. If the caller is interrupted or times out,
+ * all tasks are cancelled as well.
+ *
+ * <p>With a positive <em>hedging delay</em>, tasks are started
+ * gradually: only as many as are needed initially, then one more
+ * each time the delay elapses without the outcome being decided,
+ * and one more immediately whenever a task fails. This supports
+ * tail-latency hedging, in which tasks are equivalent requests to
+ * replicated services, and a backup request is sent only if the
+ * first has not answered within, say, its 95th percentile response
+ * time:
+ *
+ * <pre> {@code
+ * List<Callable<Reply>> replicas = ...;
+ * Reply r = FanOut.invokeFirst(executor, replicas,
+ *                              p95Millis, 2000, TimeUnit.MILLISECONDS);}</pre>
+ *
+ * <p>With a hedging delay of zero, all tasks are started at once.
+ * These methods work with any executor whose tasks can be cancelled
+ * by interrupting them, including {@link ThreadPoolExecutor} and
+ * {@link ForkJoinPool}. If the executor rejects a task, it is
+ * counted as a failure.
+ *
+ * @since 1.8
+ */
+public final class FanOut {
+    private FanOut() {}
+
+    /**
+     * Executes the given tasks, returning the result of the first one
+     * to complete successfully, and cancelling the others.
+     *
+     * @param executor the executor
+     * @param tasks the tasks
+     * @param <T> the type of the values returned from the tasks
+     * @return the result returned by one of the tasks
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if any argument or task is null
+     * @throws IllegalArgumentException if tasks is empty
+     * @throws ExecutionException if no task completes successfully
+     */
+    public static <T> T invokeFirst(Executor executor,
+                                    Collection<? extends Callable<T>> tasks)
+        throws InterruptedException, ExecutionException {
+        return untimed(executor, tasks, 1, 0L).get(0);
+    }
+
+    /**
+     * Executes the given tasks, starting them one at a time with
+     * the given hedging delay, returning the result of the first one
+     * to complete successfully within the given timeout, and
+     * cancelling the others.
+     *
+     * @param executor the executor
+     * @param tasks the tasks, in the order they are to be started
+     * @param hedgeDelay the time to wait for the outcome before
+     *        starting another task, or zero to start all at once
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the hedgeDelay and timeout arguments
+     * @param <T> the type of the values returned from the tasks
+     * @return the result returned by one of the tasks
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if any argument or task is null
+     * @throws IllegalArgumentException if tasks is empty
+     * @throws ExecutionException if no task completes successfully
+     * @throws TimeoutException if the given timeout elapses before
+     *         any task completes successfully
+     */
+    public static <T> T invokeFirst(Executor executor,
+                                    Collection<? extends Callable<T>> tasks,
+                                    long hedgeDelay, long timeout,
+                                    TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+        return invokeQuorum(executor, tasks, 1, hedgeDelay,
+                            timeout, unit).get(0);
+    }
+
+    /**
+     * Executes the given tasks, returning their results in the order
+     * of the tasks if all complete successfully. As soon as any task
+     * fails, the others are cancelled.
+     *
+     * @param executor the executor
+     * @param tasks the tasks
+     * @param <T> the type of the values returned from the tasks
+     * @return the results of the tasks
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if any argument or task is null
+     * @throws IllegalArgumentException if tasks is empty
+     * @throws ExecutionException if any task fails
+     */
+    public static <T> List<T> invokeAllSuccessful(
+            Executor executor, Collection<? extends Callable<T>> tasks)
+        throws InterruptedException, ExecutionException {
+        return untimed(executor, tasks, tasks.size(), 0L);
+    }
+
+    /**
+     * Executes the given tasks until the given number of them
+     * complete successfully, returning their results in the order of
+     * the tasks, and cancelling the others.
+     *
+     * @param executor the executor
+     * @param tasks the tasks, in the order they are to be started
+     * @param quorum the number of tasks that must succeed
+     * @param hedgeDelay the time to wait for the outcome before
+     *        starting another task beyond the first {@code quorum},
+     *        or zero to start all at once
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the hedgeDelay and timeout arguments
+     * @param <T> the type of the values returned from the tasks
+     * @return the results of {@code quorum} successful tasks
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if any argument or task is null
+     * @throws IllegalArgumentException if tasks is empty, quorum is
+     *         not between one and the number of tasks, or hedgeDelay
+     *         is negative
+     * @throws ExecutionException if so many tasks fail that the
+     *         quorum cannot be reached
+     * @throws TimeoutException if the given timeout elapses before
+     *         the quorum is reached
+     */
+    public static <T> List<T> invokeQuorum(
+            Executor executor, Collection<? extends Callable<T>> tasks,
+            int quorum, long hedgeDelay, long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+        if (unit == null)
+            throw new NullPointerException();
+        return new Group<T>(executor, tasks, quorum, unit.toNanos(hedgeDelay))
+            .await(true, unit.toNanos(timeout));
+    }
+
+    /** Common untimed implementation */
+    private static <T> List<T> untimed(
+            Executor executor, Collection<? extends Callable<T>> tasks,
+            int quorum, long hedgeNanos)
+        throws InterruptedException, ExecutionException {
+        try {
+            return new Group<T>(executor, tasks, quorum, hedgeNanos)
+                .await(false, 0L);
+        } catch (TimeoutException cannotHappen) {
+            throw new Error(cannotHappen);
+        }
+    }
+
+    /**
+     * The state of one invocation. Subtasks report completion via
+     * done(), under the group's monitor, which also guards all
+     * mutable fields. The caller thread waits on the group's monitor
+     * for the outcome, waking to start hedges when due.
+     */
+    static final class Group<T> {
+        final Executor executor;
+        final Subtask<T>[] subtasks;
+        final int quorum;
+        final long hedgeNanos;
+        int started;        // number of subtasks started
+        int successes;
+        int failures;
+        boolean decided;
+        ArrayList<Throwable> errors;
+
+        @SuppressWarnings("unchecked")
+        Group(Executor executor, Collection<? extends Callable<T>> tasks,
+              int quorum, long hedgeNanos) {
+            if (executor == null)
+                throw new NullPointerException();
+            int n = tasks.size();
+            if (n == 0 || quorum < 1 || quorum > n || hedgeNanos < 0L)
+                throw new IllegalArgumentException();
+            Subtask<T>[] a = (Subtask<T>[])new Subtask<?>[n];
+            int i = 0;
+            for (Callable<T> c : tasks) {
+                if (c == null || i >= n)
+                    throw new NullPointerException();
+                a[i] = new Subtask<T>(c, this);
+                ++i;
+            }
+            this.executor = executor;
+            this.subtasks = a;
+            this.quorum = quorum;
+            this.hedgeNanos = hedgeNanos;
+        }
+
+        /**
+         * Starts the next subtask, if any remain and the outcome is
+         * undecided. Rejection is reported as failure of the
+         * subtask.
+         */
+        void startNext() {
+            Subtask<T> s;
+            synchronized (this) {
+                if (decided || started >= subtasks.length)
+                    return;
+                s = subtasks[started++];
+            }
+            try {
+                executor.execute(s);
+            } catch (RejectedExecutionException ex) {
+                s.setException(ex);    // invokes done
+            }
+        }
+
+        /**
+         * Records completion of a subtask, deciding the outcome and
+         * cancelling others if possible, or starting a replacement
+         * upon failure.
+         */
+        void done(Subtask<T> s) {
+            boolean cancelOthers = false, replace = false;
+            synchronized (this) {
+                if (decided)
+                    return;
+                if (s.isCancelled())
+                    ++failures;   // cancelled by someone else
+                else {
+                    try {
+                        s.get();
+                        ++successes;
+                        s.succeeded = true;
+                    } catch (ExecutionException ex) {
+                        ++failures;
+                        if (errors == null)
+                            errors = new ArrayList<Throwable>();
+                        errors.add(ex.getCause());
+                    } catch (Exception other) {  // cancelled or interrupted
+                        ++failures;
+                    }
+                }
+                if (successes >= quorum ||
+                    subtasks.length - failures < quorum) {
+                    decided = cancelOthers = true;
+                    notifyAll();
+                }
+                else if (!s.succeeded && hedgeNanos > 0L)
+                    replace = true;
+            }
+            if (cancelOthers)
+                cancelAll();
+            else if (replace)
+                startNext();
+        }
+
+        /** Cancels all unfinished subtasks, with interruption */
+        void cancelAll() {
+            for (Subtask<T> s : subtasks)
+                if (!s.isDone())
+                    s.cancel(true);
+        }
+
+        /**
+         * Starts subtasks and waits for the outcome, starting hedges
+         * as their delays elapse.
+         */
+        List<T> await(boolean timed, long nanos)
+            throws InterruptedException, ExecutionException,
+                   TimeoutException {
+            int initial = (hedgeNanos > 0L) ? quorum : subtasks.length;
+            for (int i = 0; i < initial; ++i)
+                startNext();
+            final long deadline = timed ? System.nanoTime() + nanos : 0L;
+            long nextHedge = System.nanoTime() + hedgeNanos;
+            boolean completed = false;
+            try {
+                for (;;) {
+                    boolean hedge = false;
+                    synchronized (this) {
+                        if (decided)
+                            break;
+                        long now = System.nanoTime(), wait = 0L;
+                        if (timed && (wait = deadline - now) <= 0L) {
+                            decided = true;
+                            throw new TimeoutException();
+                        }
+                        if (hedgeNanos > 0L && started < subtasks.length) {
+                            long h = nextHedge - now;
+                            if (h <= 0L)
+                                hedge = true;
+                            else if (!timed || h < wait)
+                                wait = h;
+                        }
+                        if (!hedge) {
+                            if (wait > 0L)
+                                TimeUnit.NANOSECONDS.timedWait(this, wait);
+                            else
+                                wait();
+                        }
+                    }
+                    if (hedge) {
+                        nextHedge = System.nanoTime() + hedgeNanos;
+                        startNext();
+                    }
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    synchronized (this) {
+                        decided = true;
+                    }
+                    cancelAll();
+                }
+            }
+            return report();
+        }
+
+        /**
+         * Returns results of successful subtasks, or throws failure.
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized List<T> report() throws ExecutionException {
+            if (successes >= quorum) {
+                ArrayList<T> results = new ArrayList<T>(quorum);
+                for (Subtask<T> s : subtasks) {
+                    if (s.succeeded && results.size() < quorum) {
+                        try {
+                            results.add(s.get());
+                        } catch (Exception cannotHappen) {
+                            throw new Error(cannotHappen);
+                        }
+                    }
+                }
+                return results;
+            }
+            String msg = "Quorum of " + quorum + " not reached: " +
+                successes + " succeeded, " + failures + " failed";
+            if (errors == null)
+                throw new ExecutionException(msg, new CancellationException());
+            ExecutionException ee = new ExecutionException(msg, errors.get(0));
+            for (int i = 1; i < errors.size(); ++i)
+                ee.addSuppressed(errors.get(i));
+            throw ee;
+        }
+    }
+
+    /**
+     * A FutureTask reporting completion to its group.
+     */
+    static final class Subtask<T> extends FutureTask<T> {
+        final Group<T> group;
+        boolean succeeded;    // guarded by group monitor
+        Subtask(Callable<T> callable, Group<T> group) {
+            super(callable);
+            this.group = group;
+        }
+        protected void done() { group.done(this); }
+    }
+}
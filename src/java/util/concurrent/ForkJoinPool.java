@@ -94,7 +94,11 @@ import java.security.Permissions;
  * {@link #getStealCount}) that are intended to aid in developing,
  * tuning, and monitoring fork/join applications. Also, method
  * {@link #toString} returns indications of pool state in a
- * convenient form for informal monitoring.
+ * convenient form for informal monitoring. Per-queue statistics are
+ * available from {@link #getWorkerStatistics}, the pool may be
+ * registered for JMX monitoring as a {@link ForkJoinPoolMXBean}, and
+ * a {@link TaskListener} may be installed to observe the execution
+ * of individual tasks.
  *
  * <p>As is the case with other ExecutorServices, there are three
  * main task execution methods summarized in the following table.
@@ -166,7 +170,8 @@ import java.security.Permissions;
  * @author Doug Lea
  */
 @sun.misc.Contended
-public class ForkJoinPool extends AbstractExecutorService {
+public class ForkJoinPool extends AbstractExecutorService
+    implements ForkJoinPoolMXBean {
 
     /*
      * Implementation Overview
@@ -595,6 +600,190 @@ public class ForkJoinPool extends AbstractExecutorService {
         }
     }
 
+    /**
+     * A hook invoked by worker threads around the execution of each
+     * task they take from a queue in their main run loop (tasks run
+     * while helping to join other tasks are not reported). A listener
+     * is installed using {@link #setTaskListener}; when none is set,
+     * workers incur no overhead beyond a single field read per
+     * top-level task.
+     *
+     * <p>Methods are invoked by the worker thread itself, so should
+     * be short and non-blocking, and must be thread-safe with respect
+     * to other workers. Exceptions thrown by listener methods are
+     * ignored; the task is executed, and the worker continues, as if
+     * the method had returned normally.
+     *
+     * @since 1.8
+     */
+    public static interface TaskListener {
+        /**
+         * Invoked by the given worker before it executes the given
+         * task.
+         *
+         * @param worker the worker thread
+         * @param task the task
+         */
+        void beforeExecute(ForkJoinWorkerThread worker, ForkJoinTask<?> task);
+
+        /**
+         * Invoked by the given worker after it executes the given
+         * task, whether it completed normally or abnormally.
+         *
+         * @param worker the worker thread
+         * @param task the task
+         */
+        void afterExecute(ForkJoinWorkerThread worker, ForkJoinTask<?> task);
+    }
+
+    /**
+     * A snapshot of the statistics of one worker or submission queue
+     * of a pool, as returned by {@link #getWorkerStatistics}. Counts
+     * are cumulative since the queue was created. Because they are
+     * maintained without synchronization, values may lag or be
+     * mutually inconsistent when the pool is not quiescent.
+     *
+     * @since 1.8
+     */
+    public static final class WorkerStatistics {
+        private final int poolIndex;
+        private final String threadName;
+        private final int queuedTaskCount;
+        private final long stealCount;
+        private final long stolenCount;
+        private final long executedTaskCount;
+        private final long parkCount;
+        private final long parkedNanos;
+        private final long compensationCount;
+        private final long contentionCount;
+
+        WorkerStatistics(WorkQueue w) {
+            ForkJoinWorkerThread wt = w.owner;
+            this.poolIndex = w.poolIndex;
+            this.threadName = (wt == null) ? null : wt.getName();
+            this.queuedTaskCount = w.queueSize();
+            this.stealCount = w.nstealsTotal;
+            this.stolenCount = w.nstolen;
+            this.executedTaskCount = w.nexecuted;
+            this.parkCount = w.nparks;
+            this.parkedNanos = w.parkNanos;
+            this.compensationCount = w.ncompensations;
+            this.contentionCount = w.ncontended;
+        }
+
+        /**
+         * Returns the index of the queue within the pool. Worker
+         * queues have odd indices, submission queues even ones.
+         *
+         * @return the queue index
+         */
+        public int getPoolIndex() { return poolIndex; }
+
+        /**
+         * Returns the name of the owning worker thread, or {@code
+         * null} for a shared submission queue.
+         *
+         * @return the worker name, or {@code null}
+         */
+        public String getThreadName() { return threadName; }
+
+        /**
+         * Returns {@code true} if this is a shared queue holding
+         * tasks submitted by non-worker threads.
+         *
+         * @return {@code true} if this is a submission queue
+         */
+        public boolean isSubmissionQueue() { return threadName == null; }
+
+        /**
+         * Returns the number of tasks held in the queue.
+         *
+         * @return the queue depth
+         */
+        public int getQueuedTaskCount() { return queuedTaskCount; }
+
+        /**
+         * Returns the number of top-level tasks this worker took
+         * from its own or other queues (steals in). Always zero for
+         * submission queues.
+         *
+         * @return the number of steals by this worker
+         */
+        public long getStealCount() { return stealCount; }
+
+        /**
+         * Returns the number of tasks taken from this queue by other
+         * workers (steals out). For submission queues, this is the
+         * number of submissions taken.
+         *
+         * @return the number of tasks taken by other workers
+         */
+        public long getStolenCount() { return stolenCount; }
+
+        /**
+         * Returns the number of tasks this worker executed from its
+         * main run loop, including local subtasks run after each
+         * top-level task.
+         *
+         * @return the number of executed tasks
+         */
+        public long getExecutedTaskCount() { return executedTaskCount; }
+
+        /**
+         * Returns the number of times this worker parked while
+         * waiting for work.
+         *
+         * @return the number of parks
+         */
+        public long getParkCount() { return parkCount; }
+
+        /**
+         * Returns the total time this worker spent parked while
+         * waiting for work, in nanoseconds.
+         *
+         * @return the parked time in nanoseconds
+         */
+        public long getParkedNanos() { return parkedNanos; }
+
+        /**
+         * Returns the number of times this worker blocked (in a join
+         * or a {@link ManagedBlocker}) after activating an idle
+         * worker or creating a spare one to preserve parallelism.
+         *
+         * @return the number of compensations
+         */
+        public long getCompensationCount() { return compensationCount; }
+
+        /**
+         * Returns the number of times an external submitter found
+         * this submission queue busy and moved to another. Always
+         * zero for worker queues.
+         *
+         * @return the number of contended submissions
+         */
+        public long getContentionCount() { return contentionCount; }
+
+        /**
+         * Returns a string summarizing these statistics.
+         *
+         * @return a string representation of these statistics
+         */
+        public String toString() {
+            return "[index = " + poolIndex +
+                (threadName == null ? ", submissions" :
+                 ", worker = " + threadName) +
+                ", queued = " + queuedTaskCount +
+                ", steals = " + stealCount +
+                ", stolen = " + stolenCount +
+                ", executed = " + executedTaskCount +
+                ", parks = " + parkCount +
+                ", parkedNanos = " + parkedNanos +
+                ", compensations = " + compensationCount +
+                ", contended = " + contentionCount +
+                "]";
+        }
+    }
+
     /**
      * Class for artificial tasks that are used to replace the target
      * of local joins if they are removed from an interior queue slot
@@ -695,6 +884,22 @@ public class ForkJoinPool extends AbstractExecutorService {
         volatile ForkJoinTask<?> currentJoin;  // task being joined in awaitJoin
         ForkJoinTask<?> currentSteal; // current non-local task being executed
 
+        // Statistics, see WorkerStatistics. Except for nstolen, these
+        // are written only by the owner (or, for shared queues, a
+        // submitter) without synchronization, so are only estimates
+        // when read by other threads. nstolen is written by thieves,
+        // also without atomics: a thief increments it after winning
+        // the CAS of the task at base, and before advancing base, so
+        // no other thief can steal from the queue in between, and the
+        // release of base publishes the count to the next thief.
+        long nexecuted;            // number of tasks run via runTask
+        long nstealsTotal;         // like nsteals, but never collected
+        long nstolen;              // number of tasks taken by other workers
+        long parkNanos;            // total time parked in awaitWork
+        int nparks;                // number of parks in awaitWork
+        int ncompensations;        // number of compensated blocks
+        int ncontended;            // number of busy submissions (shared)
+
         WorkQueue(ForkJoinPool pool, ForkJoinWorkerThread owner, int mode,
                   int seed) {
             this.pool = pool;
@@ -884,14 +1089,6 @@ public class ForkJoinPool extends AbstractExecutorService {
 
         // Specialized execution methods
 
-        /**
-         * Polls and runs tasks until empty.
-         */
-        final void pollAndExecAll() {
-            for (ForkJoinTask<?> t; (t = poll()) != null;)
-                t.doExec();
-        }
-
         /**
          * Executes a top-level task and any local tasks remaining
          * after execution.
@@ -899,13 +1096,19 @@ public class ForkJoinPool extends AbstractExecutorService {
         final void runTask(ForkJoinTask<?> task) {
             if ((currentSteal = task) != null) {
                 ForkJoinWorkerThread thread;
-                task.doExec();
+                ForkJoinPool p = pool;
+                TaskListener l = (p == null) ? null : p.taskListener;
+                long n = 1L;
+                execTask(task, l);
                 ForkJoinTask<?>[] a = array;
                 int md = mode;
                 ++nsteals;
+                ++nstealsTotal;
                 currentSteal = null;
-                if (md != 0)
-                    pollAndExecAll();
+                if (md != 0) {
+                    for (ForkJoinTask<?> t; (t = poll()) != null; ++n)
+                        execTask(t, l);
+                }
                 else if (a != null) {
                     int s, m = a.length - 1;
                     ForkJoinTask<?> t;
@@ -913,14 +1116,37 @@ public class ForkJoinPool extends AbstractExecutorService {
                            (t = (ForkJoinTask<?>)U.getAndSetObject
                             (a, ((m & s) << ASHIFT) + ABASE, null)) != null) {
                         top = s;
-                        t.doExec();
+                        execTask(t, l);
+                        ++n;
                     }
                 }
+                nexecuted += n;
                 if ((thread = owner) != null) // no need to do in finally clause
                     thread.afterTopLevelExec();
             }
         }
 
+        /**
+         * Executes the given task, bracketed by calls to the given
+         * listener if non-null.
+         */
+        private void execTask(ForkJoinTask<?> t, TaskListener l) {
+            if (l == null)
+                t.doExec();
+            else {
+                ForkJoinWorkerThread wt = owner;
+                try {
+                    l.beforeExecute(wt, t);
+                } catch (Throwable ignore) {
+                }
+                t.doExec();     // never throws
+                try {
+                    l.afterExecute(wt, t);
+                } catch (Throwable ignore) {
+                }
+            }
+        }
+
         /**
          * If present, removes from queue and executes the given task,
          * or any other cancelled task. Returns (true) on any CAS
@@ -1271,6 +1497,8 @@ public class ForkJoinPool extends AbstractExecutorService {
     final ForkJoinWorkerThreadFactory factory;
     final UncaughtExceptionHandler ueh;        // per-worker UEH
     final String workerNamePrefix;             // to create worker name string
+    volatile long spareCount;                  // compensating threads created
+    volatile TaskListener taskListener;        // task execution hook, or null
 
     /**
      * Acquires the plock lock to protect worker array and related
@@ -1567,6 +1795,7 @@ public class ForkJoinPool extends AbstractExecutorService {
                         return;
                     }
                 }
+                ++q.ncontended;
                 move = true; // move on failure
             }
             else if (((ps = plock) & PL_LOCK) == 0) { // create new queue
@@ -1683,6 +1912,8 @@ public class ForkJoinPool extends AbstractExecutorService {
                             helpRelease(c, ws, w, q, b);
                         else if (q.base == b &&
                                  U.compareAndSwapObject(a, i, t, null)) {
+                            if (q != w)
+                                ++q.nstolen;   // serialized by base
                             U.putOrderedInt(q, QBASE, b + 1);
                             if ((b + 1) - q.top < 0)
                                 signalWork(ws, q);
@@ -1752,8 +1983,12 @@ public class ForkJoinPool extends AbstractExecutorService {
                     Thread wt = Thread.currentThread();
                     U.putObject(wt, PARKBLOCKER, this);
                     w.parker = wt;            // emulate LockSupport.park
-                    if (w.eventCount == ec && ctl == c)
+                    if (w.eventCount == ec && ctl == c) {
+                        long start = System.nanoTime();
                         U.park(false, parkTime);  // must recheck before park
+                        w.parkNanos += System.nanoTime() - start;
+                        ++w.nparks;
+                    }
                     w.parker = null;
                     U.putObject(wt, PARKBLOCKER, null);
                     if (parkTime != 0L && ctl == c &&
@@ -1958,6 +2193,7 @@ public class ForkJoinPool extends AbstractExecutorService {
                     w.eventCount = ne;
                     if ((p = w.parker) != null)
                         U.unpark(p);
+                    recordCompensation();
                     return true;   // replace with idle worker
                 }
             }
@@ -1977,6 +2213,8 @@ public class ForkJoinPool extends AbstractExecutorService {
                         if ((fac = factory) != null &&
                             (wt = fac.newThread(this)) != null) {
                             wt.start();
+                            U.getAndAddLong(this, SPARECOUNT, 1L);
+                            recordCompensation();
                             return true;
                         }
                     } catch (Throwable rex) {
@@ -1989,6 +2227,17 @@ public class ForkJoinPool extends AbstractExecutorService {
         return false;
     }
 
+    /**
+     * Records a compensation in the statistics of the calling worker,
+     * if it is one.
+     */
+    private static void recordCompensation() {
+        Thread t; WorkQueue w;
+        if ((t = Thread.currentThread()) instanceof ForkJoinWorkerThread &&
+            (w = ((ForkJoinWorkerThread)t).workQueue) != null)
+            ++w.ncompensations;
+    }
+
     /**
      * Helps and/or blocks until the given task is done.
      *
@@ -2884,6 +3133,92 @@ public class ForkJoinPool extends AbstractExecutorService {
         return count;
     }
 
+    /**
+     * Returns the total number of spare threads created since this
+     * pool was constructed to maintain parallelism while workers
+     * were blocked in joins or {@link ManagedBlocker}s. A value that
+     * keeps growing usually indicates tasks that block rather than
+     * fork and join.
+     *
+     * @return the number of compensating threads created
+     * @since 1.8
+     */
+    public long getSpareThreadCount() {
+        return spareCount;
+    }
+
+    /**
+     * Returns an estimate of the total number of times workers
+     * blocked after activating or creating another worker to
+     * compensate. Counts of workers that have since terminated are
+     * not included.
+     *
+     * @return the number of compensations
+     * @since 1.8
+     */
+    public long getCompensationCount() {
+        long count = 0L;
+        WorkQueue[] ws; WorkQueue w;
+        if ((ws = workQueues) != null) {
+            for (int i = 1; i < ws.length; i += 2) {
+                if ((w = ws[i]) != null)
+                    count += w.ncompensations;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of each worker and
+     * submission queue currently in the pool, in queue index
+     * order. The snapshot is obtained by iterating across all queues
+     * without locking, so it is only an estimate if the pool is not
+     * quiescent. Statistics of terminated workers are not included.
+     *
+     * @return the per-queue statistics
+     * @since 1.8
+     */
+    public WorkerStatistics[] getWorkerStatistics() {
+        ArrayList<WorkerStatistics> stats = new ArrayList<WorkerStatistics>();
+        WorkQueue[] ws; WorkQueue w;
+        if ((ws = workQueues) != null) {
+            for (int i = 0; i < ws.length; ++i) {
+                if ((w = ws[i]) != null)
+                    stats.add(new WorkerStatistics(w));
+            }
+        }
+        return stats.toArray(new WorkerStatistics[stats.size()]);
+    }
+
+    /**
+     * Sets the listener invoked around the execution of tasks by
+     * workers of this pool, or removes it if {@code null}. The new
+     * listener takes effect for each worker upon its next top-level
+     * task.
+     *
+     * @param listener the listener, or {@code null} for none
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     * @since 1.8
+     */
+    public void setTaskListener(TaskListener listener) {
+        checkPermission();
+        taskListener = listener;
+    }
+
+    /**
+     * Returns the listener set by {@link #setTaskListener}, or
+     * {@code null} if none.
+     *
+     * @return the task listener, or {@code null}
+     * @since 1.8
+     */
+    public TaskListener getTaskListener() {
+        return taskListener;
+    }
+
     /**
      * Returns a string identifying this pool, as well as its state,
      * including indications of run state, parallelism level, and
@@ -3250,6 +3585,7 @@ public class ForkJoinPool extends AbstractExecutorService {
     private static final long INDEXSEED;
     private static final long QBASE;
     private static final long QLOCK;
+    private static final long SPARECOUNT;
 
     static {
         // initialize field offsets for CAS etc
@@ -3264,6 +3600,8 @@ public class ForkJoinPool extends AbstractExecutorService {
                 (k.getDeclaredField("plock"));
             INDEXSEED = U.objectFieldOffset
                 (k.getDeclaredField("indexSeed"));
+            SPARECOUNT = U.objectFieldOffset
+                (k.getDeclaredField("spareCount"));
             Class<?> tk = Thread.class;
             PARKBLOCKER = U.objectFieldOffset
                 (tk.getDeclaredField("parkBlocker"));
@@ -0,0 +1,153 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+/**
+ * The management interface for a {@link ForkJoinPool}. A pool is
+ * not registered automatically; applications wishing to monitor a
+ * pool through JMX register it with an {@code MBeanServer}, for
+ * example:
+ * <pre> {@code
+ * ForkJoinPool pool = ForkJoinPool.commonPool();
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(
+ *     pool, new ObjectName("java.util.concurrent:type=ForkJoinPool,name=common"));}</pre>
+ *
+ * <p>All values are estimates obtained without locking, as described
+ * for the corresponding {@code ForkJoinPool} methods. The per-queue
+ * view returned by {@link #getWorkerStatistics} distinguishes a
+ * single overloaded queue, contention among external submitters,
+ * and excessive compensation, which the aggregate counts do not.
+ *
+ * @since 1.8
+ */
+public interface ForkJoinPoolMXBean {
+
+    /**
+     * Returns the targeted parallelism level of the pool.
+     *
+     * @return the targeted parallelism level
+     * @see ForkJoinPool#getParallelism
+     */
+    int getParallelism();
+
+    /**
+     * Returns the number of worker threads that have started but
+     * not yet terminated.
+     *
+     * @return the number of worker threads
+     * @see ForkJoinPool#getPoolSize
+     */
+    int getPoolSize();
+
+    /**
+     * Returns an estimate of the number of threads that are
+     * currently stealing or executing tasks.
+     *
+     * @return the number of active threads
+     * @see ForkJoinPool#getActiveThreadCount
+     */
+    int getActiveThreadCount();
+
+    /**
+     * Returns an estimate of the number of worker threads that are
+     * not blocked waiting to join tasks or for other managed
+     * synchronization.
+     *
+     * @return the number of running worker threads
+     * @see ForkJoinPool#getRunningThreadCount
+     */
+    int getRunningThreadCount();
+
+    /**
+     * Returns an estimate of the total number of tasks stolen from
+     * one thread's work queue by another.
+     *
+     * @return the number of steals
+     * @see ForkJoinPool#getStealCount
+     */
+    long getStealCount();
+
+    /**
+     * Returns an estimate of the total number of tasks currently
+     * held in queues by worker threads.
+     *
+     * @return the number of queued tasks
+     * @see ForkJoinPool#getQueuedTaskCount
+     */
+    long getQueuedTaskCount();
+
+    /**
+     * Returns an estimate of the number of tasks submitted to the
+     * pool that have not yet begun executing.
+     *
+     * @return the number of queued submissions
+     * @see ForkJoinPool#getQueuedSubmissionCount
+     */
+    int getQueuedSubmissionCount();
+
+    /**
+     * Returns the number of spare threads created to maintain
+     * parallelism while workers were blocked.
+     *
+     * @return the number of compensating threads created
+     * @see ForkJoinPool#getSpareThreadCount
+     */
+    long getSpareThreadCount();
+
+    /**
+     * Returns an estimate of the number of times workers blocked
+     * after compensating.
+     *
+     * @return the number of compensations
+     * @see ForkJoinPool#getCompensationCount
+     */
+    long getCompensationCount();
+
+    /**
+     * Returns {@code true} if all worker threads are currently idle.
+     *
+     * @return {@code true} if all threads are currently idle
+     * @see ForkJoinPool#isQuiescent
+     */
+    boolean isQuiescent();
+
+    /**
+     * Returns {@code true} if the pool has been shut down.
+     *
+     * @return {@code true} if the pool has been shut down
+     * @see ForkJoinPool#isShutdown
+     */
+    boolean isShutdown();
+
+    /**
+     * Returns a snapshot of the statistics of each worker and
+     * submission queue currently in the pool.
+     *
+     * @return the per-queue statistics
+     * @see ForkJoinPool#getWorkerStatistics
+     */
+    ForkJoinPool.WorkerStatistics[] getWorkerStatistics();
+}
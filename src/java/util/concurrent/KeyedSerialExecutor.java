@@ -0,0 +1,375 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An executor that runs tasks submitted with the same key one at a
+ * time, in submission order, and tasks with different keys
+ * concurrently, using threads of an underlying {@link Executor} such
+ * as a {@link ThreadPoolExecutor} or {@link ForkJoinPool}. Tasks for
+ * each key are held in a lightweight queue, and at most one task
+ * draining that queue is submitted to the underlying executor at any
+ * time, so no thread is dedicated to any key, a slow task delays
+ * only later tasks with the same key, and skew among keys does not
+ * leave threads idle. Queues are created on first use of a key and
+ * removed as soon as they become empty, so keys need not be
+ * registered or released.
+ *
+ * <p>Actions in a thread prior to submitting a task
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * the execution of that task, and the execution of each task
+ * happens-before the execution of the next task with the same key.
+ *
+ * <p>A draining task runs a bounded number of tasks before
+ * resubmitting itself, so that a busy key does not monopolize a
+ * thread while tasks with other keys wait. If a task throws an
+ * exception, the remaining tasks with its key are run by a fresh
+ * draining task, and the exception propagates to the underlying
+ * executor.
+ *
+ * <p>If the underlying executor rejects the draining task submitted
+ * by a call to {@link #execute execute}, only the task of that call
+ * is discarded, and the {@link RejectedExecutionException} is thrown
+ * to its caller. Tasks accepted earlier for the same key stay queued,
+ * and are drained once a later call with the key is accepted. If
+ * the executor rejects a draining task resubmitting itself after a
+ * batch, it instead goes on running tasks in its current thread;
+ * after a task exception, the remaining tasks likewise wait for the
+ * next call with the key, and the task's exception still propagates.
+ *
+ * <p>Sample usage, in which events for each account are processed
+ * in order:
+ *
+ * <pre> {@code
+ * KeyedSerialExecutor<String> accounts =
+ *     new KeyedSerialExecutor<String>(ForkJoinPool.commonPool());
+ * void onEvent(Event e) {
+ *   accounts.execute(e.accountId(), () -> apply(e));
+ * }}</pre>
+ *
+ * @param <K> the type of keys
+ * @since 1.8
+ */
+public class KeyedSerialExecutor<K> {
+
+    /**
+     * The maximum number of tasks run by a draining task before it
+     * resubmits itself.
+     */
+    static final int MAX_BATCH = 32;
+
+    /**
+     * Bit of SerialQueue.count set while tasks are pending but no
+     * draining task is outstanding, because the executor rejected it.
+     */
+    static final int STALLED = 1 << 30;
+
+    private final Executor executor;
+    private final ConcurrentHashMap<K, SerialQueue> queues;
+
+    /**
+     * Creates an executor running tasks using the given executor.
+     *
+     * @param executor the underlying executor
+     * @throws NullPointerException if executor is null
+     */
+    public KeyedSerialExecutor(Executor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        this.executor = executor;
+        this.queues = new ConcurrentHashMap<K, SerialQueue>();
+    }
+
+    /**
+     * Arranges to execute the given task after all tasks previously
+     * submitted with the same key.
+     *
+     * @param key the key
+     * @param task the task
+     * @throws NullPointerException if key or task is null
+     * @throws RejectedExecutionException if the underlying executor
+     *         rejected a task draining the queue for the key, in which
+     *         case the given task is discarded
+     */
+    public void execute(K key, Runnable task) {
+        if (key == null || task == null)
+            throw new NullPointerException();
+        ConcurrentHashMap<K, SerialQueue> m = queues;
+        for (SerialQueue q, p;;) {
+            if ((q = m.get(key)) == null &&
+                (p = m.putIfAbsent(key, q = new SerialQueue(key))) != null)
+                q = p;
+            if (q.offer(task))
+                break;
+            m.remove(key, q);         // retired; help remove and retry
+        }
+    }
+
+    /**
+     * Returns an executor that submits tasks with the given key.
+     *
+     * @param key the key
+     * @return an executor for the key
+     * @throws NullPointerException if key is null
+     */
+    public Executor executorFor(final K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return new Executor() {
+            public void execute(Runnable task) {
+                KeyedSerialExecutor.this.execute(key, task);
+            }};
+    }
+
+    /**
+     * Returns the underlying executor.
+     *
+     * @return the underlying executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the number of tasks with the given key that have been
+     * submitted but not completed, including any task currently
+     * running.
+     *
+     * @param key the key
+     * @return the backlog of the key
+     */
+    public int getBacklog(K key) {
+        SerialQueue q = queues.get(key);
+        return (q == null) ? 0 : backlog(q.count);
+    }
+
+    /**
+     * Returns the number of keys with tasks that have been submitted
+     * but not completed.
+     *
+     * @return the number of active keys
+     */
+    public int getActiveKeyCount() {
+        return queues.size();
+    }
+
+    /**
+     * Returns the total number of tasks that have been submitted but
+     * not completed, over all keys.
+     *
+     * @return the total backlog
+     */
+    public long getTotalBacklog() {
+        long n = 0L;
+        for (SerialQueue q : queues.values())
+            n += backlog(q.count);
+        return n;
+    }
+
+    /**
+     * Returns a snapshot of the backlogs of all active keys. The
+     * values are estimates, since tasks may be submitted and
+     * completed while the snapshot is taken.
+     *
+     * @return a map from each active key to its backlog
+     */
+    public Map<K, Integer> getBacklogs() {
+        Map<K, Integer> m = new HashMap<K, Integer>();
+        for (SerialQueue q : queues.values()) {
+            int c = backlog(q.count);
+            if (c > 0)
+                m.put(q.key, c);
+        }
+        return m;
+    }
+
+    /**
+     * Returns the number of pending tasks encoded in the given count.
+     */
+    static int backlog(int count) {
+        return (count < 0) ? 0 : count & ~STALLED;
+    }
+
+    /**
+     * Returns a string identifying this executor, as well as its
+     * number of active keys and total backlog.
+     *
+     * @return a string identifying this executor
+     */
+    public String toString() {
+        return super.toString() +
+            "[active keys = " + getActiveKeyCount() +
+            ", backlog = " + getTotalBacklog() + "]";
+    }
+
+    /**
+     * The queue of tasks for one key, which is also the task draining
+     * it. Field count holds the number of tasks offered but not
+     * completed, or -1 once the queue is retired, which happens when
+     * its last task completes. A task is counted before it is added,
+     * so the drainer may briefly find the queue empty while count is
+     * positive, in which case it yields until the task appears. The
+     * offer that raises count from zero, or from a STALLED count,
+     * submits the drainer; the drainer either retires the queue on
+     * completing its last task or continues, so at most one drainer
+     * is ever outstanding. If the executor rejects the drainer, the
+     * thread that submitted it still owns it, and calls stall to
+     * mark the count STALLED (or to retire the queue if nothing is
+     * pending), handing the submission to the next offer.
+     */
+    final class SerialQueue implements Runnable {
+        final K key;
+        final ConcurrentLinkedQueue<Runnable> tasks =
+            new ConcurrentLinkedQueue<Runnable>();
+        volatile int count;
+
+        SerialQueue(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds a task, submitting the drainer if the queue was idle.
+         *
+         * @return false if the queue is retired
+         */
+        final boolean offer(Runnable task) {
+            for (int c;;) {
+                if ((c = count) < 0)
+                    return false;
+                if (U.compareAndSwapInt(this, COUNT, c,
+                                        (c & ~STALLED) + 1)) {
+                    tasks.add(task);
+                    if (c == 0 || (c & STALLED) != 0) {
+                        try {
+                            executor.execute(this);
+                        } catch (Throwable ex) {
+                            tasks.remove(task);
+                            stall(true);
+                            throw ex;
+                        }
+                    }
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Called by the owner of a rejected drainer. Marks this queue
+         * stalled, or retires it if no tasks are pending.
+         *
+         * @param removed true if one task was removed by the caller
+         */
+        final void stall(boolean removed) {
+            for (int c;;) {
+                int n = (c = count) - (removed ? 1 : 0);
+                if (n == 0) {
+                    if (U.compareAndSwapInt(this, COUNT, c, -1)) {
+                        queues.remove(key, this);
+                        break;
+                    }
+                }
+                else if (U.compareAndSwapInt(this, COUNT, c, n | STALLED))
+                    break;
+            }
+        }
+
+        /**
+         * Resubmits this drainer.
+         *
+         * @return false if the executor rejected it
+         */
+        final boolean resubmit() {
+            try {
+                executor.execute(this);
+                return true;
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Records completion of a task.
+         *
+         * @return true if more tasks are pending, else false after
+         * retiring this queue
+         */
+        final boolean release() {
+            for (int c;;) {
+                if ((c = count) == 1) {
+                    if (U.compareAndSwapInt(this, COUNT, 1, -1)) {
+                        queues.remove(key, this);
+                        return false;
+                    }
+                }
+                else if (U.compareAndSwapInt(this, COUNT, c, c - 1))
+                    return true;
+            }
+        }
+
+        public void run() {
+            for (int n = MAX_BATCH;;) {
+                Runnable task;
+                while ((task = tasks.poll()) == null)
+                    Thread.yield();
+                boolean completed = false, more;
+                try {
+                    task.run();
+                    completed = true;
+                } finally {
+                    if ((more = release()) && (!completed || --n <= 0)) {
+                        if (resubmit())
+                            more = false;
+                        else if (completed)
+                            n = MAX_BATCH;  // keep draining in this thread
+                        else
+                            stall(false);   // let the task exception propagate
+                    }
+                }
+                if (!more)
+                    break;
+            }
+        }
+
+        public String toString() {
+            return super.toString() + "[key = " + key + "]";
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long COUNT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            COUNT = U.objectFieldOffset
+                (KeyedSerialExecutor.SerialQueue.class.getDeclaredField("count"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A bounded {@linkplain java.util.Queue queue} backed by a circular
+ * array that supports any number of producer threads but only one
+ * consumer thread at a time.  This queue orders elements FIFO
+ * (first-in-first-out) with respect to the order in which producers
+ * claim slots.  Producers claim slots with a single compare-and-set
+ * of a shared index; the consumer performs no atomic
+ * read-modify-write operations at all, which makes this class an
+ * appropriate choice for mailboxes and other many-to-one hand-offs
+ * where {@link ConcurrentLinkedQueue} would pay for contention at
+ * both ends.
+ *
+ * <p>The insertion methods ({@code offer}, {@code add}) may be invoked
+ * by any thread, but the removal and examination methods
+ * ({@code poll}, {@code peek}, {@code remove}, {@code drain},
+ * {@code clear}) only by the single consumer.  Results are undefined
+ * if this restriction is violated.  The methods {@code size} and
+ * {@code isEmpty} may be called from any thread, but are only
+ * estimates when the queue is in use.
+ *
+ * <p>This class does not permit the use of {@code null} elements.
+ * Iterators are <i>weakly consistent</i>, are intended for monitoring
+ * only, and do not support {@link Iterator#remove}.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code MpscArrayQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code MpscArrayQueue} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @see MpscLinkedArrayQueue
+ * @see SpscArrayQueue
+ * @param <E> the type of elements held in this collection
+ */
+public class MpscArrayQueue<E> extends AbstractQueue<E> {
+
+    /*
+     * Producers claim index p by CASing producerIndex from p to p+1
+     * and then publish the element with an ordered store into slot
+     * (p & mask).  Because the claim and the store are separate
+     * steps, the consumer may observe producerIndex > c while slot c
+     * is still null; poll then spins briefly until the element
+     * appears (the claiming producer is between two instructions,
+     * so we yield rather than park in case it has been descheduled),
+     * whereas drain simply stops at the first unpublished slot.
+     *
+     * Before claiming, a producer checks that it would not overrun
+     * the consumer.  To avoid reading the consumer's cache line on
+     * every offer, producers share a cached bound (producerLimit)
+     * that is refreshed from consumerIndex only when exhausted.
+     *
+     * The consumer clears a slot with an ordered store before the
+     * ordered store of consumerIndex that lets producers reuse it,
+     * so a producer never overwrites an unconsumed element and the
+     * consumer never mistakes a previous lap's element for a new one.
+     */
+
+    /** The array of slots; its length is a power of two */
+    final Object[] buffer;
+
+    /** buffer.length - 1 */
+    final int mask;
+
+    /** The maximum number of elements, at most buffer.length */
+    final int capacity;
+
+    /** Next index to be claimed by a producer */
+    @sun.misc.Contended("p") private volatile long producerIndex;
+
+    /** Cached bound on producerIndex, refreshed from consumerIndex */
+    @sun.misc.Contended("p") private volatile long producerLimit;
+
+    /** Next index to be read; written only by the consumer */
+    @sun.misc.Contended("c") private volatile long consumerIndex;
+
+    /**
+     * Creates a {@code MpscArrayQueue} with the given (fixed)
+     * capacity.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public MpscArrayQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException();
+        int n = SpscArrayQueue.tableSizeFor(capacity);
+        this.buffer = new Object[n];
+        this.mask = n - 1;
+        this.capacity = capacity;
+        this.producerLimit = capacity;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it
+     * is possible to do so without exceeding the queue's capacity.
+     *
+     * @param e the element to add
+     * @return {@code true} if the element was added to this queue,
+     *         else {@code false}
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long limit = producerLimit;
+        long p;
+        do {
+            p = producerIndex;
+            if (p >= limit) {
+                limit = consumerIndex + capacity;
+                if (p >= limit)
+                    return false;
+                U.putOrderedLong(this, PLIMIT, limit);
+            }
+        } while (!U.compareAndSwapLong(this, PINDEX, p, p + 1L));
+        U.putOrderedObject(buffer, slotOffset(p), e);
+        return true;
+    }
+
+    /**
+     * Returns the Unsafe offset of the slot for the given index.
+     */
+    private long slotOffset(long index) {
+        return ((long)((int)index & mask) << ASHIFT) + ABASE;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns
+     * {@code null} if this queue is empty.  Must only be called by
+     * the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        Object[] a = buffer;
+        long c = consumerIndex;
+        long off = slotOffset(c);
+        Object e = U.getObjectVolatile(a, off);
+        if (e == null) {
+            if (c >= producerIndex)
+                return null;
+            while ((e = U.getObjectVolatile(a, off)) == null)
+                Thread.yield();
+        }
+        U.putOrderedObject(a, off, null);
+        U.putOrderedLong(this, CINDEX, c + 1L);
+        return (E)e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty.  Must only be
+     * called by the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        Object[] a = buffer;
+        long c = consumerIndex;
+        long off = slotOffset(c);
+        Object e = U.getObjectVolatile(a, off);
+        if (e == null) {
+            if (c >= producerIndex)
+                return null;
+            while ((e = U.getObjectVolatile(a, off)) == null)
+                Thread.yield();
+        }
+        return (E)e;
+    }
+
+    /**
+     * Removes at most the given number of available elements from
+     * this queue, passing each in turn to the given action.  Unlike
+     * {@link #poll}, this method never reads the shared producer
+     * index and never waits for a producer that has claimed but not
+     * yet filled a slot; it stops at the first such slot instead.
+     * Each element is removed before the action is invoked on it; if
+     * the action throws an exception, that element is lost and the
+     * remaining elements stay in the queue.  Must only be called by
+     * the consumer thread.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to transfer
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        Object[] a = buffer;
+        long c = consumerIndex;
+        int n = 0;
+        while (n < limit) {
+            long off = slotOffset(c);
+            Object e = U.getObjectVolatile(a, off);
+            if (e == null)
+                break;
+            U.putOrderedObject(a, off, null);
+            U.putOrderedLong(this, CINDEX, ++c);
+            ++n;
+            action.accept((E)e);
+        }
+        return n;
+    }
+
+    /**
+     * Removes all available elements from this queue, passing each
+     * in turn to the given action.  Equivalent to {@link
+     * #drain(Consumer, int) drain(action, capacity)}.
+     *
+     * @param action the action to perform on each element
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     */
+    public int drain(Consumer<? super E> action) {
+        return drain(action, capacity);
+    }
+
+    /**
+     * Returns the number of elements in this queue, including those
+     * whose slots have been claimed but not yet filled.  The value is
+     * exact only if the queue is not concurrently in use.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long after = consumerIndex;
+        for (;;) {
+            long before = after;
+            long p = producerIndex;
+            after = consumerIndex;
+            if (before == after) {
+                long n = p - after;
+                return (n <= 0L) ? 0 : (n >= capacity) ? capacity : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex >= producerIndex;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * accept without exceeding its capacity.  As with {@link #size},
+     * the value is only an estimate when the queue is in use.
+     *
+     * @return the remaining capacity
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Returns the capacity this queue was created with.
+     *
+     * @return the capacity of this queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>
+     * and does not support removal.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private long index;
+        private final long end;
+        private E nextItem;
+
+        Itr() {
+            index = consumerIndex;
+            end = producerIndex;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            Object[] a = buffer;
+            E e = null;
+            while (e == null && index < end) {
+                long c = consumerIndex;
+                if (index < c)
+                    index = c;         // skip already consumed slots
+                else
+                    e = (E)U.getObjectVolatile(a, slotOffset(index++));
+            }
+            nextItem = e;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        public E next() {
+            E e = nextItem;
+            if (e == null)
+                throw new NoSuchElementException();
+            advance();
+            return e;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long PINDEX;
+    private static final long PLIMIT;
+    private static final long CINDEX;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MpscArrayQueue.class;
+            PINDEX = U.objectFieldOffset
+                (k.getDeclaredField("producerIndex"));
+            PLIMIT = U.objectFieldOffset
+                (k.getDeclaredField("producerLimit"));
+            CINDEX = U.objectFieldOffset
+                (k.getDeclaredField("consumerIndex"));
+            Class<?> ak = Object[].class;
+            ABASE = U.arrayBaseOffset(ak);
+            int scale = U.arrayIndexScale(ak);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * An unbounded {@linkplain java.util.Queue queue} that supports any
+ * number of producer threads but only one consumer thread at a time.
+ * This queue orders elements FIFO (first-in-first-out) with respect to
+ * the order in which producers claim slots.  Elements are stored in a
+ * linked list of fixed-size array chunks: producers claim a slot with
+ * a single atomic increment (which, unlike a compare-and-set, cannot
+ * fail and retry under contention) and allocate only once per chunk,
+ * while the consumer performs no atomic read-modify-write operations
+ * at all.  This makes the class an appropriate choice for actor
+ * mailboxes and other many-to-one hand-offs.
+ *
+ * <p>The insertion methods ({@code offer}, {@code add}) may be invoked
+ * by any thread, but the removal and examination methods
+ * ({@code poll}, {@code peek}, {@code remove}, {@code drain},
+ * {@code clear}) only by the single consumer.  Results are undefined
+ * if this restriction is violated.  The methods {@code size} and
+ * {@code isEmpty} may be called from any thread, but are only
+ * estimates when the queue is in use.
+ *
+ * <p>This class does not permit the use of {@code null} elements.
+ * Iterators are <i>weakly consistent</i>, are intended for monitoring
+ * only, and do not support {@link Iterator#remove}.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code MpscLinkedArrayQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code MpscLinkedArrayQueue} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @see MpscArrayQueue
+ * @see SpscLinkedArrayQueue
+ * @param <E> the type of elements held in this collection
+ */
+public class MpscLinkedArrayQueue<E> extends AbstractQueue<E> {
+
+    /*
+     * Element i lives in slot (i & chunkMask) of the chunk with id
+     * (i >>> chunkShift).  A producer first reads producerChunk, then
+     * claims i by getAndAdd on producerIndex, then walks forward
+     * from the chunk it read (appending new chunks by CAS on the
+     * next link when needed) to the chunk holding i, and finally
+     * publishes the element with an ordered store into its slot.
+     *
+     * producerChunk is only ever advanced (by CAS, monotonically) to
+     * a chunk holding an already claimed index, so at any time its
+     * id is at most that of the chunk holding producerIndex.  Reading
+     * it before claiming therefore guarantees that the walk starts at
+     * or before the target chunk, even if later producers have since
+     * advanced producerChunk past it.  For the same reason, chunk
+     * next links are never cleared: a stalled producer may still be
+     * walking through chunks the consumer has already discarded.
+     * Such chunks are reclaimed by GC once no producer refers to them.
+     *
+     * As in MpscArrayQueue, a claimed slot may not yet be filled, so
+     * poll spins (yielding) on it while
+     * drain stops at the first unfilled slot.  Slots are never
+     * reused, so the consumer clears them with plain stores.
+     */
+
+    /** The default number of elements per chunk */
+    static final int DEFAULT_CHUNK_SIZE = 128;
+
+    /**
+     * A chunk of slots.  Ids are consecutive along the next links.
+     */
+    static final class Chunk {
+        final long id;
+        final Object[] slots;
+        volatile Chunk next;
+
+        Chunk(long id, int size) {
+            this.id = id;
+            this.slots = new Object[size];
+        }
+
+        final boolean casNext(Chunk cmp, Chunk val) {
+            return U.compareAndSwapObject(this, NEXT, cmp, val);
+        }
+    }
+
+    /** log2(chunkSize) */
+    final int chunkShift;
+
+    /** chunkSize - 1 */
+    final int chunkMask;
+
+    /** A chunk at or before the one holding producerIndex */
+    @sun.misc.Contended("p") private volatile Chunk producerChunk;
+
+    /** Next index to be claimed by a producer */
+    @sun.misc.Contended("p") private volatile long producerIndex;
+
+    /** The chunk currently being drained; accessed only by the consumer */
+    @sun.misc.Contended("c") private Chunk consumerChunk;
+
+    /** Next index to be read; written only by the consumer */
+    @sun.misc.Contended("c") private volatile long consumerIndex;
+
+    /**
+     * Creates a {@code MpscLinkedArrayQueue} with the default chunk
+     * size.
+     */
+    public MpscLinkedArrayQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a {@code MpscLinkedArrayQueue} that allocates storage
+     * in chunks of (at least) the given number of elements.
+     *
+     * @param chunkSize the number of elements per chunk, rounded up
+     *        to a power of two
+     * @throws IllegalArgumentException if {@code chunkSize < 2}
+     */
+    public MpscLinkedArrayQueue(int chunkSize) {
+        if (chunkSize < 2)
+            throw new IllegalArgumentException();
+        int n = SpscArrayQueue.tableSizeFor(chunkSize);
+        this.chunkShift = Integer.numberOfTrailingZeros(n);
+        this.chunkMask = n - 1;
+        this.producerChunk = this.consumerChunk = new Chunk(0L, n);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     * As the queue is unbounded, this method will never return
+     * {@code false}.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link java.util.Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        Chunk c = producerChunk;           // must be read before claiming
+        long p = U.getAndAddLong(this, PINDEX, 1L);
+        long id = p >>> chunkShift;
+        while (c.id < id) {
+            Chunk n = c.next;
+            if (n == null) {
+                Chunk m = new Chunk(c.id + 1L, chunkMask + 1);
+                n = c.casNext(null, m) ? m : c.next;
+            }
+            c = n;
+        }
+        for (Chunk pc; (pc = producerChunk).id < id; ) {
+            if (U.compareAndSwapObject(this, PCHUNK, pc, c))
+                break;
+        }
+        U.putOrderedObject(c.slots, slotOffset(p), e);
+        return true;
+    }
+
+    /**
+     * Returns the Unsafe offset of the slot for the given index.
+     */
+    private long slotOffset(long index) {
+        return ((long)((int)index & chunkMask) << ASHIFT) + ABASE;
+    }
+
+    /**
+     * Returns the consumer's chunk for index c, moving to the next
+     * chunk if needed, or null if the next chunk is not yet linked.
+     */
+    private Chunk consumerChunkFor(long c) {
+        Chunk k = consumerChunk;
+        if (k.id != (c >>> chunkShift)) {
+            if ((k = k.next) == null)
+                return null;
+            consumerChunk = k;
+        }
+        return k;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns
+     * {@code null} if this queue is empty.  Must only be called by
+     * the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long c = consumerIndex;
+        Chunk k;
+        Object e;
+        long off = slotOffset(c);
+        if ((k = consumerChunkFor(c)) == null ||
+            (e = U.getObjectVolatile(k.slots, off)) == null) {
+            if (c >= producerIndex)
+                return null;
+            while ((k = consumerChunkFor(c)) == null)
+                Thread.yield();
+            while ((e = U.getObjectVolatile(k.slots, off)) == null)
+                Thread.yield();
+        }
+        k.slots[(int)c & chunkMask] = null;
+        U.putOrderedLong(this, CINDEX, c + 1L);
+        return (E)e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty.  Must only be
+     * called by the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long c = consumerIndex;
+        Chunk k;
+        Object e;
+        long off = slotOffset(c);
+        if ((k = consumerChunkFor(c)) == null ||
+            (e = U.getObjectVolatile(k.slots, off)) == null) {
+            if (c >= producerIndex)
+                return null;
+            while ((k = consumerChunkFor(c)) == null)
+                Thread.yield();
+            while ((e = U.getObjectVolatile(k.slots, off)) == null)
+                Thread.yield();
+        }
+        return (E)e;
+    }
+
+    /**
+     * Removes at most the given number of available elements from
+     * this queue, passing each in turn to the given action.  Unlike
+     * {@link #poll}, this method never reads the shared producer
+     * index and never waits for a producer that has claimed but not
+     * yet filled a slot; it stops at the first such slot instead.
+     * Each element is removed before the action is invoked on it; if
+     * the action throws an exception, that element is lost and the
+     * remaining elements stay in the queue.  Must only be called by
+     * the consumer thread.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to transfer
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        long c = consumerIndex;
+        int n = 0;
+        Chunk k;
+        Object e;
+        while (n < limit && (k = consumerChunkFor(c)) != null &&
+               (e = U.getObjectVolatile(k.slots, slotOffset(c))) != null) {
+            k.slots[(int)c & chunkMask] = null;
+            U.putOrderedLong(this, CINDEX, ++c);
+            ++n;
+            action.accept((E)e);
+        }
+        return n;
+    }
+
+    /**
+     * Removes all available elements from this queue, passing each
+     * in turn to the given action.  Equivalent to {@link
+     * #drain(Consumer, int) drain(action, Integer.MAX_VALUE)}.
+     *
+     * @param action the action to perform on each element
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     */
+    public int drain(Consumer<? super E> action) {
+        return drain(action, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of elements in this queue, including those
+     * whose slots have been claimed but not yet filled.  If this
+     * queue contains more than {@code Integer.MAX_VALUE} elements,
+     * returns {@code Integer.MAX_VALUE}.  The value is exact only if
+     * the queue is not concurrently in use.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long after = consumerIndex;
+        for (;;) {
+            long before = after;
+            long p = producerIndex;
+            after = consumerIndex;
+            if (before == after) {
+                long n = p - after;
+                return (n <= 0L) ? 0 :
+                    (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex >= producerIndex;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>
+     * and does not support removal.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private Chunk chunk;
+        private long index;
+        private final long end;
+        private E nextItem;
+
+        Itr() {
+            index = consumerIndex;
+            chunk = consumerChunk;   // at or before the chunk of index
+            end = producerIndex;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            Chunk k = chunk;
+            E e = null;
+            while (e == null && k != null && index < end) {
+                long id = index >>> chunkShift;
+                if (k.id < id)
+                    k = k.next;
+                else if (k.id > id)
+                    index = k.id << chunkShift;
+                else
+                    e = (E)U.getObjectVolatile(k.slots, slotOffset(index++));
+            }
+            chunk = k;
+            nextItem = e;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        public E next() {
+            E e = nextItem;
+            if (e == null)
+                throw new NoSuchElementException();
+            advance();
+            return e;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long PINDEX;
+    private static final long PCHUNK;
+    private static final long CINDEX;
+    private static final long NEXT;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MpscLinkedArrayQueue.class;
+            PINDEX = U.objectFieldOffset
+                (k.getDeclaredField("producerIndex"));
+            PCHUNK = U.objectFieldOffset
+                (k.getDeclaredField("producerChunk"));
+            CINDEX = U.objectFieldOffset
+                (k.getDeclaredField("consumerIndex"));
+            NEXT = U.objectFieldOffset
+                (Chunk.class.getDeclaredField("next"));
+            Class<?> ak = Object[].class;
+            ABASE = U.arrayBaseOffset(ak);
+            int scale = U.arrayIndexScale(ak);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
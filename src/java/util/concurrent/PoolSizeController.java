@@ -0,0 +1,441 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+/**
+ * A controller that adjusts the size of a {@link ThreadPoolExecutor}
+ * online, within given bounds, to keep the time tasks wait in its
+ * queue below a target with as few threads as do not reduce its
+ * throughput. Each time it is {@linkplain #run run}, typically
+ * periodically by a {@link ScheduledExecutorService}, the controller
+ * samples the pool's task completion and submission rates, the number
+ * of queued tasks
+ * (from which the time a newly queued task will wait is estimated),
+ * and the fraction of active threads that are blocked, waiting or
+ * sleeping inside tasks. It then decides on a new core pool size:
+ * <ul>
+ * <li>If the last change reduced throughput relative to the offered
+ * load, that is, the number of tasks completed per task submitted, it
+ * is undone. Raw throughput is not compared, since it also falls
+ * when fewer tasks are submitted, which is no fault of the change.
+ * <li>Otherwise, if the estimated queue wait exceeds the {@linkplain
+ * #getTargetQueueWait target}, the pool grows, unless the last
+ * decision undid a growth. It does not grow beyond the number of
+ * processors while tasks rarely block, since more threads then only
+ * add contention.
+ * <li>Otherwise the pool shrinks, toward the number of active threads
+ * if some threads are idle, unless the last decision undid a shrink.
+ * </ul>
+ *
+ * <p>The controller sets the core pool size, raising the maximum
+ * pool size if needed, so it is effective for pools using unbounded
+ * queues, which otherwise never grow beyond their core size. Each
+ * decision, including decisions to keep the current size, is reported
+ * to the {@linkplain #setListener listener} if one is set, as a
+ * {@link Decision}. Sample usage:
+ *
+ * <pre> {@code
+ * ThreadPoolExecutor pool = new ThreadPoolExecutor(
+ *     4, 4, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+ * PoolSizeController controller = new PoolSizeController(pool, 2, 64);
+ * controller.setListener(d -> log.fine(d.toString()));
+ * scheduler.scheduleWithFixedDelay(controller, 1, 1, TimeUnit.SECONDS);}</pre>
+ *
+ * <p>The sampling period should be long enough to complete many
+ * tasks, so that successive throughput measurements are not dominated
+ * by noise. The controller does not stop by itself; cancel its
+ * scheduled execution when the pool is shut down.
+ *
+ * @since 1.8
+ */
+public class PoolSizeController implements Runnable {
+
+    /**
+     * Relative change in throughput regarded as noise.
+     */
+    static final double NOISE = 0.05;
+
+    /**
+     * Fraction of active threads that must be blocked for the pool to
+     * grow beyond the number of processors, or to grow when
+     * throughput is unchanged.
+     */
+    static final double BLOCKED_THRESHOLD = 0.25;
+
+    /** Number of CPUS, to place bound on growth of CPU-bound pools */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** The default target queue wait, in milliseconds. */
+    static final long DEFAULT_TARGET_QUEUE_WAIT_MILLIS = 100L;
+
+    /**
+     * The reasons for decisions of a {@code PoolSizeController}.
+     *
+     * @since 1.8
+     */
+    public enum Reason {
+        /** The first sample, establishing a baseline. */
+        BASELINE,
+        /** Tasks are not queuing and some threads are idle. */
+        IDLE,
+        /**
+         * Throughput relative to offered load fell after the last
+         * change, which is undone.
+         */
+        DEGRADED,
+        /** The estimated queue wait exceeds the target. */
+        QUEUE_WAIT,
+        /** The estimated queue wait is within the target. */
+        WITHIN_TARGET,
+        /** Growth was suppressed because tasks rarely block. */
+        CPU_BOUND
+    }
+
+    /**
+     * A decision of a {@code PoolSizeController}, with the
+     * measurements it was based on.
+     *
+     * @since 1.8
+     */
+    public static final class Decision {
+        final int previousPoolSize;
+        final int poolSize;
+        final Reason reason;
+        final double throughput;
+        final double submissionRate;
+        final int queuedTaskCount;
+        final long queueWaitNanos;
+        final double blockedRatio;
+
+        Decision(int previousPoolSize, int poolSize, Reason reason,
+                 double throughput, double submissionRate,
+                 int queuedTaskCount, long queueWaitNanos,
+                 double blockedRatio) {
+            this.previousPoolSize = previousPoolSize;
+            this.poolSize = poolSize;
+            this.reason = reason;
+            this.throughput = throughput;
+            this.submissionRate = submissionRate;
+            this.queuedTaskCount = queuedTaskCount;
+            this.queueWaitNanos = queueWaitNanos;
+            this.blockedRatio = blockedRatio;
+        }
+
+        /**
+         * Returns the core pool size before the decision.
+         *
+         * @return the previous core pool size
+         */
+        public int getPreviousPoolSize() { return previousPoolSize; }
+
+        /**
+         * Returns the core pool size chosen.
+         *
+         * @return the new core pool size
+         */
+        public int getPoolSize() { return poolSize; }
+
+        /**
+         * Returns the reason for the decision.
+         *
+         * @return the reason
+         */
+        public Reason getReason() { return reason; }
+
+        /**
+         * Returns the number of tasks completed per second since the
+         * previous sample.
+         *
+         * @return the throughput
+         */
+        public double getThroughput() { return throughput; }
+
+        /**
+         * Returns the number of tasks submitted per second since the
+         * previous sample, that is, the offered load.
+         *
+         * @return the submission rate
+         */
+        public double getSubmissionRate() { return submissionRate; }
+
+        /**
+         * Returns the number of tasks in the queue when sampled.
+         *
+         * @return the number of queued tasks
+         */
+        public int getQueuedTaskCount() { return queuedTaskCount; }
+
+        /**
+         * Returns an estimate of the time a task submitted when
+         * sampled will wait in the queue, in nanoseconds, based on
+         * the number of queued tasks and the throughput.
+         *
+         * @return the estimated queue wait
+         */
+        public long getQueueWaitNanos() { return queueWaitNanos; }
+
+        /**
+         * Returns the fraction of threads executing tasks that were
+         * blocked, waiting or sleeping when sampled.
+         *
+         * @return the blocked ratio, between zero and one
+         */
+        public double getBlockedRatio() { return blockedRatio; }
+
+        /**
+         * Returns a string describing the decision.
+         *
+         * @return a string describing the decision
+         */
+        public String toString() {
+            return reason + ": " + previousPoolSize + " -> " + poolSize +
+                " [throughput = " + (long)throughput +
+                "/s, submitted = " + (long)submissionRate +
+                "/s, queued = " + queuedTaskCount +
+                ", queue wait = " + TimeUnit.NANOSECONDS.toMillis(queueWaitNanos) +
+                "ms, blocked = " + (int)(blockedRatio * 100.0) + "%]";
+        }
+    }
+
+    /**
+     * A listener for decisions of a {@code PoolSizeController}.
+     *
+     * @since 1.8
+     */
+    public interface Listener {
+        /**
+         * Invoked by the thread running the controller after each
+         * decision has been applied.
+         *
+         * @param decision the decision
+         */
+        void onDecision(Decision decision);
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long targetQueueWaitNanos;
+    private volatile Listener listener;
+
+    // State of the previous sample, guarded by this
+    private boolean started;
+    private long lastTime;
+    private long lastCompleted;
+    private long lastSubmitted;
+    private double lastServedRatio;
+    private int lastSize;
+    private Reason lastReason;
+
+    /**
+     * Creates a controller for the given pool, with a target queue
+     * wait of 100 milliseconds.
+     *
+     * @param pool the pool
+     * @param minPoolSize the smallest core pool size to set
+     * @param maxPoolSize the largest core pool size to set
+     * @throws NullPointerException if pool is null
+     * @throws IllegalArgumentException if minPoolSize is less than one
+     *         or maxPoolSize is less than minPoolSize
+     */
+    public PoolSizeController(ThreadPoolExecutor pool,
+                              int minPoolSize, int maxPoolSize) {
+        this(pool, minPoolSize, maxPoolSize,
+             DEFAULT_TARGET_QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a controller for the given pool, with the given target
+     * queue wait.
+     *
+     * @param pool the pool
+     * @param minPoolSize the smallest core pool size to set
+     * @param maxPoolSize the largest core pool size to set
+     * @param targetQueueWait the longest estimated time a task may
+     *        wait in the queue before the pool grows
+     * @param unit the time unit of the targetQueueWait argument
+     * @throws NullPointerException if pool or unit is null
+     * @throws IllegalArgumentException if minPoolSize is less than one,
+     *         maxPoolSize is less than minPoolSize, or targetQueueWait
+     *         is negative
+     */
+    public PoolSizeController(ThreadPoolExecutor pool,
+                              int minPoolSize, int maxPoolSize,
+                              long targetQueueWait, TimeUnit unit) {
+        if (pool == null || unit == null)
+            throw new NullPointerException();
+        if (minPoolSize < 1 || maxPoolSize < minPoolSize ||
+            targetQueueWait < 0L)
+            throw new IllegalArgumentException();
+        this.pool = pool;
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.targetQueueWaitNanos = unit.toNanos(targetQueueWait);
+    }
+
+    /**
+     * Sets the listener to be informed of each decision, replacing
+     * any previous one. Exceptions thrown by the listener are
+     * propagated to the caller of {@link #run}.
+     *
+     * @param listener the listener, or {@code null} for none
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the listener, or {@code null} if none.
+     *
+     * @return the listener, or {@code null} if none
+     */
+    public Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns the target queue wait in the given time unit.
+     *
+     * @param unit the desired time unit
+     * @return the target queue wait
+     */
+    public long getTargetQueueWait(TimeUnit unit) {
+        return unit.convert(targetQueueWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the pool controlled.
+     *
+     * @return the pool
+     */
+    public ThreadPoolExecutor getPool() {
+        return pool;
+    }
+
+    /**
+     * Samples the pool and adjusts its size, as described in the
+     * class documentation. Does nothing if the pool has been shut
+     * down.
+     */
+    public synchronized void run() {
+        final ThreadPoolExecutor p = pool;
+        if (p.isShutdown())
+            return;
+        long now = System.nanoTime();
+        long completed = p.getCompletedTaskCount();
+        long submitted = p.getTaskCount();
+        int size = p.getCorePoolSize();
+        int queued = p.getQueue().size();
+        int active = p.getActiveCount();
+        int blocked = p.getBlockedActiveCount();
+        double ratio = (active > 0) ? (double)blocked / active : 0.0;
+        double tput = 0.0, offered = 0.0;
+        double served = Double.NaN;   // completions per submission
+        long wait = 0L;
+        int target = size;
+        Reason reason;
+        if (!started) {
+            started = true;
+            reason = Reason.BASELINE;
+            if (size < minPoolSize)
+                target = minPoolSize;
+            else if (size > maxPoolSize)
+                target = maxPoolSize;
+        }
+        else {
+            long elapsed = Math.max(now - lastTime, 1L);
+            long done = completed - lastCompleted;
+            long arrived = submitted - lastSubmitted;
+            tput = done * 1e9 / elapsed;
+            offered = arrived * 1e9 / elapsed;
+            if (arrived > 0L)     // above one only while draining
+                served = Math.min(1.0, (double)done / arrived);
+            if (queued > 0)
+                wait = (tput > 0.0) ? (long)(queued * 1e9 / tput) :
+                    Long.MAX_VALUE;
+            int step = Math.max(1, size >>> 3);
+            // Compare throughput normalized by offered load, so that
+            // a drop in submissions is not taken for a degradation;
+            // NaN (nothing submitted) in either sample compares false
+            if (size != lastSize &&
+                served < lastServedRatio * (1.0 - NOISE)) {
+                reason = Reason.DEGRADED;     // undo the last change
+                target = lastSize;
+            }
+            else if (wait > targetQueueWaitNanos) {
+                reason = Reason.QUEUE_WAIT;
+                // keep the size if the last decision undid a growth
+                if (lastReason != Reason.DEGRADED || lastSize < size)
+                    target = size + step;
+                if (target > size && size >= NCPU &&
+                    ratio < BLOCKED_THRESHOLD) {
+                    reason = Reason.CPU_BOUND;
+                    target = size;
+                }
+            }
+            else if (queued == 0 && active < size) {
+                reason = Reason.IDLE;
+                target = Math.max(active, size - step);
+            }
+            else {
+                reason = Reason.WITHIN_TARGET;
+                // keep the size if the last decision undid a shrink
+                if (lastReason != Reason.DEGRADED || lastSize > size)
+                    target = size - step;
+            }
+            target = Math.max(minPoolSize, Math.min(maxPoolSize, target));
+        }
+        lastTime = now;
+        lastCompleted = completed;
+        lastSubmitted = submitted;
+        lastServedRatio = served;
+        lastSize = size;
+        lastReason = reason;
+        if (target != size) {
+            if (target > p.getMaximumPoolSize())
+                p.setMaximumPoolSize(target);
+            p.setCorePoolSize(target);
+        }
+        Listener l;
+        if ((l = listener) != null)
+            l.onDecision(new Decision(size, target, reason, tput, offered,
+                                      queued, wait, ratio));
+    }
+
+    /**
+     * Returns a string identifying this controller, as well as its
+     * bounds and the current size of its pool.
+     *
+     * @return a string identifying this controller
+     */
+    public String toString() {
+        return super.toString() +
+            "[bounds = " + minPoolSize + ".." + maxPoolSize +
+            ", target queue wait = " +
+            TimeUnit.NANOSECONDS.toMillis(targetQueueWaitNanos) + "ms" +
+            ", pool size = " + pool.getCorePoolSize() + "]";
+    }
+}
@@ -170,6 +170,10 @@ public class Semaphore implements java.io.Serializable {
             setState(permits);
         }
 
+        final void enableAdaptiveSpinning() {
+            setAdaptiveSpinning(true);
+        }
+
         final int getPermits() {
             return getState();
         }
@@ -283,6 +287,30 @@ public class Semaphore implements java.io.Serializable {
         sync = fair ? new FairSync(permits) : new NonfairSync(permits);
     }
 
+    /**
+     * Creates a {@code Semaphore} with the given number of permits,
+     * fairness setting and spinning setting. With adaptive spinning,
+     * a thread finding no permits available spins briefly before
+     * parking, for a period learned from recent spins, which helps
+     * when permits are held only for very short periods. See {@link
+     * java.util.concurrent.locks.AbstractQueuedSynchronizer#setAdaptiveSpinning}.
+     *
+     * @param permits the initial number of permits available.
+     *        This value may be negative, in which case releases
+     *        must occur before any acquires will be granted.
+     * @param fair {@code true} if this semaphore will guarantee
+     *        first-in first-out granting of permits under contention,
+     *        else {@code false}
+     * @param adaptiveSpinning {@code true} if threads should spin
+     *        adaptively before parking
+     * @since 1.8
+     */
+    public Semaphore(int permits, boolean fair, boolean adaptiveSpinning) {
+        this(permits, fair);
+        if (adaptiveSpinning)
+            sync.enableAdaptiveSpinning();
+    }
+
     /**
      * Acquires a permit from this semaphore, blocking until one is
      * available, or the thread is {@linkplain Thread#interrupt interrupted}.
@@ -698,6 +726,20 @@ public class Semaphore implements java.io.Serializable {
         return sync.getQueuedThreads();
     }
 
+    /**
+     * Returns a snapshot of the adaptive spinning statistics of
+     * threads acquiring a permit, or {@code null} if adaptive
+     * spinning is disabled. This method is designed for use in
+     * monitoring of the system state, not for synchronization
+     * control.
+     *
+     * @return the statistics, or {@code null} if not spinning
+     * @since 1.8
+     */
+    public AbstractQueuedSynchronizer.SpinStatistics getAdaptiveSpinStatistics() {
+        return sync.getAdaptiveSpinStatistics();
+    }
+
     /**
      * Returns a string identifying this semaphore, as well as its state.
      * The state, in brackets, includes the String {@code "Permits ="}
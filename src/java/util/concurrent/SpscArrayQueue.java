@@ -0,0 +1,374 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A bounded {@linkplain java.util.Queue queue} backed by a circular array that
+ * supports exactly one producer thread and one consumer thread at a
+ * time.  This queue orders elements FIFO (first-in-first-out).  Unlike
+ * {@link ConcurrentLinkedQueue} or {@link ArrayBlockingQueue}, neither
+ * end of the queue performs any atomic read-modify-write operation:
+ * the producer publishes elements by an ordered write of its index
+ * (as in {@link java.util.concurrent.atomic.AtomicLong#lazySet}) and
+ * the consumer releases slots the same way.  This makes the class an
+ * appropriate choice for hand-off between two fixed pipeline stages,
+ * for example a request thread feeding a dedicated I/O writer.
+ *
+ * <p>The insertion methods ({@code offer}, {@code add}) may only be
+ * invoked by the single producer, and the removal and examination
+ * methods ({@code poll}, {@code peek}, {@code remove}, {@code drain},
+ * {@code clear}) only by the single consumer.  Results are undefined
+ * if these restrictions are violated.  The methods {@code size} and
+ * {@code isEmpty} may be called from any thread, but are only
+ * estimates when both ends are active.
+ *
+ * <p>Like most other concurrent collection implementations, this class
+ * does not permit the use of {@code null} elements.  Iterators are
+ * <i>weakly consistent</i>, are intended for monitoring only, and do
+ * not support {@link Iterator#remove}.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code SpscArrayQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code SpscArrayQueue} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @see SpscLinkedArrayQueue
+ * @see MpscArrayQueue
+ * @param <E> the type of elements held in this collection
+ */
+public class SpscArrayQueue<E> extends AbstractQueue<E> {
+
+    /*
+     * The algorithm is the classic Lamport circular buffer with
+     * cached indices (also known as FastFlow-style caching): the
+     * producer keeps a private lower bound on how far it may run
+     * ahead of the consumer (producerLimit) and only re-reads the
+     * consumer index when that bound is exhausted; symmetrically the
+     * consumer caches the last observed producer index.  Each side
+     * therefore touches the other side's cache line only once per
+     * "batch" of free/available slots rather than once per element.
+     *
+     * Elements are written with plain stores and published by the
+     * ordered (release) store of producerIndex; the consumer reads
+     * producerIndex with a volatile load before reading the slot.
+     * Slots are cleared by the consumer before the ordered store of
+     * consumerIndex, so the producer never observes a stale element.
+     *
+     * Producer and consumer fields are placed in separate
+     * @Contended groups so that the two threads do not false-share.
+     */
+
+    /** The array of slots; its length is a power of two */
+    final Object[] buffer;
+
+    /** buffer.length - 1 */
+    final int mask;
+
+    /** The maximum number of elements, at most buffer.length */
+    final int capacity;
+
+    /** Next index to be written; written only by the producer */
+    @sun.misc.Contended("p") private volatile long producerIndex;
+
+    /** Producer-local bound: producerIndex may advance up to this */
+    @sun.misc.Contended("p") private long producerLimit;
+
+    /** Next index to be read; written only by the consumer */
+    @sun.misc.Contended("c") private volatile long consumerIndex;
+
+    /** Consumer-local copy of the last observed producerIndex */
+    @sun.misc.Contended("c") private long consumerLimit;
+
+    /**
+     * Creates a {@code SpscArrayQueue} with the given (fixed)
+     * capacity.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public SpscArrayQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException();
+        int n = tableSizeFor(capacity);
+        this.buffer = new Object[n];
+        this.mask = n - 1;
+        this.capacity = capacity;
+        this.producerLimit = capacity;
+    }
+
+    /**
+     * Returns a power of two size for the given target capacity.
+     */
+    static int tableSizeFor(int c) {
+        int n = (c <= 1) ? 1 : Integer.highestOneBit(c - 1) << 1;
+        if (n <= 0)
+            throw new IllegalArgumentException("capacity too large");
+        return n;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it
+     * is possible to do so without exceeding the queue's capacity.
+     * Must only be called by the producer thread.
+     *
+     * @param e the element to add
+     * @return {@code true} if the element was added to this queue,
+     *         else {@code false}
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long p = producerIndex;
+        if (p >= producerLimit) {
+            long limit = consumerIndex + capacity;
+            if (p >= limit)
+                return false;
+            producerLimit = limit;
+        }
+        buffer[(int)p & mask] = e;
+        U.putOrderedLong(this, PINDEX, p + 1L);
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns
+     * {@code null} if this queue is empty.  Must only be called by
+     * the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long c = consumerIndex;
+        if (c >= consumerLimit) {
+            long limit = producerIndex;
+            if (c >= limit)
+                return null;
+            consumerLimit = limit;
+        }
+        Object[] a = buffer;
+        int i = (int)c & mask;
+        E e = (E)a[i];
+        a[i] = null;
+        U.putOrderedLong(this, CINDEX, c + 1L);
+        return e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty.  Must only be
+     * called by the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long c = consumerIndex;
+        if (c >= consumerLimit) {
+            long limit = producerIndex;
+            if (c >= limit)
+                return null;
+            consumerLimit = limit;
+        }
+        return (E)buffer[(int)c & mask];
+    }
+
+    /**
+     * Removes at most the given number of available elements from
+     * this queue, passing each in turn to the given action.  The
+     * producer index is read once per batch rather than once per
+     * element, so this is more efficient than repeated calls to
+     * {@link #poll}.  Each element is removed before the action is
+     * invoked on it; if the action throws an exception, that element
+     * is lost and the remaining elements stay in the queue.  Must
+     * only be called by the consumer thread.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to transfer
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        Object[] a = buffer;
+        int m = mask;
+        long c = consumerIndex;
+        long avail = (consumerLimit = producerIndex) - c;
+        int n = (avail < limit) ? (int)avail : limit;
+        for (int k = 0; k < n; ++k) {
+            int i = (int)c & m;
+            E e = (E)a[i];
+            a[i] = null;
+            U.putOrderedLong(this, CINDEX, ++c);
+            action.accept(e);
+        }
+        return n;
+    }
+
+    /**
+     * Removes all available elements from this queue, passing each
+     * in turn to the given action.  Equivalent to {@link
+     * #drain(Consumer, int) drain(action, capacity)}.
+     *
+     * @param action the action to perform on each element
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     */
+    public int drain(Consumer<? super E> action) {
+        return drain(action, capacity);
+    }
+
+    /**
+     * Returns the number of elements in this queue.  The value is
+     * exact only if neither end is concurrently active.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long after = consumerIndex;
+        for (;;) {
+            long before = after;
+            long p = producerIndex;
+            after = consumerIndex;
+            if (before == after) {
+                long n = p - after;
+                return (n <= 0L) ? 0 : (n >= capacity) ? capacity : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex >= producerIndex;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * accept without exceeding its capacity.  As with {@link #size},
+     * the value is only an estimate when either end is active.
+     *
+     * @return the remaining capacity
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Returns the capacity this queue was created with.
+     *
+     * @return the capacity of this queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>
+     * and does not support removal.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private long index;
+        private final long end;
+        private E nextItem;
+
+        Itr() {
+            index = consumerIndex;
+            end = producerIndex;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            Object[] a = buffer;
+            E e = null;
+            while (e == null && index < end) {
+                long c = consumerIndex;
+                if (index < c)
+                    index = c;         // skip already consumed slots
+                else
+                    e = (E)a[(int)index++ & mask];
+            }
+            nextItem = e;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        public E next() {
+            E e = nextItem;
+            if (e == null)
+                throw new NoSuchElementException();
+            advance();
+            return e;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long PINDEX;
+    private static final long CINDEX;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = SpscArrayQueue.class;
+            PINDEX = U.objectFieldOffset
+                (k.getDeclaredField("producerIndex"));
+            CINDEX = U.objectFieldOffset
+                (k.getDeclaredField("consumerIndex"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
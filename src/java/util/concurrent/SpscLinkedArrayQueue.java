@@ -0,0 +1,369 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * An unbounded {@linkplain java.util.Queue queue} that supports
+ * exactly one producer thread and one consumer thread at a time.
+ * This queue orders elements FIFO (first-in-first-out).  Elements are
+ * stored in a linked list of fixed-size array chunks, so that
+ * insertion allocates only once per chunk rather than once per
+ * element (as {@link ConcurrentLinkedQueue} does), and neither end
+ * performs any atomic read-modify-write operation.
+ *
+ * <p>The insertion methods ({@code offer}, {@code add}) may only be
+ * invoked by the single producer, and the removal and examination
+ * methods ({@code poll}, {@code peek}, {@code remove}, {@code drain},
+ * {@code clear}) only by the single consumer.  Results are undefined
+ * if these restrictions are violated.  The methods {@code size} and
+ * {@code isEmpty} may be called from any thread, but are only
+ * estimates when both ends are active.
+ *
+ * <p>This class does not permit the use of {@code null} elements.
+ * Iterators are <i>weakly consistent</i>, are intended for monitoring
+ * only, and do not support {@link Iterator#remove}.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code SpscLinkedArrayQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code SpscLinkedArrayQueue} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @see SpscArrayQueue
+ * @see MpscLinkedArrayQueue
+ * @param <E> the type of elements held in this collection
+ */
+public class SpscLinkedArrayQueue<E> extends AbstractQueue<E> {
+
+    /*
+     * Each chunk is an Object[] of length chunkSize + 1: the first
+     * chunkSize slots hold elements and the last slot holds the link
+     * to the next chunk.  Since chunks are never reused, each slot is
+     * written exactly once by the producer, so (unlike
+     * SpscArrayQueue) there is no need for the producer to ever look
+     * at the consumer index.
+     *
+     * Element i lives at offset (i & chunkMask) of its chunk.  When
+     * the producer reaches offset 0 of a new chunk (i != 0) it
+     * allocates the chunk and stores the link into the old one; both
+     * the link and the element are published by the subsequent
+     * ordered store of producerIndex.  The consumer, on reaching
+     * offset 0 (i != 0), follows and clears the link before reading
+     * the element, so fully consumed chunks become garbage at once.
+     */
+
+    /** The default number of elements per chunk */
+    static final int DEFAULT_CHUNK_SIZE = 64;
+
+    /** chunkSize - 1; chunkSize is a power of two */
+    final int chunkMask;
+
+    /** The chunk currently being filled; accessed only by the producer */
+    @sun.misc.Contended("p") private Object[] producerBuffer;
+
+    /** Next index to be written; written only by the producer */
+    @sun.misc.Contended("p") private volatile long producerIndex;
+
+    /** The chunk currently being drained; accessed only by the consumer */
+    @sun.misc.Contended("c") private Object[] consumerBuffer;
+
+    /** Next index to be read; written only by the consumer */
+    @sun.misc.Contended("c") private volatile long consumerIndex;
+
+    /**
+     * Creates a {@code SpscLinkedArrayQueue} with the default chunk
+     * size.
+     */
+    public SpscLinkedArrayQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a {@code SpscLinkedArrayQueue} that allocates storage
+     * in chunks of (at least) the given number of elements.
+     *
+     * @param chunkSize the number of elements per chunk, rounded up
+     *        to a power of two
+     * @throws IllegalArgumentException if {@code chunkSize < 2}
+     */
+    public SpscLinkedArrayQueue(int chunkSize) {
+        if (chunkSize < 2)
+            throw new IllegalArgumentException();
+        int n = SpscArrayQueue.tableSizeFor(chunkSize);
+        this.chunkMask = n - 1;
+        this.producerBuffer = this.consumerBuffer = new Object[n + 1];
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     * As the queue is unbounded, this method will never return
+     * {@code false}.  Must only be called by the producer thread.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link java.util.Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long p = producerIndex;
+        int m = chunkMask;
+        int i = (int)p & m;
+        Object[] a = producerBuffer;
+        if (i == 0 && p != 0L) {
+            Object[] n = new Object[m + 2];
+            a[m + 1] = n;
+            producerBuffer = a = n;
+        }
+        a[i] = e;
+        U.putOrderedLong(this, PINDEX, p + 1L);
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns
+     * {@code null} if this queue is empty.  Must only be called by
+     * the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long c = consumerIndex;
+        if (c >= producerIndex)
+            return null;
+        int m = chunkMask;
+        int i = (int)c & m;
+        Object[] a = consumerBuffer;
+        if (i == 0 && c != 0L)
+            a = nextConsumerBuffer(a, m);
+        E e = (E)a[i];
+        a[i] = null;
+        U.putOrderedLong(this, CINDEX, c + 1L);
+        return e;
+    }
+
+    /**
+     * Moves the consumer to the chunk linked from the given one,
+     * unlinking it for the sake of GC.
+     */
+    private Object[] nextConsumerBuffer(Object[] a, int m) {
+        Object[] n = (Object[])a[m + 1];
+        a[m + 1] = null;
+        consumerBuffer = n;
+        return n;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty.  Must only be
+     * called by the consumer thread.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long c = consumerIndex;
+        if (c >= producerIndex)
+            return null;
+        int m = chunkMask;
+        int i = (int)c & m;
+        Object[] a = consumerBuffer;
+        if (i == 0 && c != 0L)
+            a = (Object[])a[m + 1];
+        return (E)a[i];
+    }
+
+    /**
+     * Removes at most the given number of available elements from
+     * this queue, passing each in turn to the given action.  The
+     * producer index is read once per batch rather than once per
+     * element, so this is more efficient than repeated calls to
+     * {@link #poll}.  Each element is removed before the action is
+     * invoked on it; if the action throws an exception, that element
+     * is lost and the remaining elements stay in the queue.  Must
+     * only be called by the consumer thread.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to transfer
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        int m = chunkMask;
+        long c = consumerIndex;
+        long avail = producerIndex - c;
+        int n = (avail < limit) ? (int)avail : limit;
+        Object[] a = consumerBuffer;
+        for (int k = 0; k < n; ++k) {
+            int i = (int)c & m;
+            if (i == 0 && c != 0L)
+                a = nextConsumerBuffer(a, m);
+            E e = (E)a[i];
+            a[i] = null;
+            U.putOrderedLong(this, CINDEX, ++c);
+            action.accept(e);
+        }
+        return n;
+    }
+
+    /**
+     * Removes all available elements from this queue, passing each
+     * in turn to the given action.  Equivalent to {@link
+     * #drain(Consumer, int) drain(action, Integer.MAX_VALUE)}.
+     *
+     * @param action the action to perform on each element
+     * @return the number of elements transferred
+     * @throws NullPointerException if the specified action is null
+     */
+    public int drain(Consumer<? super E> action) {
+        return drain(action, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of elements in this queue.  If this queue
+     * contains more than {@code Integer.MAX_VALUE} elements, returns
+     * {@code Integer.MAX_VALUE}.  The value is exact only if neither
+     * end is concurrently active.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long after = consumerIndex;
+        for (;;) {
+            long before = after;
+            long p = producerIndex;
+            after = consumerIndex;
+            if (before == after) {
+                long n = p - after;
+                return (n <= 0L) ? 0 :
+                    (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex >= producerIndex;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>,
+     * and does not support removal.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private Object[] chunk;
+        private long chunkBase;        // index of first slot of chunk
+        private long index;
+        private final long end;
+        private E nextItem;
+
+        Itr() {
+            int m = chunkMask;
+            long c = consumerIndex;
+            chunk = consumerBuffer;
+            // The consumer only moves to a new chunk when it polls
+            // the first element of that chunk
+            chunkBase = ((c & m) == 0L && c != 0L) ? c - (m + 1) : c & ~(long)m;
+            index = c;
+            end = producerIndex;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            int m = chunkMask;
+            Object[] a = chunk;
+            E e = null;
+            while (e == null && a != null && index < end) {
+                if (index - chunkBase > m) {
+                    a = (Object[])a[m + 1];  // null if unlinked by consumer
+                    chunkBase += m + 1;
+                }
+                else
+                    e = (E)a[(int)index++ & m];
+            }
+            chunk = a;
+            nextItem = e;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        public E next() {
+            E e = nextItem;
+            if (e == null)
+                throw new NoSuchElementException();
+            advance();
+            return e;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long PINDEX;
+    private static final long CINDEX;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = SpscLinkedArrayQueue.class;
+            PINDEX = U.objectFieldOffset
+                (k.getDeclaredField("producerIndex"));
+            CINDEX = U.objectFieldOffset
+                (k.getDeclaredField("consumerIndex"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,1194 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Flow.Publisher} that asynchronously issues submitted
+ * (non-null) items to current subscribers until it is closed.  Each
+ * current subscriber receives newly submitted items in the same order
+ * unless drops or exceptions are encountered.  Using a
+ * SubmissionPublisher allows item generators to act as compliant <a
+ * href="http://www.reactive-streams.org/"> reactive-streams</a>
+ * Publishers relying on drop handling and/or blocking for flow
+ * control.
+ *
+ * <p>A SubmissionPublisher uses the {@link Executor} supplied in its
+ * constructor for delivery to subscribers. The best choice of
+ * Executor depends on expected usage. If the generator(s) of
+ * submitted items run in separate threads, and the number of
+ * subscribers can be estimated, consider using a {@link
+ * Executors#newFixedThreadPool}. Otherwise consider using the
+ * default, normally the {@link ForkJoinPool#commonPool}.
+ *
+ * <p>Each subscriber has a bounded buffer of submitted items that
+ * have not yet been consumed, with a capacity fixed at construction
+ * of the publisher, rounded up to a power of two. Delivery to a
+ * subscriber is performed by a single task at a time, which is
+ * submitted to the executor only when the subscriber becomes
+ * eligible for delivery, and which then issues as many buffered
+ * items as the subscriber has {@linkplain Flow.Subscription#request
+ * requested} before ending, so that items submitted in bursts are
+ * delivered in batches rather than with one executor handoff each.
+ *
+ * <p>Publication methods support different policies about what to
+ * do when buffers are saturated. Method {@link #submit(Object)
+ * submit} blocks until resources are available. This is simplest,
+ * but least responsive.  The {@code offer} methods may drop items
+ * (either immediately or with bounded timeout), but provide an
+ * opportunity to interpose a handler and then retry, which suits
+ * lossy stages in which recent items matter more than complete
+ * ones.
+ *
+ * <p>If any Subscriber method throws an exception, its subscription
+ * is cancelled.  If a handler is supplied as a constructor argument,
+ * it is invoked before cancellation upon an exception in method
+ * {@link Flow.Subscriber#onNext onNext}, but exceptions in methods
+ * {@link Flow.Subscriber#onSubscribe onSubscribe}, {@link
+ * Flow.Subscriber#onError(Throwable) onError} and {@link
+ * Flow.Subscriber#onComplete() onComplete} are not recorded or
+ * handled before cancellation.  If the supplied Executor throws
+ * {@link RejectedExecutionException} (or any other RuntimeException
+ * or Error) when attempting to execute a task, or a drop handler
+ * throws an exception when processing a dropped item, then the
+ * exception is rethrown. In these cases, not all subscribers will
+ * have been issued the published item. It is usually good practice
+ * to {@link #closeExceptionally closeExceptionally} in these cases.
+ *
+ * <p>Method {@link #consume(Consumer)} simplifies support for a
+ * common case in which the only action of a subscriber is to request
+ * and process all items using a supplied function.
+ *
+ * <p>This class may also serve as a convenient base for subclasses
+ * that generate items, and use the methods in this class to publish
+ * them.  For example here is a class that periodically publishes the
+ * items generated from a supplier:
+ *
+ * <pre> {@code
+ * class PeriodicPublisher<T> extends SubmissionPublisher<T> {
+ *   final ScheduledFuture<?> periodicTask;
+ *   final ScheduledExecutorService scheduler;
+ *   PeriodicPublisher(Executor executor, int maxBufferCapacity,
+ *                     Supplier<? extends T> supplier,
+ *                     long period, TimeUnit unit) {
+ *     super(executor, maxBufferCapacity);
+ *     scheduler = new ScheduledThreadPoolExecutor(1);
+ *     periodicTask = scheduler.scheduleAtFixedRate(
+ *       () -> submit(supplier.get()), 0, period, unit);
+ *   }
+ *   public void close() {
+ *     periodicTask.cancel(false);
+ *     scheduler.shutdown();
+ *     super.close();
+ *   }
+ * }}</pre>
+ *
+ * @param <T> the published item type
+ * @since 1.8
+ */
+public class SubmissionPublisher<T> implements Flow.Publisher<T>,
+                                               AutoCloseable {
+    /*
+     * Most mechanics are handled by BufferedSubscription. The
+     * publisher keeps a linked list of subscriptions, guarded by its
+     * monitor, and pushes each item to each subscription while
+     * holding it. Each subscription's offer method is synchronized
+     * on the subscription, so that each buffer has only one producer
+     * at a time. Items that cannot be buffered immediately are
+     * retried after releasing the publisher lock, waiting on the
+     * monitor of the saturated subscription for space, and drop
+     * handlers are invoked then too, holding no lock. Closed
+     * subscriptions are unlinked lazily while traversing the list.
+     */
+
+    /** The largest possible power of two array size. */
+    static final int BUFFER_CAPACITY_LIMIT = 1 << 30;
+
+    /** Initial buffer capacity, grown on demand up to the maximum. */
+    static final int INITIAL_CAPACITY = 32;
+
+    /** Round capacity to power of 2, most efficient with power of 2 sizes. */
+    static final int roundCapacity(int cap) {
+        int n = cap - 1;
+        n |= n >>> 1;
+        n |= n >>> 2;
+        n |= n >>> 4;
+        n |= n >>> 8;
+        n |= n >>> 16;
+        return (n <= 0) ? 1 : // at least 1
+            (n >= BUFFER_CAPACITY_LIMIT) ? BUFFER_CAPACITY_LIMIT : n + 1;
+    }
+
+    /**
+     * Clients (BufferedSubscriptions) are maintained in a linked list
+     * (via their "next" fields), guarded by the publisher's monitor.
+     */
+    BufferedSubscription<T> clients;
+
+    /** Run status, updated only within locks */
+    volatile boolean closed;
+    /** If non-null, the exception in closeExceptionally */
+    volatile Throwable closedException;
+
+    // Parameters for constructing BufferedSubscriptions
+    final Executor executor;
+    final BiConsumer<? super Flow.Subscriber<? super T>, ? super Throwable> onNextHandler;
+    final int maxBufferCapacity;
+
+    /** Default executor: the common pool, unless it cannot support parallelism */
+    private static final Executor ASYNC_POOL =
+        (ForkJoinPool.getCommonPoolParallelism() > 1) ?
+        ForkJoinPool.commonPool() :
+        new CompletableFuture.ThreadPerTaskExecutor();
+
+    /**
+     * Creates a new SubmissionPublisher using the given Executor for
+     * async delivery to subscribers, with the given maximum buffer size
+     * for each subscriber, and, if non-null, the given handler invoked
+     * when any Subscriber throws an exception in method {@link
+     * Flow.Subscriber#onNext(Object) onNext}.
+     *
+     * @param executor the executor to use for async delivery,
+     * supporting creation of at least one independent thread
+     * @param maxBufferCapacity the maximum capacity for each
+     * subscriber's buffer (the enforced capacity may be rounded up to
+     * the nearest power of two and/or bounded by the largest value
+     * supported by this implementation; method {@link #getMaxBufferCapacity}
+     * returns the actual value)
+     * @param handler if non-null, procedure to invoke upon exception
+     * thrown in method {@code onNext}
+     * @throws NullPointerException if executor is null
+     * @throws IllegalArgumentException if maxBufferCapacity not
+     * positive
+     */
+    public SubmissionPublisher(Executor executor, int maxBufferCapacity,
+                               BiConsumer<? super Flow.Subscriber<? super T>, ? super Throwable> handler) {
+        if (executor == null)
+            throw new NullPointerException();
+        if (maxBufferCapacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.executor = executor;
+        this.onNextHandler = handler;
+        this.maxBufferCapacity = roundCapacity(maxBufferCapacity);
+    }
+
+    /**
+     * Creates a new SubmissionPublisher using the given Executor for
+     * async delivery to subscribers, with the given maximum buffer size
+     * for each subscriber, and no handler for Subscriber exceptions in
+     * method {@link Flow.Subscriber#onNext(Object) onNext}.
+     *
+     * @param executor the executor to use for async delivery,
+     * supporting creation of at least one independent thread
+     * @param maxBufferCapacity the maximum capacity for each
+     * subscriber's buffer (the enforced capacity may be rounded up to
+     * the nearest power of two and/or bounded by the largest value
+     * supported by this implementation; method {@link #getMaxBufferCapacity}
+     * returns the actual value)
+     * @throws NullPointerException if executor is null
+     * @throws IllegalArgumentException if maxBufferCapacity not
+     * positive
+     */
+    public SubmissionPublisher(Executor executor, int maxBufferCapacity) {
+        this(executor, maxBufferCapacity, null);
+    }
+
+    /**
+     * Creates a new SubmissionPublisher using the {@link
+     * ForkJoinPool#commonPool()} for async delivery to subscribers
+     * (unless it does not support a parallelism level of at least two,
+     * in which case, a new Thread is created to run each task), with
+     * maximum buffer capacity of {@link Flow#defaultBufferSize}, and no
+     * handler for Subscriber exceptions in method {@link
+     * Flow.Subscriber#onNext(Object) onNext}.
+     */
+    public SubmissionPublisher() {
+        this(ASYNC_POOL, Flow.defaultBufferSize(), null);
+    }
+
+    /**
+     * Adds the given Subscriber unless already subscribed.  If already
+     * subscribed, the Subscriber's {@link
+     * Flow.Subscriber#onError(Throwable) onError} method is invoked on
+     * the existing subscription with an {@link IllegalStateException}.
+     * Otherwise, upon success, the Subscriber's {@link
+     * Flow.Subscriber#onSubscribe onSubscribe} method is invoked
+     * asynchronously with a new {@link Flow.Subscription}.  If {@link
+     * Flow.Subscriber#onSubscribe onSubscribe} throws an exception, the
+     * subscription is cancelled. Otherwise, if this SubmissionPublisher
+     * was closed exceptionally, then the subscriber's {@link
+     * Flow.Subscriber#onError onError} method is invoked with the
+     * corresponding exception, or if closed without exception, the
+     * subscriber's {@link Flow.Subscriber#onComplete() onComplete}
+     * method is invoked.  Subscribers may enable receiving items by
+     * invoking the {@link Flow.Subscription#request(long) request}
+     * method of the new Subscription, and may unsubscribe by invoking
+     * its {@link Flow.Subscription#cancel() cancel} method.
+     *
+     * @param subscriber the subscriber
+     * @throws NullPointerException if subscriber is null
+     */
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) throw new NullPointerException();
+        BufferedSubscription<T> subscription =
+            new BufferedSubscription<T>(subscriber, executor,
+                                        onNextHandler, maxBufferCapacity);
+        synchronized (this) {
+            for (BufferedSubscription<T> b = clients, pred = null;;) {
+                if (b == null) {
+                    Throwable ex;
+                    subscription.onSubscribe();
+                    if ((ex = closedException) != null)
+                        subscription.onError(ex);
+                    else if (closed)
+                        subscription.onComplete();
+                    else if (pred == null)
+                        clients = subscription;
+                    else
+                        pred.next = subscription;
+                    break;
+                }
+                BufferedSubscription<T> next = b.next;
+                if (b.isClosed()) {   // remove
+                    b.next = null;    // detach
+                    if (pred == null)
+                        clients = next;
+                    else
+                        pred.next = next;
+                }
+                else if (subscriber.equals(b.subscriber)) {
+                    b.onError(new IllegalStateException("Duplicate subscribe"));
+                    break;
+                }
+                else
+                    pred = b;
+                b = next;
+            }
+        }
+    }
+
+    /**
+     * Common implementation for all three forms of submit and offer.
+     * Acts as submit if nanos == Long.MAX_VALUE, else offer.
+     */
+    private int doOffer(T item, long nanos,
+                        BiPredicate<Flow.Subscriber<? super T>, ? super T> onDrop) {
+        if (item == null) throw new NullPointerException();
+        int lag = 0, drops = 0;
+        ArrayList<BufferedSubscription<T>> retries = null;
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Closed");
+            for (BufferedSubscription<T> b = clients, pred = null; b != null;) {
+                BufferedSubscription<T> next = b.next;
+                int stat = b.offer(item);
+                if (stat < 0) {       // closed; remove
+                    b.next = null;
+                    if (pred == null)
+                        clients = next;
+                    else
+                        pred.next = next;
+                }
+                else {
+                    if (stat == 0) {  // saturated; retry below
+                        if (retries == null)
+                            retries = new ArrayList<BufferedSubscription<T>>();
+                        retries.add(b);
+                    }
+                    else if (stat > lag)
+                        lag = stat;
+                    pred = b;
+                }
+                b = next;
+            }
+        }
+        if (retries != null) {
+            for (BufferedSubscription<T> b : retries) {
+                int stat = (nanos == 0L) ? 0 : b.awaitOffer(item, nanos);
+                if (stat == 0 && onDrop != null &&
+                    onDrop.test(b.subscriber, item))
+                    stat = b.awaitOffer(item, 0L);
+                if (stat == 0)
+                    ++drops;
+                else if (stat > lag)
+                    lag = stat;
+            }
+        }
+        return (drops > 0) ? -drops : lag;
+    }
+
+    /**
+     * Publishes the given item to each current subscriber by
+     * asynchronously invoking its {@link Flow.Subscriber#onNext(Object)
+     * onNext} method, blocking uninterruptibly while resources for any
+     * subscriber are unavailable. This method returns an estimate of
+     * the maximum lag (number of items submitted but not yet consumed)
+     * among all current subscribers. This value is at least one
+     * (accounting for this submitted item) if there are any
+     * subscribers, else zero.
+     *
+     * <p>If the Executor for this publisher throws a
+     * RejectedExecutionException (or any other RuntimeException or
+     * Error) when attempting to asynchronously notify subscribers,
+     * then this exception is rethrown, in which case not all
+     * subscribers will have been issued this item.
+     *
+     * @param item the (non-null) item to publish
+     * @return the estimated maximum lag among subscribers
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if item is null
+     * @throws RejectedExecutionException if thrown by Executor
+     */
+    public int submit(T item) {
+        return doOffer(item, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Publishes the given item, if possible, to each current subscriber
+     * by asynchronously invoking its {@link
+     * Flow.Subscriber#onNext(Object) onNext} method. The item may be
+     * dropped by one or more subscribers if resource limits are
+     * exceeded, in which case the given handler (if non-null) is
+     * invoked, and if it returns true, retried once.  The handler is
+     * invoked without holding any lock of this publisher, so other
+     * threads may concurrently publish items, which may then be
+     * delivered before a retried one.  Unless recovery is assured,
+     * options are usually limited to logging the error and/or
+     * issuing an {@link Flow.Subscriber#onError(Throwable) onError}
+     * signal to the subscriber.
+     *
+     * <p>This method returns a status indicator: If negative, it
+     * represents the (negative) number of drops (failed attempts to
+     * issue the item to a subscriber). Otherwise it is an estimate of
+     * the maximum lag (number of items submitted but not yet
+     * consumed) among all current subscribers. This value is at least
+     * one (accounting for this submitted item) if there are any
+     * subscribers, else zero.
+     *
+     * <p>If the Executor for this publisher throws a
+     * RejectedExecutionException (or any other RuntimeException or
+     * Error) when attempting to asynchronously notify subscribers, or
+     * the drop handler throws an exception when processing a dropped
+     * item, then this exception is rethrown.
+     *
+     * @param item the (non-null) item to publish
+     * @param onDrop if non-null, the handler invoked upon a drop to a
+     * subscriber, with arguments of the subscriber and item; if it
+     * returns true, an offer is re-attempted (once)
+     * @return if negative, the (negative) number of drops; otherwise
+     * an estimate of maximum lag
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if item is null
+     * @throws RejectedExecutionException if thrown by Executor
+     */
+    public int offer(T item,
+                     BiPredicate<Flow.Subscriber<? super T>, ? super T> onDrop) {
+        return doOffer(item, 0L, onDrop);
+    }
+
+    /**
+     * Publishes the given item, if possible, to each current subscriber
+     * by asynchronously invoking its {@link
+     * Flow.Subscriber#onNext(Object) onNext} method, blocking while
+     * resources for any subscription are unavailable, up to the
+     * specified timeout or until the caller thread is interrupted, at
+     * which point the given handler (if non-null) is invoked, and if it
+     * returns true, retried once. (The drop handler may distinguish
+     * timeouts from interrupts by checking whether the current thread
+     * is interrupted.)  The handler is invoked without holding any
+     * lock of this publisher, so other threads may concurrently
+     * publish items, which may then be delivered before a retried
+     * one.  Unless recovery is assured, options are usually limited
+     * to logging the error and/or issuing an {@link
+     * Flow.Subscriber#onError(Throwable) onError} signal to the
+     * subscriber.
+     *
+     * <p>This method returns a status indicator: If negative, it
+     * represents the (negative) number of drops (failed attempts to
+     * issue the item to a subscriber). Otherwise it is an estimate of
+     * the maximum lag (number of items submitted but not yet
+     * consumed) among all current subscribers. This value is at least
+     * one (accounting for this submitted item) if there are any
+     * subscribers, else zero.
+     *
+     * <p>If the Executor for this publisher throws a
+     * RejectedExecutionException (or any other RuntimeException or
+     * Error) when attempting to asynchronously notify subscribers, or
+     * the drop handler throws an exception when processing a dropped
+     * item, then this exception is rethrown.
+     *
+     * @param item the (non-null) item to publish
+     * @param timeout how long to wait for resources for any subscriber
+     * before giving up, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     * {@code timeout} parameter
+     * @param onDrop if non-null, the handler invoked upon a drop to a
+     * subscriber, with arguments of the subscriber and item; if it
+     * returns true, an offer is re-attempted (once)
+     * @return if negative, the (negative) number of drops; otherwise
+     * an estimate of maximum lag
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if item is null
+     * @throws RejectedExecutionException if thrown by Executor
+     */
+    public int offer(T item, long timeout, TimeUnit unit,
+                     BiPredicate<Flow.Subscriber<? super T>, ? super T> onDrop) {
+        long nanos = unit.toNanos(timeout);
+        // distinguishes from untimed (only wrt interrupt policy)
+        if (nanos == Long.MAX_VALUE) --nanos;
+        return doOffer(item, nanos, onDrop);
+    }
+
+    /**
+     * Unless already closed, issues {@link
+     * Flow.Subscriber#onComplete() onComplete} signals to current
+     * subscribers, and disallows subsequent attempts to publish.
+     * Upon return, this method does <em>NOT</em> guarantee that all
+     * subscribers have yet completed.
+     */
+    public void close() {
+        if (!closed) {
+            BufferedSubscription<T> b;
+            synchronized (this) {
+                b = clients;
+                clients = null;
+                closed = true;
+            }
+            while (b != null) {
+                BufferedSubscription<T> next = b.next;
+                b.next = null;
+                b.onComplete();
+                b = next;
+            }
+        }
+    }
+
+    /**
+     * Unless already closed, issues {@link
+     * Flow.Subscriber#onError(Throwable) onError} signals to current
+     * subscribers with the given error, and disallows subsequent
+     * attempts to publish.  Future subscribers also receive the given
+     * error. Upon return, this method does <em>NOT</em> guarantee
+     * that all subscribers have yet completed.
+     *
+     * @param error the {@code onError} argument sent to subscribers
+     * @throws NullPointerException if error is null
+     */
+    public void closeExceptionally(Throwable error) {
+        if (error == null)
+            throw new NullPointerException();
+        if (!closed) {
+            BufferedSubscription<T> b;
+            synchronized (this) {
+                b = clients;
+                if (!closed) {  // don't clobber racing close
+                    closedException = error;
+                    clients = null;
+                    closed = true;
+                }
+            }
+            while (b != null) {
+                BufferedSubscription<T> next = b.next;
+                b.next = null;
+                b.onError(error);
+                b = next;
+            }
+        }
+    }
+
+    /**
+     * Returns true if this publisher is not accepting submissions.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the exception associated with {@link
+     * #closeExceptionally(Throwable) closeExceptionally}, or null if
+     * not closed or if closed normally.
+     *
+     * @return the exception, or null if none
+     */
+    public Throwable getClosedException() {
+        return closedException;
+    }
+
+    /**
+     * Returns true if this publisher has any subscribers.
+     *
+     * @return true if this publisher has any subscribers
+     */
+    public boolean hasSubscribers() {
+        boolean nonEmpty = false;
+        synchronized (this) {
+            for (BufferedSubscription<T> b = clients; b != null;) {
+                BufferedSubscription<T> next = b.next;
+                if (b.isClosed()) {
+                    b.next = null;
+                    b = clients = next;
+                }
+                else {
+                    nonEmpty = true;
+                    break;
+                }
+            }
+        }
+        return nonEmpty;
+    }
+
+    /**
+     * Returns the number of current subscribers.
+     *
+     * @return the number of current subscribers
+     */
+    public int getNumberOfSubscribers() {
+        synchronized (this) {
+            return cleanAndCount();
+        }
+    }
+
+    /**
+     * Returns the Executor used for asynchronous delivery.
+     *
+     * @return the Executor used for asynchronous delivery
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the maximum per-subscriber buffer capacity.
+     *
+     * @return the maximum per-subscriber buffer capacity
+     */
+    public int getMaxBufferCapacity() {
+        return maxBufferCapacity;
+    }
+
+    /**
+     * Returns a list of current subscribers for monitoring and
+     * tracking purposes, not for invoking {@link Flow.Subscriber}
+     * methods on the subscribers.
+     *
+     * @return list of current subscribers
+     */
+    public List<Flow.Subscriber<? super T>> getSubscribers() {
+        ArrayList<Flow.Subscriber<? super T>> subs =
+            new ArrayList<Flow.Subscriber<? super T>>();
+        synchronized (this) {
+            BufferedSubscription<T> pred = null, next;
+            for (BufferedSubscription<T> b = clients; b != null; b = next) {
+                next = b.next;
+                if (b.isClosed()) {
+                    b.next = null;
+                    if (pred == null)
+                        clients = next;
+                    else
+                        pred.next = next;
+                }
+                else {
+                    subs.add(b.subscriber);
+                    pred = b;
+                }
+            }
+        }
+        return subs;
+    }
+
+    /**
+     * Returns true if the given Subscriber is currently subscribed.
+     *
+     * @param subscriber the subscriber
+     * @return true if currently subscribed
+     * @throws NullPointerException if subscriber is null
+     */
+    public boolean isSubscribed(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) throw new NullPointerException();
+        if (!closed) {
+            synchronized (this) {
+                BufferedSubscription<T> pred = null, next;
+                for (BufferedSubscription<T> b = clients; b != null; b = next) {
+                    next = b.next;
+                    if (b.isClosed()) {
+                        b.next = null;
+                        if (pred == null)
+                            clients = next;
+                        else
+                            pred.next = next;
+                    }
+                    else if (subscriber.equals(b.subscriber))
+                        return true;
+                    else
+                        pred = b;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an estimate of the minimum number of items requested
+     * (via {@link Flow.Subscription#request(long) request}) but not
+     * yet produced, among all current subscribers.
+     *
+     * @return the estimate, or zero if no subscribers
+     */
+    public long estimateMinimumDemand() {
+        long min = Long.MAX_VALUE;
+        boolean nonEmpty = false;
+        synchronized (this) {
+            BufferedSubscription<T> pred = null, next;
+            for (BufferedSubscription<T> b = clients; b != null; b = next) {
+                int n; long d;
+                next = b.next;
+                if ((n = b.estimateLag()) < 0) {
+                    b.next = null;
+                    if (pred == null)
+                        clients = next;
+                    else
+                        pred.next = next;
+                }
+                else {
+                    if ((d = b.demand - n) < min)
+                        min = d;
+                    nonEmpty = true;
+                    pred = b;
+                }
+            }
+        }
+        return nonEmpty ? min : 0;
+    }
+
+    /**
+     * Returns an estimate of the maximum number of items produced but
+     * not yet consumed among all current subscribers.
+     *
+     * @return the estimate
+     */
+    public int estimateMaximumLag() {
+        int max = 0;
+        synchronized (this) {
+            BufferedSubscription<T> pred = null, next;
+            for (BufferedSubscription<T> b = clients; b != null; b = next) {
+                int n;
+                next = b.next;
+                if ((n = b.estimateLag()) < 0) {
+                    b.next = null;
+                    if (pred == null)
+                        clients = next;
+                    else
+                        pred.next = next;
+                }
+                else {
+                    if (n > max)
+                        max = n;
+                    pred = b;
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Processes all published items using the given Consumer function.
+     * Returns a CompletableFuture that is completed normally when this
+     * publisher signals {@link Flow.Subscriber#onComplete()
+     * onComplete}, or completed exceptionally upon any error, or an
+     * exception is thrown by the Consumer, or the returned
+     * CompletableFuture is cancelled, in which case no further items
+     * are processed.
+     *
+     * @param consumer the function applied to each onNext item
+     * @return a CompletableFuture that is completed normally
+     * when the publisher signals onComplete, and exceptionally
+     * upon any error or cancellation
+     * @throws NullPointerException if consumer is null
+     */
+    public CompletableFuture<Void> consume(Consumer<? super T> consumer) {
+        if (consumer == null)
+            throw new NullPointerException();
+        CompletableFuture<Void> status = new CompletableFuture<Void>();
+        subscribe(new ConsumerSubscriber<T>(status, consumer));
+        return status;
+    }
+
+    /** Removes closed subscribers and returns the count of the rest. */
+    private int cleanAndCount() {
+        int count = 0;
+        BufferedSubscription<T> pred = null, next;
+        for (BufferedSubscription<T> b = clients; b != null; b = next) {
+            next = b.next;
+            if (b.isClosed()) {
+                b.next = null;
+                if (pred == null)
+                    clients = next;
+                else
+                    pred.next = next;
+            }
+            else {
+                pred = b;
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /** Subscriber for method consume */
+    static final class ConsumerSubscriber<T> implements Flow.Subscriber<T> {
+        final CompletableFuture<Void> status;
+        final Consumer<? super T> consumer;
+        Flow.Subscription subscription;
+        ConsumerSubscriber(CompletableFuture<Void> status,
+                           Consumer<? super T> consumer) {
+            this.status = status; this.consumer = consumer;
+        }
+        public final void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (status.isDone())
+                subscription.cancel();
+            else
+                subscription.request(Long.MAX_VALUE);
+        }
+        public final void onError(Throwable ex) {
+            status.completeExceptionally(ex);
+        }
+        public final void onComplete() {
+            status.complete(null);
+        }
+        public final void onNext(T item) {
+            if (status.isDone())
+                subscription.cancel();
+            else {
+                try {
+                    consumer.accept(item);
+                } catch (Throwable ex) {
+                    subscription.cancel();
+                    status.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * A bounded (ring) buffer with integrated control to start a
+     * consumer task whenever items are available and the subscriber
+     * has demand. The subscription is itself the consumer task.
+     *
+     * Field ctl holds run status bits. ACTIVE is set while a
+     * consumer task is submitted or running, so at most one runs at
+     * a time, which establishes the ordering of Subscriber method
+     * invocations. SUBSCRIBE, ERROR and COMPLETE record pending
+     * signals, and CLOSED is set when the subscription is cancelled
+     * or terminated, after which nothing more is delivered.
+     *
+     * Items are placed at index tail by one producer at a time
+     * (holding this subscription's monitor), and taken from index
+     * head by the consumer task, using ordered array writes and
+     * volatile indices. The array starts small and is doubled by a
+     * producer finding it full, up to maxCapacity: items are copied
+     * to the new array, which is published before tail advances past
+     * them, and the consumer rereads array after reading tail, so it
+     * never reads an item slot from a stale array. An item the
+     * consumer takes from the old array while it is being copied
+     * leaves a stale reference in the new one, at an index below
+     * head that is never read again, and cleared when overwritten.
+     * A consumer that finds
+     * nothing to do clears ACTIVE and then rechecks for work, so
+     * that a producer or requester that saw ACTIVE set before it was
+     * cleared cannot go unnoticed. Producers waiting for space wait
+     * on this subscription's monitor, after registering in field
+     * waiting, which the consumer checks after freeing space.
+     */
+    static final class BufferedSubscription<T>
+        implements Flow.Subscription, Runnable {
+        volatile Object[] array;       // ring buffer, power of two length
+        final int maxCapacity;         // bound on array length
+        final Flow.Subscriber<? super T> subscriber;
+        final BiConsumer<? super Flow.Subscriber<? super T>, ? super Throwable> onNextHandler;
+        final Executor executor;
+        volatile int head;             // next index to take
+        volatile int tail;             // next index to put
+        volatile int ctl;              // run status bits
+        volatile int waiting;          // number of blocked producers
+        volatile long demand;          // # unfilled requests
+        volatile Throwable pendingError;
+        BufferedSubscription<T> next;  // used only by publisher
+
+        // ctl bit values
+        static final int CLOSED    = 0x01;  // if set, other bits ignored
+        static final int ACTIVE    = 0x02;  // keep-alive for consumer task
+        static final int SUBSCRIBE = 0x04;  // onSubscribe pending
+        static final int ERROR     = 0x08;  // onError pending
+        static final int COMPLETE  = 0x10;  // onComplete after drained
+
+        BufferedSubscription(Flow.Subscriber<? super T> subscriber,
+                             Executor executor,
+                             BiConsumer<? super Flow.Subscriber<? super T>,
+                             ? super Throwable> onNextHandler,
+                             int maxBufferCapacity) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+            this.onNextHandler = onNextHandler;
+            this.maxCapacity = maxBufferCapacity;
+            this.array = new Object[Math.min(maxBufferCapacity,
+                                             INITIAL_CAPACITY)];
+        }
+
+        final boolean isClosed() {
+            return (ctl & CLOSED) != 0;
+        }
+
+        /**
+         * Returns estimated number of buffered items, or -1 if
+         * closed.
+         */
+        final int estimateLag() {
+            return isClosed() ? -1 : tail - head;
+        }
+
+        /**
+         * Tries to add item and start consumer task if necessary.
+         * Synchronized so that producers retrying outside the
+         * publisher lock do not interleave with others.
+         *
+         * @return -1 if closed, 0 if saturated, else estimated lag
+         */
+        final synchronized int offer(T item) {
+            Object[] a = array;
+            int t = tail, size = t - head;
+            if ((ctl & CLOSED) != 0)
+                return -1;
+            if (size >= a.length) {
+                if (a.length >= maxCapacity)
+                    return 0;
+                a = grow(a, head, t);
+            }
+            U.putOrderedObject(a, ((long)(t & (a.length - 1)) << ASHIFT) +
+                               ABASE, item);
+            tail = t + 1;
+            if (demand > 0L)   // else started by request
+                startOnSignal(0);
+            return size + 1;
+        }
+
+        /**
+         * Replaces the full array with one of twice the size, holding
+         * the items at indices h to t - 1, and returns it.
+         */
+        private Object[] grow(Object[] a, int h, int t) {
+            int n = a.length, m = n - 1, nm = (n << 1) - 1;
+            Object[] b = new Object[n << 1];
+            for (int i = h; i != t; ++i)
+                b[i & nm] = U.getObjectVolatile
+                    (a, ((long)(i & m) << ASHIFT) + ABASE);
+            array = b;
+            return b;
+        }
+
+        /**
+         * Retries offer holding this subscription's monitor, waiting
+         * up to the given time (forever if Long.MAX_VALUE) for space.
+         * Waiting with a finite timeout ends upon interrupt.
+         *
+         * @return -1 if closed, 0 if still saturated, else lag
+         */
+        final int awaitOffer(T item, long nanos) {
+            boolean timed = (nanos != Long.MAX_VALUE), interrupted = false;
+            long deadline = timed ? System.nanoTime() + nanos : 0L;
+            int stat;
+            synchronized (this) {
+                ++waiting;            // register before rechecking
+                try {
+                    while ((stat = offer(item)) == 0) {
+                        if (timed &&
+                            (nanos = deadline - System.nanoTime()) <= 0L)
+                            break;
+                        try {
+                            if (timed)
+                                TimeUnit.NANOSECONDS.timedWait(this, nanos);
+                            else
+                                wait();
+                        } catch (InterruptedException ie) {
+                            interrupted = true;
+                            if (timed)
+                                break;
+                        }
+                    }
+                } finally {
+                    --waiting;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            return stat;
+        }
+
+        /**
+         * Wakes up producers waiting for space or closure.
+         */
+        final void signalWaiters() {
+            if (waiting != 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Sets the given control bits, starting task if not running
+         * or closed.
+         */
+        final void startOnSignal(int bits) {
+            for (int c;;) {
+                if (((c = ctl) & bits) == bits && (c & (ACTIVE | CLOSED)) != 0)
+                    break;
+                if ((c & CLOSED) != 0)
+                    break;
+                int nc = c | bits | ACTIVE;
+                if (U.compareAndSwapInt(this, CTL, c, nc)) {
+                    if ((c & ACTIVE) == 0)
+                        tryStart();
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Submits this consumer task, closing and rethrowing upon
+         * failure.
+         */
+        final void tryStart() {
+            try {
+                executor.execute(this);
+            } catch (RuntimeException | Error ex) {
+                closeOnError(subscriber, ex);
+                throw ex;
+            }
+        }
+
+        // Signals from the publisher
+
+        final void onSubscribe() {
+            startOnSignal(SUBSCRIBE);
+        }
+
+        final void onComplete() {
+            startOnSignal(COMPLETE);
+        }
+
+        final void onError(Throwable ex) {
+            if (ex != null)
+                pendingError = ex;   // races are OK
+            startOnSignal(ERROR);
+        }
+
+        // Subscription methods
+
+        public final void cancel() {
+            for (int c;;) {
+                if (((c = ctl) & CLOSED) != 0)
+                    break;
+                if (U.compareAndSwapInt(this, CTL, c, c | CLOSED)) {
+                    signalWaiters();
+                    break;
+                }
+            }
+        }
+
+        public final void request(long n) {
+            if (n > 0L) {
+                for (;;) {
+                    long p = demand, d = p + n;  // saturate
+                    if (U.compareAndSwapLong(this, DEMAND, p,
+                                             d < p ? Long.MAX_VALUE : d))
+                        break;
+                }
+                startOnSignal(0);
+            }
+            else
+                onError(new IllegalArgumentException(
+                            "non-positive subscription request"));
+        }
+
+        // Consumer methods
+
+        /**
+         * Consumer loop, run by the executor. Delivers pending
+         * signals and as many items as demanded and available, then
+         * deactivates unless more work arrived meanwhile.
+         */
+        public final void run() {
+            Flow.Subscriber<? super T> s = subscriber;
+            for (int c;;) {
+                if (((c = ctl) & CLOSED) != 0)
+                    break;
+                else if ((c & SUBSCRIBE) != 0) {
+                    if (U.compareAndSwapInt(this, CTL, c, c & ~SUBSCRIBE)) {
+                        try {
+                            s.onSubscribe(this);
+                        } catch (Throwable ex) {
+                            closeOnError(s, ex);
+                        }
+                    }
+                }
+                else if ((c & ERROR) != 0) {
+                    closeOnError(s, pendingError);
+                    break;
+                }
+                else if (head != tail) {
+                    if (demand > 0L)
+                        consume(s);
+                    else if (!deactivate(c))
+                        break;
+                }
+                else if ((c & COMPLETE) != 0) {
+                    if (U.compareAndSwapInt(this, CTL, c, c | CLOSED)) {
+                        signalWaiters();
+                        try {
+                            s.onComplete();
+                        } catch (Throwable ignore) {
+                        }
+                        break;
+                    }
+                }
+                else if (!deactivate(c))
+                    break;
+            }
+        }
+
+        /**
+         * Tries to clear ACTIVE, then rechecks for work.
+         *
+         * @return true if this task should continue running
+         */
+        private boolean deactivate(int c) {
+            if (!U.compareAndSwapInt(this, CTL, c, c & ~ACTIVE))
+                return true;     // status changed; recheck
+            for (;;) {
+                int h = head, t = tail;
+                c = ctl;
+                if ((c & (ACTIVE | CLOSED)) != 0 ||
+                    ((c & (SUBSCRIBE | ERROR)) == 0 &&
+                     (h != t ? demand <= 0L : (c & COMPLETE) == 0)))
+                    return false;  // no work, or another task started
+                if (U.compareAndSwapInt(this, CTL, c, c | ACTIVE))
+                    return true;
+            }
+        }
+
+        /**
+         * Delivers items while available and demanded, and then
+         * deducts the number delivered from demand.
+         */
+        @SuppressWarnings("unchecked")
+        private void consume(Flow.Subscriber<? super T> s) {
+            long d = demand, k = 0L;
+            int h = head;
+            while (k < d && h != tail && (ctl & CLOSED) == 0) {
+                Object[] a = array;  // reread after tail; may have grown
+                long i = ((long)(h & (a.length - 1)) << ASHIFT) + ABASE;
+                Object x = U.getObjectVolatile(a, i);
+                U.putOrderedObject(a, i, null);
+                head = ++h;
+                ++k;
+                signalWaiters();
+                try {
+                    s.onNext((T)x);
+                } catch (Throwable ex) {
+                    handleOnNext(s, ex);
+                    break;
+                }
+            }
+            if (k > 0L && d != Long.MAX_VALUE)
+                U.getAndAddLong(this, DEMAND, -k);
+        }
+
+        /**
+         * Processes exception in Subscriber.onNext.
+         */
+        private void handleOnNext(Flow.Subscriber<? super T> s, Throwable ex) {
+            BiConsumer<? super Flow.Subscriber<? super T>, ? super Throwable> h;
+            if ((h = onNextHandler) != null) {
+                try {
+                    h.accept(s, ex);
+                } catch (Throwable ignore) {
+                }
+            }
+            closeOnError(s, ex);
+        }
+
+        /**
+         * Issues subscriber.onError, and unblocks producer if needed.
+         */
+        final void closeOnError(Flow.Subscriber<? super T> s, Throwable ex) {
+            for (int c;;) {
+                if (((c = ctl) & CLOSED) != 0)
+                    return;
+                if (U.compareAndSwapInt(this, CTL, c, c | CLOSED))
+                    break;
+            }
+            signalWaiters();
+            if (ex != null) {
+                try {
+                    s.onError(ex);
+                } catch (Throwable ignore) {
+                }
+            }
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long CTL;
+        private static final long DEMAND;
+        private static final int ABASE;
+        private static final int ASHIFT;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = BufferedSubscription.class;
+                CTL = U.objectFieldOffset
+                    (k.getDeclaredField("ctl"));
+                DEMAND = U.objectFieldOffset
+                    (k.getDeclaredField("demand"));
+                ABASE = U.arrayBaseOffset(Object[].class);
+                int scale = U.arrayIndexScale(Object[].class);
+                if ((scale & (scale - 1)) != 0)
+                    throw new Error("data type scale not a power of two");
+                ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+}
@@ -1974,6 +1974,29 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Returns an estimate of the number of threads that are actively
+     * executing tasks but are blocked, waiting or sleeping within
+     * them, by sampling their thread states. Used by {@link
+     * PoolSizeController}.
+     *
+     * @return the number of blocked active threads
+     */
+    int getBlockedActiveCount() {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            int n = 0;
+            for (Worker w : workers)
+                if (w.isLocked() &&
+                    w.thread.getState() != Thread.State.RUNNABLE)
+                    ++n;
+            return n;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
     /**
      * Returns the largest number of threads that have ever
      * simultaneously been in the pool.
@@ -0,0 +1,800 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent.atomic;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A histogram of non-negative {@code long} values (typically
+ * latencies) supporting fully concurrent recording and percentile
+ * queries with bounded relative error. Values are counted in
+ * log-linear buckets: each power-of-two range of values is divided
+ * into equally sized sub-buckets, so that the value reported for any
+ * recorded value is within a relative error of {@code 10^-d}, where
+ * {@code d} is the number of significant value digits given on
+ * construction.
+ *
+ * <p>As with {@link LongAdder}, when recordings are contended across
+ * threads the set of bucket arrays grows dynamically, with each
+ * thread hashed to one of them, so that concurrent calls to {@link
+ * #record} rarely touch the same memory. Queries work on a {@link
+ * Snapshot} combining the arrays: method {@link #snapshot} leaves
+ * counts in place, while {@link #intervalSnapshot} atomically
+ * transfers them to the snapshot, so that a series of interval
+ * snapshots accounts for each recorded value exactly once. Snapshots
+ * of histograms with the same configuration may be merged without
+ * loss, and serialize to a compact form holding only non-zero
+ * buckets.
+ *
+ * <p>For example, to report the 99th percentile latency of each
+ * interval:
+ * <pre> {@code
+ * LongHistogram latencies = new LongHistogram(TimeUnit.MINUTES.toNanos(1), 2);
+ * // in request threads:
+ * latencies.record(System.nanoTime() - start);
+ * // in a reporting thread, periodically:
+ * LongHistogram.Snapshot s = latencies.intervalSnapshot();
+ * report(s.getTotalCount(), s.getValueAtPercentile(99.0));}</pre>
+ *
+ * <p>Each bucket array holds one counter per bucket, on the order of
+ * {@code 10^d * log2(highestTrackableValue)} counters, and
+ * there may be up to as many arrays as processors. This class is
+ * therefore preferable to a shared locked histogram when many threads
+ * record concurrently, at the expense of higher space consumption.
+ *
+ * <p>This class does <em>not</em> define methods such as {@code
+ * equals} and {@code hashCode} because instances are expected to be
+ * mutated.
+ *
+ * @since 1.8
+ */
+public class LongHistogram implements Serializable {
+    private static final long serialVersionUID = -1525434981290341658L;
+
+    /*
+     * Bucket layout: for sub-bucket magnitude p (2^p sub-buckets per
+     * power of two, where 2^(p+1) >= 2 * 10^d), values in [0, 2^(p+1))
+     * each have their own bucket. A larger value v whose highest
+     * one-bit is at position e is shifted right by s = e - p bits,
+     * leaving a mantissa m in [2^p, 2^(p+1)), and is counted in
+     * bucket s * 2^p + m. All values in that bucket are within
+     * 2^s - 1 of each other, a relative error below 2^-p.
+     *
+     * Striping follows Striped64: the table of Stripes (each holding
+     * a full bucket array plus sum, min and max) starts with a single
+     * entry and doubles, up to the number of CPUs, upon a failed CAS
+     * of a bucket, using the same per-thread probe and spinlock
+     * scheme. Stripes are never removed. Unlike Striped64 there is no
+     * base field, since an uncontended single stripe serves that role.
+     */
+
+    /** Maximum supported number of significant value digits */
+    private static final int MAX_DIGITS = 5;
+
+    /**
+     * A bucket array and summary values, padded to reduce contention
+     * among the headers of different stripes.
+     */
+    @sun.misc.Contended static final class Stripe {
+        final long[] counts;
+        volatile long sum;
+        volatile long min;
+        volatile long max;
+
+        Stripe(int length) {
+            counts = new long[length];
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+        }
+
+        /**
+         * Tries to add one to bucket i for the given value, failing
+         * on contention.
+         */
+        final boolean tryRecord(int i, long value) {
+            long[] a = counts;
+            long off = ((long)i << ASHIFT) + ABASE, c;
+            if (!U.compareAndSwapLong(a, off, c = U.getLongVolatile(a, off),
+                                      c + 1L))
+                return false;
+            U.getAndAddLong(this, SUM, value);
+            updateMinMax(value, value);
+            return true;
+        }
+
+        final void updateMinMax(long lo, long hi) {
+            long m;
+            while (lo < (m = min) && !U.compareAndSwapLong(this, MIN, m, lo))
+                ;
+            while (hi > (m = max) && !U.compareAndSwapLong(this, MAX, m, hi))
+                ;
+        }
+
+        /** Adds the given counts and summary values. */
+        final void add(long[] cs, long s, long lo, long hi) {
+            long[] a = counts;
+            for (int i = 0; i < cs.length; ++i) {
+                long c;
+                if ((c = cs[i]) != 0L)
+                    U.getAndAddLong(a, ((long)i << ASHIFT) + ABASE, c);
+            }
+            U.getAndAddLong(this, SUM, s);
+            updateMinMax(lo, hi);
+        }
+
+        /**
+         * Adds the counts and summary values of this stripe to the
+         * given accumulators, resetting them if requested.
+         */
+        final void collect(long[] cs, long[] summary, boolean reset) {
+            long[] a = counts;
+            for (int i = 0; i < cs.length; ++i) {
+                long off = ((long)i << ASHIFT) + ABASE;
+                cs[i] += (reset) ? U.getAndSetLong(a, off, 0L) :
+                    U.getLongVolatile(a, off);
+            }
+            long s, lo, hi;
+            if (reset) {
+                s = U.getAndSetLong(this, SUM, 0L);
+                lo = U.getAndSetLong(this, MIN, Long.MAX_VALUE);
+                hi = U.getAndSetLong(this, MAX, Long.MIN_VALUE);
+            }
+            else {
+                s = sum;
+                lo = min;
+                hi = max;
+            }
+            summary[0] += s;
+            if (lo < summary[1])
+                summary[1] = lo;
+            if (hi > summary[2])
+                summary[2] = hi;
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long SUM;
+        private static final long MIN;
+        private static final long MAX;
+        private static final long ABASE;
+        private static final int ASHIFT;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = Stripe.class;
+                SUM = U.objectFieldOffset(k.getDeclaredField("sum"));
+                MIN = U.objectFieldOffset(k.getDeclaredField("min"));
+                MAX = U.objectFieldOffset(k.getDeclaredField("max"));
+                ABASE = U.arrayBaseOffset(long[].class);
+                int scale = U.arrayIndexScale(long[].class);
+                if ((scale & (scale - 1)) != 0)
+                    throw new Error("data type scale not a power of two");
+                ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /** The highest value that can be distinguished from larger ones. */
+    private final long highestTrackableValue;
+
+    /** The number of significant decimal digits of value resolution. */
+    private final int significantValueDigits;
+
+    /** Log2 of the number of sub-buckets per power of two. */
+    private final int subBucketMagnitude;
+
+    /** Table of stripes. Size is a power of two. */
+    private transient volatile Stripe[] stripes;
+
+    /** Spinlock (locked via CAS) used when resizing and/or creating Stripes. */
+    private transient volatile int stripesBusy;
+
+    /**
+     * Creates a new, empty histogram able to track values from zero
+     * to {@code highestTrackableValue} with the given precision.
+     * Recorded values larger than {@code highestTrackableValue} are
+     * counted as if equal to it, although they are still reflected
+     * exactly in {@link Snapshot#getMax} and {@link Snapshot#getMean}.
+     *
+     * @param highestTrackableValue the highest value to be tracked
+     * @param significantValueDigits the number of significant decimal
+     *        digits to which values are resolved, from 0 to 5
+     * @throws IllegalArgumentException if {@code highestTrackableValue}
+     *         is less than one, or {@code significantValueDigits} is
+     *         out of range
+     */
+    public LongHistogram(long highestTrackableValue,
+                         int significantValueDigits) {
+        if (highestTrackableValue < 1L ||
+            significantValueDigits < 0 || significantValueDigits > MAX_DIGITS)
+            throw new IllegalArgumentException();
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantValueDigits = significantValueDigits;
+        int p = subBucketMagnitude(significantValueDigits);
+        this.subBucketMagnitude = p;
+        this.stripes = new Stripe[] {
+            new Stripe(bucketCount(highestTrackableValue, p))
+        };
+    }
+
+    /**
+     * Returns the sub-bucket magnitude p for the given number of
+     * digits, the least p such that 2^(p+1) >= 2 * 10^d.
+     */
+    static int subBucketMagnitude(int digits) {
+        long single = 2L;
+        for (int i = 0; i < digits; ++i)
+            single *= 10L;
+        return 63 - Long.numberOfLeadingZeros(single - 1L);
+    }
+
+    /** Returns the number of buckets needed to track values to max. */
+    static int bucketCount(long max, int p) {
+        return bucketIndex(max, p) + 1;
+    }
+
+    /** Returns the bucket index for the given non-negative value. */
+    static int bucketIndex(long value, int p) {
+        int e = 63 - Long.numberOfLeadingZeros(value);
+        if (e <= p)
+            return (int)value;
+        int s = e - p;
+        return (s << p) + (int)(value >>> s);
+    }
+
+    /** Returns the lowest value counted in the given bucket. */
+    static long lowestValueInBucket(int i, int p) {
+        int s = (i >>> p) - 1;
+        if (s <= 0)
+            return i;
+        return ((long)((i & ((1 << p) - 1)) | (1 << p))) << s;
+    }
+
+    /** Returns the highest value counted in the given bucket. */
+    static long highestValueInBucket(int i, int p) {
+        int s = (i >>> p) - 1;
+        if (s <= 0)
+            return i;
+        return lowestValueInBucket(i, p) + (1L << s) - 1L;
+    }
+
+    /**
+     * Records the given value.
+     *
+     * @param value the value
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(long value) {
+        if (value < 0L)
+            throw new IllegalArgumentException();
+        long v = (value > highestTrackableValue) ?
+            highestTrackableValue : value;
+        Stripe[] ss; Stripe s; int n;
+        int i = bucketIndex(v, subBucketMagnitude);
+        if ((ss = stripes) == null || (n = ss.length) < 1 ||
+            (s = ss[(n - 1) & Striped64.getProbe()]) == null ||
+            !s.tryRecord(i, value))
+            recordSlow(i, value);
+    }
+
+    /**
+     * Handles cases of recording involving creating new Stripes,
+     * resizing, and/or contention; an adaptation of
+     * Striped64.longAccumulate.
+     */
+    private void recordSlow(int i, long value) {
+        int h;
+        boolean wasUncontended = false;
+        if ((h = Striped64.getProbe()) == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = Striped64.getProbe();
+            wasUncontended = true;
+        }
+        boolean collide = false;                // True if last slot nonempty
+        for (;;) {
+            Stripe[] ss = stripes; Stripe s;
+            int n = ss.length;
+            if ((s = ss[(n - 1) & h]) == null) {
+                if (stripesBusy == 0 && casStripesBusy()) {
+                    boolean created = false;
+                    try {                       // Recheck under lock
+                        Stripe[] rs; int m, j;
+                        if ((rs = stripes) != null &&
+                            (m = rs.length) > 0 &&
+                            rs[j = (m - 1) & h] == null) {
+                            // Unlike Cells, Stripes are too large to
+                            // create optimistically outside the lock
+                            Stripe r = new Stripe(rs[0].counts.length);
+                            r.tryRecord(i, value);  // unpublished, never fails
+                            rs[j] = r;
+                            created = true;
+                        }
+                    } finally {
+                        stripesBusy = 0;
+                    }
+                    if (created)
+                        break;
+                    continue;                   // Slot is now non-empty
+                }
+                collide = false;
+            }
+            else if (!wasUncontended)           // CAS already known to fail
+                wasUncontended = true;          // Continue after rehash
+            else if (s.tryRecord(i, value))
+                break;
+            else if (n >= Striped64.NCPU || stripes != ss)
+                collide = false;                // At max size or stale
+            else if (!collide)
+                collide = true;
+            else if (stripesBusy == 0 && casStripesBusy()) {
+                try {
+                    if (stripes == ss) {        // Expand table unless stale
+                        Stripe[] rs = new Stripe[n << 1];
+                        for (int k = 0; k < n; ++k)
+                            rs[k] = ss[k];
+                        stripes = rs;
+                    }
+                } finally {
+                    stripesBusy = 0;
+                }
+                collide = false;
+                continue;                       // Retry with expanded table
+            }
+            h = Striped64.advanceProbe(h);
+        }
+    }
+
+    private boolean casStripesBusy() {
+        return U.compareAndSwapInt(this, STRIPESBUSY, 0, 1);
+    }
+
+    /**
+     * Adds all values counted in the given snapshot to this
+     * histogram.
+     *
+     * @param snapshot the snapshot
+     * @throws NullPointerException if the snapshot is null
+     * @throws IllegalArgumentException if the snapshot was taken of
+     *         a histogram with a different configuration
+     */
+    public void add(Snapshot snapshot) {
+        if (!snapshot.isCompatible(highestTrackableValue,
+                                   significantValueDigits))
+            throw new IllegalArgumentException();
+        if (snapshot.totalCount != 0L) {
+            Stripe[] ss = stripes;
+            ss[(ss.length - 1) & Striped64.getProbe()].add
+                (snapshot.counts, snapshot.sum, snapshot.min, snapshot.max);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values recorded so far. The snapshot
+     * is not an atomic view: values recorded concurrently may or may
+     * not be reflected.
+     *
+     * @return a snapshot of this histogram
+     */
+    public Snapshot snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * Returns a snapshot of the values recorded since the previous
+     * interval snapshot or reset, and resets this histogram. Each
+     * bucket is transferred atomically, so every recorded value is
+     * counted in exactly one interval snapshot, although a value
+     * recorded concurrently may have its bucket count and its
+     * contribution to the sum, minimum or maximum reported in
+     * adjacent intervals.
+     *
+     * @return a snapshot of the values recorded in the interval
+     */
+    public Snapshot intervalSnapshot() {
+        return collect(true);
+    }
+
+    /**
+     * Resets this histogram to empty. Equivalent in effect to calling
+     * {@link #intervalSnapshot} and discarding the result.
+     */
+    public void reset() {
+        collect(true);
+    }
+
+    private Snapshot collect(boolean reset) {
+        Stripe[] ss = stripes;
+        long[] cs = new long[ss[0].counts.length];
+        long[] summary = { 0L, Long.MAX_VALUE, Long.MIN_VALUE };
+        for (Stripe s : ss) {
+            if (s != null)
+                s.collect(cs, summary, reset);
+        }
+        return new Snapshot(highestTrackableValue, significantValueDigits,
+                            cs, summary[0], summary[1], summary[2]);
+    }
+
+    /**
+     * Returns the highest value that can be distinguished from
+     * larger ones.
+     *
+     * @return the highest trackable value
+     */
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Returns the number of significant decimal digits to which
+     * values are resolved.
+     *
+     * @return the number of significant value digits
+     */
+    public int getSignificantValueDigits() {
+        return significantValueDigits;
+    }
+
+    /**
+     * Returns the String representation of the current {@link
+     * #snapshot}.
+     *
+     * @return the String representation of the current snapshot
+     */
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable view of the counts of a {@link LongHistogram}.
+     * Snapshots serialize to a compact form that records only the
+     * non-zero buckets, each as a variable-length encoded index gap
+     * and count.
+     *
+     * @since 1.8
+     */
+    public static final class Snapshot implements Serializable {
+        private static final long serialVersionUID = 3946392416937165210L;
+
+        /** @serial the highest trackable value of the source histogram */
+        private final long highestTrackableValue;
+        /** @serial the significant value digits of the source histogram */
+        private final int significantValueDigits;
+        /** @serial the sum of all recorded values */
+        private final long sum;
+        /** @serial the least recorded value, or zero if empty */
+        private final long min;
+        /** @serial the greatest recorded value, or zero if empty */
+        private final long max;
+        private transient long[] counts;
+        private transient long totalCount;
+
+        Snapshot(long highestTrackableValue, int significantValueDigits,
+                 long[] counts, long sum, long min, long max) {
+            long total = 0L;
+            for (long c : counts)
+                total += c;
+            this.highestTrackableValue = highestTrackableValue;
+            this.significantValueDigits = significantValueDigits;
+            this.counts = counts;
+            this.totalCount = total;
+            this.sum = sum;
+            this.min = (total == 0L) ? 0L : min;
+            this.max = (total == 0L) ? 0L : max;
+        }
+
+        final boolean isCompatible(long highest, int digits) {
+            return highestTrackableValue == highest &&
+                significantValueDigits == digits;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of recorded values
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the least recorded value, or zero if none.
+         *
+         * @return the least recorded value
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * Returns the greatest recorded value, or zero if none.
+         *
+         * @return the greatest recorded value
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the arithmetic mean of the recorded values, or
+         * zero if none.
+         *
+         * @return the mean of the recorded values
+         */
+        public double getMean() {
+            return (totalCount == 0L) ? 0.0 : (double)sum / totalCount;
+        }
+
+        /**
+         * Returns the value at or below which the given percentage of
+         * recorded values fall, to within the precision of the
+         * histogram, or zero if none.
+         *
+         * @param percentile the percentile, from 0.0 to 100.0
+         * @return the value at the given percentile
+         * @throws IllegalArgumentException if the percentile is out
+         *         of range
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0.0 && percentile <= 100.0))
+                throw new IllegalArgumentException();
+            if (totalCount == 0L)
+                return 0L;
+            long target = (long)Math.ceil(percentile / 100.0 * totalCount);
+            if (target < 1L)
+                return min;
+            long[] cs = counts;
+            int p = subBucketMagnitude(significantValueDigits);
+            long seen = 0L;
+            for (int i = 0; i < cs.length; ++i) {
+                if ((seen += cs[i]) >= target) {
+                    long v = highestValueInBucket(i, p);
+                    return (v > max) ? max : (v < min) ? min : v;
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns the number of recorded values counted in the same
+         * bucket as the given value.
+         *
+         * @param value the value
+         * @return the number of equivalent recorded values
+         * @throws IllegalArgumentException if the value is negative
+         */
+        public long getCountAtValue(long value) {
+            if (value < 0L)
+                throw new IllegalArgumentException();
+            if (value > highestTrackableValue)
+                value = highestTrackableValue;
+            return counts[bucketIndex(value,
+                                      subBucketMagnitude(significantValueDigits))];
+        }
+
+        /**
+         * Returns a new snapshot combining the values counted in this
+         * snapshot and the given one, without loss of precision.
+         *
+         * @param other the other snapshot
+         * @return the merged snapshot
+         * @throws NullPointerException if other is null
+         * @throws IllegalArgumentException if other was taken of a
+         *         histogram with a different configuration
+         */
+        public Snapshot merge(Snapshot other) {
+            if (!other.isCompatible(highestTrackableValue,
+                                    significantValueDigits))
+                throw new IllegalArgumentException();
+            long[] a = counts, b = other.counts;
+            long[] cs = new long[a.length];
+            for (int i = 0; i < cs.length; ++i)
+                cs[i] = a[i] + b[i];
+            long lo, hi;
+            if (totalCount == 0L) {
+                lo = other.min; hi = other.max;
+            }
+            else if (other.totalCount == 0L) {
+                lo = min; hi = max;
+            }
+            else {
+                lo = Math.min(min, other.min);
+                hi = Math.max(max, other.max);
+            }
+            return new Snapshot(highestTrackableValue, significantValueDigits,
+                                cs, sum + other.sum, lo, hi);
+        }
+
+        /**
+         * Returns a string summarizing this snapshot, including the
+         * count, mean, extremes and selected percentiles.
+         *
+         * @return a string representation of this snapshot
+         */
+        public String toString() {
+            return "[count = " + totalCount +
+                ", min = " + min +
+                ", mean = " + getMean() +
+                ", p50 = " + getValueAtPercentile(50.0) +
+                ", p90 = " + getValueAtPercentile(90.0) +
+                ", p99 = " + getValueAtPercentile(99.0) +
+                ", p99.9 = " + getValueAtPercentile(99.9) +
+                ", max = " + max +
+                "]";
+        }
+
+        /**
+         * Saves this snapshot to a stream (that is, serializes it).
+         *
+         * @param s the stream
+         * @throws java.io.IOException if an I/O error occurs
+         * @serialData the number of non-zero buckets (int), followed by,
+         * for each, the difference between its index and that of the
+         * previous non-zero bucket (or -1) and its count, both as
+         * unsigned variable-length quantities of seven bits per byte
+         */
+        private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+            s.defaultWriteObject();
+            long[] cs = counts;
+            int n = 0;
+            for (long c : cs) {
+                if (c != 0L)
+                    ++n;
+            }
+            s.writeInt(n);
+            for (int i = 0, prev = -1; i < cs.length; ++i) {
+                if (cs[i] != 0L) {
+                    writeVarLong(s, i - prev);
+                    writeVarLong(s, cs[i]);
+                    prev = i;
+                }
+            }
+        }
+
+        /**
+         * Reconstitutes this snapshot from a stream (that is,
+         * deserializes it).
+         *
+         * @param s the stream
+         * @throws ClassNotFoundException if the class of a serialized
+         *         object could not be found
+         * @throws java.io.IOException if an I/O error occurs
+         */
+        private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+            s.defaultReadObject();
+            if (highestTrackableValue < 1L || significantValueDigits < 0 ||
+                significantValueDigits > MAX_DIGITS)
+                throw new java.io.InvalidObjectException("Invalid configuration");
+            long[] cs = new long[bucketCount
+                                 (highestTrackableValue,
+                                  subBucketMagnitude(significantValueDigits))];
+            long total = 0L;
+            for (int n = s.readInt(), prev = -1; n > 0; --n) {
+                long gap = readVarLong(s), c = readVarLong(s);
+                if (gap < 1L || gap > cs.length - prev - 1 || c < 0L)
+                    throw new java.io.InvalidObjectException("Invalid counts");
+                cs[prev += (int)gap] = c;
+                total += c;
+            }
+            counts = cs;
+            totalCount = total;
+        }
+
+        private static void writeVarLong(java.io.ObjectOutputStream s, long v)
+            throws java.io.IOException {
+            while ((v & ~0x7fL) != 0L) {
+                s.writeByte((int)(v & 0x7fL) | 0x80);
+                v >>>= 7;
+            }
+            s.writeByte((int)v);
+        }
+
+        private static long readVarLong(java.io.ObjectInputStream s)
+            throws java.io.IOException {
+            long v = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = s.readUnsignedByte();
+                v |= (long)(b & 0x7f) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new java.io.InvalidObjectException("Malformed count");
+        }
+    }
+
+    /**
+     * Serialization proxy, used to serialize the current counts as a
+     * compact snapshot rather than as per-thread stripes.
+     * @serial include
+     */
+    private static class SerializationProxy implements Serializable {
+        private static final long serialVersionUID = -1525434981290341658L;
+
+        /**
+         * The current snapshot of the histogram.
+         * @serial
+         */
+        private final Snapshot snapshot;
+
+        SerializationProxy(LongHistogram h) {
+            snapshot = h.snapshot();
+        }
+
+        /**
+         * Return a {@code LongHistogram} object with initial state
+         * held by this proxy.
+         *
+         * @return a {@code LongHistogram} object with initial state
+         * held by this proxy.
+         */
+        private Object readResolve() {
+            LongHistogram h = new LongHistogram
+                (snapshot.highestTrackableValue, snapshot.significantValueDigits);
+            h.add(snapshot);
+            return h;
+        }
+    }
+
+    /**
+     * Returns a
+     * <a href="../../../../serialized-form.html#java.util.concurrent.atomic.LongHistogram.SerializationProxy">
+     * SerializationProxy</a>
+     * representing the state of this instance.
+     *
+     * @return a {@link SerializationProxy}
+     * representing the state of this instance
+     */
+    private Object writeReplace() {
+        return new SerializationProxy(this);
+    }
+
+    /**
+     * @param s the stream
+     * @throws java.io.InvalidObjectException always
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.InvalidObjectException {
+        throw new java.io.InvalidObjectException("Proxy required");
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long STRIPESBUSY;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = LongHistogram.class;
+            STRIPESBUSY = U.objectFieldOffset
+                (k.getDeclaredField("stripesBusy"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
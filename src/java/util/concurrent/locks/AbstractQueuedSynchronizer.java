@@ -557,6 +557,18 @@ public abstract class AbstractQueuedSynchronizer
      */
     private volatile int state;
 
+    /**
+     * The adaptive spinning policy, or null if threads failing to
+     * acquire are queued at once. See {@link #setAdaptiveSpinning}.
+     */
+    private volatile SpinPolicy spinPolicy;
+
+    /**
+     * The contention profiling probe, or null if not profiled. Set
+     * and cleared by {@link LockProfiler}.
+     */
+    transient volatile LockProfiler.Probe probe;
+
     /**
      * Returns the current value of synchronization state.
      * This operation has memory semantics of a {@code volatile} read.
@@ -924,6 +936,7 @@ public abstract class AbstractQueuedSynchronizer
      * @return {@code true} if interrupted
      */
     private final boolean parkAndCheckInterrupt() {
+        countPark();
         // 调用 park() 使线程进入 waiting 状态
         LockSupport.park(this);
         return Thread.interrupted();
@@ -1045,8 +1058,10 @@ public abstract class AbstractQueuedSynchronizer
                 if (nanosTimeout <= 0L)
                     return false;
                 if (shouldParkAfterFailedAcquire(p, node) &&
-                        nanosTimeout > spinForTimeoutThreshold)
+                        nanosTimeout > spinForTimeoutThreshold) {
+                    countPark();
                     LockSupport.parkNanos(this, nanosTimeout);
+                }
                 if (Thread.interrupted())
                     throw new InterruptedException();
             }
@@ -1161,8 +1176,10 @@ public abstract class AbstractQueuedSynchronizer
                 if (nanosTimeout <= 0L)
                     return false;
                 if (shouldParkAfterFailedAcquire(p, node) &&
-                        nanosTimeout > spinForTimeoutThreshold)
+                        nanosTimeout > spinForTimeoutThreshold) {
+                    countPark();
                     LockSupport.parkNanos(this, nanosTimeout);
+                }
                 if (Thread.interrupted())
                     throw new InterruptedException();
             }
@@ -1172,6 +1189,211 @@ public abstract class AbstractQueuedSynchronizer
         }
     }
 
+    // Adaptive spinning
+
+    /**
+     * Policy and statistics for spinning before queuing, installed
+     * by setAdaptiveSpinning. Parking and unparking a thread costs a
+     * few microseconds at best, far more than very short critical
+     * sections, so a thread that fails to acquire first retries for
+     * a while, provided that recent spins were short enough to be
+     * worthwhile. The spin period is twice a moving average of
+     * recent waits, where a successful spin contributes its actual
+     * duration (the residual hold time of the previous owner) and a
+     * failed one contributes a long wait. Once the average exceeds
+     * the useful maximum, only occasional probing spins are made, so
+     * the policy can relearn when hold times shorten.
+     */
+    static final class SpinPolicy implements java.io.Serializable {
+        private static final long serialVersionUID = -3206441285183716952L;
+
+        /** Upper bound on the spin period, about one context switch */
+        static final long MAX_SPIN_NANOS = 20000L;
+
+        /** Lower bound on, and initial value of, the spin period */
+        static final long MIN_SPIN_NANOS = 500L;
+
+        /** Maximum number of state polls between acquire attempts */
+        static final int MAX_BACKOFF = 1 << 6;
+
+        /** Mask for the fraction of acquires that probe when not spinning */
+        static final int PROBE_MASK = 15;
+
+        /** Spinning is useless on uniprocessors */
+        static final boolean MP =
+            Runtime.getRuntime().availableProcessors() > 1;
+
+        /** Initial value of the moving average of waits */
+        static final long INITIAL_AVG_WAIT = MIN_SPIN_NANOS >>> 1;
+
+        // All state is transient; a deserialized policy starts afresh
+        transient volatile long avgWait = INITIAL_AVG_WAIT;
+        transient volatile long successes;
+        transient volatile long failures;
+        transient volatile long parks;
+        transient int probes;          // racy; only paces probing
+
+        /**
+         * Returns the period to spin for, or zero if not spinning.
+         */
+        final long spinNanos() {
+            if (!MP)
+                return 0L;
+            long a = avgWait;
+            if (a <= (MAX_SPIN_NANOS >>> 1))
+                return Math.max(MIN_SPIN_NANOS, a << 1);
+            return ((++probes & PROBE_MASK) == 0) ? MIN_SPIN_NANOS : 0L;
+        }
+
+        /**
+         * Updates the moving average (weight 1/8) with the given
+         * wait. Races may lose updates, which is harmless.
+         */
+        final void recordWait(long w) {
+            long a = avgWait;
+            avgWait = a + ((w - a) >> 3);
+        }
+
+        final void countSuccess() {
+            unsafe.getAndAddLong(this, successesOffset, 1L);
+        }
+
+        final void countFailure() {
+            unsafe.getAndAddLong(this, failuresOffset, 1L);
+        }
+
+        final void countPark() {
+            unsafe.getAndAddLong(this, parksOffset, 1L);
+        }
+
+        /**
+         * Reconstitutes the policy from a stream, restoring the
+         * initial average, which is not set for transient fields by
+         * deserialization.
+         */
+        private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+            s.defaultReadObject();
+            avgWait = INITIAL_AVG_WAIT;
+        }
+
+        private static final long successesOffset;
+        private static final long failuresOffset;
+        private static final long parksOffset;
+        static {
+            try {
+                successesOffset = unsafe.objectFieldOffset
+                        (SpinPolicy.class.getDeclaredField("successes"));
+                failuresOffset = unsafe.objectFieldOffset
+                        (SpinPolicy.class.getDeclaredField("failures"));
+                parksOffset = unsafe.objectFieldOffset
+                        (SpinPolicy.class.getDeclaredField("parks"));
+            } catch (Exception ex) { throw new Error(ex); }
+        }
+    }
+
+    /**
+     * Tries to acquire by spinning for the period chosen by the given
+     * policy. Between attempts, polls state with exponential backoff
+     * until it changes, to avoid hammering it with failing CASes.
+     *
+     * @param sp the policy
+     * @param arg the acquire argument
+     * @param shared true if acquiring in shared mode
+     * @return {@code true} if acquired
+     */
+    private boolean spinAcquire(SpinPolicy sp, int arg, boolean shared) {
+        long spin = sp.spinNanos();
+        if (spin <= 0L)
+            return false;
+        final long start = System.nanoTime();
+        final long deadline = start + spin;
+        for (int backoff = 1;;) {
+            int c = state;
+            for (int k = backoff; k > 0 && state == c; --k)
+                ;
+            if (shared ? tryAcquireShared(arg) >= 0 : tryAcquire(arg)) {
+                sp.recordWait(System.nanoTime() - start);
+                sp.countSuccess();
+                return true;
+            }
+            if (System.nanoTime() - deadline >= 0L) {
+                sp.recordWait(SpinPolicy.MAX_SPIN_NANOS << 1);
+                sp.countFailure();
+                return false;
+            }
+            if (backoff < SpinPolicy.MAX_BACKOFF)
+                backoff <<= 1;
+        }
+    }
+
+    /**
+     * Returns true if adaptive spinning is enabled and spinAcquire
+     * succeeded.
+     */
+    private boolean trySpinAcquire(int arg, boolean shared) {
+        SpinPolicy sp;
+        return (sp = spinPolicy) != null && spinAcquire(sp, arg, shared);
+    }
+
+    /**
+     * Counts a park of a queued thread if adaptive spinning is enabled.
+     */
+    private void countPark() {
+        SpinPolicy sp;
+        if ((sp = spinPolicy) != null)
+            sp.countPark();
+    }
+
+    // Profiling
+
+    /*
+     * When a LockProfiler probe is attached, the exported acquire
+     * methods report acquires that succeed at once via
+     * profileAcquired, and bracket those that go on to spin or queue
+     * by profileBegin/profileEnd. A wait that ends by interruption
+     * is not recorded, but is reported by profileAbandon so that
+     * any owner stack it sampled is discarded. For locks that are
+     * not profiled the only cost is a read of the probe field.
+     */
+
+    /**
+     * Records an acquire that succeeded without waiting.
+     * Package-private for use by fast paths of subclasses that
+     * bypass the exported acquire methods.
+     */
+    final void profileAcquired(boolean exclusive) {
+        LockProfiler.Probe p;
+        if ((p = probe) != null)
+            p.acquired(exclusive);
+    }
+
+    /**
+     * Returns the start time of a wait if profiled, else zero.
+     */
+    private long profileBegin() {
+        LockProfiler.Probe p;
+        return ((p = probe) == null) ? 0L : p.beginWait(this);
+    }
+
+    /**
+     * Records the end of a wait begun by profileBegin.
+     */
+    private void profileEnd(long start, boolean acquired, boolean exclusive) {
+        LockProfiler.Probe p;
+        if (start != 0L && (p = probe) != null)
+            p.endWait(start, acquired, exclusive);
+    }
+
+    /**
+     * Records the end by interruption of a wait begun by profileBegin.
+     */
+    private void profileAbandon(long start) {
+        LockProfiler.Probe p;
+        if (start != 0L && (p = probe) != null)
+            p.abandonWait();
+    }
+
     // Main exported methods
 
     /**
@@ -1332,11 +1554,17 @@ public abstract class AbstractQueuedSynchronizer
      *        can represent anything you like.
      */
     public final void acquire(int arg) {
-        if (!tryAcquire(arg) &&
-                /* 获取同步状态失败后通过 addWaiter 方法将当前线程加入同步队列尾 */
-                acquireQueued(addWaiter(Node.EXCLUSIVE), arg))
-            // 获取锁失败并且加入队列失败则线程中断
-            selfInterrupt();
+        if (tryAcquire(arg))
+            profileAcquired(true);
+        else {
+            long start = profileBegin();
+            if (!trySpinAcquire(arg, false) &&
+                    /* 获取同步状态失败后通过 addWaiter 方法将当前线程加入同步队列尾 */
+                    acquireQueued(addWaiter(Node.EXCLUSIVE), arg))
+                // 获取锁失败并且加入队列失败则线程中断
+                selfInterrupt();
+            profileEnd(start, true, true);
+        }
     }
 
     /**
@@ -1357,8 +1585,19 @@ public abstract class AbstractQueuedSynchronizer
             throws InterruptedException {
         if (Thread.interrupted())
             throw new InterruptedException();
-        if (!tryAcquire(arg))
-            doAcquireInterruptibly(arg);
+        if (tryAcquire(arg))
+            profileAcquired(true);
+        else {
+            long start = profileBegin();
+            try {
+                if (!trySpinAcquire(arg, false))
+                    doAcquireInterruptibly(arg);
+            } catch (InterruptedException ie) {
+                profileAbandon(start);
+                throw ie;
+            }
+            profileEnd(start, true, true);
+        }
     }
 
     /**
@@ -1382,8 +1621,20 @@ public abstract class AbstractQueuedSynchronizer
             throws InterruptedException {
         if (Thread.interrupted())
             throw new InterruptedException();
-        return tryAcquire(arg) ||
-                doAcquireNanos(arg, nanosTimeout);
+        if (tryAcquire(arg)) {
+            profileAcquired(true);
+            return true;
+        }
+        long start = profileBegin();
+        boolean acquired;
+        try {
+            acquired = doAcquireNanos(arg, nanosTimeout);
+        } catch (InterruptedException ie) {
+            profileAbandon(start);
+            throw ie;
+        }
+        profileEnd(start, acquired, true);
+        return acquired;
     }
 
     /**
@@ -1401,6 +1652,9 @@ public abstract class AbstractQueuedSynchronizer
     public final boolean release(int arg) {
         // 独占式释放锁成功（修改状态值，需要重写）
         if (tryRelease(arg)) {
+            LockProfiler.Probe p;
+            if ((p = probe) != null)
+                p.released(false);
             Node h = head;
             // 唤醒后继节点，h.waitStatus != 0 表示头节点后还有节点在队列里，需要唤醒它，因为队列中只有最后一个节点的 waitStatus 才为 0
             if (h != null && h.waitStatus != 0)
@@ -1425,8 +1679,14 @@ public abstract class AbstractQueuedSynchronizer
      */
     public final void acquireShared(int arg) {
         // 获取成功直接返回，失败进入等待队列
-        if (tryAcquireShared(arg) < 0)
-            doAcquireShared(arg);
+        if (tryAcquireShared(arg) >= 0)
+            profileAcquired(false);
+        else {
+            long start = profileBegin();
+            if (!trySpinAcquire(arg, true))
+                doAcquireShared(arg);
+            profileEnd(start, true, false);
+        }
     }
 
     /**
@@ -1446,8 +1706,19 @@ public abstract class AbstractQueuedSynchronizer
             throws InterruptedException {
         if (Thread.interrupted())
             throw new InterruptedException();
-        if (tryAcquireShared(arg) < 0)
-            doAcquireSharedInterruptibly(arg);
+        if (tryAcquireShared(arg) >= 0)
+            profileAcquired(false);
+        else {
+            long start = profileBegin();
+            try {
+                if (!trySpinAcquire(arg, true))
+                    doAcquireSharedInterruptibly(arg);
+            } catch (InterruptedException ie) {
+                profileAbandon(start);
+                throw ie;
+            }
+            profileEnd(start, true, false);
+        }
     }
 
     /**
@@ -1470,8 +1741,20 @@ public abstract class AbstractQueuedSynchronizer
             throws InterruptedException {
         if (Thread.interrupted())
             throw new InterruptedException();
-        return tryAcquireShared(arg) >= 0 ||
-                doAcquireSharedNanos(arg, nanosTimeout);
+        if (tryAcquireShared(arg) >= 0) {
+            profileAcquired(false);
+            return true;
+        }
+        long start = profileBegin();
+        boolean acquired;
+        try {
+            acquired = doAcquireSharedNanos(arg, nanosTimeout);
+        } catch (InterruptedException ie) {
+            profileAbandon(start);
+            throw ie;
+        }
+        profileEnd(start, acquired, false);
+        return acquired;
     }
 
     /**
@@ -1672,6 +1955,100 @@ public abstract class AbstractQueuedSynchronizer
 
     // Instrumentation and monitoring methods
 
+    /**
+     * Enables or disables adaptive spinning. When enabled, a thread
+     * that fails to acquire in an untimed {@code acquire} method
+     * first retries for a short period, learned from how long recent
+     * spinning acquisitions had to wait, before being queued and
+     * parked. This avoids the cost of parking and unparking when
+     * critical sections are very short, but wastes processor time
+     * when they are not, and allows spinning threads to barge ahead
+     * of queued ones, so it is disabled by default. Re-enabling when
+     * already enabled has no effect; disabling discards the
+     * statistics.
+     *
+     * @param enabled {@code true} to enable adaptive spinning
+     * @since 1.8
+     */
+    protected void setAdaptiveSpinning(boolean enabled) {
+        if (!enabled)
+            spinPolicy = null;
+        else if (spinPolicy == null)
+            spinPolicy = new SpinPolicy();
+    }
+
+    /**
+     * Returns a snapshot of the adaptive spinning statistics, or
+     * {@code null} if adaptive spinning is disabled. This method is
+     * designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return the statistics, or {@code null} if not spinning
+     * @since 1.8
+     */
+    public SpinStatistics getAdaptiveSpinStatistics() {
+        SpinPolicy sp = spinPolicy;
+        return (sp == null) ? null : new SpinStatistics(sp);
+    }
+
+    /**
+     * A snapshot of the counts kept by a synchronizer that spins
+     * adaptively, returned by {@link
+     * AbstractQueuedSynchronizer#getAdaptiveSpinStatistics}. The
+     * counts cover the period since adaptive spinning was last
+     * enabled, and are only estimates when taken while threads are
+     * acquiring.
+     *
+     * @since 1.8
+     */
+    public static final class SpinStatistics {
+        private final long spinAcquireCount;
+        private final long spinFailureCount;
+        private final long parkCount;
+
+        SpinStatistics(SpinPolicy sp) {
+            this.spinAcquireCount = sp.successes;
+            this.spinFailureCount = sp.failures;
+            this.parkCount = sp.parks;
+        }
+
+        /**
+         * Returns the number of acquisitions that succeeded by
+         * spinning rather than queuing.
+         *
+         * @return the number of spinning acquisitions
+         */
+        public long getSpinAcquireCount() { return spinAcquireCount; }
+
+        /**
+         * Returns the number of spins that gave up and queued.
+         *
+         * @return the number of failed spins
+         */
+        public long getSpinFailureCount() { return spinFailureCount; }
+
+        /**
+         * Returns the number of times queued threads parked while
+         * waiting to acquire. Comparing this count with {@link
+         * #getSpinAcquireCount} shows whether spinning is effective.
+         *
+         * @return the number of parks
+         */
+        public long getParkCount() { return parkCount; }
+
+        /**
+         * Returns a string identifying these statistics.
+         *
+         * @return a string identifying these statistics
+         */
+        public String toString() {
+            return super.toString() +
+                "[spinAcquires = " + spinAcquireCount +
+                ", spinFailures = " + spinFailureCount +
+                ", parks = " + parkCount + "]";
+        }
+    }
+
     /**
      * Returns an estimate of the number of threads waiting to
      * acquire.  The value is only an estimate because the number of
@@ -0,0 +1,454 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent.locks;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReadWriteLock} for read-mostly data accessed by many
+ * threads, layered over a {@link ReentrantReadWriteLock}. While the
+ * lock is <em>read-biased</em>, a reader acquires the read lock by
+ * incrementing one of a set of padded per-lock counters chosen by
+ * hashing its thread, without touching the state of the underlying
+ * lock, so that readers on different processors do not contend for
+ * a shared cache line. A writer first acquires the underlying write
+ * lock, then revokes the bias and waits for all fast-path readers to
+ * release. Readers arriving while the bias is revoked use the
+ * underlying read lock; one of them restores the bias once a period
+ * proportional to the cost of the last revocation has elapsed, so
+ * that frequent writers do not repeatedly pay for revocation.
+ *
+ * <p>Apart from performance, this lock behaves as its underlying
+ * {@code ReentrantReadWriteLock}: both locks are reentrant, the write
+ * lock may be downgraded to a read lock but a read lock cannot be
+ * upgraded, only the write lock supports {@link Condition}s, and the
+ * given fairness policy orders threads that use the underlying
+ * lock. Readers on the fast path are not ordered with respect to
+ * waiting writers, but cannot acquire the read lock once a writer
+ * has revoked the bias.
+ *
+ * <p>Each instance holds one counter per processor, each padded to
+ * its own cache line, and each reading thread keeps a thread-local
+ * hold count. This lock is therefore best reserved for a few heavily
+ * shared objects; for most uses {@code ReentrantReadWriteLock} or
+ * {@link StampedLock} are preferable. Sample usage, for a cache read
+ * by many threads and rarely updated:
+ *
+ * <pre> {@code
+ * class Directory {
+ *   private final Map<String, Entry> m = new HashMap<String, Entry>();
+ *   private final BiasedReadWriteLock rwl = new BiasedReadWriteLock();
+ *   private final Lock r = rwl.readLock();
+ *   private final Lock w = rwl.writeLock();
+ *
+ *   public Entry get(String key) {
+ *     r.lock();
+ *     try { return m.get(key); }
+ *     finally { r.unlock(); }
+ *   }
+ *
+ *   public Entry put(String key, Entry value) {
+ *     w.lock();
+ *     try { return m.put(key, value); }
+ *     finally { w.unlock(); }
+ *   }
+ * }}</pre>
+ *
+ * @since 1.8
+ */
+public class BiasedReadWriteLock implements ReadWriteLock {
+    /*
+     * This is a per-lock variant of the BRAVO scheme (Dice & Kogan,
+     * "BRAVO: Biased Locking for Reader-Writer Locks"). Fast-path
+     * readers increment slot counters; since Java provides no
+     * processor id, the slot is chosen by hashing the thread id, so
+     * it is fixed per thread. The increment is a full fence, so a
+     * reader that then sees readBias still set is visible to any
+     * writer that later clears readBias and scans the slots;
+     * otherwise the reader backs out and takes the slow path.
+     *
+     * Each thread records its fast-path holds in a thread-local
+     * count. Besides telling unlock which path to release, this lets
+     * reentrant reads by a fast-path holder succeed while a writer
+     * waits for the slots to drain; taking the underlying read lock
+     * instead would deadlock with that writer.
+     *
+     * Bias is only restored by a slow-path reader holding the
+     * underlying read lock, which excludes writers other than a
+     * downgrading current thread, checked explicitly. Because a
+     * timed or untimed tryLock may give up before the slots drain,
+     * a later writer rescans them unless a previous scan completed
+     * since the bias was last restored.
+     */
+
+    /** Slot stride in longs: slots are 128 bytes apart. */
+    private static final int SLOT_SHIFT = 4;
+
+    /** Inhibition multiplier for the cost of revocation. */
+    private static final long INHIBIT_FACTOR = 9L;
+
+    /** Number of slots, a power of two at least the number of CPUs. */
+    private static final int NSLOTS;
+    static {
+        int n = Runtime.getRuntime().availableProcessors();
+        int s = 1;
+        while (s < n)
+            s <<= 1;
+        NSLOTS = s;
+    }
+
+    /** The underlying lock */
+    final ReentrantReadWriteLock rw;
+
+    /** Padded reader counts; slot i is at index (i + 1) << SLOT_SHIFT */
+    final long[] slots;
+
+    /** True if readers may use the slots */
+    volatile boolean readBias;
+
+    /** Time (System.nanoTime) before which bias is not restored */
+    long inhibitUntil;
+
+    /** True if no fast-path readers remain since bias was revoked */
+    boolean drained;
+
+    /** Fast-path read hold counts of the current thread */
+    final ThreadLocal<int[]> fastHolds;
+
+    private final ReadLock readerLock;
+    private final WriteLock writerLock;
+
+    /**
+     * Creates a new {@code BiasedReadWriteLock} with default
+     * (nonfair) ordering properties.
+     */
+    public BiasedReadWriteLock() {
+        this(false);
+    }
+
+    /**
+     * Creates a new {@code BiasedReadWriteLock} with the given
+     * fairness policy for its underlying lock.
+     *
+     * @param fair {@code true} if the underlying lock should use a
+     *        fair ordering policy
+     */
+    public BiasedReadWriteLock(boolean fair) {
+        rw = new ReentrantReadWriteLock(fair);
+        slots = new long[(NSLOTS + 2) << SLOT_SHIFT];
+        fastHolds = new ThreadLocal<int[]>() {
+            protected int[] initialValue() { return new int[1]; }
+        };
+        readBias = true;
+        readerLock = new ReadLock(this);
+        writerLock = new WriteLock(this);
+    }
+
+    public Lock writeLock() { return writerLock; }
+    public Lock readLock()  { return readerLock; }
+
+    /** Returns the array offset of the current thread's slot. */
+    static long slotOffset() {
+        long id = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+        int i = (int)(id >>> 32) & (NSLOTS - 1);
+        return ((long)(i + 1) << (SLOT_SHIFT + LSHIFT)) + LBASE;
+    }
+
+    /**
+     * Tries to acquire a read hold without using the underlying
+     * lock.
+     */
+    final boolean tryFastRead(int[] holds) {
+        if (holds[0] > 0) {            // reentrant; must not block
+            ++holds[0];
+            return true;
+        }
+        if (readBias) {
+            long off = slotOffset();
+            U.getAndAddLong(slots, off, 1L);
+            if (readBias) {
+                holds[0] = 1;
+                return true;
+            }
+            U.getAndAddLong(slots, off, -1L); // revoked; back out
+        }
+        return false;
+    }
+
+    /**
+     * Called after acquiring the underlying read lock: restores the
+     * bias if inhibition has expired.
+     */
+    final void maybeRestoreBias() {
+        if (!readBias && System.nanoTime() - inhibitUntil >= 0L &&
+            !rw.isWriteLockedByCurrentThread()) {
+            drained = false;
+            readBias = true;
+        }
+    }
+
+    final void releaseRead() {
+        int[] holds = fastHolds.get();
+        if (holds[0] > 0) {
+            if (--holds[0] == 0)
+                U.getAndAddLong(slots, slotOffset(), -1L);
+        }
+        else
+            rw.readLock().unlock();
+    }
+
+    /**
+     * Called while holding the underlying write lock: revokes the
+     * bias and waits for fast-path readers to drain, giving up upon
+     * interrupt (if interruptible) or once the given number of
+     * nanoseconds has elapsed (if timed; a timed call with a
+     * non-positive wait checks the slots once without waiting).
+     *
+     * @return true if no fast-path readers remain
+     */
+    final boolean revokeBias(boolean interruptible, boolean timed, long nanos)
+        throws InterruptedException {
+        if (drained && !readBias)
+            return true;
+        readBias = false;
+        long start = System.nanoTime();
+        final long deadline = timed ? start + nanos : 0L;
+        long[] ss = slots;
+        for (int i = 1; i <= NSLOTS; ++i) {
+            long off = ((long)i << (SLOT_SHIFT + LSHIFT)) + LBASE;
+            while (U.getLongVolatile(ss, off) != 0L) {
+                if (timed && deadline - System.nanoTime() <= 0L)
+                    return false;
+                if (interruptible && Thread.interrupted())
+                    throw new InterruptedException();
+                Thread.yield();
+            }
+        }
+        long now = System.nanoTime();
+        inhibitUntil = now + (now - start) * INHIBIT_FACTOR;
+        drained = true;
+        return true;
+    }
+
+    /**
+     * The read lock of a {@link BiasedReadWriteLock}.
+     */
+    static final class ReadLock implements Lock {
+        final BiasedReadWriteLock lock;
+        ReadLock(BiasedReadWriteLock lock) { this.lock = lock; }
+
+        public void lock() {
+            BiasedReadWriteLock l = lock;
+            if (!l.tryFastRead(l.fastHolds.get())) {
+                l.rw.readLock().lock();
+                l.maybeRestoreBias();
+            }
+        }
+
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            BiasedReadWriteLock l = lock;
+            if (!l.tryFastRead(l.fastHolds.get())) {
+                l.rw.readLock().lockInterruptibly();
+                l.maybeRestoreBias();
+            }
+        }
+
+        public boolean tryLock() {
+            BiasedReadWriteLock l = lock;
+            if (l.tryFastRead(l.fastHolds.get()))
+                return true;
+            if (!l.rw.readLock().tryLock())
+                return false;
+            l.maybeRestoreBias();
+            return true;
+        }
+
+        public boolean tryLock(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            BiasedReadWriteLock l = lock;
+            if (l.tryFastRead(l.fastHolds.get()))
+                return true;
+            if (!l.rw.readLock().tryLock(timeout, unit))
+                return false;
+            l.maybeRestoreBias();
+            return true;
+        }
+
+        public void unlock() {
+            lock.releaseRead();
+        }
+
+        /**
+         * Throws {@code UnsupportedOperationException} because
+         * {@code ReadLocks} do not support conditions.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        public String toString() {
+            return super.toString() + "[Read biased = " + lock.readBias + "]";
+        }
+    }
+
+    /**
+     * The write lock of a {@link BiasedReadWriteLock}.
+     */
+    static final class WriteLock implements Lock {
+        final BiasedReadWriteLock lock;
+        WriteLock(BiasedReadWriteLock lock) { this.lock = lock; }
+
+        public void lock() {
+            BiasedReadWriteLock l = lock;
+            l.rw.writeLock().lock();
+            try {
+                l.revokeBias(false, false, 0L);
+            } catch (InterruptedException cannotHappen) {
+            }
+        }
+
+        public void lockInterruptibly() throws InterruptedException {
+            BiasedReadWriteLock l = lock;
+            l.rw.writeLock().lockInterruptibly();
+            try {
+                l.revokeBias(true, false, 0L);
+            } catch (InterruptedException ie) {
+                l.rw.writeLock().unlock();
+                throw ie;
+            }
+        }
+
+        public boolean tryLock() {
+            BiasedReadWriteLock l = lock;
+            if (!l.rw.writeLock().tryLock())
+                return false;
+            boolean drained = false;
+            try {
+                drained = l.revokeBias(false, true, 0L);
+            } catch (InterruptedException cannotHappen) {
+            }
+            if (!drained)
+                l.rw.writeLock().unlock();
+            return drained;
+        }
+
+        public boolean tryLock(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            long deadline = System.nanoTime() + nanos;
+            BiasedReadWriteLock l = lock;
+            if (!l.rw.writeLock().tryLock(nanos, TimeUnit.NANOSECONDS))
+                return false;
+            boolean drained = false;
+            try {
+                drained = l.revokeBias(true, true,
+                                       deadline - System.nanoTime());
+            } finally {
+                if (!drained)
+                    l.rw.writeLock().unlock();
+            }
+            return drained;
+        }
+
+        public void unlock() {
+            lock.rw.writeLock().unlock();
+        }
+
+        public Condition newCondition() {
+            return lock.rw.writeLock().newCondition();
+        }
+
+        public String toString() {
+            return lock.rw.writeLock().toString();
+        }
+    }
+
+    /**
+     * Returns {@code true} if readers may currently acquire the read
+     * lock without using the underlying lock. This method is
+     * designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return {@code true} if the lock is currently read-biased
+     */
+    public boolean isReadBiased() {
+        return readBias;
+    }
+
+    /**
+     * Queries if the write lock is held by any thread.
+     *
+     * @return {@code true} if any thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLocked() {
+        return rw.isWriteLocked();
+    }
+
+    /**
+     * Queries if the write lock is held by the current thread.
+     *
+     * @return {@code true} if the current thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLockedByCurrentThread() {
+        return rw.isWriteLockedByCurrentThread();
+    }
+
+    /**
+     * Returns a string identifying this lock, as well as its lock state.
+     * The state, in brackets, includes whether the lock is read-biased,
+     * followed by the state of the underlying lock.
+     *
+     * @return a string identifying this lock, as well as its lock state
+     */
+    public String toString() {
+        return super.toString() +
+            "[Read biased = " + readBias + ", " + rw.toString() + "]";
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long LBASE;
+    private static final int LSHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            LBASE = U.arrayBaseOffset(long[].class);
+            int scale = U.arrayIndexScale(long[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            LSHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
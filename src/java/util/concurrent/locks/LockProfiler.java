@@ -0,0 +1,651 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent.locks;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opt-in contention profiling for named locks. Once a {@link
+ * ReentrantLock}, {@link ReentrantReadWriteLock}, {@link StampedLock}
+ * or other {@link AbstractQueuedSynchronizer} is {@linkplain
+ * #register registered}, each acquire and release of the lock
+ * updates a set of per-lock counters: the number of acquires, the
+ * number of acquires that had to wait, the total and maximum time
+ * spent waiting, and the total time the lock was held in exclusive
+ * mode.
+ *
+ * <p>Every acquire of a registered lock is counted, and acquires
+ * that wait are timed exactly; locks that are not registered pay only
+ * a volatile read when they are acquired or released.  Hold times are
+ * sampled to bound overhead: only one in every {@linkplain
+ * #setSampleInterval sample interval} exclusive acquires, on average,
+ * is timed until the matching release, and the total hold time is
+ * scaled up from these samples, so it is an estimate.  At most one
+ * hold of a lock is timed at a time, and a sampled hold is not timed
+ * if another is still being timed, as happens briefly while a release
+ * is completing, or if it is released by a thread other than the one
+ * that acquired it; such samples are lost, which biases the estimate
+ * slightly downward.  In addition, when a
+ * sampled acquire has to wait for a thread holding an exclusive lock
+ * of an {@code AbstractQueuedSynchronizer}, the stack of the owning
+ * thread is captured, and the one captured during the longest such
+ * wait is retained, showing what the owner was doing while others
+ * waited for it. As with hold times, only one such stack is pending
+ * at a time, and stacks sampled meanwhile by other waiters are
+ * discarded.
+ *
+ * <p>Acquires by methods that do not block, such as {@link
+ * Lock#tryLock()}, are not recorded. Condition waits and
+ * reacquisitions after them are not recorded either, and the hold
+ * time is not tracked for shared (read) modes.
+ *
+ * <p>Statistics of all registered locks, ordered by the time spent
+ * waiting for them, are available through {@link #getTopContended},
+ * and through JMX by registering the {@linkplain #getMXBean
+ * management interface}, for example:
+ * <pre> {@code
+ * LockProfiler.register("cache", cacheLock);
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(
+ *     LockProfiler.getMXBean(),
+ *     new ObjectName("java.util.concurrent.locks:type=LockProfiler"));}</pre>
+ *
+ * @since 1.8
+ */
+public final class LockProfiler {
+    private LockProfiler() {}
+
+    /** The largest sample interval */
+    static final int MAX_SAMPLE_INTERVAL = 1 << 20;
+
+    /** Mask of the sample interval, which is a power of two */
+    static volatile int sampleMask = (1 << 6) - 1;
+
+    /** Probes of registered locks, by name */
+    static final ConcurrentHashMap<String, Probe> probes =
+        new ConcurrentHashMap<String, Probe>();
+
+    /** The management interface, created lazily */
+    private static LockProfilerMXBean mxBean;
+
+    /**
+     * Starts profiling the given lock under the given name.
+     *
+     * @param name the name under which statistics are reported
+     * @param lock the lock
+     * @throws NullPointerException if name or lock is null
+     * @throws IllegalArgumentException if the name is already in use
+     * @throws IllegalStateException if the lock is already profiled
+     */
+    public static void register(String name, ReentrantLock lock) {
+        register(name, lock.synchronizer());
+    }
+
+    /**
+     * Starts profiling both the read and write locks of the given
+     * lock under the given name.
+     *
+     * @param name the name under which statistics are reported
+     * @param lock the lock
+     * @throws NullPointerException if name or lock is null
+     * @throws IllegalArgumentException if the name is already in use
+     * @throws IllegalStateException if the lock is already profiled
+     */
+    public static void register(String name, ReentrantReadWriteLock lock) {
+        register(name, lock.sync);
+    }
+
+    /**
+     * Starts profiling the given synchronizer under the given
+     * name. The time the synchronizer is held is tracked only if it
+     * is released using {@link AbstractQueuedSynchronizer#release}.
+     *
+     * @param name the name under which statistics are reported
+     * @param sync the synchronizer
+     * @throws NullPointerException if name or sync is null
+     * @throws IllegalArgumentException if the name is already in use
+     * @throws IllegalStateException if the synchronizer is already
+     * profiled
+     */
+    public static void register(String name,
+                                AbstractQueuedSynchronizer sync) {
+        if (name == null || sync == null)
+            throw new NullPointerException();
+        synchronized (probes) {
+            if (probes.containsKey(name))
+                throw new IllegalArgumentException(name);
+            if (sync.probe != null)
+                throw new IllegalStateException("already profiled");
+            Probe p = new Probe(name, sync);
+            probes.put(name, p);
+            sync.probe = p;
+        }
+    }
+
+    /**
+     * Starts profiling the given lock under the given name. Stacks
+     * of owning threads are not captured, since a {@code
+     * StampedLock} has no notion of ownership.
+     *
+     * @param name the name under which statistics are reported
+     * @param lock the lock
+     * @throws NullPointerException if name or lock is null
+     * @throws IllegalArgumentException if the name is already in use
+     * @throws IllegalStateException if the lock is already profiled
+     */
+    public static void register(String name, StampedLock lock) {
+        if (name == null || lock == null)
+            throw new NullPointerException();
+        synchronized (probes) {
+            if (probes.containsKey(name))
+                throw new IllegalArgumentException(name);
+            if (lock.probe != null)
+                throw new IllegalStateException("already profiled");
+            Probe p = new Probe(name, lock);
+            probes.put(name, p);
+            lock.probe = p;
+        }
+    }
+
+    /**
+     * Stops profiling the lock registered under the given name, and
+     * discards its statistics. Statistics of a registered lock that
+     * has been garbage collected are retained until this method is
+     * called.
+     *
+     * @param name the name of the lock
+     * @return {@code true} if a lock was registered under the name
+     */
+    public static boolean unregister(String name) {
+        synchronized (probes) {
+            Probe p = probes.remove(name);
+            if (p == null)
+                return false;
+            Object t = p.target.get();
+            if (t instanceof AbstractQueuedSynchronizer) {
+                AbstractQueuedSynchronizer s = (AbstractQueuedSynchronizer)t;
+                if (s.probe == p)
+                    s.probe = null;
+            }
+            else if (t instanceof StampedLock) {
+                StampedLock s = (StampedLock)t;
+                if (s.probe == p)
+                    s.probe = null;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the names of all registered locks.
+     *
+     * @return the names of all registered locks
+     */
+    public static String[] getLockNames() {
+        return probes.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the lock registered
+     * under the given name, or {@code null} if there is none.
+     *
+     * @param name the name of the lock
+     * @return the statistics, or {@code null} if none
+     */
+    public static LockStatistics getStatistics(String name) {
+        Probe p = probes.get(name);
+        return (p == null) ? null : p.snapshot();
+    }
+
+    /**
+     * Returns snapshots of the statistics of at most the given
+     * number of registered locks, in decreasing order of the total
+     * time spent waiting for them.
+     *
+     * @param n the maximum number of locks
+     * @return the statistics of the most contended locks
+     * @throws IllegalArgumentException if n is negative
+     */
+    public static LockStatistics[] getTopContended(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException();
+        ArrayList<LockStatistics> all = new ArrayList<LockStatistics>();
+        for (Probe p : probes.values())
+            all.add(p.snapshot());
+        LockStatistics[] a = all.toArray(new LockStatistics[0]);
+        Arrays.sort(a, new Comparator<LockStatistics>() {
+                public int compare(LockStatistics x, LockStatistics y) {
+                    return Long.compare(y.totalWaitNanos, x.totalWaitNanos);
+                }});
+        return (a.length <= n) ? a : Arrays.copyOf(a, n);
+    }
+
+    /**
+     * Clears the statistics of all registered locks.
+     */
+    public static void reset() {
+        for (Probe p : probes.values())
+            p.reset();
+    }
+
+    /**
+     * Returns the number of acquires per one whose hold time or
+     * owner stack is sampled.
+     *
+     * @return the sample interval
+     */
+    public static int getSampleInterval() {
+        return sampleMask + 1;
+    }
+
+    /**
+     * Sets the number of acquires per one whose hold time or owner
+     * stack is sampled, rounded up to a power of two. An interval of
+     * one samples every acquire, at the price of reading the clock
+     * on each exclusive acquire and release.
+     *
+     * @param interval the sample interval
+     * @throws IllegalArgumentException if interval is not positive or
+     * greater than 2<sup>20</sup>
+     */
+    public static void setSampleInterval(int interval) {
+        if (interval <= 0 || interval > MAX_SAMPLE_INTERVAL)
+            throw new IllegalArgumentException();
+        int n = 1;
+        while (n < interval)
+            n <<= 1;
+        sampleMask = n - 1;
+    }
+
+    /**
+     * Returns the management interface of the profiler, for
+     * registration with an {@code MBeanServer}.
+     *
+     * @return the management interface
+     */
+    public static synchronized LockProfilerMXBean getMXBean() {
+        LockProfilerMXBean m;
+        if ((m = mxBean) == null)
+            mxBean = m = new Management();
+        return m;
+    }
+
+    /**
+     * A snapshot of the statistics of one profiled lock. Hold times
+     * are estimated by sampling as described for {@link
+     * LockProfiler}; other values are exact, though not
+     * necessarily mutually consistent since they are read while the
+     * lock is in use.
+     *
+     * @since 1.8
+     */
+    public static final class LockStatistics {
+        final String name;
+        final long acquireCount;
+        final long contendedCount;
+        final long totalWaitNanos;
+        final long maxWaitNanos;
+        final long totalHoldNanos;
+        final long sampledWaitNanos;
+        final String ownerName;
+        final StackTraceElement[] ownerStackTrace;
+
+        LockStatistics(String name, long acquireCount, long contendedCount,
+                       long totalWaitNanos, long maxWaitNanos,
+                       long totalHoldNanos, StackSample worst) {
+            this.name = name;
+            this.acquireCount = acquireCount;
+            this.contendedCount = contendedCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.totalHoldNanos = totalHoldNanos;
+            if (worst == null) {
+                this.sampledWaitNanos = 0L;
+                this.ownerName = null;
+                this.ownerStackTrace = new StackTraceElement[0];
+            } else {
+                this.sampledWaitNanos = worst.waitNanos;
+                this.ownerName = worst.ownerName;
+                this.ownerStackTrace = (worst.stack == null) ?
+                    new StackTraceElement[0] : worst.stack.clone();
+            }
+        }
+
+        /**
+         * Returns the name under which the lock was registered.
+         *
+         * @return the name of the lock
+         */
+        public String getName() { return name; }
+
+        /**
+         * Returns the number of times the lock was acquired.
+         *
+         * @return the number of acquires
+         */
+        public long getAcquireCount() { return acquireCount; }
+
+        /**
+         * Returns the number of acquires that had to wait.
+         *
+         * @return the number of contended acquires
+         */
+        public long getContendedCount() { return contendedCount; }
+
+        /**
+         * Returns the total time spent by threads waiting to acquire
+         * the lock, in nanoseconds.
+         *
+         * @return the total wait time
+         */
+        public long getTotalWaitNanos() { return totalWaitNanos; }
+
+        /**
+         * Returns the longest time a thread waited to acquire the
+         * lock, in nanoseconds.
+         *
+         * @return the maximum wait time
+         */
+        public long getMaxWaitNanos() { return maxWaitNanos; }
+
+        /**
+         * Returns an estimate of the total time the lock was held in
+         * exclusive mode, in nanoseconds, scaled up from sampled
+         * holds.
+         *
+         * @return the total hold time
+         */
+        public long getTotalHoldNanos() { return totalHoldNanos; }
+
+        /**
+         * Returns the wait during which the {@linkplain
+         * #getOwnerStackTrace owner stack trace} was captured, in
+         * nanoseconds, or zero if none was captured.
+         *
+         * @return the wait time of the sampled owner stack trace
+         */
+        public long getSampledWaitNanos() { return sampledWaitNanos; }
+
+        /**
+         * Returns the name of the thread whose stack trace was
+         * captured, or {@code null} if none was captured.
+         *
+         * @return the name of the owner thread, or {@code null}
+         */
+        public String getOwnerName() { return ownerName; }
+
+        /**
+         * Returns the stack trace of the thread holding the lock
+         * during the longest sampled wait for it, or an empty array
+         * if none was captured or access to it was denied.
+         *
+         * @return the stack trace of the owner thread
+         */
+        public StackTraceElement[] getOwnerStackTrace() {
+            return ownerStackTrace.clone();
+        }
+
+        /**
+         * Returns a string identifying the lock and its statistics.
+         *
+         * @return a string identifying the lock and its statistics
+         */
+        public String toString() {
+            return name +
+                "[acquires = " + acquireCount +
+                ", contended = " + contendedCount +
+                ", wait = " + totalWaitNanos +
+                "ns, max wait = " + maxWaitNanos +
+                "ns, hold = " + totalHoldNanos +
+                "ns" + ((ownerName == null) ? "" :
+                        ", worst owner = " + ownerName) +
+                "]";
+        }
+    }
+
+    /**
+     * The stack trace of a lock owner, captured by a waiting thread.
+     */
+    static final class StackSample {
+        final Thread waiter;
+        final String ownerName;
+        final StackTraceElement[] stack;
+        long waitNanos;      // set by waiter when adopted
+        StackSample(Thread waiter, String ownerName,
+                    StackTraceElement[] stack) {
+            this.waiter = waiter;
+            this.ownerName = ownerName;
+            this.stack = stack;
+        }
+    }
+
+    /**
+     * Counters for one registered lock, updated by the lock
+     * itself. Acquire paths call acquired or beginWait and then
+     * endWait or abandonWait, and exclusive releases call
+     * released. The lock is weakly referenced so that registration
+     * does not prevent collection.
+     *
+     * A sampled hold is claimed by CASing holdThread from null to
+     * the acquiring thread, which alone then writes holdStart, and
+     * is ended only by that thread (or, for StampedLock, by any
+     * thread releasing the write lock while still holding it). So a
+     * releasing thread that has already given up the lock cannot
+     * consume the hold of the next owner; when the CAS fails the
+     * sample is simply lost. Owner stacks are claimed the same way
+     * through candidate, and cleared by their waiter when its wait
+     * ends for any reason.
+     */
+    static final class Probe {
+        final String name;
+        final WeakReference<Object> target;
+        volatile long acquires;
+        volatile long contended;
+        volatile long waitNanos;
+        volatile long maxWait;
+        volatile long holdNanos;
+        volatile Thread holdThread;  // non-null while a sampled hold is timed
+        long holdStart;              // written and read by holdThread
+        volatile StackSample candidate;
+        volatile StackSample worst;
+
+        Probe(String name, Object target) {
+            this.name = name;
+            this.target = new WeakReference<Object>(target);
+        }
+
+        /**
+         * Counts an acquire, and starts timing the hold if exclusive
+         * and sampled.
+         */
+        private void countAcquire(boolean exclusive, long now) {
+            U.getAndAddLong(this, ACQUIRES, 1L);
+            if (exclusive &&
+                (ThreadLocalRandom.current().nextInt() & sampleMask) == 0 &&
+                holdThread == null &&
+                U.compareAndSwapObject(this, HOLDTHREAD, null,
+                                       Thread.currentThread()))
+                holdStart = (now != 0L) ? now : System.nanoTime();
+        }
+
+        /**
+         * Records an acquire that did not wait.
+         */
+        final void acquired(boolean exclusive) {
+            countAcquire(exclusive, 0L);
+        }
+
+        /**
+         * Called before waiting to acquire. If sampled, and the given
+         * synchronizer is exclusively owned by another thread, and no
+         * other owner stack is pending, captures the stack of the
+         * owner.
+         *
+         * @param sync the synchronizer, or null if none
+         * @return the start time of the wait
+         */
+        final long beginWait(AbstractQueuedSynchronizer sync) {
+            Thread o, w;
+            if (sync != null &&
+                (ThreadLocalRandom.current().nextInt() & sampleMask) == 0 &&
+                candidate == null &&
+                (o = sync.getExclusiveOwnerThread()) != null &&
+                o != (w = Thread.currentThread())) {
+                StackTraceElement[] st;
+                try {
+                    st = o.getStackTrace();
+                } catch (SecurityException ignore) {
+                    st = null;
+                }
+                U.compareAndSwapObject(this, CANDIDATE, null,
+                                       new StackSample(w, o.getName(), st));
+            }
+            return System.nanoTime();
+        }
+
+        /**
+         * Records a wait started at the given time.
+         *
+         * @param start the value returned by beginWait
+         * @param acquired true if the wait ended in acquiring
+         * @param exclusive true if acquired in exclusive mode
+         */
+        final void endWait(long start, boolean acquired, boolean exclusive) {
+            long now = System.nanoTime(), w = now - start, m;
+            U.getAndAddLong(this, CONTENDED, 1L);
+            U.getAndAddLong(this, WAITNANOS, w);
+            while (w > (m = maxWait) &&
+                   !U.compareAndSwapLong(this, MAXWAIT, m, w))
+                ;
+            StackSample c, b;
+            if ((c = candidate) != null && c.waiter == Thread.currentThread()) {
+                c.waitNanos = w;
+                if ((b = worst) == null || w > b.waitNanos)
+                    worst = c;
+                candidate = null;
+            }
+            if (acquired)
+                countAcquire(exclusive, now);
+        }
+
+        /**
+         * Called instead of endWait when a wait ends by interruption,
+         * to discard the owner stack captured by this thread, if any.
+         */
+        final void abandonWait() {
+            StackSample c;
+            if ((c = candidate) != null && c.waiter == Thread.currentThread())
+                candidate = null;
+        }
+
+        /**
+         * Records the end of an exclusive hold, if one is timed by
+         * the current thread, or by any thread if the caller still
+         * holds the lock.
+         *
+         * @param holding true if called before giving up the lock
+         */
+        final void released(boolean holding) {
+            Thread t;
+            if ((t = holdThread) != null &&
+                (holding || t == Thread.currentThread())) {
+                long s = holdStart;
+                holdThread = null;
+                U.getAndAddLong(this, HOLDNANOS,
+                                (System.nanoTime() - s) * (sampleMask + 1L));
+            }
+        }
+
+        final LockStatistics snapshot() {
+            return new LockStatistics(name, acquires, contended, waitNanos,
+                                      maxWait, holdNanos, worst);
+        }
+
+        final void reset() {
+            acquires = contended = waitNanos = maxWait = holdNanos = 0L;
+            worst = null;
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long ACQUIRES;
+        private static final long CONTENDED;
+        private static final long WAITNANOS;
+        private static final long MAXWAIT;
+        private static final long HOLDNANOS;
+        private static final long HOLDTHREAD;
+        private static final long CANDIDATE;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = Probe.class;
+                ACQUIRES = U.objectFieldOffset
+                    (k.getDeclaredField("acquires"));
+                CONTENDED = U.objectFieldOffset
+                    (k.getDeclaredField("contended"));
+                WAITNANOS = U.objectFieldOffset
+                    (k.getDeclaredField("waitNanos"));
+                MAXWAIT = U.objectFieldOffset
+                    (k.getDeclaredField("maxWait"));
+                HOLDNANOS = U.objectFieldOffset
+                    (k.getDeclaredField("holdNanos"));
+                HOLDTHREAD = U.objectFieldOffset
+                    (k.getDeclaredField("holdThread"));
+                CANDIDATE = U.objectFieldOffset
+                    (k.getDeclaredField("candidate"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * The management interface, delegating to static methods.
+     */
+    static final class Management implements LockProfilerMXBean {
+        public String[] getLockNames() {
+            return LockProfiler.getLockNames();
+        }
+        public LockStatistics getLockStatistics(String name) {
+            return LockProfiler.getStatistics(name);
+        }
+        public LockStatistics[] getTopContendedLocks(int n) {
+            return LockProfiler.getTopContended(n);
+        }
+        public int getSampleInterval() {
+            return LockProfiler.getSampleInterval();
+        }
+        public void setSampleInterval(int interval) {
+            LockProfiler.setSampleInterval(interval);
+        }
+        public void reset() {
+            LockProfiler.reset();
+        }
+    }
+}
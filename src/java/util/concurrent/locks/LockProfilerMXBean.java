@@ -0,0 +1,91 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.concurrent.locks;
+
+/**
+ * The management interface for the {@link LockProfiler}, obtained
+ * from {@link LockProfiler#getMXBean}. It is not registered
+ * automatically; applications wishing to monitor lock contention
+ * through JMX register it with an {@code MBeanServer}.
+ *
+ * @since 1.8
+ */
+public interface LockProfilerMXBean {
+
+    /**
+     * Returns the names of all registered locks.
+     *
+     * @return the names of all registered locks
+     * @see LockProfiler#getLockNames
+     */
+    String[] getLockNames();
+
+    /**
+     * Returns the statistics of the lock registered under the given
+     * name, or {@code null} if there is none.
+     *
+     * @param name the name of the lock
+     * @return the statistics, or {@code null} if none
+     * @see LockProfiler#getStatistics
+     */
+    LockProfiler.LockStatistics getLockStatistics(String name);
+
+    /**
+     * Returns the statistics of at most the given number of
+     * registered locks, in decreasing order of the total time spent
+     * waiting for them.
+     *
+     * @param n the maximum number of locks
+     * @return the statistics of the most contended locks
+     * @see LockProfiler#getTopContended
+     */
+    LockProfiler.LockStatistics[] getTopContendedLocks(int n);
+
+    /**
+     * Returns the number of acquires per one whose hold time or
+     * owner stack is sampled.
+     *
+     * @return the sample interval
+     * @see LockProfiler#getSampleInterval
+     */
+    int getSampleInterval();
+
+    /**
+     * Sets the number of acquires per one whose hold time or owner
+     * stack is sampled.
+     *
+     * @param interval the sample interval
+     * @see LockProfiler#setSampleInterval
+     */
+    void setSampleInterval(int interval);
+
+    /**
+     * Clears the statistics of all registered locks.
+     *
+     * @see LockProfiler#reset
+     */
+    void reset();
+}
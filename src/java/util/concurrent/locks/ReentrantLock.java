@@ -247,8 +247,10 @@ public class ReentrantLock implements Lock, java.io.Serializable {
          */
         final void lock() {
             // 非公平锁线程每次进来都会尝试一次获取锁，而公平锁没有该步骤
-            if (compareAndSetState(0, 1))
+            if (compareAndSetState(0, 1)) {
                 setExclusiveOwnerThread(Thread.currentThread());
+                profileAcquired(true);
+            }
             else
                 // 第一次尝试没有获取成功
                 acquire(1);
@@ -344,6 +346,24 @@ public class ReentrantLock implements Lock, java.io.Serializable {
         sync = fair ? new FairSync() : new NonfairSync();
     }
 
+    /**
+     * Creates an instance of {@code ReentrantLock} with the
+     * given fairness policy and spinning setting. With adaptive
+     * spinning, a thread finding the lock held spins briefly before
+     * parking, for a period learned from recent spins, which helps
+     * when the lock is held only for very short periods. See {@link
+     * AbstractQueuedSynchronizer#setAdaptiveSpinning}.
+     *
+     * @param fair {@code true} if this lock should use a fair ordering policy
+     * @param adaptiveSpinning {@code true} if threads should spin
+     *        adaptively before parking
+     * @since 1.8
+     */
+    public ReentrantLock(boolean fair, boolean adaptiveSpinning) {
+        this(fair);
+        sync.setAdaptiveSpinning(adaptiveSpinning);
+    }
+
     /**
      * Acquires the lock.
      *
@@ -667,6 +687,14 @@ public class ReentrantLock implements Lock, java.io.Serializable {
         return sync.isLocked();
     }
 
+    /**
+     * Returns the synchronizer of this lock, for registration with
+     * {@link LockProfiler}.
+     */
+    final AbstractQueuedSynchronizer synchronizer() {
+        return sync;
+    }
+
     /**
      * Returns {@code true} if this lock has fairness set true.
      *
@@ -751,6 +779,20 @@ public class ReentrantLock implements Lock, java.io.Serializable {
         return sync.getQueuedThreads();
     }
 
+    /**
+     * Returns a snapshot of the adaptive spinning statistics of
+     * threads acquiring this lock, or {@code null} if adaptive
+     * spinning is disabled. This method is designed for use in
+     * monitoring of the system state, not for synchronization
+     * control.
+     *
+     * @return the statistics, or {@code null} if not spinning
+     * @since 1.8
+     */
+    public AbstractQueuedSynchronizer.SpinStatistics getAdaptiveSpinStatistics() {
+        return sync.getAdaptiveSpinStatistics();
+    }
+
     /**
      * Queries whether any threads are waiting on the given condition
      * associated with this lock. Note that because timeouts and
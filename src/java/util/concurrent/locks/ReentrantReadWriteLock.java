@@ -245,6 +245,24 @@ public class ReentrantReadWriteLock
         writerLock = new WriteLock(this);
     }
 
+    /**
+     * Creates a new {@code ReentrantReadWriteLock} with the given
+     * fairness policy and spinning setting. With adaptive spinning,
+     * a thread that cannot immediately acquire the read or write
+     * lock spins briefly before parking, for a period learned from
+     * recent spins. See {@link
+     * AbstractQueuedSynchronizer#setAdaptiveSpinning}.
+     *
+     * @param fair {@code true} if this lock should use a fair ordering policy
+     * @param adaptiveSpinning {@code true} if threads should spin
+     *        adaptively before parking
+     * @since 1.8
+     */
+    public ReentrantReadWriteLock(boolean fair, boolean adaptiveSpinning) {
+        this(fair);
+        sync.setAdaptiveSpinning(adaptiveSpinning);
+    }
+
     public ReentrantReadWriteLock.WriteLock writeLock() { return writerLock; }
     public ReentrantReadWriteLock.ReadLock  readLock()  { return readerLock; }
 
@@ -1506,6 +1524,20 @@ public class ReentrantReadWriteLock
         return sync.getQueuedThreads();
     }
 
+    /**
+     * Returns a snapshot of the adaptive spinning statistics of
+     * threads acquiring the read or write lock, or {@code null} if
+     * adaptive spinning is disabled. This method is designed for use
+     * in monitoring of the system state, not for synchronization
+     * control.
+     *
+     * @return the statistics, or {@code null} if not spinning
+     * @since 1.8
+     */
+    public AbstractQueuedSynchronizer.SpinStatistics getAdaptiveSpinStatistics() {
+        return sync.getAdaptiveSpinStatistics();
+    }
+
     /**
      * Queries whether any threads are waiting on the given condition
      * associated with the write lock. Note that because timeouts and
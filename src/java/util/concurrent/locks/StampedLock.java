@@ -333,6 +333,8 @@ public class StampedLock implements java.io.Serializable {
     private transient volatile long state;
     /** extra reader count when state read count saturated */
     private transient int readerOverflow;
+    /** Contention profiling probe, or null; set by LockProfiler */
+    transient volatile LockProfiler.Probe probe;
 
     /**
      * Creates a new lock, initially in unlocked state.
@@ -351,7 +353,7 @@ public class StampedLock implements java.io.Serializable {
         long s, next;  // bypass acquireWrite in fully unlocked case only
         return ((((s = state) & ABITS) == 0L &&
                  U.compareAndSwapLong(this, STATE, s, next = s + WBIT)) ?
-                next : acquireWrite(false, 0L));
+                profileAcquired(next, true) : profiledAcquireWrite(false, 0L));
     }
 
     /**
@@ -386,12 +388,12 @@ public class StampedLock implements java.io.Serializable {
         if (!Thread.interrupted()) {
             long next, deadline;
             if ((next = tryWriteLock()) != 0L)
-                return next;
+                return profileAcquired(next, true);
             if (nanos <= 0L)
                 return 0L;
             if ((deadline = System.nanoTime() + nanos) == 0L)
                 deadline = 1L;
-            if ((next = acquireWrite(true, deadline)) != INTERRUPTED)
+            if ((next = profiledAcquireWrite(true, deadline)) != INTERRUPTED)
                 return next;
         }
         throw new InterruptedException();
@@ -410,7 +412,7 @@ public class StampedLock implements java.io.Serializable {
     public long writeLockInterruptibly() throws InterruptedException {
         long next;
         if (!Thread.interrupted() &&
-            (next = acquireWrite(true, 0L)) != INTERRUPTED)
+            (next = profiledAcquireWrite(true, 0L)) != INTERRUPTED)
             return next;
         throw new InterruptedException();
     }
@@ -425,7 +427,7 @@ public class StampedLock implements java.io.Serializable {
         long s = state, next;  // bypass acquireRead on common uncontended case
         return ((whead == wtail && (s & ABITS) < RFULL &&
                  U.compareAndSwapLong(this, STATE, s, next = s + RUNIT)) ?
-                next : acquireRead(false, 0L));
+                profileAcquired(next, false) : profiledAcquireRead(false, 0L));
     }
 
     /**
@@ -469,16 +471,16 @@ public class StampedLock implements java.io.Serializable {
             if ((m = (s = state) & ABITS) != WBIT) {
                 if (m < RFULL) {
                     if (U.compareAndSwapLong(this, STATE, s, next = s + RUNIT))
-                        return next;
+                        return profileAcquired(next, false);
                 }
                 else if ((next = tryIncReaderOverflow(s)) != 0L)
-                    return next;
+                    return profileAcquired(next, false);
             }
             if (nanos <= 0L)
                 return 0L;
             if ((deadline = System.nanoTime() + nanos) == 0L)
                 deadline = 1L;
-            if ((next = acquireRead(true, deadline)) != INTERRUPTED)
+            if ((next = profiledAcquireRead(true, deadline)) != INTERRUPTED)
                 return next;
         }
         throw new InterruptedException();
@@ -497,7 +499,7 @@ public class StampedLock implements java.io.Serializable {
     public long readLockInterruptibly() throws InterruptedException {
         long next;
         if (!Thread.interrupted() &&
-            (next = acquireRead(true, 0L)) != INTERRUPTED)
+            (next = profiledAcquireRead(true, 0L)) != INTERRUPTED)
             return next;
         throw new InterruptedException();
     }
@@ -542,6 +544,7 @@ public class StampedLock implements java.io.Serializable {
         WNode h;
         if (state != stamp || (stamp & WBIT) == 0L)
             throw new IllegalMonitorStateException();
+        profileReleased();
         state = (stamp += WBIT) == 0L ? ORIGIN : stamp;
         if ((h = whead) != null && h.status != 0)
             release(h);
@@ -589,6 +592,7 @@ public class StampedLock implements java.io.Serializable {
             else if (m == WBIT) {
                 if (a != m)
                     break;
+                profileReleased();
                 state = (s += WBIT) == 0L ? ORIGIN : s;
                 if ((h = whead) != null && h.status != 0)
                     release(h);
@@ -673,6 +677,7 @@ public class StampedLock implements java.io.Serializable {
             else if (m == WBIT) {
                 if (a != m)
                     break;
+                profileReleased();
                 state = next = s + (WBIT + RUNIT);
                 if ((h = whead) != null && h.status != 0)
                     release(h);
@@ -710,6 +715,7 @@ public class StampedLock implements java.io.Serializable {
             else if (m == WBIT) {
                 if (a != m)
                     break;
+                profileReleased();
                 state = next = (s += WBIT) == 0L ? ORIGIN : s;
                 if ((h = whead) != null && h.status != 0)
                     release(h);
@@ -740,6 +746,7 @@ public class StampedLock implements java.io.Serializable {
     public boolean tryUnlockWrite() {
         long s; WNode h;
         if (((s = state) & WBIT) != 0L) {
+            profileReleased();
             state = (s += WBIT) == 0L ? ORIGIN : s;
             if ((h = whead) != null && h.status != 0)
                 release(h);
@@ -923,6 +930,7 @@ public class StampedLock implements java.io.Serializable {
         WNode h; long s;
         if (((s = state) & WBIT) == 0L)
             throw new IllegalMonitorStateException();
+        profileReleased();
         state = (s += WBIT) == 0L ? ORIGIN : s;
         if ((h = whead) != null && h.status != 0)
             release(h);
@@ -945,6 +953,62 @@ public class StampedLock implements java.io.Serializable {
         }
     }
 
+    // Profiling support; see LockProfiler
+
+    /**
+     * Records an acquire that did not wait, if profiled.
+     *
+     * @return the given stamp
+     */
+    private long profileAcquired(long stamp, boolean write) {
+        LockProfiler.Probe p;
+        if ((p = probe) != null)
+            p.acquired(write);
+        return stamp;
+    }
+
+    /**
+     * Invokes acquireWrite, timing the wait if profiled.
+     */
+    private long profiledAcquireWrite(boolean interruptible, long deadline) {
+        LockProfiler.Probe p;
+        if ((p = probe) == null)
+            return acquireWrite(interruptible, deadline);
+        long start = p.beginWait(null);
+        long next = acquireWrite(interruptible, deadline);
+        if (next != INTERRUPTED)
+            p.endWait(start, next != 0L, true);
+        else
+            p.abandonWait();
+        return next;
+    }
+
+    /**
+     * Invokes acquireRead, timing the wait if profiled.
+     */
+    private long profiledAcquireRead(boolean interruptible, long deadline) {
+        LockProfiler.Probe p;
+        if ((p = probe) == null)
+            return acquireRead(interruptible, deadline);
+        long start = p.beginWait(null);
+        long next = acquireRead(interruptible, deadline);
+        if (next != INTERRUPTED)
+            p.endWait(start, next != 0L, false);
+        else
+            p.abandonWait();
+        return next;
+    }
+
+    /**
+     * Ends the timing of a write hold, if profiled. Called while
+     * still holding the write lock.
+     */
+    private void profileReleased() {
+        LockProfiler.Probe p;
+        if ((p = probe) != null)
+            p.released(true);
+    }
+
     private void readObject(java.io.ObjectInputStream s)
         throws java.io.IOException, ClassNotFoundException {
         s.defaultReadObject();
@@ -107,6 +107,14 @@
  * similar, but additionally supports the {@link java.util.Deque}
  * interface.
  *
+ * <p>When the number of consumers (and possibly producers) is known
+ * to be one, the classes {@link java.util.concurrent.SpscArrayQueue},
+ * {@link java.util.concurrent.SpscLinkedArrayQueue},
+ * {@link java.util.concurrent.MpscArrayQueue} and
+ * {@link java.util.concurrent.MpscLinkedArrayQueue} avoid atomic
+ * updates at the single-threaded end(s), and support batched
+ * removal via {@code drain}.
+ *
  * <p>Five implementations in {@code java.util.concurrent} support
  * the extended {@link java.util.concurrent.BlockingQueue}
  * interface, that defines blocking versions of put and take:
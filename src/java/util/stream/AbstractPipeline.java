@@ -148,6 +148,18 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
      */
     private boolean parallel;
 
+    /**
+     * The execution context for parallel evaluation, or null if parallel
+     * evaluation uses the common pool; only valid for the source stage.
+     */
+    private ParallelExecution parallelExecution;
+
+    /**
+     * The profile recording evaluation, or null if not profiled; only valid
+     * for the source stage.
+     */
+    private StreamProfile profile;
+
     /**
      * Constructor for the head of a stream pipeline.
      *
@@ -229,9 +241,12 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             throw new IllegalStateException(MSG_STREAM_LINKED);
         linkedOrConsumed = true;
 
-        return isParallel()
-               ? terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()))
-               : terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
+        if (!isParallel())
+            return terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
+        ParallelExecution e = sourceStage.parallelExecution;
+        if (e == null)
+            return terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()));
+        return e.evaluate(() -> terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags())));
     }
 
     /**
@@ -249,7 +264,13 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         // If the last intermediate operation is stateful then
         // evaluate directly to avoid an extra collection step
         if (isParallel() && previousStage != null && opIsStateful()) {
-            return opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator);
+            ParallelExecution e = sourceStage.parallelExecution;
+            if (e == null)
+                return opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator);
+            return e.evaluate(() -> opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator));
+        }
+        else if (isParallel() && sourceStage.parallelExecution != null) {
+            return sourceStage.parallelExecution.evaluate(() -> evaluate(sourceSpliterator(0), true, generator));
         }
         else {
             return evaluate(sourceSpliterator(0), true, generator);
@@ -297,6 +318,7 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     @SuppressWarnings("unchecked")
     public final S sequential() {
         sourceStage.parallel = false;
+        sourceStage.parallelExecution = null;
         return (S) this;
     }
 
@@ -304,6 +326,24 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     @SuppressWarnings("unchecked")
     public final S parallel() {
         sourceStage.parallel = true;
+        sourceStage.parallelExecution = null;
+        return (S) this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final S parallel(ParallelExecution execution) {
+        Objects.requireNonNull(execution);
+        sourceStage.parallel = true;
+        sourceStage.parallelExecution = execution;
+        return (S) this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final S profile(StreamProfile profile) {
+        Objects.requireNonNull(profile);
+        sourceStage.profile = profile;
         return (S) this;
     }
 
@@ -535,6 +575,16 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return combinedFlags;
     }
 
+    @Override
+    final ParallelExecution getParallelExecution() {
+        return sourceStage.parallelExecution;
+    }
+
+    @Override
+    final StreamProfile getProfile() {
+        return sourceStage.profile;
+    }
+
     final boolean isOrdered() {
         return StreamOpFlag.ORDERED.isKnown(combinedFlags);
     }
@@ -543,6 +593,8 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     @SuppressWarnings("unchecked")
     final <P_IN> Sink<P_IN> wrapSink(Sink<E_OUT> sink) {
         Objects.requireNonNull(sink);
+        if (sourceStage.profile != null)
+            return profiledWrapSink(sourceStage.profile, sink);
 
         for ( @SuppressWarnings("rawtypes") AbstractPipeline p=AbstractPipeline.this; p.depth > 0; p=p.previousStage) {
             sink = p.opWrapSink(p.previousStage.combinedFlags, sink);
@@ -550,6 +602,25 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return (Sink<P_IN>) sink;
     }
 
+    /**
+     * Wraps the sink as by {@link #wrapSink(Sink)}, also wrapping the sink
+     * of each stage, and the given sink, with a sink recording into the
+     * profile.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <P_IN> Sink<P_IN> profiledWrapSink(StreamProfile profile, Sink<E_OUT> sink) {
+        int index = 0;
+        for (AbstractPipeline p = previousStage; p != null; p = p.previousStage)
+            ++index;
+        StreamProfile.Sampler sampler = profile.newSampler();
+        Sink s = profile.wrapTerminal(sampler, this, index, getOutputShape(), sink);
+        for (AbstractPipeline p = AbstractPipeline.this; p.depth > 0; p = p.previousStage, --index) {
+            s = p.opWrapSink(p.previousStage.combinedFlags, s);
+            s = profile.wrapStage(sampler, p, index, p.previousStage.getOutputShape(), s);
+        }
+        return (Sink<P_IN>) s;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     final <P_IN> Spliterator<E_OUT> wrapSpliterator(Spliterator<P_IN> sourceSpliterator) {
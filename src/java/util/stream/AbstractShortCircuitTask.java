@@ -112,7 +112,7 @@ abstract class AbstractShortCircuitTask<P_IN, P_OUT, R,
                 break;
             }
             if (sizeEstimate <= sizeThreshold || (ls = rs.trySplit()) == null) {
-                result = task.doLeaf();
+                result = task.profiledLeaf();
                 break;
             }
             K leftChild, rightChild, taskToFork;
@@ -125,6 +125,9 @@ abstract class AbstractTask<P_IN, P_OUT, R,
     /** The result of this node, if completed */
     private R localResult;
 
+    /** The profile record of this node, if the pipeline is profiled */
+    private final StreamProfile.Task profileTask;
+
     /**
      * Constructor for root nodes.
      *
@@ -139,6 +142,10 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         this.helper = helper;
         this.spliterator = spliterator;
         this.targetSize = 0L;
+        taskCreated(helper);
+        StreamProfile profile = helper.getProfile();
+        this.profileTask = (profile == null) ? null
+                : profile.rootTask(spliterator.estimateSize());
     }
 
     /**
@@ -154,6 +161,10 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         this.spliterator = spliterator;
         this.helper = parent.helper;
         this.targetSize = parent.targetSize;
+        taskCreated(helper);
+        StreamProfile.Task parentTask = ((AbstractTask<?, ?, ?, ?>) parent).profileTask;
+        this.profileTask = (parentTask == null) ? null
+                : helper.getProfile().childTask(parentTask, spliterator.estimateSize());
     }
 
     /**
@@ -175,6 +186,24 @@ abstract class AbstractTask<P_IN, P_OUT, R,
      */
     protected abstract R doLeaf();
 
+    /**
+     * Computes the result associated with a leaf node by {@link #doLeaf()},
+     * recording its elapsed time if the pipeline is profiled.
+     *
+     * @return the computed result of a leaf node
+     */
+    final R profiledLeaf() {
+        StreamProfile.Task t = profileTask;
+        if (t == null)
+            return doLeaf();
+        long start = System.nanoTime();
+        try {
+            return doLeaf();
+        } finally {
+            t.leafDone(System.nanoTime() - start);
+        }
+    }
+
     /**
      * Returns a suggested target leaf size based on the initial size estimate.
      *
@@ -185,6 +214,33 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         return est > 0L ? est : 1L;
     }
 
+    /**
+     * Returns a suggested target leaf size based on the initial size estimate,
+     * using the leaf target of the pipeline's execution context if it has
+     * one.
+     *
+     * @param helper the pipeline helper describing the pipeline
+     * @param sizeEstimate the initial size estimate
+     * @return suggested target leaf size
+     */
+    static long suggestTargetSize(PipelineHelper<?> helper, long sizeEstimate) {
+        ParallelExecution e = helper.getParallelExecution();
+        return (e == null) ? suggestTargetSize(sizeEstimate)
+                           : e.suggestTargetSize(sizeEstimate);
+    }
+
+    /**
+     * Records the creation of a task for the pipeline described by the given
+     * helper, if the pipeline has an execution context.
+     *
+     * @param helper the pipeline helper describing the pipeline
+     */
+    static void taskCreated(PipelineHelper<?> helper) {
+        ParallelExecution e = helper.getParallelExecution();
+        if (e != null)
+            e.taskCreated();
+    }
+
     /**
      * Returns the targetSize, initializing it via the supplied
      * size estimate if not already initialized.
@@ -192,7 +248,7 @@ abstract class AbstractTask<P_IN, P_OUT, R,
     protected final long getTargetSize(long sizeEstimate) {
         long s;
         return ((s = targetSize) != 0 ? s :
-                (targetSize = suggestTargetSize(sizeEstimate)));
+                (targetSize = suggestTargetSize(helper, sizeEstimate)));
     }
 
     /**
@@ -313,7 +369,7 @@ abstract class AbstractTask<P_IN, P_OUT, R,
             taskToFork.fork();
             sizeEstimate = rs.estimateSize();
         }
-        task.setLocalResult(task.doLeaf());
+        task.setLocalResult(task.profiledLeaf());
         task.tryComplete();
     }
 
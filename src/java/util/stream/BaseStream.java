@@ -29,6 +29,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.IntConsumer;
@@ -116,6 +117,65 @@ public interface BaseStream<T, S extends BaseStream<T, S>>
      */
     S parallel();
 
+    /**
+     * Returns an equivalent stream that is parallel and whose evaluation is
+     * performed in the {@code ForkJoinPool} of the given
+     * {@link ParallelExecution}, using its leaf target to decompose the
+     * source and counting its evaluations and tasks in that context.  May
+     * return itself, either because the stream was already so configured, or
+     * because the underlying stream state was modified.  A subsequent call to
+     * {@link #parallel()} or {@link #sequential()} detaches the stream from
+     * the context.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation ignores the execution context, and behaves
+     * as if:
+     * <pre>{@code
+     *     Objects.requireNonNull(execution);
+     *     return parallel();
+     * }</pre>
+     *
+     * @param execution the execution context for parallel evaluation
+     * @return a parallel stream evaluated in the given context
+     * @throws NullPointerException if execution is null
+     * @since 1.8
+     */
+    default S parallel(ParallelExecution execution) {
+        Objects.requireNonNull(execution);
+        return parallel();
+    }
+
+    /**
+     * Returns an equivalent stream whose evaluation is recorded in the given
+     * {@link StreamProfile}: the elements accepted and the sampled time spent
+     * by each stage of the pipeline, and, for parallel evaluation, the tree
+     * of tasks.  May return itself, either because the stream was already so
+     * configured, or because the underlying stream state was modified.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation records nothing, and behaves as if:
+     * <pre>{@code
+     *     Objects.requireNonNull(profile);
+     *     return (S) this;
+     * }</pre>
+     *
+     * @param profile the profile in which to record evaluation
+     * @return a stream whose evaluation is profiled
+     * @throws NullPointerException if profile is null
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    default S profile(StreamProfile profile) {
+        Objects.requireNonNull(profile);
+        return (S) this;
+    }
+
     /**
      * Returns an equivalent stream that is
      * <a href="package-summary.html#Ordering">unordered</a>.  May return
@@ -0,0 +1,765 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+
+/**
+ * Factory methods for transforming a stream into a stream of chunks or
+ * sliding windows of its elements.
+ *
+ * <p>Both operations are described by a window {@code size} and a
+ * {@code step}: the <em>j</em>th window holds the elements at encounter
+ * positions {@code j * step} (inclusive) to {@code j * step + size}
+ * (exclusive).  Chunking is the case {@code step == size}, in which a final,
+ * shorter chunk holds any remaining elements; sliding windows are always
+ * complete, so trailing elements that do not fill a window are dropped.
+ *
+ * <p>Sequentially, elements are buffered only up to the size of a window, so
+ * chunking and windowing are lazy and may be applied to infinite streams.  In
+ * parallel, window boundaries depend on encounter positions.  If the number
+ * of upstream elements is known, and the source splits into parts of known
+ * size, the source is split as usual, as {@link SliceOps} does, and each part
+ * produces the windows that start within it, reading ahead the few elements
+ * its last windows need from the next part.  Otherwise the upstream is first
+ * evaluated into an array (in parallel), whose windows are then described by
+ * a {@code SIZED} and {@code SUBSIZED} spliterator that splits evenly at
+ * window boundaries and copies each window only when it is traversed.
+ *
+ * @since 1.8
+ */
+final class ChunkOps {
+
+    private ChunkOps() { }
+
+    /**
+     * Validates the window size and step.
+     */
+    static void checkWindow(int size, int step) {
+        if (size <= 0)
+            throw new IllegalArgumentException(Integer.toString(size));
+        if (step <= 0)
+            throw new IllegalArgumentException(Integer.toString(step));
+    }
+
+    /**
+     * Returns the number of windows over {@code n} elements.
+     *
+     * @param partial {@code true} if a final, incomplete window is included
+     */
+    private static int windowCount(int n, int size, int step, boolean partial) {
+        if (partial)
+            return (int) (((long) n + step - 1) / step);
+        return (n < size) ? 0 : (n - size) / step + 1;
+    }
+
+    /** Operation flags of a chunking or windowing stage */
+    private static final int FLAGS =
+            StreamOpFlag.NOT_SORTED | StreamOpFlag.NOT_DISTINCT | StreamOpFlag.NOT_SIZED;
+
+    /**
+     * Appends a "chunked" or "windowed" operation to the provided stream, and
+     * returns the new stream.
+     *
+     * @param <T> the type of input elements
+     * @param upstream a reference stream with element type T
+     * @param size the number of elements in a window
+     * @param step the distance between the starts of consecutive windows
+     * @param partial {@code true} if a final, incomplete window is emitted
+     * @return the new stream
+     * @throws IllegalArgumentException if size or step is not positive
+     */
+    static <T> Stream<List<T>> makeRef(AbstractPipeline<?, T, ?> upstream,
+                                       int size, int step, boolean partial) {
+        checkWindow(size, step);
+        return new ReferencePipeline.StatefulOp<T, List<T>>(upstream, StreamShape.REFERENCE, FLAGS) {
+
+            <P_IN> Spliterator<List<T>> windows(PipelineHelper<T> helper, Spliterator<P_IN> spliterator) {
+                @SuppressWarnings("unchecked")
+                IntFunction<T[]> generator = k -> (T[]) new Object[k];
+                long count = helper.exactOutputSizeIfKnown(spliterator);
+                if (count > 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED))
+                    return new WindowSpliterator<>(helper.wrapSpliterator(spliterator), count, size, step, partial,
+                                                   this::windowSink, k -> Nodes.builder(k, generator));
+                T[] array = helper.evaluate(spliterator, true, generator).asArray(generator);
+                int n = array.length;
+                return new ChunkSpliterator<>(
+                        j -> Arrays.asList(Arrays.copyOfRange(array, j * step, (int) Math.min((long) j * step + size, n))),
+                        0, windowCount(n, size, step, partial));
+            }
+
+            @Override
+            <P_IN> Node<List<T>> opEvaluateParallel(PipelineHelper<List<T>> helper,
+                                                    Spliterator<P_IN> spliterator,
+                                                    IntFunction<List<T>[]> generator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<T> upstreamHelper = (PipelineHelper<T>) (PipelineHelper<?>) helper;
+                return Nodes.collect(this, windows(upstreamHelper, spliterator), true, generator);
+            }
+
+            @Override
+            <P_IN> Spliterator<List<T>> opEvaluateParallelLazy(PipelineHelper<List<T>> helper,
+                                                               Spliterator<P_IN> spliterator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<T> upstreamHelper = (PipelineHelper<T>) (PipelineHelper<?>) helper;
+                return windows(upstreamHelper, spliterator);
+            }
+
+            @Override
+            Sink<T> opWrapSink(int flags, Sink<List<T>> sink) {
+                return windowSink(sink, 0);
+            }
+
+            /**
+             * Returns a sink passing the windows of the elements it accepts
+             * to the given sink, after discarding the first {@code initialSkip}
+             * elements.
+             */
+            Sink<T> windowSink(Sink<List<T>> sink, int initialSkip) {
+                Objects.requireNonNull(sink);
+                return new Sink.ChainedReference<T, List<T>>(sink) {
+                    Object[] buffer;
+                    int count;
+                    int skip;
+
+                    @Override
+                    public void begin(long sizeIfKnown) {
+                        buffer = new Object[Math.min(size, 64)];
+                        count = 0;
+                        skip = initialSkip;
+                        downstream.begin(-1);
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && count > 0)
+                            emit(count);
+                        buffer = null;
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(T t) {
+                        if (skip > 0) {
+                            --skip;
+                            return;
+                        }
+                        if (count == buffer.length)
+                            buffer = Arrays.copyOf(buffer, Math.min(size, count << 1));
+                        buffer[count++] = t;
+                        if (count == size) {
+                            emit(size);
+                            if (step >= size) {
+                                count = 0;
+                                skip = step - size;
+                            }
+                            else {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                count = size - step;
+                            }
+                        }
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    private void emit(int n) {
+                        downstream.accept((List<T>) Arrays.asList(Arrays.copyOf(buffer, n)));
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Appends a "chunked" or "windowed" operation to the provided stream, and
+     * returns the new stream.
+     *
+     * @param upstream an int stream
+     * @param size the number of elements in a window
+     * @param step the distance between the starts of consecutive windows
+     * @param partial {@code true} if a final, incomplete window is emitted
+     * @return the new stream
+     * @throws IllegalArgumentException if size or step is not positive
+     */
+    static Stream<int[]> makeInt(AbstractPipeline<?, Integer, ?> upstream,
+                                 int size, int step, boolean partial) {
+        checkWindow(size, step);
+        return new ReferencePipeline.StatefulOp<Integer, int[]>(upstream, StreamShape.INT_VALUE, FLAGS) {
+
+            <P_IN> Spliterator<int[]> windows(PipelineHelper<Integer> helper, Spliterator<P_IN> spliterator) {
+                long count = helper.exactOutputSizeIfKnown(spliterator);
+                if (count > 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED))
+                    return new WindowSpliterator<>(helper.wrapSpliterator(spliterator), count, size, step, partial,
+                                                   this::windowSink, Nodes::intBuilder);
+                int[] array = ((Node.OfInt) helper.evaluate(spliterator, true, Integer[]::new)).asPrimitiveArray();
+                int n = array.length;
+                return new ChunkSpliterator<>(
+                        j -> Arrays.copyOfRange(array, j * step, (int) Math.min((long) j * step + size, n)),
+                        0, windowCount(n, size, step, partial));
+            }
+
+            @Override
+            <P_IN> Node<int[]> opEvaluateParallel(PipelineHelper<int[]> helper,
+                                                  Spliterator<P_IN> spliterator,
+                                                  IntFunction<int[][]> generator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<Integer> upstreamHelper = (PipelineHelper<Integer>) (PipelineHelper<?>) helper;
+                return Nodes.collect(this, windows(upstreamHelper, spliterator), true, generator);
+            }
+
+            @Override
+            <P_IN> Spliterator<int[]> opEvaluateParallelLazy(PipelineHelper<int[]> helper,
+                                                             Spliterator<P_IN> spliterator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<Integer> upstreamHelper = (PipelineHelper<Integer>) (PipelineHelper<?>) helper;
+                return windows(upstreamHelper, spliterator);
+            }
+
+            @Override
+            Sink<Integer> opWrapSink(int flags, Sink<int[]> sink) {
+                return windowSink(sink, 0);
+            }
+
+            /**
+             * Returns a sink passing the windows of the elements it accepts
+             * to the given sink, after discarding the first {@code initialSkip}
+             * elements.
+             */
+            Sink<Integer> windowSink(Sink<int[]> sink, int initialSkip) {
+                Objects.requireNonNull(sink);
+                return new Sink.ChainedInt<int[]>(sink) {
+                    int[] buffer;
+                    int count;
+                    int skip;
+
+                    @Override
+                    public void begin(long sizeIfKnown) {
+                        buffer = new int[Math.min(size, 64)];
+                        count = 0;
+                        skip = initialSkip;
+                        downstream.begin(-1);
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && count > 0)
+                            downstream.accept(Arrays.copyOf(buffer, count));
+                        buffer = null;
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(int t) {
+                        if (skip > 0) {
+                            --skip;
+                            return;
+                        }
+                        if (count == buffer.length)
+                            buffer = Arrays.copyOf(buffer, Math.min(size, count << 1));
+                        buffer[count++] = t;
+                        if (count == size) {
+                            downstream.accept(Arrays.copyOf(buffer, size));
+                            if (step >= size) {
+                                count = 0;
+                                skip = step - size;
+                            }
+                            else {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                count = size - step;
+                            }
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Appends a "chunked" or "windowed" operation to the provided stream, and
+     * returns the new stream.
+     *
+     * @param upstream a long stream
+     * @param size the number of elements in a window
+     * @param step the distance between the starts of consecutive windows
+     * @param partial {@code true} if a final, incomplete window is emitted
+     * @return the new stream
+     * @throws IllegalArgumentException if size or step is not positive
+     */
+    static Stream<long[]> makeLong(AbstractPipeline<?, Long, ?> upstream,
+                                   int size, int step, boolean partial) {
+        checkWindow(size, step);
+        return new ReferencePipeline.StatefulOp<Long, long[]>(upstream, StreamShape.LONG_VALUE, FLAGS) {
+
+            <P_IN> Spliterator<long[]> windows(PipelineHelper<Long> helper, Spliterator<P_IN> spliterator) {
+                long count = helper.exactOutputSizeIfKnown(spliterator);
+                if (count > 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED))
+                    return new WindowSpliterator<>(helper.wrapSpliterator(spliterator), count, size, step, partial,
+                                                   this::windowSink, Nodes::longBuilder);
+                long[] array = ((Node.OfLong) helper.evaluate(spliterator, true, Long[]::new)).asPrimitiveArray();
+                int n = array.length;
+                return new ChunkSpliterator<>(
+                        j -> Arrays.copyOfRange(array, j * step, (int) Math.min((long) j * step + size, n)),
+                        0, windowCount(n, size, step, partial));
+            }
+
+            @Override
+            <P_IN> Node<long[]> opEvaluateParallel(PipelineHelper<long[]> helper,
+                                                   Spliterator<P_IN> spliterator,
+                                                   IntFunction<long[][]> generator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<Long> upstreamHelper = (PipelineHelper<Long>) (PipelineHelper<?>) helper;
+                return Nodes.collect(this, windows(upstreamHelper, spliterator), true, generator);
+            }
+
+            @Override
+            <P_IN> Spliterator<long[]> opEvaluateParallelLazy(PipelineHelper<long[]> helper,
+                                                              Spliterator<P_IN> spliterator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<Long> upstreamHelper = (PipelineHelper<Long>) (PipelineHelper<?>) helper;
+                return windows(upstreamHelper, spliterator);
+            }
+
+            @Override
+            Sink<Long> opWrapSink(int flags, Sink<long[]> sink) {
+                return windowSink(sink, 0);
+            }
+
+            /**
+             * Returns a sink passing the windows of the elements it accepts
+             * to the given sink, after discarding the first {@code initialSkip}
+             * elements.
+             */
+            Sink<Long> windowSink(Sink<long[]> sink, int initialSkip) {
+                Objects.requireNonNull(sink);
+                return new Sink.ChainedLong<long[]>(sink) {
+                    long[] buffer;
+                    int count;
+                    int skip;
+
+                    @Override
+                    public void begin(long sizeIfKnown) {
+                        buffer = new long[Math.min(size, 64)];
+                        count = 0;
+                        skip = initialSkip;
+                        downstream.begin(-1);
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && count > 0)
+                            downstream.accept(Arrays.copyOf(buffer, count));
+                        buffer = null;
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(long t) {
+                        if (skip > 0) {
+                            --skip;
+                            return;
+                        }
+                        if (count == buffer.length)
+                            buffer = Arrays.copyOf(buffer, Math.min(size, count << 1));
+                        buffer[count++] = t;
+                        if (count == size) {
+                            downstream.accept(Arrays.copyOf(buffer, size));
+                            if (step >= size) {
+                                count = 0;
+                                skip = step - size;
+                            }
+                            else {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                count = size - step;
+                            }
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Appends a "chunked" or "windowed" operation to the provided stream, and
+     * returns the new stream.
+     *
+     * @param upstream a double stream
+     * @param size the number of elements in a window
+     * @param step the distance between the starts of consecutive windows
+     * @param partial {@code true} if a final, incomplete window is emitted
+     * @return the new stream
+     * @throws IllegalArgumentException if size or step is not positive
+     */
+    static Stream<double[]> makeDouble(AbstractPipeline<?, Double, ?> upstream,
+                                       int size, int step, boolean partial) {
+        checkWindow(size, step);
+        return new ReferencePipeline.StatefulOp<Double, double[]>(upstream, StreamShape.DOUBLE_VALUE, FLAGS) {
+
+            <P_IN> Spliterator<double[]> windows(PipelineHelper<Double> helper, Spliterator<P_IN> spliterator) {
+                long count = helper.exactOutputSizeIfKnown(spliterator);
+                if (count > 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED))
+                    return new WindowSpliterator<>(helper.wrapSpliterator(spliterator), count, size, step, partial,
+                                                   this::windowSink, Nodes::doubleBuilder);
+                double[] array = ((Node.OfDouble) helper.evaluate(spliterator, true, Double[]::new)).asPrimitiveArray();
+                int n = array.length;
+                return new ChunkSpliterator<>(
+                        j -> Arrays.copyOfRange(array, j * step, (int) Math.min((long) j * step + size, n)),
+                        0, windowCount(n, size, step, partial));
+            }
+
+            @Override
+            <P_IN> Node<double[]> opEvaluateParallel(PipelineHelper<double[]> helper,
+                                                     Spliterator<P_IN> spliterator,
+                                                     IntFunction<double[][]> generator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<Double> upstreamHelper = (PipelineHelper<Double>) (PipelineHelper<?>) helper;
+                return Nodes.collect(this, windows(upstreamHelper, spliterator), true, generator);
+            }
+
+            @Override
+            <P_IN> Spliterator<double[]> opEvaluateParallelLazy(PipelineHelper<double[]> helper,
+                                                                Spliterator<P_IN> spliterator) {
+                @SuppressWarnings("unchecked")
+                PipelineHelper<Double> upstreamHelper = (PipelineHelper<Double>) (PipelineHelper<?>) helper;
+                return windows(upstreamHelper, spliterator);
+            }
+
+            @Override
+            Sink<Double> opWrapSink(int flags, Sink<double[]> sink) {
+                return windowSink(sink, 0);
+            }
+
+            /**
+             * Returns a sink passing the windows of the elements it accepts
+             * to the given sink, after discarding the first {@code initialSkip}
+             * elements.
+             */
+            Sink<Double> windowSink(Sink<double[]> sink, int initialSkip) {
+                Objects.requireNonNull(sink);
+                return new Sink.ChainedDouble<double[]>(sink) {
+                    double[] buffer;
+                    int count;
+                    int skip;
+
+                    @Override
+                    public void begin(long sizeIfKnown) {
+                        buffer = new double[Math.min(size, 64)];
+                        count = 0;
+                        skip = initialSkip;
+                        downstream.begin(-1);
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && count > 0)
+                            downstream.accept(Arrays.copyOf(buffer, count));
+                        buffer = null;
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(double t) {
+                        if (skip > 0) {
+                            --skip;
+                            return;
+                        }
+                        if (count == buffer.length)
+                            buffer = Arrays.copyOf(buffer, Math.min(size, count << 1));
+                        buffer[count++] = t;
+                        if (count == size) {
+                            downstream.accept(Arrays.copyOf(buffer, size));
+                            if (step >= size) {
+                                count = 0;
+                                skip = step - size;
+                            }
+                            else {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                count = size - step;
+                            }
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * A spliterator over the windows of an array, each produced on demand by
+     * a function of its index.  Splits at window boundaries, halving the
+     * range of window indices.
+     */
+    static final class ChunkSpliterator<R> implements Spliterator<R> {
+        private final IntFunction<R> window;
+        private int index;
+        private final int fence;
+
+        ChunkSpliterator(IntFunction<R> window, int origin, int fence) {
+            this.window = window;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<R> trySplit() {
+            int lo = index, mid = (lo + fence) >>> 1;
+            return (lo >= mid)
+                   ? null
+                   : new ChunkSpliterator<>(window, lo, index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                action.accept(window.apply(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super R> action) {
+            Objects.requireNonNull(action);
+            int i = index, hi = fence;
+            index = hi;
+            for (; i < hi; i++)
+                action.accept(window.apply(i));
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED |
+                   Spliterator.IMMUTABLE | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * A factory for the sinks of a window operation.
+     *
+     * @param <T> the type of elements
+     * @param <R> the type of windows
+     */
+    interface WindowSinkFactory<T, R> {
+        /**
+         * Returns a sink passing the windows of the elements it accepts to
+         * the given sink, after discarding the first {@code skip} elements.
+         */
+        Sink<T> make(Sink<R> downstream, int skip);
+    }
+
+    /**
+     * A spliterator over the windows of a {@code SIZED} and {@code SUBSIZED}
+     * spliterator of elements, which splits wherever the spliterator of
+     * elements splits.  A window belongs to the spliterator traversing its
+     * first element.  When splitting, the elements that the last windows of
+     * the prefix need from beyond its end, fewer than {@code size}, are read
+     * ahead from the remainder and buffered for both; all other windows are
+     * produced as they are traversed.
+     */
+    static final class WindowSpliterator<T, R> implements Spliterator<R>, Sink<R> {
+        private final long count;       // the number of elements
+        private final int size;
+        private final int step;
+        private final boolean partial;
+        private final WindowSinkFactory<T, R> sinkFactory;
+        private final LongFunction<Node.Builder<T>> builderFactory;
+        private long origin;            // position of the first element
+        private Node<T> head;           // elements read ahead of s, or null
+        private Spliterator<T> s;       // elements before fence
+        private final long fence;       // position following the last element of s
+        private Node<T> tail;           // elements read ahead from fence, or null
+
+        // Traversal state, set by start()
+        private Sink<T> sink;           // the window sink, or null if not started
+        private Spliterator<T>[] parts; // head, s and tail
+        private int part;               // index of the part being traversed
+        private long remaining;         // number of windows not yet produced
+        private Consumer<? super R> action; // consumer in forEachRemaining
+        private R next;                 // window produced in tryAdvance
+
+        WindowSpliterator(Spliterator<T> s, long count, int size, int step, boolean partial,
+                          WindowSinkFactory<T, R> sinkFactory,
+                          LongFunction<Node.Builder<T>> builderFactory) {
+            this.count = count;
+            this.size = size;
+            this.step = step;
+            this.partial = partial;
+            this.sinkFactory = sinkFactory;
+            this.builderFactory = builderFactory;
+            this.s = s;
+            this.fence = count;
+        }
+
+        private WindowSpliterator(WindowSpliterator<T, R> parent, long origin, Node<T> head,
+                                  Spliterator<T> s, long fence, Node<T> tail) {
+            this.count = parent.count;
+            this.size = parent.size;
+            this.step = parent.step;
+            this.partial = parent.partial;
+            this.sinkFactory = parent.sinkFactory;
+            this.builderFactory = parent.builderFactory;
+            this.origin = origin;
+            this.head = head;
+            this.s = s;
+            this.fence = fence;
+            this.tail = tail;
+        }
+
+        /**
+         * Returns the number of windows starting before the given position.
+         */
+        private long windowsBefore(long position) {
+            long windows = partial ? (count + step - 1) / step
+                           : (count < size) ? 0L : (count - size) / step + 1;
+            return Math.min((position + step - 1) / step, windows);
+        }
+
+        /**
+         * Returns a node of the first n elements of the given spliterator.
+         */
+        private Node<T> read(Spliterator<T> spliterator, long n) {
+            Node.Builder<T> b = builderFactory.apply(n);
+            b.begin(n);
+            while (n-- > 0 && spliterator.tryAdvance(b)) { }
+            b.end();
+            return b.build();
+        }
+
+        @Override
+        public Spliterator<R> trySplit() {
+            Spliterator<T> prefix;
+            if (sink != null || (prefix = s.trySplit()) == null)
+                return null;
+            long mid = fence - s.getExactSizeIfKnown();
+            long w = windowsBefore(mid);
+            long end = (w > windowsBefore(origin))
+                       ? Math.min((w - 1) * step + size, count)
+                       : mid;
+            Node<T> ahead = null, prefixTail = null;
+            if (end > mid) {
+                prefixTail = ahead = read(s, Math.min(end, fence) - mid);
+                if (end > fence) {
+                    Node.Builder<T> b = builderFactory.apply(end - mid);
+                    b.begin(end - mid);
+                    ahead.forEach(b);
+                    Spliterator<T> t = tail.spliterator();
+                    for (long n = end - fence; n > 0 && t.tryAdvance(b); n--) { }
+                    b.end();
+                    prefixTail = b.build();
+                }
+            }
+            WindowSpliterator<T, R> split =
+                    new WindowSpliterator<>(this, origin, head, prefix, mid, prefixTail);
+            origin = mid;
+            head = ahead;
+            return split;
+        }
+
+        /**
+         * Prepares to traverse, discarding the elements preceding the first
+         * window.
+         */
+        @SuppressWarnings("unchecked")
+        private void start() {
+            long w = windowsBefore(origin);
+            remaining = windowsBefore(fence) - w;
+            parts = (Spliterator<T>[]) new Spliterator<?>[] {
+                    (head == null) ? null : head.spliterator(),
+                    s,
+                    (tail == null) ? null : tail.spliterator() };
+            head = tail = null;
+            sink = sinkFactory.make(this, (remaining > 0) ? (int) (w * step - origin) : 0);
+            sink.begin(-1);
+        }
+
+        @Override
+        public void accept(R window) {
+            if (remaining > 0) {
+                --remaining;
+                if (action != null)
+                    action.accept(window);
+                else
+                    next = window;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            Objects.requireNonNull(action);
+            if (sink == null)
+                start();
+            while (next == null && remaining > 0 && part < parts.length) {
+                Spliterator<T> p = parts[part];
+                if (p == null || !p.tryAdvance(sink)) {
+                    if (++part == parts.length)
+                        sink.end();
+                }
+            }
+            R window = next;
+            if (window == null)
+                return false;
+            next = null;
+            action.accept(window);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super R> action) {
+            Objects.requireNonNull(action);
+            if (sink == null)
+                start();
+            if (part < parts.length) {
+                this.action = action;
+                for (; part < parts.length; part++) {
+                    Spliterator<T> p = parts[part];
+                    if (p != null && remaining > 0)
+                        p.forEachRemaining(sink);
+                }
+                sink.end();
+                this.action = null;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return (sink == null) ? windowsBefore(fence) - windowsBefore(origin) : remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED |
+                   Spliterator.NONNULL;
+        }
+    }
+}
@@ -134,7 +134,7 @@ public final class Collectors {
     }
 
     @SuppressWarnings("unchecked")
-    private static <I, R> Function<I, R> castingIdentity() {
+    static <I, R> Function<I, R> castingIdentity() {
         return i -> (R) i;
     }
 
@@ -313,7 +313,7 @@ public final class Collectors {
      * {@link Map#merge(Object, Object, BiFunction) Map.merge()}
      * @return a merge function for two maps
      */
-    private static <K, V, M extends Map<K,V>>
+    static <K, V, M extends Map<K,V>>
     BinaryOperator<M> mapMerger(BinaryOperator<V> mergeFunction) {
         return (m1, m2) -> {
             for (Map.Entry<K,V> e : m2.entrySet())
@@ -1091,6 +1091,157 @@ public final class Collectors {
         }
     }
 
+    /**
+     * Returns a {@code Collector} implementing a "group by" operation on
+     * input elements of type {@code T}, grouping elements according to a
+     * classification function, and returning the results in a {@code Map},
+     * reducing disjoint partitions of the keys independently.
+     *
+     * <p>The classification function maps elements to some key type {@code K}.
+     * The collector produces a {@code Map<K, List<T>>} whose keys are the
+     * values resulting from applying the classification function to the input
+     * elements, and whose corresponding values are {@code List}s containing the
+     * input elements which map to the associated key under the classification
+     * function.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} or {@code List} objects returned.
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByPartitioned(classifier, toList());
+     * }</pre>
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param classifier the classifier function mapping input elements to keys
+     * @return a {@code Collector} implementing the group-by operation
+     *
+     * @see #groupingByPartitioned(Function, Collector)
+     * @see #groupingByPartitioned(Function, int, Collector)
+     * @see #groupingBy(Function)
+     */
+    public static <T, K> Collector<T, ?, Map<K, List<T>>>
+    groupingByPartitioned(Function<? super T, ? extends K> classifier) {
+        return groupingByPartitioned(classifier, toList());
+    }
+
+    /**
+     * Returns a {@code Collector} implementing a cascaded "group by" operation
+     * on input elements of type {@code T}, grouping elements according to a
+     * classification function, and then performing a reduction operation on
+     * the values associated with a given key using the specified downstream
+     * {@code Collector}, reducing disjoint partitions of the keys
+     * independently.
+     *
+     * <p>The classification function maps elements to some key type {@code K}.
+     * The downstream collector operates on elements of type {@code T} and
+     * produces a result of type {@code D}. The resulting collector produces a
+     * {@code Map<K, D>}.
+     *
+     * <p>There are no guarantees on the type, mutability,
+     * serializability, or thread-safety of the {@code Map} returned.
+     * @implSpec
+     * This is equivalent to
+     * {@link #groupingByPartitioned(Function, int, Collector)} with a number
+     * of partitions that is a small multiple of the parallelism of the
+     * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream a {@code Collector} implementing the downstream reduction
+     * @return a {@code Collector} implementing the cascaded group-by operation
+     *
+     * @see #groupingByPartitioned(Function)
+     * @see #groupingByPartitioned(Function, int, Collector)
+     * @see #groupingBy(Function, Collector)
+     */
+    public static <T, K, A, D>
+    Collector<T, ?, Map<K, D>> groupingByPartitioned(Function<? super T, ? extends K> classifier,
+                                                     Collector<? super T, A, D> downstream) {
+        return groupingByPartitioned(classifier, PartitionedGrouping.defaultPartitions(), downstream);
+    }
+
+    /**
+     * Returns a {@code Collector} implementing a cascaded "group by" operation
+     * on input elements of type {@code T}, grouping elements according to a
+     * classification function, and then performing a reduction operation on
+     * the values associated with a given key using the specified downstream
+     * {@code Collector}, reducing the given number of disjoint partitions of
+     * the keys independently.
+     *
+     * <p>The classification function maps elements to some key type {@code K}.
+     * The downstream collector operates on elements of type {@code T} and
+     * produces a result of type {@code D}. The resulting collector produces a
+     * {@code Map<K, D>}.  As with {@link #groupingBy(Function, Collector)},
+     * the elements associated with each key are presented to the downstream
+     * collector in encounter order.
+     *
+     * <p>There are no guarantees on the type, mutability,
+     * serializability, or thread-safety of the {@code Map} returned.
+     *
+     * <p>For example, to count the people in each city:
+     * <pre>{@code
+     *     Map<City, Long> countByCity
+     *         = people.parallelStream().collect(groupingByPartitioned(Person::getCity, 64,
+     *                                                                 counting()));
+     * }</pre>
+     *
+     * @implNote
+     * The returned {@code Collector} is not concurrent.  Keys are hashed into
+     * {@code partitions} partitions, rounded up to a power of two.  Each
+     * accumulation buffers its elements, with their keys, per partition, and
+     * the {@code combiner} function links the buffers of two results partition
+     * by partition, which takes time proportional to the number of partitions
+     * rather than the number of keys.  The {@code finisher} function then
+     * reduces each partition to its own map, in parallel for the results of
+     * parallel stream pipelines, and returns a view of these maps; since no
+     * key belongs to two partitions, no maps are ever merged.  The number of
+     * partitions should exceed the parallelism of the pool the pipeline runs
+     * in, but buffering costs more when there are many partitions and few
+     * elements.
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param partitions the number of partitions of the keys
+     * @param downstream a {@code Collector} implementing the downstream reduction
+     * @return a {@code Collector} implementing the cascaded group-by operation
+     * @throws IllegalArgumentException if {@code partitions} is not positive
+     *
+     * @see #groupingByPartitioned(Function, Collector)
+     * @see #groupingBy(Function, Collector)
+     */
+    public static <T, K, A, D>
+    Collector<T, ?, Map<K, D>> groupingByPartitioned(Function<? super T, ? extends K> classifier,
+                                                     int partitions,
+                                                     Collector<? super T, A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Supplier<PartitionedGrouping.Partitions> supplier
+                = PartitionedGrouping.supplier(partitions, PartitionedGrouping.RefChunk::new);
+        BiConsumer<PartitionedGrouping.Partitions, T> accumulator = (parts, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            parts.add(key, t);
+        };
+        @SuppressWarnings("unchecked")
+        BiConsumer<A, Object> downstreamAccumulator
+                = (BiConsumer<A, Object>) (BiConsumer<A, ?>) downstream.accumulator();
+        PartitionedGrouping.ChunkReducer reducer
+                = PartitionedGrouping.reducer(downstream.supplier(), downstreamAccumulator);
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> downstreamFinisher
+                = downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+                  ? null
+                  : (Function<Object, Object>) (Function<?, ?>) downstream.finisher();
+        return new CollectorImpl<>(supplier, accumulator, PartitionedGrouping.Partitions::combine,
+                                   parts -> parts.<K, D>finish(reducer, downstreamFinisher), CH_NOID);
+    }
+
     /**
      * Returns a {@code Collector} which partitions the input elements according
      * to a {@code Predicate}, and organizes them into a
@@ -1537,7 +1688,7 @@ public final class Collectors {
     /**
      * Implementation class used by partitioningBy.
      */
-    private static final class Partition<T>
+    static final class Partition<T>
             extends AbstractMap<Boolean, T>
             implements Map<Boolean, T> {
         final T forTrue;
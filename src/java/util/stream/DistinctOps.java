@@ -31,12 +31,24 @@ import java.util.Set;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
 import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
 
 /**
  * Factory methods for transforming streams into duplicate-free streams, using
  * {@link Object#equals(Object)} to determine equality.
  *
+ * <p>Primitive streams are made distinct without boxing.  Sequentially, seen
+ * values are tracked in an open-addressing primitive hash set; in parallel,
+ * each leaf collects its first occurrences into such a set together with a
+ * buffer recording their encounter order, and sibling results are merged left
+ * to right.  If the input is known to be sorted, adjacent duplicates are
+ * dropped without any set.  Double values are compared by their
+ * {@link Double#doubleToLongBits(double) bits}, consistent with
+ * {@link Double#equals(Object)}.
+ *
  * @since 1.8
  */
 final class DistinctOps {
@@ -180,4 +192,508 @@ final class DistinctOps {
             }
         };
     }
+
+    /**
+     * Appends a "distinct" operation to the provided stream, and returns the
+     * new stream.
+     *
+     * @param upstream an int stream
+     * @return the new stream
+     */
+    static IntStream makeInt(AbstractPipeline<?, Integer, ?> upstream) {
+        return new IntPipeline.StatefulOp<Integer>(upstream, StreamShape.INT_VALUE,
+                                                   StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
+
+            <P_IN> Node<Integer> reduce(PipelineHelper<Integer> helper, Spliterator<P_IN> spliterator) {
+                TerminalOp<Integer, OrderedIntSet> reduceOp
+                        = ReduceOps.<OrderedIntSet>makeInt(OrderedIntSet::new, OrderedIntSet::accept,
+                                                           OrderedIntSet::merge);
+                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator).elements.asPrimitiveArray());
+            }
+
+            @Override
+            <P_IN> Node<Integer> opEvaluateParallel(PipelineHelper<Integer> helper,
+                                                    Spliterator<P_IN> spliterator,
+                                                    IntFunction<Integer[]> generator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.evaluate(spliterator, false, generator);
+                }
+                else {
+                    return reduce(helper, spliterator);
+                }
+            }
+
+            @Override
+            <P_IN> Spliterator<Integer> opEvaluateParallelLazy(PipelineHelper<Integer> helper,
+                                                               Spliterator<P_IN> spliterator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.wrapSpliterator(spliterator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Not lazy, barrier required to preserve order
+                    return reduce(helper, spliterator).spliterator();
+                }
+                else {
+                    // Lazy
+                    return new StreamSpliterators.DistinctPrimitiveSpliterator.OfInt(
+                            (Spliterator.OfInt) helper.wrapSpliterator(spliterator));
+                }
+            }
+
+            @Override
+            Sink<Integer> opWrapSink(int flags, Sink<Integer> sink) {
+                Objects.requireNonNull(sink);
+
+                if (StreamOpFlag.DISTINCT.isKnown(flags)) {
+                    return sink;
+                } else if (StreamOpFlag.SORTED.isKnown(flags)) {
+                    return new Sink.ChainedInt<Integer>(sink) {
+                        boolean seenAny;
+                        int lastSeen;
+
+                        @Override
+                        public void begin(long size) {
+                            seenAny = false;
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void accept(int t) {
+                            if (!seenAny || t != lastSeen) {
+                                seenAny = true;
+                                downstream.accept(lastSeen = t);
+                            }
+                        }
+                    };
+                } else {
+                    return new Sink.ChainedInt<Integer>(sink) {
+                        IntHashSet seen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = new IntHashSet();
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seen = null;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(int t) {
+                            if (seen.add(t))
+                                downstream.accept(t);
+                        }
+                    };
+                }
+            }
+        };
+    }
+
+    /**
+     * Appends a "distinct" operation to the provided stream, and returns the
+     * new stream.
+     *
+     * @param upstream a long stream
+     * @return the new stream
+     */
+    static LongStream makeLong(AbstractPipeline<?, Long, ?> upstream) {
+        return new LongPipeline.StatefulOp<Long>(upstream, StreamShape.LONG_VALUE,
+                                                 StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
+
+            <P_IN> Node<Long> reduce(PipelineHelper<Long> helper, Spliterator<P_IN> spliterator) {
+                TerminalOp<Long, OrderedLongSet> reduceOp
+                        = ReduceOps.<OrderedLongSet>makeLong(OrderedLongSet::new, OrderedLongSet::accept,
+                                                             OrderedLongSet::merge);
+                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator).elements.asPrimitiveArray());
+            }
+
+            @Override
+            <P_IN> Node<Long> opEvaluateParallel(PipelineHelper<Long> helper,
+                                                 Spliterator<P_IN> spliterator,
+                                                 IntFunction<Long[]> generator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.evaluate(spliterator, false, generator);
+                }
+                else {
+                    return reduce(helper, spliterator);
+                }
+            }
+
+            @Override
+            <P_IN> Spliterator<Long> opEvaluateParallelLazy(PipelineHelper<Long> helper,
+                                                            Spliterator<P_IN> spliterator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.wrapSpliterator(spliterator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Not lazy, barrier required to preserve order
+                    return reduce(helper, spliterator).spliterator();
+                }
+                else {
+                    // Lazy
+                    return new StreamSpliterators.DistinctPrimitiveSpliterator.OfLong(
+                            (Spliterator.OfLong) helper.wrapSpliterator(spliterator));
+                }
+            }
+
+            @Override
+            Sink<Long> opWrapSink(int flags, Sink<Long> sink) {
+                Objects.requireNonNull(sink);
+
+                if (StreamOpFlag.DISTINCT.isKnown(flags)) {
+                    return sink;
+                } else if (StreamOpFlag.SORTED.isKnown(flags)) {
+                    return new Sink.ChainedLong<Long>(sink) {
+                        boolean seenAny;
+                        long lastSeen;
+
+                        @Override
+                        public void begin(long size) {
+                            seenAny = false;
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void accept(long t) {
+                            if (!seenAny || t != lastSeen) {
+                                seenAny = true;
+                                downstream.accept(lastSeen = t);
+                            }
+                        }
+                    };
+                } else {
+                    return new Sink.ChainedLong<Long>(sink) {
+                        LongHashSet seen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = new LongHashSet();
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seen = null;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(long t) {
+                            if (seen.add(t))
+                                downstream.accept(t);
+                        }
+                    };
+                }
+            }
+        };
+    }
+
+    /**
+     * Appends a "distinct" operation to the provided stream, and returns the
+     * new stream.
+     *
+     * @param upstream a double stream
+     * @return the new stream
+     */
+    static DoubleStream makeDouble(AbstractPipeline<?, Double, ?> upstream) {
+        return new DoublePipeline.StatefulOp<Double>(upstream, StreamShape.DOUBLE_VALUE,
+                                                     StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
+
+            <P_IN> Node<Double> reduce(PipelineHelper<Double> helper, Spliterator<P_IN> spliterator) {
+                TerminalOp<Double, OrderedDoubleSet> reduceOp
+                        = ReduceOps.<OrderedDoubleSet>makeDouble(OrderedDoubleSet::new, OrderedDoubleSet::accept,
+                                                                 OrderedDoubleSet::merge);
+                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator).elements.asPrimitiveArray());
+            }
+
+            @Override
+            <P_IN> Node<Double> opEvaluateParallel(PipelineHelper<Double> helper,
+                                                   Spliterator<P_IN> spliterator,
+                                                   IntFunction<Double[]> generator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.evaluate(spliterator, false, generator);
+                }
+                else {
+                    return reduce(helper, spliterator);
+                }
+            }
+
+            @Override
+            <P_IN> Spliterator<Double> opEvaluateParallelLazy(PipelineHelper<Double> helper,
+                                                              Spliterator<P_IN> spliterator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.wrapSpliterator(spliterator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Not lazy, barrier required to preserve order
+                    return reduce(helper, spliterator).spliterator();
+                }
+                else {
+                    // Lazy
+                    return new StreamSpliterators.DistinctPrimitiveSpliterator.OfDouble(
+                            (Spliterator.OfDouble) helper.wrapSpliterator(spliterator));
+                }
+            }
+
+            @Override
+            Sink<Double> opWrapSink(int flags, Sink<Double> sink) {
+                Objects.requireNonNull(sink);
+
+                if (StreamOpFlag.DISTINCT.isKnown(flags)) {
+                    return sink;
+                } else if (StreamOpFlag.SORTED.isKnown(flags)) {
+                    return new Sink.ChainedDouble<Double>(sink) {
+                        boolean seenAny;
+                        long lastSeen;
+
+                        @Override
+                        public void begin(long size) {
+                            seenAny = false;
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void accept(double t) {
+                            long bits = Double.doubleToLongBits(t);
+                            if (!seenAny || bits != lastSeen) {
+                                seenAny = true;
+                                lastSeen = bits;
+                                downstream.accept(t);
+                            }
+                        }
+                    };
+                } else {
+                    return new Sink.ChainedDouble<Double>(sink) {
+                        LongHashSet seen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = new LongHashSet();
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seen = null;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(double t) {
+                            if (seen.add(Double.doubleToLongBits(t)))
+                                downstream.accept(t);
+                        }
+                    };
+                }
+            }
+        };
+    }
+
+    // Primitive sets
+
+    /** Initial capacity of primitive hash tables; must be a power of two */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Largest capacity of primitive hash tables */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * An insert-only set of int values using open addressing with linear
+     * probing.  Zero is used to mark empty slots, so its presence is recorded
+     * separately.
+     */
+    static final class IntHashSet {
+        private int[] table = new int[INITIAL_CAPACITY];
+        private boolean containsZero;
+        private int size;
+
+        /**
+         * Adds the value if not already present.
+         *
+         * @return {@code true} if the value was added
+         */
+        boolean add(int v) {
+            if (v == 0) {
+                if (containsZero)
+                    return false;
+                containsZero = true;
+                return true;
+            }
+            int[] tab = table;
+            int mask = tab.length - 1;
+            for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+                int e = tab[i];
+                if (e == 0) {
+                    tab[i] = v;
+                    if (++size > (tab.length >>> 1))
+                        resize();
+                    return true;
+                }
+                if (e == v)
+                    return false;
+            }
+        }
+
+        private void resize() {
+            int[] oldTab = table;
+            int n = oldTab.length;
+            if (n >= MAXIMUM_CAPACITY) {
+                if (size >= n - 1)
+                    throw new IllegalArgumentException(Nodes.BAD_SIZE);
+                return;
+            }
+            int[] tab = new int[n << 1];
+            int mask = tab.length - 1;
+            for (int e : oldTab) {
+                if (e != 0) {
+                    int i = mix(e) & mask;
+                    while (tab[i] != 0)
+                        i = (i + 1) & mask;
+                    tab[i] = e;
+                }
+            }
+            table = tab;
+        }
+
+        private static int mix(int v) {
+            int h = v * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * An insert-only set of long values using open addressing with linear
+     * probing.  Zero is used to mark empty slots, so its presence is recorded
+     * separately.
+     */
+    static final class LongHashSet {
+        private long[] table = new long[INITIAL_CAPACITY];
+        private boolean containsZero;
+        private int size;
+
+        /**
+         * Adds the value if not already present.
+         *
+         * @return {@code true} if the value was added
+         */
+        boolean add(long v) {
+            if (v == 0L) {
+                if (containsZero)
+                    return false;
+                containsZero = true;
+                return true;
+            }
+            long[] tab = table;
+            int mask = tab.length - 1;
+            for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+                long e = tab[i];
+                if (e == 0L) {
+                    tab[i] = v;
+                    if (++size > (tab.length >>> 1))
+                        resize();
+                    return true;
+                }
+                if (e == v)
+                    return false;
+            }
+        }
+
+        private void resize() {
+            long[] oldTab = table;
+            int n = oldTab.length;
+            if (n >= MAXIMUM_CAPACITY) {
+                if (size >= n - 1)
+                    throw new IllegalArgumentException(Nodes.BAD_SIZE);
+                return;
+            }
+            long[] tab = new long[n << 1];
+            int mask = tab.length - 1;
+            for (long e : oldTab) {
+                if (e != 0L) {
+                    int i = mix(e) & mask;
+                    while (tab[i] != 0L)
+                        i = (i + 1) & mask;
+                    tab[i] = e;
+                }
+            }
+            table = tab;
+        }
+
+        private static int mix(long v) {
+            long h = v * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * The first occurrences of int values in a portion of a stream, in
+     * encounter order.
+     */
+    static final class OrderedIntSet implements IntConsumer {
+        final IntHashSet seen = new IntHashSet();
+        final SpinedBuffer.OfInt elements = new SpinedBuffer.OfInt();
+
+        @Override
+        public void accept(int v) {
+            if (seen.add(v))
+                elements.accept(v);
+        }
+
+        /** Appends the elements of the following portion not seen here. */
+        OrderedIntSet merge(OrderedIntSet right) {
+            right.elements.forEach((IntConsumer) this);
+            return this;
+        }
+    }
+
+    /**
+     * The first occurrences of long values in a portion of a stream, in
+     * encounter order.
+     */
+    static final class OrderedLongSet implements LongConsumer {
+        final LongHashSet seen = new LongHashSet();
+        final SpinedBuffer.OfLong elements = new SpinedBuffer.OfLong();
+
+        @Override
+        public void accept(long v) {
+            if (seen.add(v))
+                elements.accept(v);
+        }
+
+        /** Appends the elements of the following portion not seen here. */
+        OrderedLongSet merge(OrderedLongSet right) {
+            right.elements.forEach((LongConsumer) this);
+            return this;
+        }
+    }
+
+    /**
+     * The first occurrences of double values in a portion of a stream, in
+     * encounter order.
+     */
+    static final class OrderedDoubleSet implements DoubleConsumer {
+        final LongHashSet seen = new LongHashSet();
+        final SpinedBuffer.OfDouble elements = new SpinedBuffer.OfDouble();
+
+        @Override
+        public void accept(double v) {
+            if (seen.add(Double.doubleToLongBits(v)))
+                elements.accept(v);
+        }
+
+        /** Appends the elements of the following portion not seen here. */
+        OrderedDoubleSet merge(OrderedDoubleSet right) {
+            right.elements.forEach((DoubleConsumer) this);
+            return this;
+        }
+    }
 }
@@ -351,6 +351,16 @@ abstract class DoublePipeline<E_IN>
         }
     }
 
+    @Override
+    public final Stream<double[]> chunked(int size) {
+        return ChunkOps.makeDouble(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<double[]> windowed(int size, int step) {
+        return ChunkOps.makeDouble(this, size, step, false);
+    }
+
     @Override
     public final DoubleStream sorted() {
         return SortedOps.makeDouble(this);
@@ -358,9 +368,7 @@ abstract class DoublePipeline<E_IN>
 
     @Override
     public final DoubleStream distinct() {
-        // While functional and quick to implement, this approach is not very efficient.
-        // An efficient version requires a double-specific map/set implementation.
-        return boxed().distinct().mapToDouble(i -> (double) i);
+        return DistinctOps.makeDouble(this);
     }
 
     // Terminal ops from DoubleStream
@@ -476,6 +484,25 @@ abstract class DoublePipeline<E_IN>
         return evaluate(ReduceOps.makeDouble(supplier, accumulator, operator));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public final <R, A> R collect(DoubleCollector<A, R> collector) {
+        A container;
+        if (isParallel()
+                && (collector.characteristics().contains(Collector.Characteristics.CONCURRENT))
+                && (!isOrdered() || collector.characteristics().contains(Collector.Characteristics.UNORDERED))) {
+            container = collector.supplier().get();
+            ObjDoubleConsumer<A> accumulator = collector.accumulator();
+            forEach(t -> accumulator.accept(container, t));
+        }
+        else {
+            container = evaluate(ReduceOps.makeDouble(collector));
+        }
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+               ? (R) container
+               : collector.finisher().apply(container);
+    }
+
     @Override
     public final boolean anyMatch(DoublePredicate predicate) {
         return evaluate(MatchOps.makeDouble(predicate, MatchOps.MatchKind.ANY));
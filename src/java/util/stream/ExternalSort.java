@@ -0,0 +1,699 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A configuration for sorting the elements of a reference stream whose
+ * contents may not fit in memory, by spilling sorted runs to temporary
+ * files.
+ *
+ * <p>A pipeline is sorted with a configuration using
+ * {@link Stream#sortedExternally(ExternalSort)}.  Elements are buffered until the
+ * configured run size is reached; the buffer is then sorted, using
+ * {@link Arrays#parallelSort(Object[], int, int, Comparator)}, and written to
+ * a temporary file with the configured {@link Serializer}.  Once all
+ * elements have been buffered, the runs are merged and the merged elements
+ * are pushed downstream as they are read back, so that no more than one
+ * element per run is held in memory while merging.  If no more elements than
+ * the run size are encountered, the elements are sorted in memory and
+ * nothing is written.  The sort is stable.
+ *
+ * <p>The run size bounds the number of elements held in memory: at most one
+ * run when the pipeline is sequential, and at most one run per thread
+ * evaluating the pipeline when it is parallel.  In a parallel pipeline each
+ * leaf task writes its own runs, so runs may hold fewer elements.  At most
+ * the configured {@linkplain #getMaxFanIn() fan-in} of runs are merged at
+ * once, each with one open file and one I/O buffer.  If there are more runs,
+ * consecutive runs are first merged into longer ones, in as many passes as
+ * needed, each pass merging no more runs than are needed to bring the
+ * number within the fan-in.
+ *
+ * <p>Spill files are deleted as soon as they have been merged.  A pipeline
+ * that does not consume all of its sorted elements, for example one
+ * that short-circuits after a parallel sort, or one that fails before its
+ * runs are merged, may leave spill files behind, some of them still open
+ * for reading; these are closed and deleted by {@link #close()}.
+ *
+ * <p>Each configuration counts the runs it has written, and the elements and
+ * bytes written to them.  Counts are cumulative over all pipelines using the
+ * configuration, and do not include the longer runs written by intermediate
+ * merge passes.
+ *
+ * <pre> {@code
+ * try (ExternalSort<Record> spill = new ExternalSort<>(Record.BY_KEY, Record.SERIALIZER, 1 << 20)) {
+ *     records.sortedExternally(spill).forEachOrdered(out::write);
+ *     System.out.println(spill.getRunCount() + " runs, " + spill.getBytesSpilled() + " bytes");
+ * }}</pre>
+ *
+ * @param <T> the type of the elements to sort
+ * @see Stream#sortedExternally(ExternalSort)
+ * @since 1.8
+ */
+public final class ExternalSort<T> implements AutoCloseable {
+
+    /**
+     * Writes elements to, and reads them back from, a spill file.  An element
+     * read back must compare as equal to the element written, with respect to
+     * the comparator of the sort.
+     *
+     * @param <T> the type of the elements
+     */
+    public interface Serializer<T> {
+        /**
+         * Writes an element.
+         *
+         * @param t the element
+         * @param out the output to write the element to
+         * @throws IOException if an I/O error occurs
+         */
+        void write(T t, DataOutput out) throws IOException;
+
+        /**
+         * Reads an element written by {@link #write}.
+         *
+         * @param in the input to read the element from
+         * @return the element
+         * @throws IOException if an I/O error occurs
+         */
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * The size of the I/O buffer used for each spill file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The default maximum number of runs merged at once.
+     */
+    private static final int DEFAULT_MAX_FAN_IN = 64;
+
+    private final Comparator<? super T> comparator;
+    private final Serializer<T> serializer;
+    private final int runSize;
+    private final Path directory;
+    private final int maxFanIn;
+    private final LongAdder runCount = new LongAdder();
+    private final LongAdder elementsSpilled = new LongAdder();
+    private final LongAdder bytesSpilled = new LongAdder();
+    // Spill files written but not yet deleted
+    private final Set<Path> spillFiles = ConcurrentHashMap.newKeySet();
+    // Merges created but not yet exhausted or closed
+    private final Set<Merger> mergers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a configuration sorting with the given comparator and spilling
+     * runs of the given size to the default temporary-file directory.
+     *
+     * @param comparator the comparator to order elements by
+     * @param serializer the serializer for spilled elements
+     * @param runSize the maximum number of elements in a run
+     * @throws NullPointerException if comparator or serializer is null
+     * @throws IllegalArgumentException if runSize is not positive
+     */
+    public ExternalSort(Comparator<? super T> comparator, Serializer<T> serializer,
+                        int runSize) {
+        this(comparator, serializer, runSize, null);
+    }
+
+    /**
+     * Creates a configuration sorting with the given comparator and spilling
+     * runs of the given size to the given directory.
+     *
+     * @param comparator the comparator to order elements by
+     * @param serializer the serializer for spilled elements
+     * @param runSize the maximum number of elements in a run
+     * @param directory the directory in which to create spill files, or
+     *        {@code null} for the default temporary-file directory
+     * @throws NullPointerException if comparator or serializer is null
+     * @throws IllegalArgumentException if runSize is not positive
+     */
+    public ExternalSort(Comparator<? super T> comparator, Serializer<T> serializer,
+                        int runSize, Path directory) {
+        this(comparator, serializer, runSize, directory, DEFAULT_MAX_FAN_IN);
+    }
+
+    /**
+     * Creates a configuration sorting with the given comparator, spilling
+     * runs of the given size to the given directory, and merging at most the
+     * given number of runs at once.
+     *
+     * @param comparator the comparator to order elements by
+     * @param serializer the serializer for spilled elements
+     * @param runSize the maximum number of elements in a run
+     * @param directory the directory in which to create spill files, or
+     *        {@code null} for the default temporary-file directory
+     * @param maxFanIn the maximum number of runs merged at once, and hence
+     *        of spill files open at once for each merge
+     * @throws NullPointerException if comparator or serializer is null
+     * @throws IllegalArgumentException if runSize is not positive, or
+     *         maxFanIn is less than 2
+     */
+    public ExternalSort(Comparator<? super T> comparator, Serializer<T> serializer,
+                        int runSize, Path directory, int maxFanIn) {
+        Objects.requireNonNull(comparator);
+        Objects.requireNonNull(serializer);
+        if (runSize <= 0)
+            throw new IllegalArgumentException("Illegal run size: " + runSize);
+        if (maxFanIn < 2)
+            throw new IllegalArgumentException("Illegal fan-in: " + maxFanIn);
+        this.comparator = comparator;
+        this.serializer = serializer;
+        this.runSize = runSize;
+        this.directory = directory;
+        this.maxFanIn = maxFanIn;
+    }
+
+    /**
+     * Returns the comparator elements are ordered by.
+     *
+     * @return the comparator
+     */
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the serializer for spilled elements.
+     *
+     * @return the serializer
+     */
+    public Serializer<T> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Returns the maximum number of elements in a run.
+     *
+     * @return the run size
+     */
+    public int getRunSize() {
+        return runSize;
+    }
+
+    /**
+     * Returns the directory in which spill files are created.
+     *
+     * @return the directory, or {@code null} for the default temporary-file
+     *         directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the maximum number of runs merged at once.
+     *
+     * @return the maximum fan-in
+     */
+    public int getMaxFanIn() {
+        return maxFanIn;
+    }
+
+    /**
+     * Returns the number of runs written to spill files.
+     *
+     * @return the number of runs
+     */
+    public long getRunCount() {
+        return runCount.sum();
+    }
+
+    /**
+     * Returns the number of elements written to spill files.
+     *
+     * @return the number of spilled elements
+     */
+    public long getElementsSpilled() {
+        return elementsSpilled.sum();
+    }
+
+    /**
+     * Returns the number of bytes written to spill files.
+     *
+     * @return the number of spilled bytes
+     */
+    public long getBytesSpilled() {
+        return bytesSpilled.sum();
+    }
+
+    /**
+     * Resets the run, element and byte counts to zero.  Counts are not reset
+     * atomically with respect to sorts in progress.
+     */
+    public void resetCounts() {
+        runCount.reset();
+        elementsSpilled.reset();
+        bytesSpilled.reset();
+    }
+
+    /**
+     * Closes the merges that have not been read to the end, and deletes the
+     * spill files that have been written using this configuration and not
+     * yet deleted.  Merges and spill files of sorts in progress are closed
+     * and deleted too, so this should only be called once pipelines using the
+     * configuration have completed.  The configuration remains usable.
+     *
+     * @throws UncheckedIOException if a spill file could not be closed or
+     *         deleted
+     */
+    @Override
+    public void close() {
+        IOException failure = null;
+        for (Merger m : mergers) {
+            IOException e = new IOException("Failed to close spill files");
+            m.close(e);
+            if (e.getSuppressed().length > 0) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        for (Path p : spillFiles) {
+            try {
+                Files.deleteIfExists(p);
+                spillFiles.remove(p);
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw new UncheckedIOException(failure);
+    }
+
+    /**
+     * Returns a string identifying this configuration, as well as its run
+     * size and counts.
+     *
+     * @return a string identifying this configuration
+     */
+    public String toString() {
+        return super.toString() +
+            "[runSize = " + runSize +
+            ", maxFanIn = " + maxFanIn +
+            ", runs = " + runCount.sum() +
+            ", elements = " + elementsSpilled.sum() +
+            ", bytes = " + bytesSpilled.sum() + "]";
+    }
+
+    // Package-private support for SortedOps
+
+    /**
+     * A sorted run of elements written to a spill file.
+     */
+    static final class Run {
+        final Path path;
+        final long count;
+
+        Run(Path path, long count) {
+            this.path = path;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Sorts the first {@code count} elements of an array, and writes them to
+     * a new spill file.
+     *
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    Run spill(Object[] elements, int count) {
+        Arrays.parallelSort((T[]) elements, 0, count, comparator);
+        Path path = null;
+        try {
+            path = createSpillFile();
+            try (DataOutputStream out = newOutput(path)) {
+                for (int i = 0; i < count; i++)
+                    serializer.write((T) elements[i], out);
+            }
+            runCount.increment();
+            elementsSpilled.add(count);
+            bytesSpilled.add(Files.size(path));
+            return new Run(path, count);
+        } catch (IOException e) {
+            if (path != null)
+                delete(path, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path createSpillFile() throws IOException {
+        Path path = (directory != null)
+                    ? Files.createTempFile(directory, "stream-sort", ".run")
+                    : Files.createTempFile("stream-sort", ".run");
+        spillFiles.add(path);
+        return path;
+    }
+
+    private static DataOutputStream newOutput(Path path) throws IOException {
+        return new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+    }
+
+    /**
+     * Deletes the spill files of the given runs.  Failures are added as
+     * suppressed exceptions of {@code cause}, the failure being handled.
+     */
+    void delete(List<Run> runs, Throwable cause) {
+        for (Run r : runs)
+            delete(r.path, cause);
+    }
+
+    private void delete(Path path, Throwable cause) {
+        try {
+            Files.deleteIfExists(path);
+            spillFiles.remove(path);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Returns an iterator merging the given runs, in order, followed by the
+     * first {@code count} elements of the given array, which are sorted in
+     * place.  If there are more sources than the maximum fan-in, consecutive
+     * runs are first merged into longer runs.  Spill files are deleted once
+     * they have been read, or when the iterator, or this configuration, is
+     * closed.
+     *
+     * @throws UncheckedIOException if an I/O error occurs, the spill files of
+     *         the runs having been deleted
+     */
+    Merger merge(List<Run> runs, Object[] elements, int count) {
+        int limit = maxFanIn - (count > 0 ? 1 : 0);
+        if (runs.size() > limit)
+            runs = reduce(runs, limit);
+        return new Merger(runs, elements, count);
+    }
+
+    /**
+     * Merges consecutive runs into longer ones until there are no more than
+     * {@code limit}, merging no more runs than needed in each pass.
+     */
+    private List<Run> reduce(List<Run> runs, int limit) {
+        List<Run> merged = null;
+        try {
+            while (runs.size() > limit) {
+                int n = runs.size(), i = 0;
+                merged = new ArrayList<>();
+                while (i < n) {
+                    // Runs left over if the remaining ones are not merged
+                    int excess = merged.size() + n - i - limit;
+                    if (excess <= 0) {
+                        merged.addAll(runs.subList(i, n));
+                        break;
+                    }
+                    int group = Math.min(maxFanIn, Math.min(excess + 1, n - i));
+                    if (group < 2)
+                        merged.add(runs.get(i++));
+                    else {
+                        merged.add(mergeInto(runs.subList(i, i + group)));
+                        i += group;
+                    }
+                }
+                runs = merged;
+                merged = null;
+            }
+            return runs;
+        } catch (UncheckedIOException e) {
+            delete(runs, e);
+            if (merged != null)
+                delete(merged, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Merges the given runs into a new run, deleting their spill files.
+     */
+    private Run mergeInto(List<Run> runs) {
+        Merger merger = new Merger(runs, null, 0);
+        Path path = null;
+        try {
+            path = createSpillFile();
+            try (DataOutputStream out = newOutput(path)) {
+                while (merger.hasNext())
+                    serializer.write(merger.next(), out);
+            }
+            return new Run(path, merger.count());
+        } catch (IOException e) {
+            merger.close(e);
+            if (path != null)
+                delete(path, e);
+            throw new UncheckedIOException(e);
+        } catch (UncheckedIOException e) {
+            if (path != null)
+                delete(path, e);
+            throw e;
+        }
+    }
+
+    /**
+     * A source of sorted elements being merged.
+     */
+    private static abstract class Source {
+        // Next element of the source
+        Object head;
+
+        /**
+         * Moves to the next element, returning false if there is none.
+         */
+        abstract boolean advance() throws IOException;
+
+        void close() throws IOException { }
+    }
+
+    /**
+     * A source reading a run from its spill file.
+     */
+    private final class RunSource extends Source {
+        private final Run run;
+        private DataInputStream in;
+        private long remaining;
+
+        RunSource(Run run) throws IOException {
+            this.run = run;
+            this.remaining = run.count;
+            this.in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(run.path), BUFFER_SIZE));
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                close();
+                return false;
+            }
+            remaining--;
+            head = serializer.read(in);
+            return true;
+        }
+
+        @Override
+        void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+            Files.deleteIfExists(run.path);
+            spillFiles.remove(run.path);
+        }
+    }
+
+    /**
+     * A source iterating over elements held in memory.
+     */
+    private static final class ArraySource extends Source {
+        private final Object[] elements;
+        private final int fence;
+        private int index;
+
+        ArraySource(Object[] elements, int fence) {
+            this.elements = elements;
+            this.fence = fence;
+        }
+
+        @Override
+        boolean advance() {
+            if (index == fence)
+                return false;
+            head = elements[index++];
+            return true;
+        }
+    }
+
+    /**
+     * Iterator over the merged elements of a number of sorted sources, using
+     * a binary heap of source indexes ordered by the head of each source.
+     * Ties are broken in favour of the earlier source, so the merge is
+     * stable.
+     */
+    final class Merger implements Iterator<T> {
+        private final Source[] sources;
+        private final int[] heap;
+        private int heapSize;
+        private final long count;
+
+        @SuppressWarnings("unchecked")
+        Merger(List<Run> runs, Object[] elements, int count) {
+            long total = count;
+            int n = runs.size() + (count > 0 ? 1 : 0);
+            this.sources = new Source[n];
+            this.heap = new int[n];
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    Run r = runs.get(i);
+                    sources[i] = new RunSource(r);
+                    total += r.count;
+                }
+                if (count > 0) {
+                    Arrays.parallelSort((T[]) elements, 0, count, comparator);
+                    sources[n - 1] = new ArraySource(elements, count);
+                }
+                for (int s = 0; s < n; s++) {
+                    if (sources[s].advance())
+                        heap[heapSize++] = s;
+                }
+            } catch (IOException e) {
+                delete(runs, e);
+                close(e);
+                throw new UncheckedIOException(e);
+            }
+            for (int i = (heapSize >>> 1) - 1; i >= 0; i--)
+                siftDown(i);
+            this.count = total;
+            if (heapSize > 0)
+                mergers.add(this);
+        }
+
+        /**
+         * Returns the total number of elements to be merged.
+         */
+        long count() {
+            return count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return heapSize > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (heapSize == 0)
+                throw new NoSuchElementException();
+            int s = heap[0];
+            T t = (T) sources[s].head;
+            try {
+                if (!sources[s].advance()) {
+                    heap[0] = heap[--heapSize];
+                    if (heapSize == 0)
+                        mergers.remove(this);
+                }
+            } catch (IOException e) {
+                close(e);
+                throw new UncheckedIOException(e);
+            }
+            if (heapSize > 0)
+                siftDown(0);
+            return t;
+        }
+
+        /**
+         * Closes all sources, deleting their spill files.
+         *
+         * @throws UncheckedIOException if a spill file could not be closed or
+         *         deleted
+         */
+        void close() {
+            IOException failure = new IOException("Failed to close spill files");
+            close(failure);
+            if (failure.getSuppressed().length > 0)
+                throw new UncheckedIOException(failure);
+        }
+
+        private void close(Throwable cause) {
+            heapSize = 0;
+            mergers.remove(this);
+            for (Source s : sources) {
+                if (s == null)
+                    continue;
+                try {
+                    s.close();
+                } catch (IOException e) {
+                    cause.addSuppressed(e);
+                }
+            }
+        }
+
+        private boolean before(int s1, int s2) {
+            @SuppressWarnings("unchecked")
+            int c = comparator.compare((T) sources[s1].head, (T) sources[s2].head);
+            return c < 0 || (c == 0 && s1 < s2);
+        }
+
+        private void siftDown(int i) {
+            int s = heap[i];
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int c = (i << 1) + 1;
+                if (c + 1 < heapSize && before(heap[c + 1], heap[c]))
+                    c++;
+                if (!before(heap[c], s))
+                    break;
+                heap[i] = heap[c];
+                i = c;
+            }
+            heap[i] = s;
+        }
+    }
+}
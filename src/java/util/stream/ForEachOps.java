@@ -155,8 +155,12 @@ final class ForEachOps {
                                          Spliterator<S> spliterator) {
             if (ordered)
                 new ForEachOrderedTask<>(helper, spliterator, this).invoke();
+            else if (helper.getProfile() != null)
+                // Profiling sinks keep per-chain counters, so each leaf
+                // wraps its own chain rather than sharing one
+                new ForEachTask<>(helper, spliterator, null, this).invoke();
             else
-                new ForEachTask<>(helper, spliterator, helper.wrapSink(this)).invoke();
+                new ForEachTask<>(helper, spliterator, helper.wrapSink(this), null).invoke();
             return null;
         }
 
@@ -253,25 +257,32 @@ final class ForEachOps {
     static final class ForEachTask<S, T> extends CountedCompleter<Void> {
         private Spliterator<S> spliterator;
         private final Sink<S> sink;
+        // The terminal sink, wrapped by each leaf, if sink is null
+        private final Sink<T> terminal;
         private final PipelineHelper<T> helper;
         private long targetSize;
 
         ForEachTask(PipelineHelper<T> helper,
                     Spliterator<S> spliterator,
-                    Sink<S> sink) {
+                    Sink<S> sink,
+                    Sink<T> terminal) {
             super(null);
             this.sink = sink;
+            this.terminal = terminal;
             this.helper = helper;
             this.spliterator = spliterator;
             this.targetSize = 0L;
+            AbstractTask.taskCreated(helper);
         }
 
         ForEachTask(ForEachTask<S, T> parent, Spliterator<S> spliterator) {
             super(parent);
             this.spliterator = spliterator;
             this.sink = parent.sink;
+            this.terminal = parent.terminal;
             this.targetSize = parent.targetSize;
             this.helper = parent.helper;
+            AbstractTask.taskCreated(helper);
         }
 
         // Similar to AbstractTask but doesn't need to track child tasks
@@ -279,15 +290,19 @@ final class ForEachOps {
             Spliterator<S> rightSplit = spliterator, leftSplit;
             long sizeEstimate = rightSplit.estimateSize(), sizeThreshold;
             if ((sizeThreshold = targetSize) == 0L)
-                targetSize = sizeThreshold = AbstractTask.suggestTargetSize(sizeEstimate);
+                targetSize = sizeThreshold = AbstractTask.suggestTargetSize(helper, sizeEstimate);
             boolean isShortCircuit = StreamOpFlag.SHORT_CIRCUIT.isKnown(helper.getStreamAndOpFlags());
             boolean forkRight = false;
             Sink<S> taskSink = sink;
             ForEachTask<S, T> task = this;
-            while (!isShortCircuit || !taskSink.cancellationRequested()) {
+            while (!isShortCircuit ||
+                   !(taskSink != null ? taskSink : terminal).cancellationRequested()) {
                 if (sizeEstimate <= sizeThreshold ||
                     (leftSplit = rightSplit.trySplit()) == null) {
-                    task.helper.copyInto(taskSink, rightSplit);
+                    if (taskSink != null)
+                        task.helper.copyInto(taskSink, rightSplit);
+                    else
+                        task.helper.wrapAndCopyInto(terminal, rightSplit);
                     break;
                 }
                 ForEachTask<S, T> leftTask = new ForEachTask<>(task, leftSplit);
@@ -332,11 +347,12 @@ final class ForEachOps {
             super(null);
             this.helper = helper;
             this.spliterator = spliterator;
-            this.targetSize = AbstractTask.suggestTargetSize(spliterator.estimateSize());
+            this.targetSize = AbstractTask.suggestTargetSize(helper, spliterator.estimateSize());
             this.completionMap = new ConcurrentHashMap<>();
             this.action = action;
             this.lock = new Object();
             this.leftPredecessor = null;
+            AbstractTask.taskCreated(helper);
         }
 
         ForEachOrderedTask(ForEachOrderedTask<S, T> parent,
@@ -350,6 +366,7 @@ final class ForEachOps {
             this.action = parent.action;
             this.lock = parent.lock;
             this.leftPredecessor = leftPredecessor;
+            AbstractTask.taskCreated(helper);
         }
 
         @Override
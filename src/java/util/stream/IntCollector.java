@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A <a href="package-summary.html#Reduction">mutable reduction operation</a>
+ * that accumulates {@code int} input elements into a mutable result
+ * container, optionally transforming the accumulated result into a final
+ * representation after all input elements have been processed.
+ *
+ * <p>A {@code IntCollector} is the primitive specialization of
+ * {@link Collector} for {@link IntStream}: its accumulator receives
+ * {@code int} values directly, so collecting a {@code IntStream} does not box
+ * its elements.  It is specified by the same four functions and has the same
+ * {@linkplain Collector.Characteristics characteristics}, with the same
+ * meaning and the same requirements of identity and associativity, as a
+ * {@code Collector}.  {@link PrimitiveCollectors} provides implementations of
+ * common primitive mutable reductions.
+ *
+ * @param <A> the mutable accumulation type of the reduction operation (often
+ *            hidden as an implementation detail)
+ * @param <R> the result type of the reduction operation
+ * @see IntStream#collect(IntCollector)
+ * @see PrimitiveCollectors
+ * @since 1.8
+ */
+public interface IntCollector<A, R> {
+    /**
+     * A function that creates and returns a new mutable result container.
+     *
+     * @return a function which returns a new, mutable result container
+     */
+    Supplier<A> supplier();
+
+    /**
+     * A function that folds a {@code int} value into a mutable result
+     * container.
+     *
+     * @return a function which folds a value into a mutable result container
+     */
+    ObjIntConsumer<A> accumulator();
+
+    /**
+     * A function that accepts two partial results and merges them.  The
+     * combiner function may fold state from one argument into the other and
+     * return that, or may return a new result container.
+     *
+     * @return a function which combines two partial results into a combined
+     * result
+     */
+    BinaryOperator<A> combiner();
+
+    /**
+     * Perform the final transformation from the intermediate accumulation type
+     * {@code A} to the final result type {@code R}.
+     *
+     * <p>If the characteristic {@code IDENTITY_FINISH} is
+     * set, this function may be presumed to be an identity transform with an
+     * unchecked cast from {@code A} to {@code R}.
+     *
+     * @return a function which transforms the intermediate result to the final
+     * result
+     */
+    Function<A, R> finisher();
+
+    /**
+     * Returns a {@code Set} of {@code Collector.Characteristics} indicating
+     * the characteristics of this collector.  This set should be immutable.
+     *
+     * @return an immutable set of collector characteristics
+     */
+    Set<Collector.Characteristics> characteristics();
+
+    /**
+     * Returns a new {@code IntCollector} described by the given
+     * {@code supplier}, {@code accumulator}, and {@code combiner} functions.
+     * The resulting collector has the
+     * {@code Collector.Characteristics.IDENTITY_FINISH} characteristic.
+     *
+     * @param supplier The supplier function for the new collector
+     * @param accumulator The accumulator function for the new collector
+     * @param combiner The combiner function for the new collector
+     * @param characteristics The collector characteristics for the new
+     *                        collector
+     * @param <R> The type of intermediate accumulation result, and final result,
+     *           for the new collector
+     * @throws NullPointerException if any argument is null
+     * @return the new {@code IntCollector}
+     */
+    public static<R> IntCollector<R, R> of(Supplier<R> supplier,
+                                          ObjIntConsumer<R> accumulator,
+                                          BinaryOperator<R> combiner,
+                                          Collector.Characteristics... characteristics) {
+        Objects.requireNonNull(supplier);
+        Objects.requireNonNull(accumulator);
+        Objects.requireNonNull(combiner);
+        Objects.requireNonNull(characteristics);
+        Set<Collector.Characteristics> cs = (characteristics.length == 0)
+                                            ? Collectors.CH_ID
+                                            : Collections.unmodifiableSet(EnumSet.of(Collector.Characteristics.IDENTITY_FINISH,
+                                                                                     characteristics));
+        return new PrimitiveCollectors.IntCollectorImpl<>(supplier, accumulator, combiner,
+                                                          Collectors.castingIdentity(), cs);
+    }
+
+    /**
+     * Returns a new {@code IntCollector} described by the given
+     * {@code supplier}, {@code accumulator}, {@code combiner}, and
+     * {@code finisher} functions.
+     *
+     * @param supplier The supplier function for the new collector
+     * @param accumulator The accumulator function for the new collector
+     * @param combiner The combiner function for the new collector
+     * @param finisher The finisher function for the new collector
+     * @param characteristics The collector characteristics for the new
+     *                        collector
+     * @param <A> The intermediate accumulation type of the new collector
+     * @param <R> The final result type of the new collector
+     * @throws NullPointerException if any argument is null
+     * @return the new {@code IntCollector}
+     */
+    public static<A, R> IntCollector<A, R> of(Supplier<A> supplier,
+                                             ObjIntConsumer<A> accumulator,
+                                             BinaryOperator<A> combiner,
+                                             Function<A, R> finisher,
+                                             Collector.Characteristics... characteristics) {
+        Objects.requireNonNull(supplier);
+        Objects.requireNonNull(accumulator);
+        Objects.requireNonNull(combiner);
+        Objects.requireNonNull(finisher);
+        Objects.requireNonNull(characteristics);
+        Set<Collector.Characteristics> cs = Collectors.CH_NOID;
+        if (characteristics.length > 0) {
+            cs = EnumSet.noneOf(Collector.Characteristics.class);
+            Collections.addAll(cs, characteristics);
+            cs = Collections.unmodifiableSet(cs);
+        }
+        return new PrimitiveCollectors.IntCollectorImpl<>(supplier, accumulator, combiner, finisher, cs);
+    }
+}
@@ -385,6 +385,16 @@ abstract class IntPipeline<E_IN>
             return SliceOps.makeInt(this, n, -1);
     }
 
+    @Override
+    public final Stream<int[]> chunked(int size) {
+        return ChunkOps.makeInt(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<int[]> windowed(int size, int step) {
+        return ChunkOps.makeInt(this, size, step, false);
+    }
+
     @Override
     public final IntStream sorted() {
         return SortedOps.makeInt(this);
@@ -392,9 +402,7 @@ abstract class IntPipeline<E_IN>
 
     @Override
     public final IntStream distinct() {
-        // While functional and quick to implement, this approach is not very efficient.
-        // An efficient version requires an int-specific map/set implementation.
-        return boxed().distinct().mapToInt(i -> i);
+        return DistinctOps.makeInt(this);
     }
 
     // Terminal ops from IntStream
@@ -472,6 +480,25 @@ abstract class IntPipeline<E_IN>
         return evaluate(ReduceOps.makeInt(supplier, accumulator, operator));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public final <R, A> R collect(IntCollector<A, R> collector) {
+        A container;
+        if (isParallel()
+                && (collector.characteristics().contains(Collector.Characteristics.CONCURRENT))
+                && (!isOrdered() || collector.characteristics().contains(Collector.Characteristics.UNORDERED))) {
+            container = collector.supplier().get();
+            ObjIntConsumer<A> accumulator = collector.accumulator();
+            forEach(t -> accumulator.accept(container, t));
+        }
+        else {
+            container = evaluate(ReduceOps.makeInt(collector));
+        }
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+               ? (R) container
+               : collector.finisher().apply(container);
+    }
+
     @Override
     public final boolean anyMatch(IntPredicate predicate) {
         return evaluate(MatchOps.makeInt(predicate, MatchOps.MatchKind.ANY));
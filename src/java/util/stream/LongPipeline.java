@@ -366,6 +366,16 @@ abstract class LongPipeline<E_IN>
             return SliceOps.makeLong(this, n, -1);
     }
 
+    @Override
+    public final Stream<long[]> chunked(int size) {
+        return ChunkOps.makeLong(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<long[]> windowed(int size, int step) {
+        return ChunkOps.makeLong(this, size, step, false);
+    }
+
     @Override
     public final LongStream sorted() {
         return SortedOps.makeLong(this);
@@ -373,9 +383,7 @@ abstract class LongPipeline<E_IN>
 
     @Override
     public final LongStream distinct() {
-        // While functional and quick to implement, this approach is not very efficient.
-        // An efficient version requires a long-specific map/set implementation.
-        return boxed().distinct().mapToLong(i -> (long) i);
+        return DistinctOps.makeLong(this);
     }
 
     // Terminal ops from LongStream
@@ -454,6 +462,25 @@ abstract class LongPipeline<E_IN>
         return evaluate(ReduceOps.makeLong(supplier, accumulator, operator));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public final <R, A> R collect(LongCollector<A, R> collector) {
+        A container;
+        if (isParallel()
+                && (collector.characteristics().contains(Collector.Characteristics.CONCURRENT))
+                && (!isOrdered() || collector.characteristics().contains(Collector.Characteristics.UNORDERED))) {
+            container = collector.supplier().get();
+            ObjLongConsumer<A> accumulator = collector.accumulator();
+            forEach(t -> accumulator.accept(container, t));
+        }
+        else {
+            container = evaluate(ReduceOps.makeLong(collector));
+        }
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+               ? (R) container
+               : collector.finisher().apply(container);
+    }
+
     @Override
     public final boolean anyMatch(LongPredicate predicate) {
         return evaluate(MatchOps.makeLong(predicate, MatchOps.MatchKind.ANY));
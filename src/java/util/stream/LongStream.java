@@ -38,6 +38,7 @@ import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.LongBinaryOperator;
 import java.util.function.LongConsumer;
@@ -277,6 +278,78 @@ public interface LongStream extends BaseStream<Long, LongStream> {
      */
     LongStream skip(long n);
 
+    /**
+     * Returns a stream consisting of the elements of this stream grouped into
+     * consecutive chunks of {@code size} elements, in encounter order.  Every
+     * chunk except possibly the last contains exactly {@code size} elements;
+     * the last chunk contains the remaining elements.  Each chunk is a new
+     * array that is not shared with any other chunk.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * On sequential pipelines at most {@code size} elements are buffered, so
+     * {@code chunked} may be applied to infinite streams, for example to
+     * batch writes to a database without collecting the whole stream.  On
+     * parallel pipelines chunk boundaries depend on encounter position; if
+     * the number of elements is known and the source splits into parts of
+     * known size, each part produces its chunks lazily, otherwise the
+     * upstream is evaluated before chunks are produced.
+     *
+     * @implSpec
+     * The default implementation checks the arguments, and then returns
+     * the chunks of a new stream of the elements of the
+     * {@link #spliterator() spliterator} of this stream, which is parallel if
+     * this stream is parallel, and which closes this stream when closed.
+     *
+     * @param size the number of elements in each chunk
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @since 1.8
+     */
+    default Stream<long[]> chunked(int size) {
+        ChunkOps.checkWindow(size, size);
+        return StreamSupport.longStream(spliterator(), isParallel()).onClose(this::close).chunked(size);
+    }
+
+    /**
+     * Returns a stream consisting of sliding windows over the elements of
+     * this stream, in encounter order.  The first window holds the first
+     * {@code size} elements, and each subsequent window starts {@code step}
+     * elements after the start of the previous window.  Only complete windows
+     * are included, so trailing elements that do not fill a window are
+     * dropped; if {@code step} is greater than {@code size}, elements between
+     * windows are dropped.  Each window is a new array that is not
+     * shared with any other window.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * As with {@link #chunked(int)}, sequential pipelines buffer at most
+     * {@code size} elements, while parallel pipelines evaluate the upstream
+     * before producing windows only if its size is not known.
+     *
+     * @implSpec
+     * The default implementation checks the arguments, and then returns
+     * the windows of a new stream of the elements of the
+     * {@link #spliterator() spliterator} of this stream, which is parallel if
+     * this stream is parallel, and which closes this stream when closed.
+     *
+     * @param size the number of elements in each window
+     * @param step the distance, in elements, between the starts of
+     *        consecutive windows
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} or {@code step} is not
+     *         positive
+     * @since 1.8
+     */
+    default Stream<long[]> windowed(int size, int step) {
+        ChunkOps.checkWindow(size, step);
+        return StreamSupport.longStream(spliterator(), isParallel()).onClose(this::close).windowed(size, step);
+    }
+
     /**
      * Performs an action for each element of this stream.
      *
@@ -451,6 +524,45 @@ public interface LongStream extends BaseStream<Long, LongStream> {
                   ObjLongConsumer<R> accumulator,
                   BiConsumer<R, R> combiner);
 
+    /**
+     * Performs a <a href="package-summary.html#MutableReduction">mutable
+     * reduction</a> operation on the elements of this stream using an
+     * {@code LongCollector}.  This is the {@code long} counterpart of
+     * {@link Stream#collect(Collector)}: elements are passed to the
+     * collector's accumulator without boxing, and the reduction is
+     * parallelized, and may be performed concurrently, under the same
+     * conditions as for a {@code Collector}.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">terminal
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation performs the reduction with
+     * {@link #collect(Supplier, ObjLongConsumer, BiConsumer)}, holding each
+     * intermediate container in a one-element array so that the collector's
+     * combiner may return a new container, and then applies the collector's
+     * finisher, unless it has the {@code IDENTITY_FINISH} characteristic.
+     *
+     * @param <R> the type of the result
+     * @param <A> the intermediate accumulation type of the {@code LongCollector}
+     * @param collector the {@code LongCollector} describing the reduction
+     * @return the result of the reduction
+     * @see #collect(Supplier, ObjLongConsumer, BiConsumer)
+     * @see PrimitiveCollectors
+     */
+    @SuppressWarnings("unchecked")
+    default <R, A> R collect(LongCollector<A, R> collector) {
+        Supplier<A> supplier = collector.supplier();
+        ObjLongConsumer<A> accumulator = collector.accumulator();
+        BinaryOperator<A> combiner = collector.combiner();
+        A[] box = collect(() -> (A[]) new Object[] { supplier.get() },
+                          (a, t) -> accumulator.accept(a[0], t),
+                          (a, b) -> a[0] = combiner.apply(a[0], b[0]));
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+               ? (R) box[0]
+               : collector.finisher().apply(box[0]);
+    }
+
     /**
      * Returns the sum of elements in this stream.  This is a special case
      * of a <a href="package-summary.html#Reduction">reduction</a>
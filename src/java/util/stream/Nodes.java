@@ -56,7 +56,9 @@ final class Nodes {
     }
 
     /**
-     * The maximum size of an array that can be allocated.
+     * The maximum size of an array that can be allocated.  Nodes holding
+     * more elements than this are backed by a {@link SpinedBuffer}, whose
+     * chunked storage is indexed by {@code long}.
      */
     static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
 
@@ -158,15 +160,19 @@ final class Nodes {
      *
      * @param exactSizeIfKnown -1 if a variable size builder is requested,
      * otherwise the exact capacity desired.  A fixed capacity builder will
-     * fail if the wrong number of elements are added to the builder.
+     * fail if the wrong number of elements are added to the builder.  Exact
+     * capacities too large for an array produce a fixed capacity builder
+     * backed by a {@code SpinedBuffer}.
      * @param generator the array factory
      * @param <T> the type of elements of the node builder
      * @return a {@code Node.Builder}
      */
     static <T> Node.Builder<T> builder(long exactSizeIfKnown, IntFunction<T[]> generator) {
-        return (exactSizeIfKnown >= 0 && exactSizeIfKnown < MAX_ARRAY_SIZE)
+        if (exactSizeIfKnown < 0)
+            return builder();
+        return (exactSizeIfKnown < MAX_ARRAY_SIZE)
                ? new FixedNodeBuilder<>(exactSizeIfKnown, generator)
-               : builder();
+               : new SpinedNodeBuilder<>(exactSizeIfKnown);
     }
 
     /**
@@ -198,13 +204,17 @@ final class Nodes {
      *
      * @param exactSizeIfKnown -1 if a variable size builder is requested,
      * otherwise the exact capacity desired.  A fixed capacity builder will
-     * fail if the wrong number of elements are added to the builder.
+     * fail if the wrong number of elements are added to the builder.  Exact
+     * capacities too large for an array produce a fixed capacity builder
+     * backed by a {@code SpinedBuffer}.
      * @return a {@code Node.Builder.OfInt}
      */
     static Node.Builder.OfInt intBuilder(long exactSizeIfKnown) {
-        return (exactSizeIfKnown >= 0 && exactSizeIfKnown < MAX_ARRAY_SIZE)
+        if (exactSizeIfKnown < 0)
+            return intBuilder();
+        return (exactSizeIfKnown < MAX_ARRAY_SIZE)
                ? new IntFixedNodeBuilder(exactSizeIfKnown)
-               : intBuilder();
+               : new IntSpinedNodeBuilder(exactSizeIfKnown);
     }
 
     /**
@@ -235,13 +245,17 @@ final class Nodes {
      *
      * @param exactSizeIfKnown -1 if a variable size builder is requested,
      * otherwise the exact capacity desired.  A fixed capacity builder will
-     * fail if the wrong number of elements are added to the builder.
+     * fail if the wrong number of elements are added to the builder.  Exact
+     * capacities too large for an array produce a fixed capacity builder
+     * backed by a {@code SpinedBuffer}.
      * @return a {@code Node.Builder.OfLong}
      */
     static Node.Builder.OfLong longBuilder(long exactSizeIfKnown) {
-        return (exactSizeIfKnown >= 0 && exactSizeIfKnown < MAX_ARRAY_SIZE)
+        if (exactSizeIfKnown < 0)
+            return longBuilder();
+        return (exactSizeIfKnown < MAX_ARRAY_SIZE)
                ? new LongFixedNodeBuilder(exactSizeIfKnown)
-               : longBuilder();
+               : new LongSpinedNodeBuilder(exactSizeIfKnown);
     }
 
     /**
@@ -272,13 +286,17 @@ final class Nodes {
      *
      * @param exactSizeIfKnown -1 if a variable size builder is requested,
      * otherwise the exact capacity desired.  A fixed capacity builder will
-     * fail if the wrong number of elements are added to the builder.
+     * fail if the wrong number of elements are added to the builder.  Exact
+     * capacities too large for an array produce a fixed capacity builder
+     * backed by a {@code SpinedBuffer}.
      * @return a {@code Node.Builder.OfDouble}
      */
     static Node.Builder.OfDouble doubleBuilder(long exactSizeIfKnown) {
-        return (exactSizeIfKnown >= 0 && exactSizeIfKnown < MAX_ARRAY_SIZE)
+        if (exactSizeIfKnown < 0)
+            return doubleBuilder();
+        return (exactSizeIfKnown < MAX_ARRAY_SIZE)
                ? new DoubleFixedNodeBuilder(exactSizeIfKnown)
-               : doubleBuilder();
+               : new DoubleSpinedNodeBuilder(exactSizeIfKnown);
     }
 
     /**
@@ -303,9 +321,9 @@ final class Nodes {
      * since the size is known the array can be constructed in advance and
      * output elements can be placed into the array concurrently by leaf
      * tasks at the correct offsets.  If the exact size is not known, output
-     * elements are collected into a conc-node whose shape mirrors that
-     * of the computation. This conc-node can then be flattened in
-     * parallel to produce a flat {@code Node} if desired.
+     * elements, or the size is too large for an array, are collected into a
+     * conc-node whose shape mirrors that of the computation. This conc-node
+     * can then be flattened in parallel to produce a flat {@code Node} if desired.
      *
      * @param helper the pipeline helper describing the pipeline
      * @param flattenTree whether a conc node should be flattened into a node
@@ -318,9 +336,7 @@ final class Nodes {
                                                     boolean flattenTree,
                                                     IntFunction<P_OUT[]> generator) {
         long size = helper.exactOutputSizeIfKnown(spliterator);
-        if (size >= 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+        if (size >= 0 && size < MAX_ARRAY_SIZE && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
             P_OUT[] array = generator.apply((int) size);
             new SizedCollectorTask.OfRef<>(spliterator, helper, array).invoke();
             return node(array);
@@ -341,9 +357,9 @@ final class Nodes {
      * since the size is known the array can be constructed in advance and
      * output elements can be placed into the array concurrently by leaf
      * tasks at the correct offsets.  If the exact size is not known, output
-     * elements are collected into a conc-node whose shape mirrors that
-     * of the computation. This conc-node can then be flattened in
-     * parallel to produce a flat {@code Node.OfInt} if desired.
+     * elements, or the size is too large for an array, are collected into a
+     * conc-node whose shape mirrors that of the computation. This conc-node
+     * can then be flattened in parallel to produce a flat {@code Node.OfInt} if desired.
      *
      * @param <P_IN> the type of elements from the source Spliterator
      * @param helper the pipeline helper describing the pipeline
@@ -355,9 +371,7 @@ final class Nodes {
                                                Spliterator<P_IN> spliterator,
                                                boolean flattenTree) {
         long size = helper.exactOutputSizeIfKnown(spliterator);
-        if (size >= 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+        if (size >= 0 && size < MAX_ARRAY_SIZE && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
             int[] array = new int[(int) size];
             new SizedCollectorTask.OfInt<>(spliterator, helper, array).invoke();
             return node(array);
@@ -379,9 +393,9 @@ final class Nodes {
      * since the size is known the array can be constructed in advance and
      * output elements can be placed into the array concurrently by leaf
      * tasks at the correct offsets.  If the exact size is not known, output
-     * elements are collected into a conc-node whose shape mirrors that
-     * of the computation. This conc-node can then be flattened in
-     * parallel to produce a flat {@code Node.OfLong} if desired.
+     * elements, or the size is too large for an array, are collected into a
+     * conc-node whose shape mirrors that of the computation. This conc-node
+     * can then be flattened in parallel to produce a flat {@code Node.OfLong} if desired.
      *
      * @param <P_IN> the type of elements from the source Spliterator
      * @param helper the pipeline helper describing the pipeline
@@ -393,9 +407,7 @@ final class Nodes {
                                                  Spliterator<P_IN> spliterator,
                                                  boolean flattenTree) {
         long size = helper.exactOutputSizeIfKnown(spliterator);
-        if (size >= 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+        if (size >= 0 && size < MAX_ARRAY_SIZE && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
             long[] array = new long[(int) size];
             new SizedCollectorTask.OfLong<>(spliterator, helper, array).invoke();
             return node(array);
@@ -417,9 +429,9 @@ final class Nodes {
      * since the size is known the array can be constructed in advance and
      * output elements can be placed into the array concurrently by leaf
      * tasks at the correct offsets.  If the exact size is not known, output
-     * elements are collected into a conc-node whose shape mirrors that
-     * of the computation. This conc-node can then be flattened in
-     * parallel to produce a flat {@code Node.OfDouble} if desired.
+     * elements, or the size is too large for an array, are collected into a
+     * conc-node whose shape mirrors that of the computation. This conc-node
+     * can then be flattened in parallel to produce a flat {@code Node.OfDouble} if desired.
      *
      * @param <P_IN> the type of elements from the source Spliterator
      * @param helper the pipeline helper describing the pipeline
@@ -431,9 +443,7 @@ final class Nodes {
                                                      Spliterator<P_IN> spliterator,
                                                      boolean flattenTree) {
         long size = helper.exactOutputSizeIfKnown(spliterator);
-        if (size >= 0 && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+        if (size >= 0 && size < MAX_ARRAY_SIZE && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
             double[] array = new double[(int) size];
             new SizedCollectorTask.OfDouble<>(spliterator, helper, array).invoke();
             return node(array);
@@ -454,7 +464,9 @@ final class Nodes {
      * If a new node is to be created, the generator is used to create an array
      * whose length is {@link Node#count()}.  Then the node tree is traversed
      * and leaf node elements are placed in the array concurrently by leaf tasks
-     * at the correct offsets.
+     * at the correct offsets.  If the node holds too many elements for an
+     * array, its elements are instead copied, in encounter order, into a node
+     * backed by a {@code SpinedBuffer}.
      *
      * @param <T> type of elements contained by the node
      * @param node the node to flatten
@@ -464,8 +476,13 @@ final class Nodes {
     public static <T> Node<T> flatten(Node<T> node, IntFunction<T[]> generator) {
         if (node.getChildCount() > 0) {
             long size = node.count();
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+            if (size >= MAX_ARRAY_SIZE) {
+                Node.Builder<T> builder = builder(size, generator);
+                builder.begin(size);
+                node.forEach(builder);
+                builder.end();
+                return builder.build();
+            }
             T[] array = generator.apply((int) size);
             new ToArrayTask.OfRef<>(node, array, 0).invoke();
             return node(array);
@@ -482,7 +499,9 @@ final class Nodes {
      * If a new node is to be created, a new int[] array is created whose length
      * is {@link Node#count()}.  Then the node tree is traversed and leaf node
      * elements are placed in the array concurrently by leaf tasks at the
-     * correct offsets.
+     * correct offsets.  If the node holds too many elements for an array, its
+     * elements are instead copied, in encounter order, into a node backed by
+     * a {@code SpinedBuffer}.
      *
      * @param node the node to flatten
      * @return a flat {@code Node.OfInt}
@@ -490,8 +509,13 @@ final class Nodes {
     public static Node.OfInt flattenInt(Node.OfInt node) {
         if (node.getChildCount() > 0) {
             long size = node.count();
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+            if (size >= MAX_ARRAY_SIZE) {
+                Node.Builder.OfInt builder = intBuilder(size);
+                builder.begin(size);
+                node.forEach((IntConsumer) builder);
+                builder.end();
+                return builder.build();
+            }
             int[] array = new int[(int) size];
             new ToArrayTask.OfInt(node, array, 0).invoke();
             return node(array);
@@ -508,7 +532,9 @@ final class Nodes {
      * If a new node is to be created, a new long[] array is created whose length
      * is {@link Node#count()}.  Then the node tree is traversed and leaf node
      * elements are placed in the array concurrently by leaf tasks at the
-     * correct offsets.
+     * correct offsets.  If the node holds too many elements for an array, its
+     * elements are instead copied, in encounter order, into a node backed by
+     * a {@code SpinedBuffer}.
      *
      * @param node the node to flatten
      * @return a flat {@code Node.OfLong}
@@ -516,8 +542,13 @@ final class Nodes {
     public static Node.OfLong flattenLong(Node.OfLong node) {
         if (node.getChildCount() > 0) {
             long size = node.count();
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+            if (size >= MAX_ARRAY_SIZE) {
+                Node.Builder.OfLong builder = longBuilder(size);
+                builder.begin(size);
+                node.forEach((LongConsumer) builder);
+                builder.end();
+                return builder.build();
+            }
             long[] array = new long[(int) size];
             new ToArrayTask.OfLong(node, array, 0).invoke();
             return node(array);
@@ -534,7 +565,9 @@ final class Nodes {
      * If a new node is to be created, a new double[] array is created whose length
      * is {@link Node#count()}.  Then the node tree is traversed and leaf node
      * elements are placed in the array concurrently by leaf tasks at the
-     * correct offsets.
+     * correct offsets.  If the node holds too many elements for an array, its
+     * elements are instead copied, in encounter order, into a node backed by
+     * a {@code SpinedBuffer}.
      *
      * @param node the node to flatten
      * @return a flat {@code Node.OfDouble}
@@ -542,8 +575,13 @@ final class Nodes {
     public static Node.OfDouble flattenDouble(Node.OfDouble node) {
         if (node.getChildCount() > 0) {
             long size = node.count();
-            if (size >= MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(BAD_SIZE);
+            if (size >= MAX_ARRAY_SIZE) {
+                Node.Builder.OfDouble builder = doubleBuilder(size);
+                builder.begin(size);
+                node.forEach((DoubleConsumer) builder);
+                builder.end();
+                return builder.build();
+            }
             double[] array = new double[(int) size];
             new ToArrayTask.OfDouble(node, array, 0).invoke();
             return node(array);
@@ -1244,8 +1282,16 @@ final class Nodes {
             extends SpinedBuffer<T>
             implements Node<T>, Node.Builder<T> {
         private boolean building = false;
+        // Exact number of elements this builder must receive, or -1 if any
+        private final long fixedSize;
 
-        SpinedNodeBuilder() {} // Avoid creation of special accessor
+        SpinedNodeBuilder() { // Avoid creation of special accessor
+            this.fixedSize = -1;
+        }
+
+        SpinedNodeBuilder(long fixedSize) {
+            this.fixedSize = fixedSize;
+        }
 
         @Override
         public Spliterator<T> spliterator() {
@@ -1263,6 +1309,9 @@ final class Nodes {
         @Override
         public void begin(long size) {
             assert !building : "was already building";
+            if (fixedSize >= 0 && size != fixedSize)
+                throw new IllegalStateException(String.format("Begin size %d is not equal to fixed size %d",
+                                                              size, fixedSize));
             building = true;
             clear();
             ensureCapacity(size);
@@ -1278,7 +1327,9 @@ final class Nodes {
         public void end() {
             assert building : "was not building";
             building = false;
-            // @@@ check begin(size) and size
+            if (fixedSize >= 0 && count() != fixedSize)
+                throw new IllegalStateException(String.format("End size %d is not equal to fixed size %d",
+                                                              count(), fixedSize));
         }
 
         @Override
@@ -1636,8 +1687,16 @@ final class Nodes {
             extends SpinedBuffer.OfInt
             implements Node.OfInt, Node.Builder.OfInt {
         private boolean building = false;
+        // Exact number of elements this builder must receive, or -1 if any
+        private final long fixedSize;
+
+        IntSpinedNodeBuilder() { // Avoid creation of special accessor
+            this.fixedSize = -1;
+        }
 
-        IntSpinedNodeBuilder() {} // Avoid creation of special accessor
+        IntSpinedNodeBuilder(long fixedSize) {
+            this.fixedSize = fixedSize;
+        }
 
         @Override
         public Spliterator.OfInt spliterator() {
@@ -1655,6 +1714,9 @@ final class Nodes {
         @Override
         public void begin(long size) {
             assert !building : "was already building";
+            if (fixedSize >= 0 && size != fixedSize)
+                throw new IllegalStateException(String.format("Begin size %d is not equal to fixed size %d",
+                                                              size, fixedSize));
             building = true;
             clear();
             ensureCapacity(size);
@@ -1670,7 +1732,9 @@ final class Nodes {
         public void end() {
             assert building : "was not building";
             building = false;
-            // @@@ check begin(size) and size
+            if (fixedSize >= 0 && count() != fixedSize)
+                throw new IllegalStateException(String.format("End size %d is not equal to fixed size %d",
+                                                              count(), fixedSize));
         }
 
         @Override
@@ -1696,8 +1760,16 @@ final class Nodes {
             extends SpinedBuffer.OfLong
             implements Node.OfLong, Node.Builder.OfLong {
         private boolean building = false;
+        // Exact number of elements this builder must receive, or -1 if any
+        private final long fixedSize;
 
-        LongSpinedNodeBuilder() {} // Avoid creation of special accessor
+        LongSpinedNodeBuilder() { // Avoid creation of special accessor
+            this.fixedSize = -1;
+        }
+
+        LongSpinedNodeBuilder(long fixedSize) {
+            this.fixedSize = fixedSize;
+        }
 
         @Override
         public Spliterator.OfLong spliterator() {
@@ -1715,6 +1787,9 @@ final class Nodes {
         @Override
         public void begin(long size) {
             assert !building : "was already building";
+            if (fixedSize >= 0 && size != fixedSize)
+                throw new IllegalStateException(String.format("Begin size %d is not equal to fixed size %d",
+                                                              size, fixedSize));
             building = true;
             clear();
             ensureCapacity(size);
@@ -1730,7 +1805,9 @@ final class Nodes {
         public void end() {
             assert building : "was not building";
             building = false;
-            // @@@ check begin(size) and size
+            if (fixedSize >= 0 && count() != fixedSize)
+                throw new IllegalStateException(String.format("End size %d is not equal to fixed size %d",
+                                                              count(), fixedSize));
         }
 
         @Override
@@ -1756,8 +1833,16 @@ final class Nodes {
             extends SpinedBuffer.OfDouble
             implements Node.OfDouble, Node.Builder.OfDouble {
         private boolean building = false;
+        // Exact number of elements this builder must receive, or -1 if any
+        private final long fixedSize;
 
-        DoubleSpinedNodeBuilder() {} // Avoid creation of special accessor
+        DoubleSpinedNodeBuilder() { // Avoid creation of special accessor
+            this.fixedSize = -1;
+        }
+
+        DoubleSpinedNodeBuilder(long fixedSize) {
+            this.fixedSize = fixedSize;
+        }
 
         @Override
         public Spliterator.OfDouble spliterator() {
@@ -1775,6 +1860,9 @@ final class Nodes {
         @Override
         public void begin(long size) {
             assert !building : "was already building";
+            if (fixedSize >= 0 && size != fixedSize)
+                throw new IllegalStateException(String.format("Begin size %d is not equal to fixed size %d",
+                                                              size, fixedSize));
             building = true;
             clear();
             ensureCapacity(size);
@@ -1790,7 +1878,9 @@ final class Nodes {
         public void end() {
             assert building : "was not building";
             building = false;
-            // @@@ check begin(size) and size
+            if (fixedSize >= 0 && count() != fixedSize)
+                throw new IllegalStateException(String.format("End size %d is not equal to fixed size %d",
+                                                              count(), fixedSize));
         }
 
         @Override
@@ -1834,9 +1924,10 @@ final class Nodes {
             assert spliterator.hasCharacteristics(Spliterator.SUBSIZED);
             this.spliterator = spliterator;
             this.helper = helper;
-            this.targetSize = AbstractTask.suggestTargetSize(spliterator.estimateSize());
+            this.targetSize = AbstractTask.suggestTargetSize(helper, spliterator.estimateSize());
             this.offset = 0;
             this.length = arrayLength;
+            AbstractTask.taskCreated(helper);
         }
 
         SizedCollectorTask(K parent, Spliterator<P_IN> spliterator,
@@ -1848,6 +1939,7 @@ final class Nodes {
             this.targetSize = parent.targetSize;
             this.offset = offset;
             this.length = length;
+            AbstractTask.taskCreated(helper);
 
             if (offset < 0 || length < 0 || (offset + length - 1 >= arrayLength)) {
                 throw new IllegalArgumentException(
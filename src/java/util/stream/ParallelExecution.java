@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * An execution context for parallel stream pipelines, binding the pipelines
+ * that use it to a given {@link ForkJoinPool} rather than to the
+ * {@linkplain ForkJoinPool#commonPool() common pool}.
+ *
+ * <p>A pipeline is attached to a context with
+ * {@link BaseStream#parallel(ParallelExecution)}.  When the terminal
+ * operation of such a pipeline is evaluated from a thread that is not a
+ * worker of the context's pool, the evaluation is submitted to that pool
+ * and the calling thread waits for its completion; all tasks forked by the
+ * evaluation then run in that pool.  Evaluations started by a worker of the
+ * pool run directly in that worker.  Pipelines on different contexts (and
+ * hence different pools) cannot starve each other of workers, which is not
+ * the case for pipelines sharing the common pool.
+ *
+ * <p>The context also determines the granularity of parallel decomposition:
+ * the source is split until leaves hold about {@code 1 / leafTarget} of the
+ * estimated source size.  By default the leaf target is four times the
+ * parallelism of the pool, which is the factor used for the common pool.
+ *
+ * <p>Each context counts the pipeline evaluations it has run and the tasks
+ * those evaluations created.  Counts are cumulative over all pipelines using
+ * the context, so a context used by a single pipeline reports that
+ * pipeline's counts.  Iterating a pipeline through
+ * {@link BaseStream#iterator()} or {@link BaseStream#spliterator()} does not
+ * use the pool; such traversal is performed by the caller.
+ *
+ * <pre> {@code
+ * ForkJoinPool batchPool = new ForkJoinPool(4);
+ * ParallelExecution exec = new ParallelExecution(batchPool);
+ * long n = records.stream().parallel(exec).filter(r -> r.isValid()).count();
+ * System.out.println(exec.getTaskCount() + " tasks");}</pre>
+ *
+ * @since 1.8
+ */
+public final class ParallelExecution {
+
+    private final ForkJoinPool pool;
+    private final int leafTarget;
+    private final LongAdder taskCount = new LongAdder();
+    private final LongAdder evaluationCount = new LongAdder();
+
+    /**
+     * Creates a context executing parallel pipelines in the given pool, with
+     * a leaf target of four times the pool's parallelism.
+     *
+     * @param pool the pool in which to run parallel evaluations
+     * @throws NullPointerException if pool is null
+     */
+    public ParallelExecution(ForkJoinPool pool) {
+        this(pool, pool.getParallelism() << 2);
+    }
+
+    /**
+     * Creates a context executing parallel pipelines in the given pool, with
+     * the given leaf target.
+     *
+     * @param pool the pool in which to run parallel evaluations
+     * @param leafTarget the approximate number of leaf tasks into which the
+     *        source of a pipeline is split
+     * @throws NullPointerException if pool is null
+     * @throws IllegalArgumentException if leafTarget is not positive
+     */
+    public ParallelExecution(ForkJoinPool pool, int leafTarget) {
+        Objects.requireNonNull(pool);
+        if (leafTarget <= 0)
+            throw new IllegalArgumentException();
+        this.pool = pool;
+        this.leafTarget = leafTarget;
+    }
+
+    /**
+     * Returns the pool in which parallel evaluations are run.
+     *
+     * @return the pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the approximate number of leaf tasks into which the source of
+     * a pipeline is split.
+     *
+     * @return the leaf target
+     */
+    public int getLeafTarget() {
+        return leafTarget;
+    }
+
+    /**
+     * Returns the number of parallel pipeline evaluations run using this
+     * context.  A terminal operation may entail more than one evaluation if
+     * the pipeline contains stateful intermediate operations.
+     *
+     * @return the number of evaluations
+     */
+    public long getEvaluationCount() {
+        return evaluationCount.sum();
+    }
+
+    /**
+     * Returns the number of tasks created by parallel pipeline evaluations
+     * using this context, including the root task of each evaluation.
+     *
+     * @return the number of tasks
+     */
+    public long getTaskCount() {
+        return taskCount.sum();
+    }
+
+    /**
+     * Resets the evaluation and task counts to zero.  Counts are not reset
+     * atomically with respect to evaluations in progress.
+     */
+    public void resetCounts() {
+        taskCount.reset();
+        evaluationCount.reset();
+    }
+
+    /**
+     * Returns a string identifying this context, as well as its pool, leaf
+     * target and counts.
+     *
+     * @return a string identifying this context
+     */
+    public String toString() {
+        return super.toString() +
+            "[pool = " + pool +
+            ", leafTarget = " + leafTarget +
+            ", evaluations = " + evaluationCount.sum() +
+            ", tasks = " + taskCount.sum() + "]";
+    }
+
+    /**
+     * Records the creation of a task of an evaluation using this context.
+     */
+    void taskCreated() {
+        taskCount.increment();
+    }
+
+    /**
+     * Returns a suggested target leaf size based on the initial size
+     * estimate.
+     */
+    long suggestTargetSize(long sizeEstimate) {
+        long est = sizeEstimate / leafTarget;
+        return est > 0L ? est : 1L;
+    }
+
+    /**
+     * Runs the given parallel evaluation in this context's pool and returns
+     * its result.  If the current thread is a worker of the pool, the
+     * evaluation is run directly.
+     */
+    <R> R evaluate(Supplier<R> evaluation) {
+        evaluationCount.increment();
+        Thread t = Thread.currentThread();
+        if (t instanceof ForkJoinWorkerThread &&
+            ((ForkJoinWorkerThread) t).getPool() == pool)
+            return evaluation.get();
+        return pool.invoke(new EvaluationTask<>(evaluation));
+    }
+
+    /**
+     * The root of an evaluation submitted to the pool.
+     */
+    @SuppressWarnings("serial")
+    static final class EvaluationTask<R> extends ForkJoinTask<R> {
+        final Supplier<R> evaluation;
+        R result;
+
+        EvaluationTask(Supplier<R> evaluation) {
+            this.evaluation = evaluation;
+        }
+
+        public R getRawResult() { return result; }
+        public void setRawResult(R v) { result = v; }
+        public boolean exec() {
+            result = evaluation.get();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Support for the partitioned "group by" collectors,
+ * {@link Collectors#groupingByPartitioned(Function, int, Collector)} and its
+ * primitive counterparts in {@link PrimitiveCollectors}.
+ *
+ * <p>Keys are hash-partitioned across a power-of-two number of disjoint
+ * partitions.  The accumulation container, {@link Partitions}, buffers each
+ * element together with its key in a chain of chunks for the key's
+ * partition.  Combining two containers links their chains partition by
+ * partition, which takes time proportional to the number of partitions
+ * rather than the number of keys, and keeps each chain in encounter order.
+ * The finisher then reduces each partition independently, in parallel if
+ * containers were combined, building one map per partition; since no key
+ * belongs to two partitions these maps are never merged, and are instead
+ * presented as a single {@link PartitionedMap}.
+ *
+ * @since 1.8
+ */
+final class PartitionedGrouping {
+
+    private PartitionedGrouping() {
+        throw new Error("no instances");
+    }
+
+    /**
+     * The largest number of partitions.
+     */
+    private static final int MAX_PARTITIONS = 1 << 16;
+
+    /**
+     * The capacity of the first chunk of a partition.
+     */
+    private static final int MIN_CHUNK_SIZE = 16;
+
+    /**
+     * The largest capacity of a chunk.
+     */
+    private static final int MAX_CHUNK_SIZE = 1 << 12;
+
+    /**
+     * Returns the default number of partitions, four times the parallelism
+     * of the common pool rounded up to a power of two.
+     */
+    static int defaultPartitions() {
+        return partitionCount(ForkJoinPool.getCommonPoolParallelism() << 2);
+    }
+
+    /**
+     * Returns the number of partitions to use for the requested number,
+     * rounded up to a power of two.
+     *
+     * @throws IllegalArgumentException if partitions is not positive
+     */
+    static int partitionCount(int partitions) {
+        if (partitions <= 0)
+            throw new IllegalArgumentException("Illegal partition count: " + partitions);
+        return (partitions >= MAX_PARTITIONS)
+               ? MAX_PARTITIONS
+               : Integer.highestOneBit((partitions << 1) - 1);
+    }
+
+    /**
+     * Returns the partition of a key, taken from the high bits of a
+     * multiplicative hash of the key's hash code.  The low bits, which index
+     * the buckets of the map built for each partition, hence still vary
+     * between the keys of a partition.
+     */
+    static int partitionOf(Object key, int bits) {
+        return (bits == 0) ? 0 : (key.hashCode() * 0x9E3779B9) >>> (32 - bits);
+    }
+
+    /**
+     * A chunk of elements of a partition, and their keys.
+     */
+    static abstract class Chunk {
+        final Object[] keys;
+        int size;
+        Chunk next;
+
+        Chunk(int capacity) {
+            this.keys = new Object[capacity];
+        }
+    }
+
+    /**
+     * Folds the elements of a chunk into the containers of a partition's map,
+     * creating containers for new keys.
+     */
+    interface ChunkReducer {
+        void reduce(Chunk chunk, Map<Object, Object> containers);
+    }
+
+    /**
+     * The accumulation container of a partitioned "group by": a chain of
+     * chunks per partition.
+     */
+    static final class Partitions {
+        private final Chunk[] heads;
+        private final Chunk[] tails;
+        private final IntFunction<Chunk> chunkFactory;
+        private final int bits;
+        // Whether other containers have been combined into this one
+        private boolean combined;
+
+        Partitions(int partitions, IntFunction<Chunk> chunkFactory) {
+            this.heads = new Chunk[partitions];
+            this.tails = new Chunk[partitions];
+            this.chunkFactory = chunkFactory;
+            this.bits = Integer.numberOfTrailingZeros(partitions);
+        }
+
+        /**
+         * Returns a chunk with room for an element with the given key, the
+         * last chunk of the key's partition.
+         */
+        private Chunk chunkFor(Object key) {
+            int p = partitionOf(key, bits);
+            Chunk c = tails[p];
+            if (c == null)
+                heads[p] = tails[p] = c = chunkFactory.apply(MIN_CHUNK_SIZE);
+            else if (c.size == c.keys.length)
+                tails[p] = c = c.next = chunkFactory.apply(Math.min(c.size << 1, MAX_CHUNK_SIZE));
+            return c;
+        }
+
+        void add(Object key, Object value) {
+            RefChunk c = (RefChunk) chunkFor(key);
+            c.keys[c.size] = key;
+            c.values[c.size++] = value;
+        }
+
+        void addInt(Object key, int value) {
+            IntChunk c = (IntChunk) chunkFor(key);
+            c.keys[c.size] = key;
+            c.values[c.size++] = value;
+        }
+
+        void addLong(Object key, long value) {
+            LongChunk c = (LongChunk) chunkFor(key);
+            c.keys[c.size] = key;
+            c.values[c.size++] = value;
+        }
+
+        void addDouble(Object key, double value) {
+            DoubleChunk c = (DoubleChunk) chunkFor(key);
+            c.keys[c.size] = key;
+            c.values[c.size++] = value;
+        }
+
+        /**
+         * Appends the chunks of another container, partition by partition,
+         * and returns this container.
+         */
+        Partitions combine(Partitions other) {
+            for (int p = 0; p < heads.length; p++) {
+                Chunk h = other.heads[p];
+                if (h == null)
+                    continue;
+                if (heads[p] == null)
+                    heads[p] = h;
+                else
+                    tails[p].next = h;
+                tails[p] = other.tails[p];
+            }
+            combined = true;
+            return this;
+        }
+
+        /**
+         * Reduces each partition to a map from its keys to the finished
+         * results of the downstream reduction, and returns the partitions'
+         * maps as a single map.
+         *
+         * @param reducer the reducer of chunks
+         * @param finisher the downstream finisher, or {@code null} if it is
+         *        the identity
+         */
+        <K, D> Map<K, D> finish(ChunkReducer reducer, Function<Object, Object> finisher) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object>[] maps = (Map<Object, Object>[]) new Map<?, ?>[heads.length];
+            if (combined && heads.length > 1)
+                new ReduceTask(null, this, reducer, finisher, maps, 0, heads.length).invoke();
+            else {
+                for (int p = 0; p < heads.length; p++)
+                    maps[p] = reduce(p, reducer, finisher);
+            }
+            @SuppressWarnings("unchecked")
+            Map<K, D>[] result = (Map<K, D>[]) (Map<?, ?>[]) maps;
+            return new PartitionedMap<>(result, bits);
+        }
+
+        /**
+         * Reduces a partition, releasing its chunks.
+         */
+        private Map<Object, Object> reduce(int p, ChunkReducer reducer,
+                                           Function<Object, Object> finisher) {
+            Map<Object, Object> m = new HashMap<>();
+            Chunk c = heads[p];
+            heads[p] = tails[p] = null;
+            for (; c != null; c = c.next)
+                reducer.reduce(c, m);
+            if (finisher != null)
+                m.replaceAll((k, v) -> finisher.apply(v));
+            return m;
+        }
+    }
+
+    /**
+     * Task reducing a range of partitions, forking a task for each
+     * partition.
+     */
+    @SuppressWarnings("serial")
+    private static final class ReduceTask extends CountedCompleter<Void> {
+        private final Partitions partitions;
+        private final ChunkReducer reducer;
+        private final Function<Object, Object> finisher;
+        private final Map<Object, Object>[] maps;
+        private final int lo, hi;
+
+        ReduceTask(ReduceTask parent, Partitions partitions, ChunkReducer reducer,
+                   Function<Object, Object> finisher, Map<Object, Object>[] maps,
+                   int lo, int hi) {
+            super(parent);
+            this.partitions = partitions;
+            this.reducer = reducer;
+            this.finisher = finisher;
+            this.maps = maps;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        public void compute() {
+            int l = lo, h = hi;
+            while (h - l > 1) {
+                int mid = (l + h) >>> 1;
+                addToPendingCount(1);
+                new ReduceTask(this, partitions, reducer, finisher, maps, mid, h).fork();
+                h = mid;
+            }
+            maps[l] = partitions.reduce(l, reducer, finisher);
+            propagateCompletion();
+        }
+    }
+
+    /**
+     * Returns a supplier of containers with the given number of partitions,
+     * rounded up to a power of two, creating chunks with the given factory.
+     *
+     * @throws IllegalArgumentException if partitions is not positive
+     */
+    static Supplier<Partitions> supplier(int partitions, IntFunction<Chunk> chunkFactory) {
+        int n = partitionCount(partitions);
+        return () -> new Partitions(n, chunkFactory);
+    }
+
+    /**
+     * Returns a reducer of {@code RefChunk}s applying the given downstream
+     * supplier and accumulator.
+     */
+    static <A> ChunkReducer reducer(Supplier<A> downstreamSupplier,
+                                    BiConsumer<A, Object> downstreamAccumulator) {
+        return (chunk, containers) -> {
+            Object[] keys = chunk.keys;
+            Object[] values = ((RefChunk) chunk).values;
+            for (int i = 0; i < chunk.size; i++) {
+                @SuppressWarnings("unchecked")
+                A container = (A) containers.computeIfAbsent(keys[i], k -> downstreamSupplier.get());
+                downstreamAccumulator.accept(container, values[i]);
+            }
+        };
+    }
+
+    /**
+     * Returns a reducer of {@code IntChunk}s applying the given downstream
+     * supplier and accumulator.
+     */
+    static <A> ChunkReducer intReducer(Supplier<A> downstreamSupplier,
+                                       ObjIntConsumer<A> downstreamAccumulator) {
+        return (chunk, containers) -> {
+            Object[] keys = chunk.keys;
+            int[] values = ((IntChunk) chunk).values;
+            for (int i = 0; i < chunk.size; i++) {
+                @SuppressWarnings("unchecked")
+                A container = (A) containers.computeIfAbsent(keys[i], k -> downstreamSupplier.get());
+                downstreamAccumulator.accept(container, values[i]);
+            }
+        };
+    }
+
+    /**
+     * Returns a reducer of {@code LongChunk}s applying the given downstream
+     * supplier and accumulator.
+     */
+    static <A> ChunkReducer longReducer(Supplier<A> downstreamSupplier,
+                                        ObjLongConsumer<A> downstreamAccumulator) {
+        return (chunk, containers) -> {
+            Object[] keys = chunk.keys;
+            long[] values = ((LongChunk) chunk).values;
+            for (int i = 0; i < chunk.size; i++) {
+                @SuppressWarnings("unchecked")
+                A container = (A) containers.computeIfAbsent(keys[i], k -> downstreamSupplier.get());
+                downstreamAccumulator.accept(container, values[i]);
+            }
+        };
+    }
+
+    /**
+     * Returns a reducer of {@code DoubleChunk}s applying the given downstream
+     * supplier and accumulator.
+     */
+    static <A> ChunkReducer doubleReducer(Supplier<A> downstreamSupplier,
+                                          ObjDoubleConsumer<A> downstreamAccumulator) {
+        return (chunk, containers) -> {
+            Object[] keys = chunk.keys;
+            double[] values = ((DoubleChunk) chunk).values;
+            for (int i = 0; i < chunk.size; i++) {
+                @SuppressWarnings("unchecked")
+                A container = (A) containers.computeIfAbsent(keys[i], k -> downstreamSupplier.get());
+                downstreamAccumulator.accept(container, values[i]);
+            }
+        };
+    }
+
+    // Chunks
+
+    static final class RefChunk extends Chunk {
+        final Object[] values;
+
+        RefChunk(int capacity) {
+            super(capacity);
+            this.values = new Object[capacity];
+        }
+    }
+
+    static final class IntChunk extends Chunk {
+        final int[] values;
+
+        IntChunk(int capacity) {
+            super(capacity);
+            this.values = new int[capacity];
+        }
+    }
+
+    static final class LongChunk extends Chunk {
+        final long[] values;
+
+        LongChunk(int capacity) {
+            super(capacity);
+            this.values = new long[capacity];
+        }
+    }
+
+    static final class DoubleChunk extends Chunk {
+        final double[] values;
+
+        DoubleChunk(int capacity) {
+            super(capacity);
+            this.values = new double[capacity];
+        }
+    }
+
+    /**
+     * The result of a partitioned "group by": a map whose entries are held
+     * by one map per partition.  Keys are looked up in the map of their
+     * partition.  Null keys are not permitted.
+     */
+    static final class PartitionedMap<K, V> extends AbstractMap<K, V> {
+        private final Map<K, V>[] maps;
+        private final int bits;
+
+        PartitionedMap(Map<K, V>[] maps, int bits) {
+            this.maps = maps;
+            this.bits = bits;
+        }
+
+        private Map<K, V> mapFor(Object key) {
+            return maps[partitionOf(key, bits)];
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Map<K, V> m : maps)
+                size += m.size();
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            for (Map<K, V> m : maps) {
+                if (!m.isEmpty())
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key != null && mapFor(key).containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return (key == null) ? null : mapFor(key).get(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            return mapFor(Objects.requireNonNull(key)).put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return (key == null) ? null : mapFor(key).remove(key);
+        }
+
+        @Override
+        public void clear() {
+            for (Map<K, V> m : maps)
+                m.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new Iterator<Map.Entry<K, V>>() {
+                        int index;
+                        Iterator<Map.Entry<K, V>> current = maps[0].entrySet().iterator();
+                        Iterator<Map.Entry<K, V>> last;
+
+                        @Override
+                        public boolean hasNext() {
+                            while (!current.hasNext()) {
+                                if (++index == maps.length) {
+                                    index = maps.length - 1;
+                                    return false;
+                                }
+                                current = maps[index].entrySet().iterator();
+                            }
+                            return true;
+                        }
+
+                        @Override
+                        public Map.Entry<K, V> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            last = current;
+                            return current.next();
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null)
+                                throw new IllegalStateException();
+                            last.remove();
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return PartitionedMap.this.size();
+                }
+            };
+        }
+    }
+}
@@ -71,6 +71,23 @@ abstract class PipelineHelper<P_OUT> {
      */
     abstract int getStreamAndOpFlags();
 
+    /**
+     * Gets the execution context of the pipeline, if parallel evaluation of
+     * the pipeline was bound to one.
+     *
+     * @return the execution context, or {@code null} if parallel evaluation
+     *         uses the common pool
+     */
+    abstract ParallelExecution getParallelExecution();
+
+    /**
+     * Gets the profile in which evaluation of the pipeline is recorded, if
+     * any.
+     *
+     * @return the profile, or {@code null} if the pipeline is not profiled
+     */
+    abstract StreamProfile getProfile();
+
     /**
      * Returns the exact output size of the portion of the output resulting from
      * applying the pipeline stages described by this {@code PipelineHelper} to
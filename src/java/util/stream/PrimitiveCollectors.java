@@ -0,0 +1,1327 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleFunction;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Implementations of {@link IntCollector}, {@link LongCollector} and
+ * {@link DoubleCollector} that implement useful reductions of primitive
+ * streams, such as accumulating elements into arrays, summarizing them, and
+ * grouping or partitioning them with a primitive downstream reduction.  Unlike
+ * applying the corresponding {@link Collectors} to a {@code boxed()} stream,
+ * none of these box the stream elements.
+ *
+ * <p>The following are examples of using the predefined collectors:
+ *
+ * <pre>{@code
+ *     // Accumulate the elements into an array
+ *     int[] ids = orders.stream().mapToInt(Order::getId).collect(PrimitiveCollectors.toIntArray());
+ *
+ *     // Group values by their remainder, keeping the values in each group
+ *     Map<Integer, int[]> byRemainder
+ *         = IntStream.range(0, 100)
+ *                    .collect(PrimitiveCollectors.groupingByInt(i -> i % 3));
+ *
+ *     // Summarize even and odd values separately
+ *     Map<Boolean, IntSummaryStatistics> stats
+ *         = values.stream()
+ *                 .mapToInt(Integer::intValue)
+ *                 .collect(PrimitiveCollectors.partitioningByInt(i -> (i & 1) == 0,
+ *                                                                PrimitiveCollectors.summarizingInt()));
+ * }</pre>
+ *
+ * @see Collectors
+ * @since 1.8
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() { }
+
+    /**
+     * Simple implementation class for {@code IntCollector}.
+     *
+     * @param <A> the mutable accumulation type
+     * @param <R> the type of the result
+     */
+    static class IntCollectorImpl<A, R> implements IntCollector<A, R> {
+        private final Supplier<A> supplier;
+        private final ObjIntConsumer<A> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final Function<A, R> finisher;
+        private final Set<Collector.Characteristics> characteristics;
+
+        IntCollectorImpl(Supplier<A> supplier,
+                      ObjIntConsumer<A> accumulator,
+                      BinaryOperator<A> combiner,
+                      Function<A,R> finisher,
+                      Set<Collector.Characteristics> characteristics) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.finisher = finisher;
+            this.characteristics = characteristics;
+        }
+
+        IntCollectorImpl(Supplier<A> supplier,
+                      ObjIntConsumer<A> accumulator,
+                      BinaryOperator<A> combiner,
+                      Set<Collector.Characteristics> characteristics) {
+            this(supplier, accumulator, combiner, Collectors.castingIdentity(), characteristics);
+        }
+
+        @Override
+        public ObjIntConsumer<A> accumulator() {
+            return accumulator;
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return supplier;
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return combiner;
+        }
+
+        @Override
+        public Function<A, R> finisher() {
+            return finisher;
+        }
+
+        @Override
+        public Set<Collector.Characteristics> characteristics() {
+            return characteristics;
+        }
+    }
+
+    /**
+     * Simple implementation class for {@code LongCollector}.
+     *
+     * @param <A> the mutable accumulation type
+     * @param <R> the type of the result
+     */
+    static class LongCollectorImpl<A, R> implements LongCollector<A, R> {
+        private final Supplier<A> supplier;
+        private final ObjLongConsumer<A> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final Function<A, R> finisher;
+        private final Set<Collector.Characteristics> characteristics;
+
+        LongCollectorImpl(Supplier<A> supplier,
+                      ObjLongConsumer<A> accumulator,
+                      BinaryOperator<A> combiner,
+                      Function<A,R> finisher,
+                      Set<Collector.Characteristics> characteristics) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.finisher = finisher;
+            this.characteristics = characteristics;
+        }
+
+        LongCollectorImpl(Supplier<A> supplier,
+                      ObjLongConsumer<A> accumulator,
+                      BinaryOperator<A> combiner,
+                      Set<Collector.Characteristics> characteristics) {
+            this(supplier, accumulator, combiner, Collectors.castingIdentity(), characteristics);
+        }
+
+        @Override
+        public ObjLongConsumer<A> accumulator() {
+            return accumulator;
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return supplier;
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return combiner;
+        }
+
+        @Override
+        public Function<A, R> finisher() {
+            return finisher;
+        }
+
+        @Override
+        public Set<Collector.Characteristics> characteristics() {
+            return characteristics;
+        }
+    }
+
+    /**
+     * Simple implementation class for {@code DoubleCollector}.
+     *
+     * @param <A> the mutable accumulation type
+     * @param <R> the type of the result
+     */
+    static class DoubleCollectorImpl<A, R> implements DoubleCollector<A, R> {
+        private final Supplier<A> supplier;
+        private final ObjDoubleConsumer<A> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final Function<A, R> finisher;
+        private final Set<Collector.Characteristics> characteristics;
+
+        DoubleCollectorImpl(Supplier<A> supplier,
+                      ObjDoubleConsumer<A> accumulator,
+                      BinaryOperator<A> combiner,
+                      Function<A,R> finisher,
+                      Set<Collector.Characteristics> characteristics) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.finisher = finisher;
+            this.characteristics = characteristics;
+        }
+
+        DoubleCollectorImpl(Supplier<A> supplier,
+                      ObjDoubleConsumer<A> accumulator,
+                      BinaryOperator<A> combiner,
+                      Set<Collector.Characteristics> characteristics) {
+            this(supplier, accumulator, combiner, Collectors.castingIdentity(), characteristics);
+        }
+
+        @Override
+        public ObjDoubleConsumer<A> accumulator() {
+            return accumulator;
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return supplier;
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return combiner;
+        }
+
+        @Override
+        public Function<A, R> finisher() {
+            return finisher;
+        }
+
+        @Override
+        public Set<Collector.Characteristics> characteristics() {
+            return characteristics;
+        }
+    }
+
+    // IntCollector
+
+    /**
+     * Returns an {@code IntCollector} that accumulates the input elements
+     * into a new {@code int[]}, in encounter order.
+     *
+     * @return an {@code IntCollector} which collects all the input elements
+     * into an array, in encounter order
+     */
+    public static IntCollector<?, int[]> toIntArray() {
+        return new IntCollectorImpl<>(
+                SpinedBuffer.OfInt::new,
+                SpinedBuffer.OfInt::accept,
+                (left, right) -> { right.forEach((IntConsumer) left); return left; },
+                SpinedBuffer.OfInt::asPrimitiveArray, Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns an {@code IntCollector} that counts the number of input
+     * elements.  If no elements are present, the result is 0.
+     *
+     * @return an {@code IntCollector} that counts the input elements
+     */
+    public static IntCollector<?, Long> countingInt() {
+        return new IntCollectorImpl<>(
+                () -> new long[1],
+                (a, t) -> { a[0]++; },
+                (a, b) -> { a[0] += b[0]; return a; },
+                a -> a[0], Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns an {@code IntCollector} that produces the sum of the input
+     * elements.  If no elements are present, the result is 0.
+     *
+     * @return an {@code IntCollector} that produces the sum of the input
+     * elements
+     * @see Collectors#summingInt
+     */
+    public static IntCollector<?, Integer> summingInt() {
+        return new IntCollectorImpl<>(
+                () -> new int[1],
+                (a, t) -> { a[0] += t; },
+                (a, b) -> { a[0] += b[0]; return a; },
+                a -> a[0], Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns an {@code IntCollector} which returns summary statistics for
+     * the input elements.
+     *
+     * @return an {@code IntCollector} implementing the summary-statistics
+     * reduction
+     * @see Collectors#summarizingInt
+     */
+    public static IntCollector<?, IntSummaryStatistics> summarizingInt() {
+        return new IntCollectorImpl<IntSummaryStatistics, IntSummaryStatistics>(
+                IntSummaryStatistics::new,
+                IntSummaryStatistics::accept,
+                (l, r) -> { l.combine(r); return l; }, Collectors.CH_ID);
+    }
+
+    /**
+     * Returns an {@code IntCollector} implementing a "group by" operation on
+     * {@code int} input elements, grouping elements according to a
+     * classification function, and returning the results in a {@code Map}
+     * whose values are arrays of the elements in each group, in encounter
+     * order.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByInt(classifier, toIntArray())
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param classifier the classifier function mapping input elements to keys
+     * @return an {@code IntCollector} implementing the group-by operation
+     *
+     * @see Collectors#groupingBy(Function)
+     */
+    public static <K> IntCollector<?, Map<K, int[]>>
+    groupingByInt(IntFunction<? extends K> classifier) {
+        return groupingByInt(classifier, toIntArray());
+    }
+
+    /**
+     * Returns an {@code IntCollector} implementing a cascaded "group by"
+     * operation on {@code int} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code IntCollector}.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByInt(classifier, HashMap::new, downstream)
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream an {@code IntCollector} implementing the downstream
+     *                   reduction
+     * @return an {@code IntCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingBy(Function, Collector)
+     */
+    public static <K, A, D> IntCollector<?, Map<K, D>>
+    groupingByInt(IntFunction<? extends K> classifier,
+                  IntCollector<A, D> downstream) {
+        return groupingByInt(classifier, HashMap::new, downstream);
+    }
+
+    /**
+     * Returns an {@code IntCollector} implementing a cascaded "group by"
+     * operation on {@code int} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code IntCollector}.  The {@code Map} produced by the collector is
+     * created with the supplied factory function.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param <M> the type of the resulting {@code Map}
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapFactory a function which, when called, produces a new empty
+     *                   {@code Map} of the desired type
+     * @param downstream an {@code IntCollector} implementing the downstream
+     *                   reduction
+     * @return an {@code IntCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingBy(Function, Supplier, Collector)
+     */
+    public static <K, D, A, M extends Map<K, D>> IntCollector<?, M>
+    groupingByInt(IntFunction<? extends K> classifier,
+                  Supplier<M> mapFactory,
+                  IntCollector<A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapFactory);
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        ObjIntConsumer<A> downstreamAccumulator = downstream.accumulator();
+        ObjIntConsumer<Map<K, A>> accumulator = (m, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            A container = m.computeIfAbsent(key, k -> downstreamSupplier.get());
+            downstreamAccumulator.accept(container, t);
+        };
+        BinaryOperator<Map<K, A>> merger = Collectors.<K, A, Map<K, A>>mapMerger(downstream.combiner());
+        @SuppressWarnings("unchecked")
+        Supplier<Map<K, A>> mangledFactory = (Supplier<Map<K, A>>) mapFactory;
+
+        if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            return new IntCollectorImpl<>(mangledFactory, accumulator, merger, Collectors.CH_ID);
+        }
+        else {
+            @SuppressWarnings("unchecked")
+            Function<A, A> downstreamFinisher = (Function<A, A>) downstream.finisher();
+            Function<Map<K, A>, M> finisher = intermediate -> {
+                intermediate.replaceAll((k, v) -> downstreamFinisher.apply(v));
+                @SuppressWarnings("unchecked")
+                M castResult = (M) intermediate;
+                return castResult;
+            };
+            return new IntCollectorImpl<>(mangledFactory, accumulator, merger, finisher, Collectors.CH_NOID);
+        }
+    }
+
+    /**
+     * Returns an {@code IntCollector} implementing a "group by" operation on
+     * {@code int} input elements, grouping elements according to a
+     * classification function, and returning the results in a {@code Map}
+     * whose values are arrays of the elements in each group, in encounter
+     * order, reducing disjoint partitions of the keys independently.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByIntPartitioned(classifier, toIntArray())
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param classifier the classifier function mapping input elements to keys
+     * @return an {@code IntCollector} implementing the group-by operation
+     *
+     * @see Collectors#groupingByPartitioned(Function)
+     */
+    public static <K> IntCollector<?, Map<K, int[]>>
+    groupingByIntPartitioned(IntFunction<? extends K> classifier) {
+        return groupingByIntPartitioned(classifier, toIntArray());
+    }
+
+    /**
+     * Returns an {@code IntCollector} implementing a cascaded "group by"
+     * operation on {@code int} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code IntCollector}, reducing disjoint partitions of the keys
+     * independently.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This is equivalent to
+     * {@link #groupingByIntPartitioned(IntFunction, int, IntCollector)} with
+     * a number of partitions that is a small multiple of the parallelism of
+     * the common pool.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream an {@code IntCollector} implementing the downstream
+     *                   reduction
+     * @return an {@code IntCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingByPartitioned(Function, Collector)
+     */
+    public static <K, A, D> IntCollector<?, Map<K, D>>
+    groupingByIntPartitioned(IntFunction<? extends K> classifier,
+                             IntCollector<A, D> downstream) {
+        return groupingByIntPartitioned(classifier, PartitionedGrouping.defaultPartitions(), downstream);
+    }
+
+    /**
+     * Returns an {@code IntCollector} implementing a cascaded "group by"
+     * operation on {@code int} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code IntCollector}, reducing the given number of disjoint partitions
+     * of the keys independently.  The elements associated with each key are
+     * presented to the downstream collector in encounter order.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implNote
+     * The elements are buffered unboxed, together with their keys, per
+     * partition; see {@link Collectors#groupingByPartitioned(Function, int, Collector)}.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param partitions the number of partitions of the keys
+     * @param downstream an {@code IntCollector} implementing the downstream
+     *                   reduction
+     * @return an {@code IntCollector} implementing the cascaded group-by
+     * operation
+     * @throws IllegalArgumentException if {@code partitions} is not positive
+     *
+     * @see Collectors#groupingByPartitioned(Function, int, Collector)
+     */
+    public static <K, A, D> IntCollector<?, Map<K, D>>
+    groupingByIntPartitioned(IntFunction<? extends K> classifier,
+                             int partitions,
+                             IntCollector<A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Supplier<PartitionedGrouping.Partitions> supplier
+                = PartitionedGrouping.supplier(partitions, PartitionedGrouping.IntChunk::new);
+        ObjIntConsumer<PartitionedGrouping.Partitions> accumulator = (parts, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            parts.addInt(key, t);
+        };
+        PartitionedGrouping.ChunkReducer reducer
+                = PartitionedGrouping.intReducer(downstream.supplier(), downstream.accumulator());
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> downstreamFinisher
+                = downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+                  ? null
+                  : (Function<Object, Object>) (Function<?, ?>) downstream.finisher();
+        return new IntCollectorImpl<>(supplier, accumulator, PartitionedGrouping.Partitions::combine,
+                                      parts -> parts.<K, D>finish(reducer, downstreamFinisher),
+                                      Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns an {@code IntCollector} which partitions the input elements
+     * according to an {@code IntPredicate}, and organizes them into a
+     * {@code Map<Boolean, int[]>}.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @param predicate a predicate used for classifying input elements
+     * @return an {@code IntCollector} implementing the partitioning operation
+     *
+     * @see Collectors#partitioningBy(java.util.function.Predicate)
+     */
+    public static IntCollector<?, Map<Boolean, int[]>>
+    partitioningByInt(IntPredicate predicate) {
+        return partitioningByInt(predicate, toIntArray());
+    }
+
+    /**
+     * Returns an {@code IntCollector} which partitions the input elements
+     * according to an {@code IntPredicate}, reduces the values in each
+     * partition according to another {@code IntCollector}, and organizes
+     * them into a {@code Map<Boolean, D>} whose values are the result of the
+     * downstream reduction.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param predicate a predicate used for classifying input elements
+     * @param downstream an {@code IntCollector} implementing the downstream
+     *                   reduction
+     * @return an {@code IntCollector} implementing the cascaded partitioning
+     *         operation
+     *
+     * @see Collectors#partitioningBy(java.util.function.Predicate, Collector)
+     */
+    public static <D, A> IntCollector<?, Map<Boolean, D>>
+    partitioningByInt(IntPredicate predicate,
+                      IntCollector<A, D> downstream) {
+        Objects.requireNonNull(predicate);
+        ObjIntConsumer<A> downstreamAccumulator = downstream.accumulator();
+        ObjIntConsumer<Collectors.Partition<A>> accumulator = (result, t) ->
+                downstreamAccumulator.accept(predicate.test(t) ? result.forTrue : result.forFalse, t);
+        BinaryOperator<A> op = downstream.combiner();
+        BinaryOperator<Collectors.Partition<A>> merger = (left, right) ->
+                new Collectors.Partition<>(op.apply(left.forTrue, right.forTrue),
+                                           op.apply(left.forFalse, right.forFalse));
+        Supplier<Collectors.Partition<A>> supplier = () ->
+                new Collectors.Partition<>(downstream.supplier().get(),
+                                           downstream.supplier().get());
+        if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            return new IntCollectorImpl<>(supplier, accumulator, merger, Collectors.CH_ID);
+        }
+        else {
+            Function<Collectors.Partition<A>, Map<Boolean, D>> finisher = par ->
+                    new Collectors.Partition<>(downstream.finisher().apply(par.forTrue),
+                                               downstream.finisher().apply(par.forFalse));
+            return new IntCollectorImpl<>(supplier, accumulator, merger, finisher, Collectors.CH_NOID);
+        }
+    }
+
+    // LongCollector
+
+    /**
+     * Returns a {@code LongCollector} that accumulates the input elements
+     * into a new {@code long[]}, in encounter order.
+     *
+     * @return a {@code LongCollector} which collects all the input elements
+     * into an array, in encounter order
+     */
+    public static LongCollector<?, long[]> toLongArray() {
+        return new LongCollectorImpl<>(
+                SpinedBuffer.OfLong::new,
+                SpinedBuffer.OfLong::accept,
+                (left, right) -> { right.forEach((LongConsumer) left); return left; },
+                SpinedBuffer.OfLong::asPrimitiveArray, Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code LongCollector} that counts the number of input
+     * elements.  If no elements are present, the result is 0.
+     *
+     * @return a {@code LongCollector} that counts the input elements
+     */
+    public static LongCollector<?, Long> countingLong() {
+        return new LongCollectorImpl<>(
+                () -> new long[1],
+                (a, t) -> { a[0]++; },
+                (a, b) -> { a[0] += b[0]; return a; },
+                a -> a[0], Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code LongCollector} that produces the sum of the input
+     * elements.  If no elements are present, the result is 0.
+     *
+     * @return a {@code LongCollector} that produces the sum of the input
+     * elements
+     * @see Collectors#summingLong
+     */
+    public static LongCollector<?, Long> summingLong() {
+        return new LongCollectorImpl<>(
+                () -> new long[1],
+                (a, t) -> { a[0] += t; },
+                (a, b) -> { a[0] += b[0]; return a; },
+                a -> a[0], Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code LongCollector} which returns summary statistics for
+     * the input elements.
+     *
+     * @return a {@code LongCollector} implementing the summary-statistics
+     * reduction
+     * @see Collectors#summarizingLong
+     */
+    public static LongCollector<?, LongSummaryStatistics> summarizingLong() {
+        return new LongCollectorImpl<LongSummaryStatistics, LongSummaryStatistics>(
+                LongSummaryStatistics::new,
+                LongSummaryStatistics::accept,
+                (l, r) -> { l.combine(r); return l; }, Collectors.CH_ID);
+    }
+
+    /**
+     * Returns a {@code LongCollector} implementing a "group by" operation on
+     * {@code long} input elements, grouping elements according to a
+     * classification function, and returning the results in a {@code Map}
+     * whose values are arrays of the elements in each group, in encounter
+     * order.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByLong(classifier, toLongArray())
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param classifier the classifier function mapping input elements to keys
+     * @return a {@code LongCollector} implementing the group-by operation
+     *
+     * @see Collectors#groupingBy(Function)
+     */
+    public static <K> LongCollector<?, Map<K, long[]>>
+    groupingByLong(LongFunction<? extends K> classifier) {
+        return groupingByLong(classifier, toLongArray());
+    }
+
+    /**
+     * Returns a {@code LongCollector} implementing a cascaded "group by"
+     * operation on {@code long} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code LongCollector}.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByLong(classifier, HashMap::new, downstream)
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream a {@code LongCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code LongCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingBy(Function, Collector)
+     */
+    public static <K, A, D> LongCollector<?, Map<K, D>>
+    groupingByLong(LongFunction<? extends K> classifier,
+                  LongCollector<A, D> downstream) {
+        return groupingByLong(classifier, HashMap::new, downstream);
+    }
+
+    /**
+     * Returns a {@code LongCollector} implementing a cascaded "group by"
+     * operation on {@code long} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code LongCollector}.  The {@code Map} produced by the collector is
+     * created with the supplied factory function.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param <M> the type of the resulting {@code Map}
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapFactory a function which, when called, produces a new empty
+     *                   {@code Map} of the desired type
+     * @param downstream a {@code LongCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code LongCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingBy(Function, Supplier, Collector)
+     */
+    public static <K, D, A, M extends Map<K, D>> LongCollector<?, M>
+    groupingByLong(LongFunction<? extends K> classifier,
+                  Supplier<M> mapFactory,
+                  LongCollector<A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapFactory);
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        ObjLongConsumer<A> downstreamAccumulator = downstream.accumulator();
+        ObjLongConsumer<Map<K, A>> accumulator = (m, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            A container = m.computeIfAbsent(key, k -> downstreamSupplier.get());
+            downstreamAccumulator.accept(container, t);
+        };
+        BinaryOperator<Map<K, A>> merger = Collectors.<K, A, Map<K, A>>mapMerger(downstream.combiner());
+        @SuppressWarnings("unchecked")
+        Supplier<Map<K, A>> mangledFactory = (Supplier<Map<K, A>>) mapFactory;
+
+        if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            return new LongCollectorImpl<>(mangledFactory, accumulator, merger, Collectors.CH_ID);
+        }
+        else {
+            @SuppressWarnings("unchecked")
+            Function<A, A> downstreamFinisher = (Function<A, A>) downstream.finisher();
+            Function<Map<K, A>, M> finisher = intermediate -> {
+                intermediate.replaceAll((k, v) -> downstreamFinisher.apply(v));
+                @SuppressWarnings("unchecked")
+                M castResult = (M) intermediate;
+                return castResult;
+            };
+            return new LongCollectorImpl<>(mangledFactory, accumulator, merger, finisher, Collectors.CH_NOID);
+        }
+    }
+
+    /**
+     * Returns a {@code LongCollector} implementing a "group by" operation on
+     * {@code long} input elements, grouping elements according to a
+     * classification function, and returning the results in a {@code Map}
+     * whose values are arrays of the elements in each group, in encounter
+     * order, reducing disjoint partitions of the keys independently.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByLongPartitioned(classifier, toLongArray())
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param classifier the classifier function mapping input elements to keys
+     * @return a {@code LongCollector} implementing the group-by operation
+     *
+     * @see Collectors#groupingByPartitioned(Function)
+     */
+    public static <K> LongCollector<?, Map<K, long[]>>
+    groupingByLongPartitioned(LongFunction<? extends K> classifier) {
+        return groupingByLongPartitioned(classifier, toLongArray());
+    }
+
+    /**
+     * Returns a {@code LongCollector} implementing a cascaded "group by"
+     * operation on {@code long} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code LongCollector}, reducing disjoint partitions of the keys
+     * independently.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This is equivalent to
+     * {@link #groupingByLongPartitioned(LongFunction, int, LongCollector)} with
+     * a number of partitions that is a small multiple of the parallelism of
+     * the common pool.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream a {@code LongCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code LongCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingByPartitioned(Function, Collector)
+     */
+    public static <K, A, D> LongCollector<?, Map<K, D>>
+    groupingByLongPartitioned(LongFunction<? extends K> classifier,
+                              LongCollector<A, D> downstream) {
+        return groupingByLongPartitioned(classifier, PartitionedGrouping.defaultPartitions(), downstream);
+    }
+
+    /**
+     * Returns a {@code LongCollector} implementing a cascaded "group by"
+     * operation on {@code long} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code LongCollector}, reducing the given number of disjoint partitions
+     * of the keys independently.  The elements associated with each key are
+     * presented to the downstream collector in encounter order.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implNote
+     * The elements are buffered unboxed, together with their keys, per
+     * partition; see {@link Collectors#groupingByPartitioned(Function, int, Collector)}.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param partitions the number of partitions of the keys
+     * @param downstream a {@code LongCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code LongCollector} implementing the cascaded group-by
+     * operation
+     * @throws IllegalArgumentException if {@code partitions} is not positive
+     *
+     * @see Collectors#groupingByPartitioned(Function, int, Collector)
+     */
+    public static <K, A, D> LongCollector<?, Map<K, D>>
+    groupingByLongPartitioned(LongFunction<? extends K> classifier,
+                              int partitions,
+                              LongCollector<A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Supplier<PartitionedGrouping.Partitions> supplier
+                = PartitionedGrouping.supplier(partitions, PartitionedGrouping.LongChunk::new);
+        ObjLongConsumer<PartitionedGrouping.Partitions> accumulator = (parts, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            parts.addLong(key, t);
+        };
+        PartitionedGrouping.ChunkReducer reducer
+                = PartitionedGrouping.longReducer(downstream.supplier(), downstream.accumulator());
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> downstreamFinisher
+                = downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+                  ? null
+                  : (Function<Object, Object>) (Function<?, ?>) downstream.finisher();
+        return new LongCollectorImpl<>(supplier, accumulator, PartitionedGrouping.Partitions::combine,
+                                       parts -> parts.<K, D>finish(reducer, downstreamFinisher),
+                                       Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code LongCollector} which partitions the input elements
+     * according to a {@code LongPredicate}, and organizes them into a
+     * {@code Map<Boolean, long[]>}.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @param predicate a predicate used for classifying input elements
+     * @return a {@code LongCollector} implementing the partitioning operation
+     *
+     * @see Collectors#partitioningBy(java.util.function.Predicate)
+     */
+    public static LongCollector<?, Map<Boolean, long[]>>
+    partitioningByLong(LongPredicate predicate) {
+        return partitioningByLong(predicate, toLongArray());
+    }
+
+    /**
+     * Returns a {@code LongCollector} which partitions the input elements
+     * according to a {@code LongPredicate}, reduces the values in each
+     * partition according to another {@code LongCollector}, and organizes
+     * them into a {@code Map<Boolean, D>} whose values are the result of the
+     * downstream reduction.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param predicate a predicate used for classifying input elements
+     * @param downstream a {@code LongCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code LongCollector} implementing the cascaded partitioning
+     *         operation
+     *
+     * @see Collectors#partitioningBy(java.util.function.Predicate, Collector)
+     */
+    public static <D, A> LongCollector<?, Map<Boolean, D>>
+    partitioningByLong(LongPredicate predicate,
+                      LongCollector<A, D> downstream) {
+        Objects.requireNonNull(predicate);
+        ObjLongConsumer<A> downstreamAccumulator = downstream.accumulator();
+        ObjLongConsumer<Collectors.Partition<A>> accumulator = (result, t) ->
+                downstreamAccumulator.accept(predicate.test(t) ? result.forTrue : result.forFalse, t);
+        BinaryOperator<A> op = downstream.combiner();
+        BinaryOperator<Collectors.Partition<A>> merger = (left, right) ->
+                new Collectors.Partition<>(op.apply(left.forTrue, right.forTrue),
+                                           op.apply(left.forFalse, right.forFalse));
+        Supplier<Collectors.Partition<A>> supplier = () ->
+                new Collectors.Partition<>(downstream.supplier().get(),
+                                           downstream.supplier().get());
+        if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            return new LongCollectorImpl<>(supplier, accumulator, merger, Collectors.CH_ID);
+        }
+        else {
+            Function<Collectors.Partition<A>, Map<Boolean, D>> finisher = par ->
+                    new Collectors.Partition<>(downstream.finisher().apply(par.forTrue),
+                                               downstream.finisher().apply(par.forFalse));
+            return new LongCollectorImpl<>(supplier, accumulator, merger, finisher, Collectors.CH_NOID);
+        }
+    }
+
+    // DoubleCollector
+
+    /**
+     * Returns a {@code DoubleCollector} that accumulates the input elements
+     * into a new {@code double[]}, in encounter order.
+     *
+     * @return a {@code DoubleCollector} which collects all the input elements
+     * into an array, in encounter order
+     */
+    public static DoubleCollector<?, double[]> toDoubleArray() {
+        return new DoubleCollectorImpl<>(
+                SpinedBuffer.OfDouble::new,
+                SpinedBuffer.OfDouble::accept,
+                (left, right) -> { right.forEach((DoubleConsumer) left); return left; },
+                SpinedBuffer.OfDouble::asPrimitiveArray, Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} that counts the number of input
+     * elements.  If no elements are present, the result is 0.
+     *
+     * @return a {@code DoubleCollector} that counts the input elements
+     */
+    public static DoubleCollector<?, Long> countingDouble() {
+        return new DoubleCollectorImpl<>(
+                () -> new long[1],
+                (a, t) -> { a[0]++; },
+                (a, b) -> { a[0] += b[0]; return a; },
+                a -> a[0], Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} that produces the sum of the input
+     * elements.  If no elements are present, the result is 0.
+     *
+     * <p>The sum is computed with the same compensated summation as
+     * {@link Collectors#summingDouble}, and is subject to the same caveats
+     * about rounding error and {@code NaN} values.
+     *
+     * @return a {@code DoubleCollector} that produces the sum of the input
+     * elements
+     */
+    public static DoubleCollector<?, Double> summingDouble() {
+        /*
+         * Index 0 and 1 hold the high- and low-order bits of the compensated
+         * sum, index 2 holds the simple sum, as in Collectors.summingDouble.
+         */
+        return new DoubleCollectorImpl<>(
+                () -> new double[3],
+                (a, t) -> { Collectors.sumWithCompensation(a, t);
+                            a[2] += t; },
+                (a, b) -> { Collectors.sumWithCompensation(a, b[0]);
+                            a[2] += b[2];
+                            return Collectors.sumWithCompensation(a, b[1]); },
+                a -> Collectors.computeFinalSum(a),
+                Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} which returns summary statistics for
+     * the input elements.
+     *
+     * @return a {@code DoubleCollector} implementing the summary-statistics
+     * reduction
+     * @see Collectors#summarizingDouble
+     */
+    public static DoubleCollector<?, DoubleSummaryStatistics> summarizingDouble() {
+        return new DoubleCollectorImpl<DoubleSummaryStatistics, DoubleSummaryStatistics>(
+                DoubleSummaryStatistics::new,
+                DoubleSummaryStatistics::accept,
+                (l, r) -> { l.combine(r); return l; }, Collectors.CH_ID);
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} implementing a "group by" operation on
+     * {@code double} input elements, grouping elements according to a
+     * classification function, and returning the results in a {@code Map}
+     * whose values are arrays of the elements in each group, in encounter
+     * order.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByDouble(classifier, toDoubleArray())
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param classifier the classifier function mapping input elements to keys
+     * @return a {@code DoubleCollector} implementing the group-by operation
+     *
+     * @see Collectors#groupingBy(Function)
+     */
+    public static <K> DoubleCollector<?, Map<K, double[]>>
+    groupingByDouble(DoubleFunction<? extends K> classifier) {
+        return groupingByDouble(classifier, toDoubleArray());
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} implementing a cascaded "group by"
+     * operation on {@code double} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code DoubleCollector}.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByDouble(classifier, HashMap::new, downstream)
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream a {@code DoubleCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code DoubleCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingBy(Function, Collector)
+     */
+    public static <K, A, D> DoubleCollector<?, Map<K, D>>
+    groupingByDouble(DoubleFunction<? extends K> classifier,
+                  DoubleCollector<A, D> downstream) {
+        return groupingByDouble(classifier, HashMap::new, downstream);
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} implementing a cascaded "group by"
+     * operation on {@code double} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code DoubleCollector}.  The {@code Map} produced by the collector is
+     * created with the supplied factory function.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param <M> the type of the resulting {@code Map}
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapFactory a function which, when called, produces a new empty
+     *                   {@code Map} of the desired type
+     * @param downstream a {@code DoubleCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code DoubleCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingBy(Function, Supplier, Collector)
+     */
+    public static <K, D, A, M extends Map<K, D>> DoubleCollector<?, M>
+    groupingByDouble(DoubleFunction<? extends K> classifier,
+                  Supplier<M> mapFactory,
+                  DoubleCollector<A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapFactory);
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        ObjDoubleConsumer<A> downstreamAccumulator = downstream.accumulator();
+        ObjDoubleConsumer<Map<K, A>> accumulator = (m, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            A container = m.computeIfAbsent(key, k -> downstreamSupplier.get());
+            downstreamAccumulator.accept(container, t);
+        };
+        BinaryOperator<Map<K, A>> merger = Collectors.<K, A, Map<K, A>>mapMerger(downstream.combiner());
+        @SuppressWarnings("unchecked")
+        Supplier<Map<K, A>> mangledFactory = (Supplier<Map<K, A>>) mapFactory;
+
+        if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            return new DoubleCollectorImpl<>(mangledFactory, accumulator, merger, Collectors.CH_ID);
+        }
+        else {
+            @SuppressWarnings("unchecked")
+            Function<A, A> downstreamFinisher = (Function<A, A>) downstream.finisher();
+            Function<Map<K, A>, M> finisher = intermediate -> {
+                intermediate.replaceAll((k, v) -> downstreamFinisher.apply(v));
+                @SuppressWarnings("unchecked")
+                M castResult = (M) intermediate;
+                return castResult;
+            };
+            return new DoubleCollectorImpl<>(mangledFactory, accumulator, merger, finisher, Collectors.CH_NOID);
+        }
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} implementing a "group by" operation on
+     * {@code double} input elements, grouping elements according to a
+     * classification function, and returning the results in a {@code Map}
+     * whose values are arrays of the elements in each group, in encounter
+     * order, reducing disjoint partitions of the keys independently.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByDoublePartitioned(classifier, toDoubleArray())
+     * }</pre>
+     *
+     * @param <K> the type of the keys
+     * @param classifier the classifier function mapping input elements to keys
+     * @return a {@code DoubleCollector} implementing the group-by operation
+     *
+     * @see Collectors#groupingByPartitioned(Function)
+     */
+    public static <K> DoubleCollector<?, Map<K, double[]>>
+    groupingByDoublePartitioned(DoubleFunction<? extends K> classifier) {
+        return groupingByDoublePartitioned(classifier, toDoubleArray());
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} implementing a cascaded "group by"
+     * operation on {@code double} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code DoubleCollector}, reducing disjoint partitions of the keys
+     * independently.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This is equivalent to
+     * {@link #groupingByDoublePartitioned(DoubleFunction, int, DoubleCollector)} with
+     * a number of partitions that is a small multiple of the parallelism of
+     * the common pool.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream a {@code DoubleCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code DoubleCollector} implementing the cascaded group-by
+     * operation
+     *
+     * @see Collectors#groupingByPartitioned(Function, Collector)
+     */
+    public static <K, A, D> DoubleCollector<?, Map<K, D>>
+    groupingByDoublePartitioned(DoubleFunction<? extends K> classifier,
+                                DoubleCollector<A, D> downstream) {
+        return groupingByDoublePartitioned(classifier, PartitionedGrouping.defaultPartitions(), downstream);
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} implementing a cascaded "group by"
+     * operation on {@code double} input elements, grouping elements according
+     * to a classification function, and then performing a reduction operation
+     * on the values associated with a given key using the specified downstream
+     * {@code DoubleCollector}, reducing the given number of disjoint partitions
+     * of the keys independently.  The elements associated with each key are
+     * presented to the downstream collector in encounter order.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @implNote
+     * The elements are buffered unboxed, together with their keys, per
+     * partition; see {@link Collectors#groupingByPartitioned(Function, int, Collector)}.
+     *
+     * @param <K> the type of the keys
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param partitions the number of partitions of the keys
+     * @param downstream a {@code DoubleCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code DoubleCollector} implementing the cascaded group-by
+     * operation
+     * @throws IllegalArgumentException if {@code partitions} is not positive
+     *
+     * @see Collectors#groupingByPartitioned(Function, int, Collector)
+     */
+    public static <K, A, D> DoubleCollector<?, Map<K, D>>
+    groupingByDoublePartitioned(DoubleFunction<? extends K> classifier,
+                                int partitions,
+                                DoubleCollector<A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Supplier<PartitionedGrouping.Partitions> supplier
+                = PartitionedGrouping.supplier(partitions, PartitionedGrouping.DoubleChunk::new);
+        ObjDoubleConsumer<PartitionedGrouping.Partitions> accumulator = (parts, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            parts.addDouble(key, t);
+        };
+        PartitionedGrouping.ChunkReducer reducer
+                = PartitionedGrouping.doubleReducer(downstream.supplier(), downstream.accumulator());
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> downstreamFinisher
+                = downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+                  ? null
+                  : (Function<Object, Object>) (Function<?, ?>) downstream.finisher();
+        return new DoubleCollectorImpl<>(supplier, accumulator, PartitionedGrouping.Partitions::combine,
+                                         parts -> parts.<K, D>finish(reducer, downstreamFinisher),
+                                         Collectors.CH_NOID);
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} which partitions the input elements
+     * according to a {@code DoublePredicate}, and organizes them into a
+     * {@code Map<Boolean, double[]>}.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @param predicate a predicate used for classifying input elements
+     * @return a {@code DoubleCollector} implementing the partitioning operation
+     *
+     * @see Collectors#partitioningBy(java.util.function.Predicate)
+     */
+    public static DoubleCollector<?, Map<Boolean, double[]>>
+    partitioningByDouble(DoublePredicate predicate) {
+        return partitioningByDouble(predicate, toDoubleArray());
+    }
+
+    /**
+     * Returns a {@code DoubleCollector} which partitions the input elements
+     * according to a {@code DoublePredicate}, reduces the values in each
+     * partition according to another {@code DoubleCollector}, and organizes
+     * them into a {@code Map<Boolean, D>} whose values are the result of the
+     * downstream reduction.
+     *
+     * <p>There are no guarantees on the type, mutability, serializability, or
+     * thread-safety of the {@code Map} returned.
+     *
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param predicate a predicate used for classifying input elements
+     * @param downstream a {@code DoubleCollector} implementing the downstream
+     *                   reduction
+     * @return a {@code DoubleCollector} implementing the cascaded partitioning
+     *         operation
+     *
+     * @see Collectors#partitioningBy(java.util.function.Predicate, Collector)
+     */
+    public static <D, A> DoubleCollector<?, Map<Boolean, D>>
+    partitioningByDouble(DoublePredicate predicate,
+                      DoubleCollector<A, D> downstream) {
+        Objects.requireNonNull(predicate);
+        ObjDoubleConsumer<A> downstreamAccumulator = downstream.accumulator();
+        ObjDoubleConsumer<Collectors.Partition<A>> accumulator = (result, t) ->
+                downstreamAccumulator.accept(predicate.test(t) ? result.forTrue : result.forFalse, t);
+        BinaryOperator<A> op = downstream.combiner();
+        BinaryOperator<Collectors.Partition<A>> merger = (left, right) ->
+                new Collectors.Partition<>(op.apply(left.forTrue, right.forTrue),
+                                           op.apply(left.forFalse, right.forFalse));
+        Supplier<Collectors.Partition<A>> supplier = () ->
+                new Collectors.Partition<>(downstream.supplier().get(),
+                                           downstream.supplier().get());
+        if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            return new DoubleCollectorImpl<>(supplier, accumulator, merger, Collectors.CH_ID);
+        }
+        else {
+            Function<Collectors.Partition<A>, Map<Boolean, D>> finisher = par ->
+                    new Collectors.Partition<>(downstream.finisher().apply(par.forTrue),
+                                               downstream.finisher().apply(par.forFalse));
+            return new DoubleCollectorImpl<>(supplier, accumulator, merger, finisher, Collectors.CH_NOID);
+        }
+    }
+}
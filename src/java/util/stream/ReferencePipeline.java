@@ -26,6 +26,7 @@ package java.util.stream;
 
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
@@ -394,6 +395,11 @@ abstract class ReferencePipeline<P_IN, P_OUT>
         return SortedOps.makeRef(this, comparator);
     }
 
+    @Override
+    public final Stream<P_OUT> sortedExternally(ExternalSort<P_OUT> externalSort) {
+        return SortedOps.makeRef(this, externalSort);
+    }
+
     @Override
     public final Stream<P_OUT> limit(long maxSize) {
         if (maxSize < 0)
@@ -411,6 +417,16 @@ abstract class ReferencePipeline<P_IN, P_OUT>
             return SliceOps.makeRef(this, n, -1);
     }
 
+    @Override
+    public final Stream<List<P_OUT>> chunked(int size) {
+        return ChunkOps.makeRef(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<List<P_OUT>> windowed(int size, int step) {
+        return ChunkOps.makeRef(this, size, step, false);
+    }
+
     // Terminal operations from Stream
 
     @Override
@@ -27,10 +27,19 @@ package java.util.stream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
 import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CountedCompleter;
 import java.util.concurrent.ForkJoinTask;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
 import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
 
 
 /**
@@ -64,6 +73,19 @@ final class SortedOps {
         return new OfRef<>(upstream, comparator);
     }
 
+    /**
+     * Appends a "sorted" operation, spilling sorted runs to temporary files,
+     * to the provided stream.
+     *
+     * @param <T> the type of both input and output elements
+     * @param upstream a reference stream with element type T
+     * @param externalSort the configuration of the sort
+     */
+    static <T> Stream<T> makeRef(AbstractPipeline<?, T, ?> upstream,
+                                ExternalSort<T> externalSort) {
+        return new OfExternalRef<>(upstream, externalSort);
+    }
+
     /**
      * Appends a "sorted" operation to the provided stream.
      *
@@ -153,13 +175,85 @@ final class SortedOps {
             }
             else {
                 // @@@ Weak two-pass parallel implementation; parallel collect, parallel sort
-                T[] flattenedData = helper.evaluate(spliterator, true, generator).asArray(generator);
+                Node<T> n = helper.evaluate(spliterator, true, generator);
+                long size = n.count();
+                if (size >= Nodes.MAX_ARRAY_SIZE) {
+                    SpinedBuffer<T> b;
+                    if (n instanceof SpinedBuffer) {
+                        @SuppressWarnings("unchecked")
+                        SpinedBuffer<T> sb = (SpinedBuffer<T>) n;
+                        b = sb;
+                    }
+                    else {
+                        b = new SpinedBuffer<>();
+                        n.forEach(b);
+                    }
+                    Node.Builder<T> builder = Nodes.builder(size, generator);
+                    builder.begin(size);
+                    new RefSegmentMerger<>(b, comparator, true).forEachRemaining(builder);
+                    builder.end();
+                    return builder.build();
+                }
+
+                T[] flattenedData = n.asArray(generator);
                 Arrays.parallelSort(flattenedData, comparator);
                 return Nodes.node(flattenedData);
             }
         }
     }
 
+    /**
+     * Specialized subtype for sorting reference streams that may not fit in
+     * memory, by spilling sorted runs to temporary files.
+     */
+    private static final class OfExternalRef<T> extends ReferencePipeline.StatefulOp<T, T> {
+        private final ExternalSort<T> externalSort;
+
+        OfExternalRef(AbstractPipeline<?, T, ?> upstream, ExternalSort<T> externalSort) {
+            super(upstream, StreamShape.REFERENCE,
+                  StreamOpFlag.IS_ORDERED | StreamOpFlag.NOT_SORTED);
+            this.externalSort = Objects.requireNonNull(externalSort);
+        }
+
+        @Override
+        public Sink<T> opWrapSink(int flags, Sink<T> sink) {
+            Objects.requireNonNull(sink);
+            return new ExternalSortingSink<>(sink, externalSort);
+        }
+
+        @Override
+        public <P_IN> Spliterator<T> opEvaluateParallelLazy(PipelineHelper<T> helper,
+                                                           Spliterator<P_IN> spliterator) {
+            long size = helper.exactOutputSizeIfKnown(spliterator);
+            if (size >= 0 && size <= externalSort.getRunSize()) {
+                // Small enough to sort in memory
+                @SuppressWarnings("unchecked")
+                T[] flattenedData = helper.evaluate(spliterator, true, n -> (T[]) new Object[n])
+                                          .asArray(n -> (T[]) new Object[n]);
+                Arrays.parallelSort(flattenedData, externalSort.getComparator());
+                return Spliterators.spliterator(flattenedData, Spliterator.ORDERED);
+            }
+            else {
+                List<ExternalSort.Run> runs = new RunTask<>(helper, spliterator, externalSort).invoke();
+                ExternalSort<T>.Merger merger = externalSort.merge(runs, null, 0);
+                return Spliterators.spliterator(merger, merger.count(), Spliterator.ORDERED);
+            }
+        }
+
+        @Override
+        public <P_IN> Node<T> opEvaluateParallel(PipelineHelper<T> helper,
+                                                 Spliterator<P_IN> spliterator,
+                                                 IntFunction<T[]> generator) {
+            Spliterator<T> sorted = opEvaluateParallelLazy(helper, spliterator);
+            long size = sorted.getExactSizeIfKnown();
+            Node.Builder<T> builder = Nodes.builder(size, generator);
+            builder.begin(size);
+            sorted.forEachRemaining(builder);
+            builder.end();
+            return builder.build();
+        }
+    }
+
     /**
      * Specialized subtype for sorting int streams.
      */
@@ -190,6 +284,22 @@ final class SortedOps {
             }
             else {
                 Node.OfInt n = (Node.OfInt) helper.evaluate(spliterator, true, generator);
+                long size = n.count();
+                if (size >= Nodes.MAX_ARRAY_SIZE) {
+                    SpinedBuffer.OfInt b;
+                    if (n instanceof SpinedBuffer.OfInt) {
+                        b = (SpinedBuffer.OfInt) n;
+                    }
+                    else {
+                        b = new SpinedBuffer.OfInt();
+                        n.forEach((IntConsumer) b);
+                    }
+                    Node.Builder.OfInt builder = Nodes.intBuilder(size);
+                    builder.begin(size);
+                    new IntSegmentMerger(b, true).forEachRemaining((IntConsumer) builder);
+                    builder.end();
+                    return builder.build();
+                }
 
                 int[] content = n.asPrimitiveArray();
                 Arrays.parallelSort(content);
@@ -229,6 +339,22 @@ final class SortedOps {
             }
             else {
                 Node.OfLong n = (Node.OfLong) helper.evaluate(spliterator, true, generator);
+                long size = n.count();
+                if (size >= Nodes.MAX_ARRAY_SIZE) {
+                    SpinedBuffer.OfLong b;
+                    if (n instanceof SpinedBuffer.OfLong) {
+                        b = (SpinedBuffer.OfLong) n;
+                    }
+                    else {
+                        b = new SpinedBuffer.OfLong();
+                        n.forEach((LongConsumer) b);
+                    }
+                    Node.Builder.OfLong builder = Nodes.longBuilder(size);
+                    builder.begin(size);
+                    new LongSegmentMerger(b, true).forEachRemaining((LongConsumer) builder);
+                    builder.end();
+                    return builder.build();
+                }
 
                 long[] content = n.asPrimitiveArray();
                 Arrays.parallelSort(content);
@@ -268,6 +394,22 @@ final class SortedOps {
             }
             else {
                 Node.OfDouble n = (Node.OfDouble) helper.evaluate(spliterator, true, generator);
+                long size = n.count();
+                if (size >= Nodes.MAX_ARRAY_SIZE) {
+                    SpinedBuffer.OfDouble b;
+                    if (n instanceof SpinedBuffer.OfDouble) {
+                        b = (SpinedBuffer.OfDouble) n;
+                    }
+                    else {
+                        b = new SpinedBuffer.OfDouble();
+                        n.forEach((DoubleConsumer) b);
+                    }
+                    Node.Builder.OfDouble builder = Nodes.doubleBuilder(size);
+                    builder.begin(size);
+                    new DoubleSegmentMerger(b, true).forEachRemaining((DoubleConsumer) builder);
+                    builder.end();
+                    return builder.build();
+                }
 
                 double[] content = n.asPrimitiveArray();
                 Arrays.parallelSort(content);
@@ -286,7 +428,9 @@ final class SortedOps {
      * Sorting sinks first accept all elements, buffering then into an array
      * or a re-sizable data structure, if the size of the pipeline is known or
      * unknown respectively.  At the end of the sink protocol those elements are
-     * sorted and then pushed downstream.
+     * sorted and then pushed downstream.  If there are too many elements for
+     * an array they are buffered into a {@link SpinedBuffer}, whose chunks are
+     * sorted independently and then merged as they are pushed downstream.
      * This class records if {@link #cancellationRequested} is called.  If so it
      * can be inferred that the source pushing source elements into the pipeline
      * knows that the pipeline is short-circuiting.  In such cases sub-classes
@@ -321,6 +465,23 @@ final class SortedOps {
             cancellationWasRequested = true;
             return false;
         }
+
+        /**
+         * Sorts the elements of a buffer too large for an array, and pushes
+         * them downstream.
+         */
+        protected final void pushSorted(SpinedBuffer<T> b) {
+            Iterator<T> it = new RefSegmentMerger<>(b, comparator, false);
+            downstream.begin(b.count());
+            if (!cancellationWasRequested) {
+                it.forEachRemaining(downstream);
+            }
+            else {
+                while (it.hasNext() && !downstream.cancellationRequested())
+                    downstream.accept(it.next());
+            }
+            downstream.end();
+        }
     }
 
     /**
@@ -329,6 +490,8 @@ final class SortedOps {
     private static final class SizedRefSortingSink<T> extends AbstractRefSortingSink<T> {
         private T[] array;
         private int offset;
+        // Buffer used instead of array if the size is too large for an array
+        private SpinedBuffer<T> b;
 
         SizedRefSortingSink(Sink<? super T> sink, Comparator<? super T> comparator) {
             super(sink, comparator);
@@ -337,12 +500,18 @@ final class SortedOps {
         @Override
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            array = (T[]) new Object[(int) size];
+                b = new SpinedBuffer<>();
+            else
+                array = (T[]) new Object[(int) size];
         }
 
         @Override
         public void end() {
+            if (b != null) {
+                pushSorted(b);
+                b = null;
+                return;
+            }
             Arrays.sort(array, 0, offset, comparator);
             downstream.begin(offset);
             if (!cancellationWasRequested) {
@@ -359,7 +528,10 @@ final class SortedOps {
 
         @Override
         public void accept(T t) {
-            array[offset++] = t;
+            if (b == null)
+                array[offset++] = t;
+            else
+                b.accept(t);
         }
     }
 
@@ -368,6 +540,8 @@ final class SortedOps {
      */
     private static final class RefSortingSink<T> extends AbstractRefSortingSink<T> {
         private ArrayList<T> list;
+        // Buffer the list is moved into once it is as large as an array can be
+        private SpinedBuffer<T> b;
 
         RefSortingSink(Sink<? super T> sink, Comparator<? super T> comparator) {
             super(sink, comparator);
@@ -376,12 +550,18 @@ final class SortedOps {
         @Override
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            list = (size >= 0) ? new ArrayList<T>((int) size) : new ArrayList<T>();
+                b = new SpinedBuffer<>();
+            else
+                list = (size >= 0) ? new ArrayList<T>((int) size) : new ArrayList<T>();
         }
 
         @Override
         public void end() {
+            if (b != null) {
+                pushSorted(b);
+                b = null;
+                return;
+            }
             list.sort(comparator);
             downstream.begin(list.size());
             if (!cancellationWasRequested) {
@@ -399,7 +579,181 @@ final class SortedOps {
 
         @Override
         public void accept(T t) {
-            list.add(t);
+            if (b == null) {
+                list.add(t);
+                if (list.size() >= Nodes.MAX_ARRAY_SIZE) {
+                    b = new SpinedBuffer<>();
+                    list.forEach(b);
+                    list = null;
+                }
+            }
+            else {
+                b.accept(t);
+            }
+        }
+    }
+
+    /**
+     * Buffer of elements to be sorted by an {@link ExternalSort}, spilling
+     * sorted runs of elements to temporary files when full.
+     */
+    private static final class RunBuffer<T> {
+        private final ExternalSort<T> externalSort;
+        // Runs spilled so far, in encounter order
+        final List<ExternalSort.Run> runs = new ArrayList<>();
+        Object[] elements;
+        int count;
+
+        RunBuffer(ExternalSort<T> externalSort, long sizeIfKnown) {
+            this.externalSort = externalSort;
+            int runSize = externalSort.getRunSize();
+            this.elements = new Object[(sizeIfKnown >= 0)
+                                       ? (int) Math.min(sizeIfKnown, runSize)
+                                       : Math.min(runSize, 1 << 10)];
+        }
+
+        void accept(T t) {
+            if (count == elements.length) {
+                if (count < externalSort.getRunSize())
+                    elements = Arrays.copyOf(elements,
+                                             (int) Math.min(externalSort.getRunSize(),
+                                                            Math.max(16L, (long) count << 1)));
+                else
+                    spill();
+            }
+            elements[count++] = t;
+        }
+
+        /**
+         * Spills the buffered elements, if any, as a new run.
+         */
+        void spill() {
+            if (count > 0) {
+                runs.add(externalSort.spill(elements, count));
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on reference streams, spilling
+     * sorted runs to temporary files.  The runs and any elements still
+     * buffered are merged as they are pushed downstream.
+     */
+    private static final class ExternalSortingSink<T> extends AbstractRefSortingSink<T> {
+        private final ExternalSort<T> externalSort;
+        private RunBuffer<T> buffer;
+
+        ExternalSortingSink(Sink<? super T> sink, ExternalSort<T> externalSort) {
+            super(sink, externalSort.getComparator());
+            this.externalSort = externalSort;
+        }
+
+        @Override
+        public void begin(long size) {
+            buffer = new RunBuffer<>(externalSort, size);
+        }
+
+        @Override
+        public void end() {
+            ExternalSort<T>.Merger merger = externalSort.merge(buffer.runs, buffer.elements, buffer.count);
+            buffer = null;
+            try {
+                downstream.begin(merger.count());
+                if (!cancellationWasRequested) {
+                    merger.forEachRemaining(downstream);
+                }
+                else {
+                    while (merger.hasNext() && !downstream.cancellationRequested())
+                        downstream.accept(merger.next());
+                }
+                downstream.end();
+            }
+            finally {
+                merger.close();
+            }
+        }
+
+        @Override
+        public void accept(T t) {
+            buffer.accept(t);
+        }
+    }
+
+    /**
+     * {@link Sink} spilling all of its elements as sorted runs, used by the
+     * leaf tasks of a parallel external sort.
+     */
+    private static final class RunSink<T> implements Sink<T> {
+        private final ExternalSort<T> externalSort;
+        private RunBuffer<T> buffer;
+
+        RunSink(ExternalSort<T> externalSort) {
+            this.externalSort = externalSort;
+        }
+
+        @Override
+        public void begin(long size) {
+            buffer = new RunBuffer<>(externalSort, size);
+        }
+
+        @Override
+        public void accept(T t) {
+            buffer.accept(t);
+        }
+
+        @Override
+        public void end() {
+            buffer.spill();
+            buffer.elements = null;
+        }
+
+        List<ExternalSort.Run> getRuns() {
+            return buffer.runs;
+        }
+    }
+
+    /**
+     * Task writing the elements of a parallel pipeline as sorted runs.  Each
+     * leaf writes the runs of its portion of the input, and the runs of
+     * sibling tasks are concatenated, so the runs of the root task are in
+     * encounter order.
+     */
+    @SuppressWarnings("serial")
+    private static final class RunTask<P_IN, T>
+            extends AbstractTask<P_IN, T, List<ExternalSort.Run>, RunTask<P_IN, T>> {
+        private final ExternalSort<T> externalSort;
+
+        RunTask(PipelineHelper<T> helper, Spliterator<P_IN> spliterator,
+                ExternalSort<T> externalSort) {
+            super(helper, spliterator);
+            this.externalSort = externalSort;
+        }
+
+        RunTask(RunTask<P_IN, T> parent, Spliterator<P_IN> spliterator) {
+            super(parent, spliterator);
+            this.externalSort = parent.externalSort;
+        }
+
+        @Override
+        protected RunTask<P_IN, T> makeChild(Spliterator<P_IN> spliterator) {
+            return new RunTask<>(this, spliterator);
+        }
+
+        @Override
+        protected List<ExternalSort.Run> doLeaf() {
+            return helper.wrapAndCopyInto(new RunSink<>(externalSort), spliterator).getRuns();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (!isLeaf()) {
+                List<ExternalSort.Run> runs = new ArrayList<>(leftChild.getLocalResult());
+                runs.addAll(rightChild.getLocalResult());
+                setLocalResult(runs);
+            }
+            // GC spliterator, left and right child
+            super.onCompletion(caller);
         }
     }
 
@@ -418,6 +772,24 @@ final class SortedOps {
             cancellationWasRequested = true;
             return false;
         }
+
+        /**
+         * Sorts the elements of a buffer too large for an array, and pushes
+         * them downstream.
+         */
+        protected final void pushSorted(SpinedBuffer.OfInt b) {
+            PrimitiveIterator.OfInt it = new IntSegmentMerger(b, false);
+            downstream.begin(b.count());
+            if (!cancellationWasRequested) {
+                while (it.hasNext())
+                    downstream.accept(it.nextInt());
+            }
+            else {
+                while (it.hasNext() && !downstream.cancellationRequested())
+                    downstream.accept(it.nextInt());
+            }
+            downstream.end();
+        }
     }
 
     /**
@@ -426,6 +798,8 @@ final class SortedOps {
     private static final class SizedIntSortingSink extends AbstractIntSortingSink {
         private int[] array;
         private int offset;
+        // Buffer used instead of array if the size is too large for an array
+        private SpinedBuffer.OfInt b;
 
         SizedIntSortingSink(Sink<? super Integer> downstream) {
             super(downstream);
@@ -434,12 +808,18 @@ final class SortedOps {
         @Override
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            array = new int[(int) size];
+                b = new SpinedBuffer.OfInt();
+            else
+                array = new int[(int) size];
         }
 
         @Override
         public void end() {
+            if (b != null) {
+                pushSorted(b);
+                b = null;
+                return;
+            }
             Arrays.sort(array, 0, offset);
             downstream.begin(offset);
             if (!cancellationWasRequested) {
@@ -456,7 +836,10 @@ final class SortedOps {
 
         @Override
         public void accept(int t) {
-            array[offset++] = t;
+            if (b == null)
+                array[offset++] = t;
+            else
+                b.accept(t);
         }
     }
 
@@ -472,13 +855,17 @@ final class SortedOps {
 
         @Override
         public void begin(long size) {
-            if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            b = (size > 0) ? new SpinedBuffer.OfInt((int) size) : new SpinedBuffer.OfInt();
+            b = (size > 0 && size < Nodes.MAX_ARRAY_SIZE)
+                ? new SpinedBuffer.OfInt((int) size)
+                : new SpinedBuffer.OfInt();
         }
 
         @Override
         public void end() {
+            if (b.count() >= Nodes.MAX_ARRAY_SIZE) {
+                pushSorted(b);
+                return;
+            }
             int[] ints = b.asPrimitiveArray();
             Arrays.sort(ints);
             downstream.begin(ints.length);
@@ -516,6 +903,24 @@ final class SortedOps {
             cancellationWasRequested = true;
             return false;
         }
+
+        /**
+         * Sorts the elements of a buffer too large for an array, and pushes
+         * them downstream.
+         */
+        protected final void pushSorted(SpinedBuffer.OfLong b) {
+            PrimitiveIterator.OfLong it = new LongSegmentMerger(b, false);
+            downstream.begin(b.count());
+            if (!cancellationWasRequested) {
+                while (it.hasNext())
+                    downstream.accept(it.nextLong());
+            }
+            else {
+                while (it.hasNext() && !downstream.cancellationRequested())
+                    downstream.accept(it.nextLong());
+            }
+            downstream.end();
+        }
     }
 
     /**
@@ -524,6 +929,8 @@ final class SortedOps {
     private static final class SizedLongSortingSink extends AbstractLongSortingSink {
         private long[] array;
         private int offset;
+        // Buffer used instead of array if the size is too large for an array
+        private SpinedBuffer.OfLong b;
 
         SizedLongSortingSink(Sink<? super Long> downstream) {
             super(downstream);
@@ -532,12 +939,18 @@ final class SortedOps {
         @Override
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            array = new long[(int) size];
+                b = new SpinedBuffer.OfLong();
+            else
+                array = new long[(int) size];
         }
 
         @Override
         public void end() {
+            if (b != null) {
+                pushSorted(b);
+                b = null;
+                return;
+            }
             Arrays.sort(array, 0, offset);
             downstream.begin(offset);
             if (!cancellationWasRequested) {
@@ -554,7 +967,10 @@ final class SortedOps {
 
         @Override
         public void accept(long t) {
-            array[offset++] = t;
+            if (b == null)
+                array[offset++] = t;
+            else
+                b.accept(t);
         }
     }
 
@@ -570,13 +986,17 @@ final class SortedOps {
 
         @Override
         public void begin(long size) {
-            if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            b = (size > 0) ? new SpinedBuffer.OfLong((int) size) : new SpinedBuffer.OfLong();
+            b = (size > 0 && size < Nodes.MAX_ARRAY_SIZE)
+                ? new SpinedBuffer.OfLong((int) size)
+                : new SpinedBuffer.OfLong();
         }
 
         @Override
         public void end() {
+            if (b.count() >= Nodes.MAX_ARRAY_SIZE) {
+                pushSorted(b);
+                return;
+            }
             long[] longs = b.asPrimitiveArray();
             Arrays.sort(longs);
             downstream.begin(longs.length);
@@ -614,6 +1034,24 @@ final class SortedOps {
             cancellationWasRequested = true;
             return false;
         }
+
+        /**
+         * Sorts the elements of a buffer too large for an array, and pushes
+         * them downstream.
+         */
+        protected final void pushSorted(SpinedBuffer.OfDouble b) {
+            PrimitiveIterator.OfDouble it = new DoubleSegmentMerger(b, false);
+            downstream.begin(b.count());
+            if (!cancellationWasRequested) {
+                while (it.hasNext())
+                    downstream.accept(it.nextDouble());
+            }
+            else {
+                while (it.hasNext() && !downstream.cancellationRequested())
+                    downstream.accept(it.nextDouble());
+            }
+            downstream.end();
+        }
     }
 
     /**
@@ -622,6 +1060,8 @@ final class SortedOps {
     private static final class SizedDoubleSortingSink extends AbstractDoubleSortingSink {
         private double[] array;
         private int offset;
+        // Buffer used instead of array if the size is too large for an array
+        private SpinedBuffer.OfDouble b;
 
         SizedDoubleSortingSink(Sink<? super Double> downstream) {
             super(downstream);
@@ -630,12 +1070,18 @@ final class SortedOps {
         @Override
         public void begin(long size) {
             if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            array = new double[(int) size];
+                b = new SpinedBuffer.OfDouble();
+            else
+                array = new double[(int) size];
         }
 
         @Override
         public void end() {
+            if (b != null) {
+                pushSorted(b);
+                b = null;
+                return;
+            }
             Arrays.sort(array, 0, offset);
             downstream.begin(offset);
             if (!cancellationWasRequested) {
@@ -652,7 +1098,10 @@ final class SortedOps {
 
         @Override
         public void accept(double t) {
-            array[offset++] = t;
+            if (b == null)
+                array[offset++] = t;
+            else
+                b.accept(t);
         }
     }
 
@@ -668,13 +1117,17 @@ final class SortedOps {
 
         @Override
         public void begin(long size) {
-            if (size >= Nodes.MAX_ARRAY_SIZE)
-                throw new IllegalArgumentException(Nodes.BAD_SIZE);
-            b = (size > 0) ? new SpinedBuffer.OfDouble((int) size) : new SpinedBuffer.OfDouble();
+            b = (size > 0 && size < Nodes.MAX_ARRAY_SIZE)
+                ? new SpinedBuffer.OfDouble((int) size)
+                : new SpinedBuffer.OfDouble();
         }
 
         @Override
         public void end() {
+            if (b.count() >= Nodes.MAX_ARRAY_SIZE) {
+                pushSorted(b);
+                return;
+            }
             double[] doubles = b.asPrimitiveArray();
             Arrays.sort(doubles);
             downstream.begin(doubles.length);
@@ -696,4 +1149,244 @@ final class SortedOps {
             b.accept(t);
         }
     }
+
+    // Sorting of buffers holding more elements than an array
+
+    /**
+     * Base class for iterators over the sorted elements of a
+     * {@link SpinedBuffer}, used when the buffer holds too many elements for
+     * them to be copied into an array and sorted.  Each chunk of the buffer is
+     * sorted in place, and the sorted chunks are then merged lazily as the
+     * iterator advances, using a binary heap of chunk indexes ordered by the
+     * next element of each chunk.  Ties are broken in favour of the earlier
+     * chunk, so the merge is stable.
+     */
+    private static abstract class SegmentMerger {
+        // Number of elements in each chunk
+        final int[] fences;
+        // Index of the next element in each chunk
+        final int[] positions;
+        // Heap of indexes of chunks with remaining elements
+        final int[] heap;
+        int heapSize;
+
+        SegmentMerger(int chunks) {
+            this.fences = new int[chunks];
+            this.positions = new int[chunks];
+            this.heap = new int[chunks];
+        }
+
+        /**
+         * Compares the next elements of two chunks.
+         */
+        abstract int compareHeads(int s1, int s2);
+
+        /**
+         * Builds the heap, once the chunks have been sorted.
+         */
+        final void init() {
+            for (int s = 0; s < fences.length; s++) {
+                if (fences[s] > 0)
+                    heap[heapSize++] = s;
+            }
+            for (int i = (heapSize >>> 1) - 1; i >= 0; i--)
+                siftDown(i);
+        }
+
+        public final boolean hasNext() {
+            return heapSize > 0;
+        }
+
+        /**
+         * Returns the index of the chunk holding the next element.
+         */
+        final int head() {
+            if (heapSize == 0)
+                throw new NoSuchElementException();
+            return heap[0];
+        }
+
+        /**
+         * Consumes the next element of the chunk at the top of the heap.
+         */
+        final void advance() {
+            int s = heap[0];
+            if (++positions[s] == fences[s])
+                heap[0] = heap[--heapSize];
+            if (heapSize > 0)
+                siftDown(0);
+        }
+
+        private boolean before(int s1, int s2) {
+            int c = compareHeads(s1, s2);
+            return c < 0 || (c == 0 && s1 < s2);
+        }
+
+        private void siftDown(int i) {
+            int s = heap[i];
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int c = (i << 1) + 1;
+                if (c + 1 < heapSize && before(heap[c + 1], heap[c]))
+                    c++;
+                if (!before(heap[c], s))
+                    break;
+                heap[i] = heap[c];
+                i = c;
+            }
+            heap[i] = s;
+        }
+    }
+
+    /**
+     * Iterator over the sorted elements of a reference {@code SpinedBuffer}.
+     */
+    private static final class RefSegmentMerger<T> extends SegmentMerger
+            implements Iterator<T> {
+        private final T[][] chunks;
+        private final Comparator<? super T> comparator;
+
+        @SuppressWarnings("unchecked")
+        RefSegmentMerger(SpinedBuffer<T> b, Comparator<? super T> comparator,
+                         boolean parallel) {
+            super(b.spineIndex + 1);
+            this.comparator = comparator;
+            this.chunks = (T[][]) new Object[fences.length][];
+            for (int s = 0; s < b.spineIndex; s++)
+                chunks[s] = b.spine[s];
+            chunks[b.spineIndex] = b.curChunk;
+            for (int s = 0; s < chunks.length; s++) {
+                fences[s] = (s < b.spineIndex) ? chunks[s].length : b.elementIndex;
+                if (parallel)
+                    Arrays.parallelSort(chunks[s], 0, fences[s], comparator);
+                else
+                    Arrays.sort(chunks[s], 0, fences[s], comparator);
+            }
+            init();
+        }
+
+        @Override
+        int compareHeads(int s1, int s2) {
+            return comparator.compare(chunks[s1][positions[s1]], chunks[s2][positions[s2]]);
+        }
+
+        @Override
+        public T next() {
+            int s = head();
+            T t = chunks[s][positions[s]];
+            advance();
+            return t;
+        }
+    }
+
+    /**
+     * Iterator over the sorted elements of a {@code SpinedBuffer.OfInt}.
+     */
+    private static final class IntSegmentMerger extends SegmentMerger
+            implements PrimitiveIterator.OfInt {
+        private final int[][] chunks;
+
+        IntSegmentMerger(SpinedBuffer.OfInt b, boolean parallel) {
+            super(b.spineIndex + 1);
+            this.chunks = new int[fences.length][];
+            for (int s = 0; s < b.spineIndex; s++)
+                chunks[s] = b.spine[s];
+            chunks[b.spineIndex] = b.curChunk;
+            for (int s = 0; s < chunks.length; s++) {
+                fences[s] = (s < b.spineIndex) ? chunks[s].length : b.elementIndex;
+                if (parallel)
+                    Arrays.parallelSort(chunks[s], 0, fences[s]);
+                else
+                    Arrays.sort(chunks[s], 0, fences[s]);
+            }
+            init();
+        }
+
+        @Override
+        int compareHeads(int s1, int s2) {
+            return Integer.compare(chunks[s1][positions[s1]], chunks[s2][positions[s2]]);
+        }
+
+        @Override
+        public int nextInt() {
+            int s = head();
+            int t = chunks[s][positions[s]];
+            advance();
+            return t;
+        }
+    }
+
+    /**
+     * Iterator over the sorted elements of a {@code SpinedBuffer.OfLong}.
+     */
+    private static final class LongSegmentMerger extends SegmentMerger
+            implements PrimitiveIterator.OfLong {
+        private final long[][] chunks;
+
+        LongSegmentMerger(SpinedBuffer.OfLong b, boolean parallel) {
+            super(b.spineIndex + 1);
+            this.chunks = new long[fences.length][];
+            for (int s = 0; s < b.spineIndex; s++)
+                chunks[s] = b.spine[s];
+            chunks[b.spineIndex] = b.curChunk;
+            for (int s = 0; s < chunks.length; s++) {
+                fences[s] = (s < b.spineIndex) ? chunks[s].length : b.elementIndex;
+                if (parallel)
+                    Arrays.parallelSort(chunks[s], 0, fences[s]);
+                else
+                    Arrays.sort(chunks[s], 0, fences[s]);
+            }
+            init();
+        }
+
+        @Override
+        int compareHeads(int s1, int s2) {
+            return Long.compare(chunks[s1][positions[s1]], chunks[s2][positions[s2]]);
+        }
+
+        @Override
+        public long nextLong() {
+            int s = head();
+            long t = chunks[s][positions[s]];
+            advance();
+            return t;
+        }
+    }
+
+    /**
+     * Iterator over the sorted elements of a {@code SpinedBuffer.OfDouble}.
+     */
+    private static final class DoubleSegmentMerger extends SegmentMerger
+            implements PrimitiveIterator.OfDouble {
+        private final double[][] chunks;
+
+        DoubleSegmentMerger(SpinedBuffer.OfDouble b, boolean parallel) {
+            super(b.spineIndex + 1);
+            this.chunks = new double[fences.length][];
+            for (int s = 0; s < b.spineIndex; s++)
+                chunks[s] = b.spine[s];
+            chunks[b.spineIndex] = b.curChunk;
+            for (int s = 0; s < chunks.length; s++) {
+                fences[s] = (s < b.spineIndex) ? chunks[s].length : b.elementIndex;
+                if (parallel)
+                    Arrays.parallelSort(chunks[s], 0, fences[s]);
+                else
+                    Arrays.sort(chunks[s], 0, fences[s]);
+            }
+            init();
+        }
+
+        @Override
+        int compareHeads(int s1, int s2) {
+            return Double.compare(chunks[s1][positions[s1]], chunks[s2][positions[s2]]);
+        }
+
+        @Override
+        public double nextDouble() {
+            int s = head();
+            double t = chunks[s][positions[s]];
+            advance();
+            return t;
+        }
+    }
 }
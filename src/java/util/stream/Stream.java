@@ -31,6 +31,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
@@ -391,6 +392,42 @@ public interface Stream<T> extends BaseStream<T, Stream<T>> {
      */
     Stream<T> sorted(Comparator<? super T> comparator);
 
+    /**
+     * Returns a stream consisting of the elements of this stream, sorted
+     * according to the comparator of the provided {@code ExternalSort}.  The
+     * number of elements held in memory is bounded by the run size of the
+     * {@code ExternalSort}; sorted runs of elements are written to temporary
+     * files with its serializer, and merged as the sorted elements are
+     * consumed.
+     *
+     * <p>For ordered streams, the sort is stable.  For unordered streams, no
+     * stability guarantees are made.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * I/O errors while writing or reading runs are thrown as
+     * {@link java.io.UncheckedIOException}s from the terminal operation.
+     *
+     * @implSpec
+     * The default implementation checks the argument, and then returns the
+     * externally sorted elements of a new stream of the elements of the
+     * {@link #spliterator() spliterator} of this stream, which is parallel if
+     * this stream is parallel, and which closes this stream when closed.
+     *
+     * @param externalSort the configuration of the sort
+     * @return the new stream
+     * @throws NullPointerException if externalSort is null
+     * @see ExternalSort
+     * @since 1.8
+     */
+    default Stream<T> sortedExternally(ExternalSort<T> externalSort) {
+        Objects.requireNonNull(externalSort);
+        return StreamSupport.stream(spliterator(), isParallel()).onClose(this::close)
+                .sortedExternally(externalSort);
+    }
+
     /**
      * Returns a stream consisting of the elements of this stream, additionally
      * performing the provided action on each element as elements are consumed
@@ -478,6 +515,78 @@ public interface Stream<T> extends BaseStream<T, Stream<T>> {
      */
     Stream<T> skip(long n);
 
+    /**
+     * Returns a stream consisting of the elements of this stream grouped into
+     * consecutive chunks of {@code size} elements, in encounter order.  Every
+     * chunk except possibly the last contains exactly {@code size} elements;
+     * the last chunk contains the remaining elements.  Each chunk is a new
+     * fixed-size {@code List} that is not shared with any other chunk.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * On sequential pipelines at most {@code size} elements are buffered, so
+     * {@code chunked} may be applied to infinite streams, for example to
+     * batch writes to a database without collecting the whole stream.  On
+     * parallel pipelines chunk boundaries depend on encounter position; if
+     * the number of elements is known and the source splits into parts of
+     * known size, each part produces its chunks lazily, otherwise the
+     * upstream is evaluated before chunks are produced.
+     *
+     * @implSpec
+     * The default implementation checks the arguments, and then returns
+     * the chunks of a new stream of the elements of the
+     * {@link #spliterator() spliterator} of this stream, which is parallel if
+     * this stream is parallel, and which closes this stream when closed.
+     *
+     * @param size the number of elements in each chunk
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @since 1.8
+     */
+    default Stream<List<T>> chunked(int size) {
+        ChunkOps.checkWindow(size, size);
+        return StreamSupport.stream(spliterator(), isParallel()).onClose(this::close).chunked(size);
+    }
+
+    /**
+     * Returns a stream consisting of sliding windows over the elements of
+     * this stream, in encounter order.  The first window holds the first
+     * {@code size} elements, and each subsequent window starts {@code step}
+     * elements after the start of the previous window.  Only complete windows
+     * are included, so trailing elements that do not fill a window are
+     * dropped; if {@code step} is greater than {@code size}, elements between
+     * windows are dropped.  Each window is a new fixed-size {@code List} that is not
+     * shared with any other window.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * As with {@link #chunked(int)}, sequential pipelines buffer at most
+     * {@code size} elements, while parallel pipelines evaluate the upstream
+     * before producing windows only if its size is not known.
+     *
+     * @implSpec
+     * The default implementation checks the arguments, and then returns
+     * the windows of a new stream of the elements of the
+     * {@link #spliterator() spliterator} of this stream, which is parallel if
+     * this stream is parallel, and which closes this stream when closed.
+     *
+     * @param size the number of elements in each window
+     * @param step the distance, in elements, between the starts of
+     *        consecutive windows
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} or {@code step} is not
+     *         positive
+     * @since 1.8
+     */
+    default Stream<List<T>> windowed(int size, int step) {
+        ChunkOps.checkWindow(size, step);
+        return StreamSupport.stream(spliterator(), isParallel()).onClose(this::close).windowed(size, step);
+    }
+
     /**
      * Performs an action for each element of this stream.
      *
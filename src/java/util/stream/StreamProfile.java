@@ -0,0 +1,674 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A per-stage execution profile of a stream pipeline.
+ *
+ * <p>A profile is attached to a pipeline with
+ * {@link BaseStream#profile(StreamProfile)}.  While it is attached, each
+ * intermediate stage's {@link Sink}, and the sink of the terminal operation,
+ * is wrapped by a sink that counts the elements it accepts and samples the
+ * time spent accepting them.  On average one element in every
+ * {@linkplain #getSampleInterval() sample interval} entering the pipeline is
+ * timed through every stage it reaches, and the total time of a stage is
+ * estimated from the samples, plus the time spent in the stage's
+ * {@code end()} method, where barrier stages such as {@code sorted} do their
+ * work.  The gaps between timed elements are random, so sampling does not
+ * alias with periodic patterns in the data, such as a filter passing every
+ * other element.  A stage's <em>self</em> time is its total time less the
+ * total time of the stage it feeds, so a stage that passes elements on is
+ * not charged for the work done downstream.  Parallel pipelines also record
+ * the tree of tasks into which the source was split, with the size estimate
+ * of each task and the elapsed time of each leaf; the tasks of
+ * {@code forEach} and {@code forEachOrdered} are not recorded.
+ *
+ * <p>Stages are identified by the operation that created them, for example
+ * {@code filter} or {@code SortedOps.OfRef}.  In parallel pipelines with
+ * stateful operations, the segment of the pipeline preceding each stateful
+ * operation ends in its own terminal row, and the stateful operation itself
+ * may not appear.  Profiling costs at least one extra call per element
+ * per stage, so absolute times are inflated; self times are meant to be
+ * compared with each other.  A profile should be attached to a single
+ * pipeline.
+ *
+ * <pre> {@code
+ * StreamProfile profile = new StreamProfile();
+ * List<String> out = lines.stream().profile(profile)
+ *     .filter(s -> !s.isEmpty())
+ *     .flatMap(s -> Arrays.stream(s.split(" ")))
+ *     .sorted()
+ *     .collect(Collectors.toList());
+ * System.err.println(profile.report());}</pre>
+ *
+ * @since 1.8
+ */
+public final class StreamProfile {
+
+    /** Default number of elements per timed element */
+    private static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    /** Maximum number of tasks printed as a tree by {@link #report()} */
+    private static final int MAX_REPORTED_TREE = 64;
+
+    private final int sampleMask;
+
+    /** Stage counters by pipeline stage, guarded by this */
+    private final Map<Object, StageCounters> stages = new IdentityHashMap<>();
+
+    /** Terminal counters by pipeline stage, guarded by this */
+    private final Map<Object, StageCounters> terminals = new IdentityHashMap<>();
+
+    private final ConcurrentLinkedQueue<Task> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextTaskId = new AtomicInteger();
+
+    /**
+     * Creates a profile timing one element in 64, on average.
+     */
+    public StreamProfile() {
+        this(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Creates a profile timing on average one element in every
+     * {@code sampleInterval} elements entering the pipeline.
+     *
+     * @param sampleInterval the mean number of elements per timed element, a
+     *        power of two between 1 and 2<sup>20</sup>
+     * @throws IllegalArgumentException if sampleInterval is not a power of
+     *         two in range
+     */
+    public StreamProfile(int sampleInterval) {
+        if (sampleInterval <= 0 || sampleInterval > (1 << 20) ||
+            (sampleInterval & (sampleInterval - 1)) != 0)
+            throw new IllegalArgumentException();
+        this.sampleMask = sampleInterval - 1;
+    }
+
+    /**
+     * Returns the number of elements per timed element.
+     *
+     * @return the sample interval
+     */
+    public int getSampleInterval() {
+        return sampleMask + 1;
+    }
+
+    /**
+     * Returns statistics for each profiled stage, in pipeline order.
+     *
+     * @return a list of stage statistics
+     */
+    public List<Stage> getStages() {
+        List<StageCounters> cs;
+        synchronized (this) {
+            cs = new ArrayList<>(stages.size() + terminals.size());
+            cs.addAll(stages.values());
+            cs.addAll(terminals.values());
+        }
+        Collections.sort(cs, Comparator.comparingInt(c -> c.position));
+        int n = cs.size();
+        List<Stage> result = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            StageCounters c = cs.get(i);
+            long total = c.estimatedNanos();
+            long out = -1L, self = total;
+            if (!c.terminal && i + 1 < n) {
+                StageCounters next = cs.get(i + 1);
+                out = next.in.sum();
+                self = Math.max(0L, total - next.estimatedNanos());
+            }
+            result.add(new Stage(c.name, c.terminal, c.in.sum(), out, total, self));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the tasks of parallel evaluations, in order of creation.
+     *
+     * @return a list of tasks
+     */
+    public List<Task> getTasks() {
+        List<Task> result = new ArrayList<>(tasks);
+        Collections.sort(result, Comparator.comparingInt(Task::getId));
+        return result;
+    }
+
+    /**
+     * Returns a human-readable report of the stage statistics and, for
+     * parallel evaluations, the task tree.
+     *
+     * @return the report
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        List<Stage> ss = getStages();
+        long allSelf = 0L;
+        for (Stage s : ss)
+            allSelf += s.getEstimatedSelfNanos();
+        sb.append(String.format("Stream profile (1 in %d elements timed on average)%n", sampleMask + 1));
+        sb.append(String.format("%3s  %-32s %14s %14s %8s %10s %6s%n",
+                                "#", "stage", "in", "out", "out/in", "self ms", "self%"));
+        int i = 0;
+        for (Stage s : ss) {
+            long in = s.getElementsIn(), out = s.getElementsOut();
+            sb.append(String.format("%3d  %-32s %14d %14s %8s %10.3f %5.1f%%%n",
+                                    ++i, s.getName(), in,
+                                    out < 0 ? "-" : Long.toString(out),
+                                    (out < 0 || in == 0) ? "-" : String.format("%.3f", (double) out / in),
+                                    s.getEstimatedSelfNanos() / 1e6,
+                                    allSelf == 0 ? 0.0 : 100.0 * s.getEstimatedSelfNanos() / allSelf));
+        }
+        List<Task> ts = getTasks();
+        if (!ts.isEmpty()) {
+            int leaves = 0, maxDepth = 0;
+            long minSize = Long.MAX_VALUE, maxSize = 0L, sumSize = 0L;
+            long minTime = Long.MAX_VALUE, maxTime = 0L, sumTime = 0L;
+            Map<String, Integer> perThread = new TreeMap<>();
+            for (Task t : ts) {
+                maxDepth = Math.max(maxDepth, t.getDepth());
+                if (t.isLeaf()) {
+                    ++leaves;
+                    long size = t.getSizeEstimate(), time = t.getLeafNanos();
+                    minSize = Math.min(minSize, size);
+                    maxSize = Math.max(maxSize, size);
+                    sumSize += size;
+                    minTime = Math.min(minTime, time);
+                    maxTime = Math.max(maxTime, time);
+                    sumTime += time;
+                    perThread.merge(t.getThreadName(), 1, Integer::sum);
+                }
+            }
+            sb.append(String.format("Parallel tasks: %d, leaves: %d, max depth: %d%n",
+                                    ts.size(), leaves, maxDepth));
+            if (leaves > 0) {
+                sb.append(String.format("  leaf size    min %d, avg %d, max %d%n",
+                                        minSize, sumSize / leaves, maxSize));
+                sb.append(String.format("  leaf time ms min %.3f, avg %.3f, max %.3f%n",
+                                        minTime / 1e6, sumTime / 1e6 / leaves, maxTime / 1e6));
+                sb.append("  leaves per thread ").append(perThread).append(String.format("%n"));
+            }
+            if (ts.size() <= MAX_REPORTED_TREE) {
+                sb.append(String.format("Split tree:%n"));
+                for (Task t : ts)
+                    if (t.getParentId() < 0)
+                        appendTask(sb, t, ts);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendTask(StringBuilder sb, Task t, List<Task> ts) {
+        for (int d = 0; d <= t.getDepth(); ++d)
+            sb.append("  ");
+        sb.append('[').append(t.getId()).append("] size ").append(t.getSizeEstimate());
+        if (t.isLeaf())
+            sb.append(String.format(", %.3f ms on %s", t.getLeafNanos() / 1e6, t.getThreadName()));
+        sb.append(String.format("%n"));
+        for (Task c : ts)
+            if (c.getParentId() == t.getId())
+                appendTask(sb, c, ts);
+    }
+
+    /**
+     * Returns a string identifying this profile, as well as its number of
+     * profiled stages and tasks.
+     *
+     * @return a string identifying this profile
+     */
+    public String toString() {
+        int n;
+        synchronized (this) {
+            n = stages.size() + terminals.size();
+        }
+        return super.toString() + "[stages = " + n + ", tasks = " + tasks.size() + "]";
+    }
+
+    /**
+     * Statistics of one profiled stage.
+     */
+    public static final class Stage {
+        private final String name;
+        private final boolean terminal;
+        private final long in;
+        private final long out;
+        private final long totalNanos;
+        private final long selfNanos;
+
+        Stage(String name, boolean terminal, long in, long out,
+              long totalNanos, long selfNanos) {
+            this.name = name;
+            this.terminal = terminal;
+            this.in = in;
+            this.out = out;
+            this.totalNanos = totalNanos;
+            this.selfNanos = selfNanos;
+        }
+
+        /** Returns the name of the operation of this stage. */
+        public String getName() { return name; }
+
+        /** Returns whether this stage is a terminal, or barrier, sink. */
+        public boolean isTerminal() { return terminal; }
+
+        /** Returns the number of elements accepted by this stage. */
+        public long getElementsIn() { return in; }
+
+        /**
+         * Returns the number of elements passed on by this stage, or
+         * {@code -1} for a terminal stage.
+         */
+        public long getElementsOut() { return out; }
+
+        /**
+         * Returns the estimated time spent in this stage and the stages it
+         * feeds, in nanoseconds.
+         */
+        public long getEstimatedNanos() { return totalNanos; }
+
+        /**
+         * Returns the estimated time spent in this stage alone, in
+         * nanoseconds.
+         */
+        public long getEstimatedSelfNanos() { return selfNanos; }
+
+        public String toString() {
+            return name + "[in = " + in + ", out = " + out +
+                ", selfNanos = " + selfNanos + "]";
+        }
+    }
+
+    /**
+     * A task of a parallel evaluation.
+     */
+    public static final class Task {
+        private final int id;
+        private final int parentId;
+        private final int depth;
+        private final long sizeEstimate;
+        private volatile long leafNanos = -1L;
+        private volatile String threadName;
+
+        Task(int id, int parentId, int depth, long sizeEstimate) {
+            this.id = id;
+            this.parentId = parentId;
+            this.depth = depth;
+            this.sizeEstimate = sizeEstimate;
+        }
+
+        /** Returns the identifier of this task, unique within a profile. */
+        public int getId() { return id; }
+
+        /** Returns the identifier of the parent task, or {@code -1} for a root. */
+        public int getParentId() { return parentId; }
+
+        /** Returns the depth of this task in its tree, zero for a root. */
+        public int getDepth() { return depth; }
+
+        /** Returns the estimated size of the input of this task. */
+        public long getSizeEstimate() { return sizeEstimate; }
+
+        /** Returns whether this task was evaluated as a leaf. */
+        public boolean isLeaf() { return leafNanos >= 0L; }
+
+        /**
+         * Returns the elapsed time of the leaf evaluation of this task in
+         * nanoseconds, or {@code -1} if this task is not a leaf.
+         */
+        public long getLeafNanos() { return leafNanos; }
+
+        /**
+         * Returns the name of the thread that evaluated this leaf, or
+         * {@code null} if this task is not a leaf.
+         */
+        public String getThreadName() { return threadName; }
+
+        void leafDone(long nanos) {
+            threadName = Thread.currentThread().getName();
+            leafNanos = nanos;
+        }
+
+        public String toString() {
+            return "Task[" + id + ", parent = " + parentId + ", size = " +
+                sizeEstimate + ", leafNanos = " + leafNanos + "]";
+        }
+    }
+
+    // Recording, called by AbstractPipeline and AbstractTask
+
+    /**
+     * Returns a task record for a new root task.
+     */
+    Task rootTask(long sizeEstimate) {
+        Task t = new Task(nextTaskId.getAndIncrement(), -1, 0, sizeEstimate);
+        tasks.add(t);
+        return t;
+    }
+
+    /**
+     * Returns a task record for a new child of the given task.
+     */
+    Task childTask(Task parent, long sizeEstimate) {
+        Task t = new Task(nextTaskId.getAndIncrement(), parent.id,
+                          parent.depth + 1, sizeEstimate);
+        tasks.add(t);
+        return t;
+    }
+
+    /**
+     * Wraps the sink of an intermediate stage.
+     *
+     * @param sampler the sampler shared by the sinks of the chain
+     * @param stage the pipeline stage
+     * @param index the index of the stage from the source
+     * @param shape the input shape of the stage
+     * @param sink the sink of the stage
+     */
+    Sink<?> wrapStage(Sampler sampler, Object stage, int index, StreamShape shape, Sink<?> sink) {
+        StageCounters c;
+        synchronized (this) {
+            if ((c = stages.get(stage)) == null)
+                stages.put(stage, c = new StageCounters(describe(stage.getClass()),
+                                                         index << 1, false, sampleMask + 1));
+        }
+        return wrap(c, sampler, shape, sink);
+    }
+
+    /**
+     * Wraps the sink receiving the output of a pipeline (segment).
+     *
+     * @param sampler the sampler shared by the sinks of the chain
+     * @param stage the last pipeline stage of the segment
+     * @param index the index of the stage from the source
+     * @param shape the output shape of the stage
+     * @param sink the terminal sink
+     */
+    Sink<?> wrapTerminal(Sampler sampler, Object stage, int index, StreamShape shape, Sink<?> sink) {
+        StageCounters c;
+        synchronized (this) {
+            if ((c = terminals.get(stage)) == null)
+                terminals.put(stage, c = new StageCounters(describe(sink.getClass()),
+                                                            (index << 1) + 1, true, sampleMask + 1));
+        }
+        return wrap(c, sampler, shape, sink);
+    }
+
+    private Sink<?> wrap(StageCounters c, Sampler sampler, StreamShape shape, Sink<?> sink) {
+        switch (shape) {
+            case INT_VALUE:    return new ProfilingSink.OfInt(c, sampler, (Sink.OfInt) sink);
+            case LONG_VALUE:   return new ProfilingSink.OfLong(c, sampler, (Sink.OfLong) sink);
+            case DOUBLE_VALUE: return new ProfilingSink.OfDouble(c, sampler, (Sink.OfDouble) sink);
+            default:           return new ProfilingSink.OfRef<>(c, sampler, sink);
+        }
+    }
+
+    /**
+     * Returns a new sampler for the profiling sinks of one wrapped sink
+     * chain.
+     */
+    Sampler newSampler() {
+        return new Sampler(sampleMask);
+    }
+
+    /**
+     * Returns a short name for the operation implemented by the given
+     * class: the method that declares an anonymous or local class, qualified
+     * by its class unless that is a pipeline class, or the nested name of a
+     * member class.
+     */
+    static String describe(Class<?> c) {
+        try {
+            if (c.isAnonymousClass() || c.isLocalClass()) {
+                Class<?> d = c.getEnclosingClass();
+                Method m = c.getEnclosingMethod();
+                if (m == null)
+                    return describe(d);
+                if (d == ReferencePipeline.class || d == IntPipeline.class ||
+                    d == LongPipeline.class || d == DoublePipeline.class)
+                    return m.getName();
+                return describe(d) + "." + m.getName();
+            }
+            Class<?> d = c.getEnclosingClass();
+            return (d == null) ? c.getSimpleName()
+                               : describe(d) + "." + c.getSimpleName();
+        } catch (SecurityException ex) {
+            return c.getName();
+        }
+    }
+
+    /**
+     * Shared counters of one profiled stage.
+     */
+    static final class StageCounters {
+        final String name;
+        final int position;
+        final boolean terminal;
+        final int sampleInterval;
+        final LongAdder in = new LongAdder();
+        final LongAdder sampledNanos = new LongAdder();
+        final LongAdder endNanos = new LongAdder();
+
+        StageCounters(String name, int position, boolean terminal, int sampleInterval) {
+            this.sampleInterval = sampleInterval;
+            this.name = name;
+            this.position = position;
+            this.terminal = terminal;
+        }
+
+        /**
+         * Returns the estimated total time spent accepting elements, from the
+         * sampled times, plus the time spent in {@code end()}.  On average
+         * one in {@code sampleInterval} of the elements entering a chain is
+         * timed, so sampled times are scaled by the interval.
+         */
+        long estimatedNanos() {
+            return sampledNanos.sum() * sampleInterval + endNanos.sum();
+        }
+    }
+
+    /**
+     * The sampling state shared by the profiling sinks of one wrapped sink
+     * chain.  Each chain is used by one thread at a time: parallel
+     * operations that would otherwise share a chain among tasks, such as
+     * {@code forEach}, wrap a chain per leaf task when profiled.  The
+     * outermost profiling sink through which an element enters the chain
+     * (normally that of the first stage, or that of the stage after a
+     * barrier during the barrier's {@code end()}) drives sampling: it
+     * decides whether the element is timed, and all profiling sinks nested
+     * within its call time the same element.  Timed intervals of a stage
+     * therefore contain those of the stages it feeds.
+     *
+     * The number of elements until the next timed one is drawn uniformly
+     * from 1 to twice the sample interval less one, so that its mean is the
+     * interval but it does not lock onto periodic patterns in the data.
+     * The first gap is drawn from 1 to the interval, so that short chains,
+     * such as those of small leaf tasks, do not always time their first
+     * element.
+     */
+    static final class Sampler {
+        final int mask;
+        ProfilingSink<?> driver;
+        boolean timing;
+        int countdown;
+
+        Sampler(int mask) {
+            this.mask = mask;
+            this.countdown = 1 + ThreadLocalRandom.current().nextInt(mask + 1);
+        }
+
+        /**
+         * Decides whether the next element entering the chain is timed.
+         */
+        boolean sampleNext() {
+            if (--countdown > 0)
+                return false;
+            countdown = 1 + ThreadLocalRandom.current().nextInt((mask << 1) + 1);
+            return true;
+        }
+    }
+
+    /**
+     * A sink counting and sampling the elements accepted by the sink of one
+     * stage.  Counts are kept locally and added to the shared counters when
+     * the sink ends.
+     */
+    static abstract class ProfilingSink<T> implements Sink<T> {
+        final StageCounters counters;
+        final Sampler sampler;
+        final Sink<?> sink;
+        long count, sampledNanos;
+
+        ProfilingSink(StageCounters counters, Sampler sampler, Sink<?> sink) {
+            this.counters = counters;
+            this.sampler = sampler;
+            this.sink = sink;
+        }
+
+        @Override
+        public void begin(long size) {
+            count = sampledNanos = 0L;
+            sink.begin(size);
+        }
+
+        @Override
+        public void end() {
+            long start = System.nanoTime();
+            sink.end();
+            counters.endNanos.add(System.nanoTime() - start);
+            counters.in.add(count);
+            counters.sampledNanos.add(sampledNanos);
+            count = sampledNanos = 0L;
+        }
+
+        @Override
+        public boolean cancellationRequested() {
+            return sink.cancellationRequested();
+        }
+
+        /**
+         * Counts an element, driving sampling if no outer sink does, and
+         * returns the start time if the element is timed, otherwise -1.
+         */
+        final long enter() {
+            Sampler s = sampler;
+            ++count;
+            if (s.driver == null) {
+                s.driver = this;
+                s.timing = s.sampleNext();
+            }
+            return s.timing ? System.nanoTime() : -1L;
+        }
+
+        /**
+         * Records the time of a timed element, and stops driving sampling
+         * if this sink drove it.
+         */
+        final void exit(long start) {
+            if (start >= 0L)
+                sampledNanos += System.nanoTime() - start;
+            Sampler s = sampler;
+            if (s.driver == this)
+                s.driver = null;
+        }
+
+        static final class OfRef<T> extends ProfilingSink<T> {
+            private final Sink<T> target;
+
+            @SuppressWarnings("unchecked")
+            OfRef(StageCounters counters, Sampler sampler, Sink<?> sink) {
+                super(counters, sampler, sink);
+                this.target = (Sink<T>) sink;
+            }
+
+            @Override
+            public void accept(T t) {
+                long start = enter();
+                target.accept(t);
+                exit(start);
+            }
+        }
+
+        static final class OfInt extends ProfilingSink<Integer> implements Sink.OfInt {
+            private final Sink.OfInt target;
+
+            OfInt(StageCounters counters, Sampler sampler, Sink.OfInt sink) {
+                super(counters, sampler, sink);
+                this.target = sink;
+            }
+
+            @Override
+            public void accept(int t) {
+                long start = enter();
+                target.accept(t);
+                exit(start);
+            }
+        }
+
+        static final class OfLong extends ProfilingSink<Long> implements Sink.OfLong {
+            private final Sink.OfLong target;
+
+            OfLong(StageCounters counters, Sampler sampler, Sink.OfLong sink) {
+                super(counters, sampler, sink);
+                this.target = sink;
+            }
+
+            @Override
+            public void accept(long t) {
+                long start = enter();
+                target.accept(t);
+                exit(start);
+            }
+        }
+
+        static final class OfDouble extends ProfilingSink<Double> implements Sink.OfDouble {
+            private final Sink.OfDouble target;
+
+            OfDouble(StageCounters counters, Sampler sampler, Sink.OfDouble sink) {
+                super(counters, sampler, sink);
+                this.target = sink;
+            }
+
+            @Override
+            public void accept(double t) {
+                long start = enter();
+                target.accept(t);
+                exit(start);
+            }
+        }
+    }
+}
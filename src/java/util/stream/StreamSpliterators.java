@@ -1309,6 +1309,174 @@ class StreamSpliterators {
         }
     }
 
+    /**
+     * Primitive specializations of {@link DistinctSpliterator}, for lazy
+     * evaluation of {@code distinct()} on unordered parallel primitive
+     * streams.  Values are boxed as keys of a shared
+     * {@code ConcurrentHashMap}, so that equality is that of the boxed
+     * types, as for the sequential and ordered parallel implementations.
+     */
+    static abstract class DistinctPrimitiveSpliterator<T, T_SPLITR extends Spliterator<T>> {
+        // The underlying spliterator
+        final T_SPLITR s;
+
+        // ConcurrentHashMap holding distinct elements as keys
+        final ConcurrentHashMap<T, Boolean> seen;
+
+        DistinctPrimitiveSpliterator(T_SPLITR s, ConcurrentHashMap<T, Boolean> seen) {
+            this.s = s;
+            this.seen = seen;
+        }
+
+        public final long estimateSize() {
+            return s.estimateSize();
+        }
+
+        public final int characteristics() {
+            return (s.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED |
+                                            Spliterator.SORTED | Spliterator.ORDERED))
+                   | Spliterator.DISTINCT;
+        }
+
+        static final class OfInt
+                extends DistinctPrimitiveSpliterator<Integer, Spliterator.OfInt>
+                implements Spliterator.OfInt, IntConsumer {
+            // Temporary element, only used with tryAdvance
+            private int tmpSlot;
+
+            OfInt(Spliterator.OfInt s) {
+                this(s, new ConcurrentHashMap<>());
+            }
+
+            private OfInt(Spliterator.OfInt s, ConcurrentHashMap<Integer, Boolean> seen) {
+                super(s, seen);
+            }
+
+            @Override
+            public void accept(int t) {
+                this.tmpSlot = t;
+            }
+
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                while (s.tryAdvance(this)) {
+                    if (seen.putIfAbsent(tmpSlot, Boolean.TRUE) == null) {
+                        action.accept(tmpSlot);
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public void forEachRemaining(IntConsumer action) {
+                s.forEachRemaining((int t) -> {
+                    if (seen.putIfAbsent(t, Boolean.TRUE) == null) {
+                        action.accept(t);
+                    }
+                });
+            }
+
+            @Override
+            public Spliterator.OfInt trySplit() {
+                Spliterator.OfInt split = s.trySplit();
+                return (split != null) ? new DistinctPrimitiveSpliterator.OfInt(split, seen) : null;
+            }
+        }
+
+        static final class OfLong
+                extends DistinctPrimitiveSpliterator<Long, Spliterator.OfLong>
+                implements Spliterator.OfLong, LongConsumer {
+            // Temporary element, only used with tryAdvance
+            private long tmpSlot;
+
+            OfLong(Spliterator.OfLong s) {
+                this(s, new ConcurrentHashMap<>());
+            }
+
+            private OfLong(Spliterator.OfLong s, ConcurrentHashMap<Long, Boolean> seen) {
+                super(s, seen);
+            }
+
+            @Override
+            public void accept(long t) {
+                this.tmpSlot = t;
+            }
+
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                while (s.tryAdvance(this)) {
+                    if (seen.putIfAbsent(tmpSlot, Boolean.TRUE) == null) {
+                        action.accept(tmpSlot);
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public void forEachRemaining(LongConsumer action) {
+                s.forEachRemaining((long t) -> {
+                    if (seen.putIfAbsent(t, Boolean.TRUE) == null) {
+                        action.accept(t);
+                    }
+                });
+            }
+
+            @Override
+            public Spliterator.OfLong trySplit() {
+                Spliterator.OfLong split = s.trySplit();
+                return (split != null) ? new DistinctPrimitiveSpliterator.OfLong(split, seen) : null;
+            }
+        }
+
+        static final class OfDouble
+                extends DistinctPrimitiveSpliterator<Double, Spliterator.OfDouble>
+                implements Spliterator.OfDouble, DoubleConsumer {
+            // Temporary element, only used with tryAdvance
+            private double tmpSlot;
+
+            OfDouble(Spliterator.OfDouble s) {
+                this(s, new ConcurrentHashMap<>());
+            }
+
+            private OfDouble(Spliterator.OfDouble s, ConcurrentHashMap<Double, Boolean> seen) {
+                super(s, seen);
+            }
+
+            @Override
+            public void accept(double t) {
+                this.tmpSlot = t;
+            }
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer action) {
+                while (s.tryAdvance(this)) {
+                    if (seen.putIfAbsent(tmpSlot, Boolean.TRUE) == null) {
+                        action.accept(tmpSlot);
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public void forEachRemaining(DoubleConsumer action) {
+                s.forEachRemaining((double t) -> {
+                    if (seen.putIfAbsent(t, Boolean.TRUE) == null) {
+                        action.accept(t);
+                    }
+                });
+            }
+
+            @Override
+            public Spliterator.OfDouble trySplit() {
+                Spliterator.OfDouble split = s.trySplit();
+                return (split != null) ? new DistinctPrimitiveSpliterator.OfDouble(split, seen) : null;
+            }
+        }
+    }
+
     /**
      * A Spliterator that infinitely supplies elements in no particular order.
      *